@@ -0,0 +1,193 @@
+package org.batfish.main;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Iterables;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import org.batfish.common.BfConsts;
+import org.batfish.common.util.BatfishObjectMapper;
+import org.batfish.config.Settings;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.datamodel.IkeGateway;
+import org.batfish.datamodel.IkePolicy;
+import org.batfish.datamodel.IkeProposal;
+import org.batfish.datamodel.Interface;
+import org.batfish.datamodel.InterfaceAddress;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.IpsecPolicy;
+import org.batfish.datamodel.IpsecProposal;
+import org.batfish.datamodel.IpsecVpn;
+import org.batfish.datamodel.NetworkFactory;
+import org.batfish.datamodel.Vrf;
+import org.batfish.datamodel.answers.Answer;
+import org.batfish.datamodel.answers.AnswerElement;
+import org.batfish.datamodel.answers.AnswerStatus;
+import org.batfish.datamodel.answers.RunAnalysisAnswerElement;
+import org.batfish.datamodel.questions.Question;
+import org.batfish.datamodel.questions.Question.InstanceData;
+import org.batfish.datamodel.table.TableAnswerElement;
+import org.batfish.question.interfaceproperties.InterfacePropertiesQuestion;
+import org.batfish.question.ipsecvpnstatus.IpsecVpnInfo;
+import org.batfish.question.ipsecvpnstatus.IpsecVpnInfo.Problem;
+import org.batfish.question.ipsecvpnstatus.IpsecVpnStatusAnswerElement;
+import org.batfish.question.ipsecvpnstatus.IpsecVpnStatusQuestion;
+import org.batfish.question.nodeproperties.NodePropertiesQuestion;
+import org.batfish.question.routes.RoutesQuestion;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests of answering the questions of an analysis concurrently. */
+public class AnalyzeConcurrentlyTest {
+
+  @Rule public TemporaryFolder _folder = new TemporaryFolder();
+
+  /** Questions whose answers are tables */
+  private static final List<String> TABLE_QUESTION_NAMES =
+      ImmutableList.of("interfaces", "nodes", "routes");
+
+  /** IPsec VPN status questions, which initialize remote VPNs of the configurations they load */
+  private static final List<String> IPSEC_QUESTION_NAMES = ImmutableList.of("ipsec1", "ipsec2");
+
+  private static SortedMap<String, Configuration> configurations() {
+    NetworkFactory nf = new NetworkFactory();
+    Configuration.Builder cb =
+        nf.configurationBuilder().setConfigurationFormat(ConfigurationFormat.CISCO_IOS);
+    Vrf.Builder vb = nf.vrfBuilder().setName(Configuration.DEFAULT_VRF_NAME);
+    Interface.Builder ib = nf.interfaceBuilder().setActive(true);
+    Configuration c1 = cb.setHostname("c1").build();
+    ib.setOwner(c1).setVrf(vb.setOwner(c1).build());
+    Interface i1 = ib.setAddress(new InterfaceAddress("10.0.0.0/31")).build();
+    ib.setAddress(new InterfaceAddress("1.1.1.1/32")).build();
+    Interface t1 = ib.setAddress(new InterfaceAddress("10.1.0.0/31")).build();
+    addIpsecVpn(c1, i1, t1, new Ip("10.0.0.1"));
+    Configuration c2 = cb.setHostname("c2").build();
+    ib.setOwner(c2).setVrf(vb.setOwner(c2).build());
+    Interface i2 = ib.setAddress(new InterfaceAddress("10.0.0.1/31")).build();
+    Interface t2 = ib.setAddress(new InterfaceAddress("10.1.0.1/31")).build();
+    addIpsecVpn(c2, i2, t2, new Ip("10.0.0.0"));
+    return ImmutableSortedMap.of("c1", c1, "c2", c2);
+  }
+
+  /**
+   * Adds a VPN to {@code c} bound to {@code tunnelInterface}, with its gateway on {@code
+   * externalInterface} and the given remote address, with proposals matching those of the VPNs
+   * added to other nodes.
+   */
+  private static void addIpsecVpn(
+      Configuration c, Interface externalInterface, Interface tunnelInterface, Ip remoteIp) {
+    IkePolicy ikePolicy = new IkePolicy("ike");
+    ikePolicy.getProposals().put("p", new IkeProposal("p"));
+    ikePolicy.setPreSharedKeyHash("psk");
+    IkeGateway ikeGateway = new IkeGateway("gateway");
+    ikeGateway.setAddress(remoteIp);
+    ikeGateway.setExternalInterface(externalInterface);
+    ikeGateway.setIkePolicy(ikePolicy);
+    ikeGateway.setLocalIp(externalInterface.getAddress().getIp());
+    c.getIkeGateways().put(ikeGateway.getName(), ikeGateway);
+    IpsecPolicy ipsecPolicy = new IpsecPolicy("ipsec");
+    ipsecPolicy.getProposals().add(new IpsecProposal("p"));
+    IpsecVpn vpn = new IpsecVpn("vpn", c);
+    vpn.setBindInterface(tunnelInterface);
+    vpn.setIkeGateway(ikeGateway);
+    vpn.setIpsecPolicy(ipsecPolicy);
+    c.getIpsecVpns().put(vpn.getName(), vpn);
+  }
+
+  private static void writeQuestion(Path analysisQuestionsDir, String name, Question question)
+      throws IOException {
+    question.setInstance(new InstanceData());
+    Path questionDir = analysisQuestionsDir.resolve(name);
+    questionDir.toFile().mkdirs();
+    Files.write(
+        questionDir.resolve(BfConsts.RELPATH_QUESTION_FILE),
+        BatfishObjectMapper.writePrettyString(question).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Answers the analysis of a fresh snapshot using {@code threads} threads. */
+  private RunAnalysisAnswerElement analyze(int threads) throws IOException {
+    Batfish batfish = BatfishTestUtils.getBatfish(configurations(), _folder);
+    batfish.computeDataPlane(false);
+    Settings settings = batfish.getSettings();
+    settings.setAnalysisName("analysis");
+    settings.setAnalysisThreads(threads);
+    Path analysisQuestionsDir =
+        settings
+            .getStorageBase()
+            .resolve(settings.getContainer())
+            .resolve(BfConsts.RELPATH_ANALYSES_DIR)
+            .resolve("analysis")
+            .resolve(BfConsts.RELPATH_QUESTIONS_DIR);
+    writeQuestion(
+        analysisQuestionsDir,
+        "interfaces",
+        new InterfacePropertiesQuestion(null, null, null, null));
+    writeQuestion(analysisQuestionsDir, "nodes", new NodePropertiesQuestion(null, null));
+    writeQuestion(analysisQuestionsDir, "routes", new RoutesQuestion());
+    for (String questionName : IPSEC_QUESTION_NAMES) {
+      writeQuestion(
+          analysisQuestionsDir, questionName, new IpsecVpnStatusQuestion(null, null, null));
+    }
+
+    Answer answer = batfish.analyze();
+
+    assertThat(answer.getAnswerElements(), hasSize(1));
+    return (RunAnalysisAnswerElement) answer.getAnswerElements().get(0);
+  }
+
+  @Test
+  public void testAnalyzeConcurrently() throws IOException {
+    RunAnalysisAnswerElement concurrent = analyze(5);
+    RunAnalysisAnswerElement sequential = analyze(1);
+
+    assertThat(
+        concurrent.getAnswers().keySet(),
+        containsInAnyOrder(
+            Iterables.toArray(
+                Iterables.concat(TABLE_QUESTION_NAMES, IPSEC_QUESTION_NAMES), String.class)));
+    for (String questionName : TABLE_QUESTION_NAMES) {
+      Answer concurrentAnswer = concurrent.getAnswers().get(questionName);
+      assertThat(concurrentAnswer.getStatus(), equalTo(AnswerStatus.SUCCESS));
+      AnswerElement ae = concurrentAnswer.getAnswerElements().get(0);
+      assertThat(ae, instanceOf(TableAnswerElement.class));
+      TableAnswerElement table = (TableAnswerElement) ae;
+      assertThat(table.getRowsList(), not(hasSize(0)));
+      // questions answered concurrently get the same answers as when answered one at a time
+      TableAnswerElement sequentialTable =
+          (TableAnswerElement) sequential.getAnswers().get(questionName).getAnswerElements().get(0);
+      assertThat(table.getRowsList(), equalTo(sequentialTable.getRowsList()));
+    }
+    for (String questionName : IPSEC_QUESTION_NAMES) {
+      Answer concurrentAnswer = concurrent.getAnswers().get(questionName);
+      assertThat(concurrentAnswer.getStatus(), equalTo(AnswerStatus.SUCCESS));
+      AnswerElement ae = concurrentAnswer.getAnswerElements().get(0);
+      assertThat(ae, instanceOf(IpsecVpnStatusAnswerElement.class));
+      SortedSet<IpsecVpnInfo> vpns = ((IpsecVpnStatusAnswerElement) ae).getIpsecVpns();
+      // both VPNs find each other, even while other questions initialize remote VPNs
+      assertThat(vpns, hasSize(2));
+      for (IpsecVpnInfo vpn : vpns) {
+        assertThat(vpn.getProblems(), contains(Problem.NONE));
+      }
+      AnswerElement sequentialAe =
+          sequential.getAnswers().get(questionName).getAnswerElements().get(0);
+      assertThat(
+          BatfishObjectMapper.writePrettyString(ae),
+          equalTo(BatfishObjectMapper.writePrettyString(sequentialAe)));
+    }
+  }
+}
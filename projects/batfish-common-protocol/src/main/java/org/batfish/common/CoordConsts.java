@@ -63,6 +63,7 @@ public class CoordConsts {
   /** Various constants used as keys on multi-part form data */
   public static final String SVC_KEY_ADD_WORKER = "addworker";
 
+  public static final String SVC_KEY_AFFINITY = "affinity";
   public static final String SVC_KEY_AGGREGATIONS = "aggregations";
   public static final String SVC_KEY_ANALYSIS_ANSWERS_OPTIONS = "analysisanswersoptions";
   public static final String SVC_KEY_ANALYSIS_QUESTIONS = "analysisquestions";
@@ -121,6 +122,7 @@ public class CoordConsts {
   public static final String SVC_KEY_VERSION = "version";
   public static final String SVC_KEY_WORK_LIST = "worklist";
   public static final String SVC_KEY_WORK_TYPE = "worktype";
+  public static final String SVC_KEY_WORKER = "worker";
   public static final String SVC_KEY_WORKID = "workid";
   public static final String SVC_KEY_WORKITEM = "workitem";
   public static final String SVC_KEY_WORKSTATUS = "workstatus";
@@ -166,6 +168,7 @@ public class CoordConsts {
   public static final String SVC_RSC_POOL_GET_QUESTION_TEMPLATES = "getquestiontemplates";
   public static final String SVC_RSC_POOL_GETSTATUS = "getstatus";
   public static final String SVC_RSC_POOL_UPDATE = "updatepool";
+  public static final String SVC_RSC_POOL_UPDATE_TASK = "updatetask";
   public static final String SVC_RSC_PUT_OBJECT = "putobject";
   public static final String SVC_RSC_QUEUE_WORK = "queuework";
   public static final String SVC_RSC_SYNC_SNAPSHOTS_SYNC_NOW = "syncsnapshotssyncnow";
@@ -6,13 +6,45 @@ import java.util.SortedMap;
 import org.batfish.datamodel.DataPlane;
 import org.batfish.datamodel.Fib;
 import org.batfish.datamodel.Flow;
+import org.batfish.datamodel.FlowDisposition;
 import org.batfish.datamodel.FlowTrace;
+import org.batfish.datamodel.FlowTraceDag;
 
 /**
  * Indicates ability to process a set of {@link Flow} objects and return a set of {@link FlowTrace},
  * performing a traceroute.
  */
 public interface ITracerouteEngine {
+
+  /**
+   * Returns the accepted traces of each of {@code flows}: the traces with disposition {@link
+   * FlowDisposition#ACCEPTED} that {@link #processFlows} would return, except that their hops only
+   * have their edges. The network is walked once for all the flows that only differ in their
+   * destination IP, which are forwarded together until their routes diverge.
+   */
+  SortedMap<Flow, Set<FlowTrace>> computeAcceptedFlowTraces(
+      DataPlane dataPlane, Set<Flow> flows, Map<String, Map<String, Fib>> fibs, boolean ignoreAcls);
+
+  /**
+   * Performs a traceroute of each of {@code flows}, returning its traces as a {@link FlowTraceDag}.
+   * The rest of a trace is computed once for all traces reaching the same edge with the same
+   * transformed flow, so the work done grows with the size of the graph rather than with the number
+   * of traces.
+   *
+   * <p>{@link #processFlows} and {@link #processFlowBatch} expand these graphs into their traces,
+   * so only building the traces themselves grows with their number.
+   */
+  SortedMap<Flow, FlowTraceDag> computeFlowTraceDags(
+      DataPlane dataPlane, Set<Flow> flows, Map<String, Map<String, Fib>> fibs, boolean ignoreAcls);
+
+  /**
+   * Performs a traceroute of each of {@code flows}, like {@link #processFlows}. Flows agreeing on
+   * their ingress location, destination IP, and every header field matched by some ACL of the
+   * network have the same traces, so only one flow of each such class is traced.
+   */
+  SortedMap<Flow, Set<FlowTrace>> processFlowBatch(
+      DataPlane dataPlane, Set<Flow> flows, Map<String, Map<String, Fib>> fibs, boolean ignoreAcls);
+
   SortedMap<Flow, Set<FlowTrace>> processFlows(
       DataPlane dataPlane, Set<Flow> flows, Map<String, Map<String, Fib>> fibs, boolean ignoreAcls);
 }
@@ -27,6 +27,7 @@ import java.util.ServiceLoader;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.zip.GZIPInputStream;
+import javax.annotation.Nullable;
 import net.jpountz.lz4.LZ4FrameInputStream;
 import net.jpountz.lz4.LZ4FrameOutputStream;
 import org.batfish.common.BatfishException;
@@ -39,6 +40,7 @@ public abstract class PluginConsumer implements IPluginConsumer {
     JAVA_SERIALIZED,
     LZ4,
     GZIP,
+    SEGMENTED,
     UNKNOWN
   }
 
@@ -60,8 +62,19 @@ public abstract class PluginConsumer implements IPluginConsumer {
 
   private static final byte[] GZIP_MAGIC_BYTES = {(byte) 0x1f, (byte) 0x8b};
 
+  /**
+   * A byte-array containing the header of a file holding multiple independently readable objects
+   * (see {@code org.batfish.main.SegmentedObjectFile})
+   */
+  public static final byte[] SEGMENTED_MAGIC_BYTES = {
+    (byte) 0x42, (byte) 0x46, (byte) 0x53, (byte) 0x47
+  };
+
   private ClassLoader _currentClassLoader;
 
+  /** The plugins found on the class path, or {@code null} if it has not been searched yet */
+  @Nullable private SortedSet<Plugin> _plugins;
+
   private final boolean _serializeToText;
 
   public PluginConsumer(boolean serializeToText) {
@@ -89,14 +102,7 @@ public abstract class PluginConsumer implements IPluginConsumer {
   private <S extends Serializable> S deserializeObject(
       InputStream stream, Class<S> outputClass, Format format) throws IOException {
     try {
-      ObjectInputStream ois;
-      if (format != Format.JAVA_SERIALIZED) {
-        XStream xstream = new XStream(new DomDriver("UTF-8"));
-        xstream.setClassLoader(_currentClassLoader);
-        ois = xstream.createObjectInputStream(stream);
-      } else {
-        ois = new BatfishObjectInputStream(stream, _currentClassLoader);
-      }
+      ObjectInputStream ois = newObjectInputStream(stream, format, _currentClassLoader);
       Object o = ois.readObject();
       return outputClass.cast(o);
     } catch (ClassNotFoundException | ClassCastException e) {
@@ -132,6 +138,10 @@ public abstract class PluginConsumer implements IPluginConsumer {
               new PushbackInputStream(lis, DEFAULT_HEADER_LENGTH_BYTES);
           f = detectFormat(pbUncompressed);
           return deserializeObject(pbUncompressed, outputClass, f);
+        } else if (f == Format.SEGMENTED) {
+          throw new BatfishException(
+              String.format(
+                  "Cannot deserialize a single object from segmented file %s", inputFile));
         } else {
           return deserializeObject(pbCompressed, outputClass, f);
         }
@@ -145,6 +155,36 @@ public abstract class PluginConsumer implements IPluginConsumer {
     }
   }
 
+  /**
+   * Returns a stream reading objects from {@code stream}, which holds uncompressed data of the
+   * given {@link Format}: Java-serialized, or text otherwise. Classes are resolved with {@code
+   * classLoader}.
+   */
+  public static ObjectInputStream newObjectInputStream(
+      InputStream stream, Format format, ClassLoader classLoader) throws IOException {
+    if (format != Format.JAVA_SERIALIZED) {
+      XStream xstream = new XStream(new DomDriver("UTF-8"));
+      xstream.setClassLoader(classLoader);
+      return xstream.createObjectInputStream(stream);
+    } else {
+      return new BatfishObjectInputStream(stream, classLoader);
+    }
+  }
+
+  /**
+   * Returns a stream writing objects to {@code out}, as text if {@code serializeToText} is set.
+   * XStream requires the returned stream to be closed to finish serialization.
+   */
+  public static ObjectOutputStream newObjectOutputStream(OutputStream out, boolean serializeToText)
+      throws IOException {
+    if (serializeToText) {
+      XStream xstream = new XStream(new DomDriver("UTF-8"));
+      return xstream.createObjectOutputStream(out);
+    } else {
+      return new ObjectOutputStream(out);
+    }
+  }
+
   /**
    * Determines the format of stream data. Requires a {@link PushbackInputStream} so that the
    * inspected bytes can be put back into the stream after reading.
@@ -159,6 +199,8 @@ public abstract class PluginConsumer implements IPluginConsumer {
       format = Format.JAVA_SERIALIZED;
     } else if (Arrays.equals(header, LZ4_MAGIC_BYTES)) {
       format = Format.LZ4;
+    } else if (Arrays.equals(header, SEGMENTED_MAGIC_BYTES)) {
+      format = Format.SEGMENTED;
     } else if (Arrays.equals(Arrays.copyOf(header, GZIP_HEADER_LENGTH_BYTES), GZIP_MAGIC_BYTES)) {
       format = Format.GZIP;
     } else {
@@ -175,13 +217,42 @@ public abstract class PluginConsumer implements IPluginConsumer {
   public abstract PluginClientType getType();
 
   protected final void loadPlugins() {
-    SortedSet<Plugin> plugins;
-    try {
-      plugins =
-          new TreeSet<>(Lists.newArrayList(ServiceLoader.load(Plugin.class, _currentClassLoader)));
-    } catch (ServiceConfigurationError e) {
-      throw new BatfishException("Failed to locate and/or instantiate plugins", e);
+    initializePlugins(findPlugins());
+  }
+
+  /**
+   * Loads new instances of the plugins found by {@code pluginConsumer}, so that the class path is
+   * searched for plugins only once for both. Plugins are bound to the consumer that initialized
+   * them, so they cannot be shared.
+   */
+  protected final void loadPlugins(PluginConsumer pluginConsumer) {
+    SortedSet<Plugin> plugins = new TreeSet<>();
+    for (Plugin plugin : pluginConsumer.findPlugins()) {
+      try {
+        plugins.add(plugin.getClass().getConstructor().newInstance());
+      } catch (ReflectiveOperationException e) {
+        throw new BatfishException(
+            "Failed to instantiate plugin: " + plugin.getClass().getCanonicalName(), e);
+      }
     }
+    initializePlugins(plugins);
+  }
+
+  /** Returns the plugins on the class path, searching it only the first time. */
+  private synchronized SortedSet<Plugin> findPlugins() {
+    if (_plugins == null) {
+      try {
+        _plugins =
+            new TreeSet<>(
+                Lists.newArrayList(ServiceLoader.load(Plugin.class, _currentClassLoader)));
+      } catch (ServiceConfigurationError e) {
+        throw new BatfishException("Failed to locate and/or instantiate plugins", e);
+      }
+    }
+    return _plugins;
+  }
+
+  private void initializePlugins(SortedSet<Plugin> plugins) {
     List<BatfishException> initializationExceptions = new ArrayList<>();
     for (Plugin plugin : plugins) {
       try {
@@ -232,13 +303,7 @@ public abstract class PluginConsumer implements IPluginConsumer {
 
     try (Closer closer = Closer.create()) {
       OutputStream los = closer.register(new LZ4FrameOutputStream(closeIgnoringOut));
-      ObjectOutputStream oos;
-      if (_serializeToText) {
-        XStream xstream = new XStream(new DomDriver("UTF-8"));
-        oos = closer.register(xstream.createObjectOutputStream(los));
-      } else {
-        oos = closer.register(new ObjectOutputStream(los));
-      }
+      ObjectOutputStream oos = closer.register(newObjectOutputStream(los, _serializeToText));
       oos.writeObject(object);
     } catch (IOException e) {
       throw new BatfishException("Failed to convert object to LZ4 data", e);
@@ -290,31 +290,27 @@ public final class TopologyUtil {
      * Finally, the resulting edges are filtered down to those with proper layer-3 addressing,
      * and transformed to only contain layer-2 relevant information.
      */
-    ImmutableSet.Builder<Layer3Edge> layer3Edges = ImmutableSet.builder();
     Layer2Topology vlanInterfaceAugmentedLayer2Topology =
         computeAugmentedLayer2Topology(layer2Topology, configurations);
-    vlanInterfaceAugmentedLayer2Topology
-        .getGraph()
-        .edges()
-        .forEach(
-            layer2Edge -> {
-              Interface i1 = getInterface(layer2Edge.getNode1(), configurations);
-              Interface i2 = getInterface(layer2Edge.getNode2(), configurations);
-              if (i1 == null
-                  || i2 == null
-                  || (i1.getOwner().equals(i2.getOwner())
-                      && i1.getVrfName().equals(i2.getVrfName()))) {
-                return;
-              }
-              if (!i1.getAllAddresses().isEmpty() || !i2.getAllAddresses().isEmpty()) {
-                assert Boolean.TRUE;
-              }
-              if (!matchingSubnet(i1.getAllAddresses(), i2.getAllAddresses())) {
-                return;
-              }
-              layer3Edges.add(toLayer3Edge(layer2Edge));
-            });
-    return new Layer3Topology(layer3Edges.build());
+    return new Layer3Topology(
+        vlanInterfaceAugmentedLayer2Topology
+            .getGraph()
+            .edges()
+            .parallelStream()
+            .filter(
+                layer2Edge -> {
+                  Interface i1 = getInterface(layer2Edge.getNode1(), configurations);
+                  Interface i2 = getInterface(layer2Edge.getNode2(), configurations);
+                  if (i1 == null
+                      || i2 == null
+                      || (i1.getOwner().equals(i2.getOwner())
+                          && i1.getVrfName().equals(i2.getVrfName()))) {
+                    return false;
+                  }
+                  return matchingSubnet(i1.getAllAddresses(), i2.getAllAddresses());
+                })
+            .map(TopologyUtil::toLayer3Edge)
+            .collect(ImmutableSet.toImmutableSet()));
   }
 
   private static @Nullable Configuration getConfiguration(
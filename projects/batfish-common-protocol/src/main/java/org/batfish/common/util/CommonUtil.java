@@ -2,6 +2,7 @@ package org.batfish.common.util;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Comparators;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
@@ -9,6 +10,7 @@ import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.SetMultimap;
@@ -44,6 +46,7 @@ import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.FileTime;
 import java.security.KeyStore;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -51,7 +54,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -84,6 +86,7 @@ import javax.ws.rs.client.ClientBuilder;
 import org.apache.commons.configuration2.builder.fluent.Configurations;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.batfish.common.BatfishException;
 import org.batfish.common.BfConsts;
@@ -612,6 +615,20 @@ public class CommonUtil {
     }
   }
 
+  /**
+   * Returns a deep copy of each of the given configurations. Loaded configurations are shared by
+   * concurrent tasks, so code that modifies configurations it did not create must modify a copy.
+   */
+  public static SortedMap<String, Configuration> copyConfigurations(
+      Map<String, Configuration> configurations) {
+    return new TreeMap<>(
+        configurations
+            .entrySet()
+            .parallelStream()
+            .collect(
+                Collectors.toMap(Entry::getKey, e -> SerializationUtils.clone(e.getValue()))));
+  }
+
   public static void copyDirectory(Path srcPath, Path dstPath) {
     try {
       FileUtils.copyDirectory(srcPath.toFile(), dstPath.toFile());
@@ -942,95 +959,121 @@ public class CommonUtil {
   }
 
   /**
-   * Check if a bgp peer is reachable to establish a session
+   * Returns the flow by which {@code src}, configured on {@code initiator}, initiates its session
+   */
+  private static Flow bgpInitiatingFlow(BgpPeerConfigId initiator, BgpActivePeerConfig src) {
+    return new Flow.Builder()
+        .setIpProtocol(IpProtocol.TCP)
+        .setTag("neighbor-resolution")
+        .setIngressNode(initiator.getHostname())
+        .setIngressVrf(initiator.getVrfName())
+        .setSrcIp(src.getLocalIp())
+        .setDstIp(src.getPeerAddress())
+        .setSrcPort(NamedPort.EPHEMERAL_LOWEST.number())
+        .setDstPort(NamedPort.BGP.number())
+        .build();
+  }
+
+  /** Returns the traces of {@code traces} accepted at node {@code hostname}, in order */
+  private static SortedSet<FlowTrace> acceptedFlowTraces(Set<FlowTrace> traces, String hostname) {
+    return traces
+        .stream()
+        .filter(
+            trace ->
+                trace.getDisposition() == FlowDisposition.ACCEPTED
+                    && trace.getAcceptingNode() != null
+                    && trace.getAcceptingNode().getHostname().equals(hostname))
+        .collect(ImmutableSortedSet.toImmutableSortedSet(FlowTrace::compareTo));
+  }
+
+  /**
+   * Returns the candidate sessions of {@code sessions} that can be established, each as a pair of
+   * its initiator and its listener. A session can be established if the initiating flow is accepted
+   * by the listener, and the reply is accepted by the initiator.
    *
-   * <p><b>Warning:</b> Notion of directionality is important here, we are assuming {@code src} is
-   * initiating the connection according to its local configuration
+   * <p>The initiating flows of all sessions are traced together, then the replies of all sessions
+   * whose initiating flows are accepted, through {@link
+   * ITracerouteEngine#computeAcceptedFlowTraces}. The initiating flows from the same node and
+   * local IP only differ in their destination IP, and so do the replies to the same initiator, so
+   * each batch walks the network once per source address rather than once per session.
    */
-  private static boolean isReachableBgpNeighbor(
-      BgpPeerConfigId initiator,
-      BgpPeerConfigId listener,
-      BgpActivePeerConfig src,
+  private static Set<Pair<BgpPeerConfigId, BgpPeerConfigId>> reachableBgpSessions(
+      Collection<Pair<BgpPeerConfigId, BgpPeerConfigId>> sessions,
+      NetworkConfigurations networkConfigurations,
       @Nullable ITracerouteEngine tracerouteEngine,
       @Nullable DataPlane dp) {
-
-    Ip srcAddress = src.getLocalIp();
-    Ip dstAddress = src.getPeerAddress();
-    if (dstAddress == null) {
-      return false;
+    if (sessions.isEmpty()) {
+      return ImmutableSet.of();
     }
     if (tracerouteEngine == null || dp == null) {
       throw new BatfishException("Cannot compute neighbor reachability without a dataplane");
     }
 
-    /*
-     * Ensure that the session can be established by running traceroute in both directions
-     */
-    Flow.Builder fb = new Flow.Builder();
-    fb.setIpProtocol(IpProtocol.TCP);
-    fb.setTag("neighbor-resolution");
-
-    fb.setIngressNode(initiator.getHostname());
-    fb.setIngressVrf(initiator.getVrfName());
-    fb.setSrcIp(srcAddress);
-    fb.setDstIp(dstAddress);
-    fb.setSrcPort(NamedPort.EPHEMERAL_LOWEST.number());
-    fb.setDstPort(NamedPort.BGP.number());
-    Flow forwardFlow = fb.build();
-
-    // Execute the "initiate connection" traceroute
-    SortedMap<Flow, Set<FlowTrace>> traces =
-        tracerouteEngine.processFlows(dp, ImmutableSet.of(forwardFlow), dp.getFibs(), false);
-
-    SortedSet<FlowTrace> acceptedFlows =
-        traces
-            .get(forwardFlow)
-            .stream()
-            .filter(
-                trace ->
-                    trace.getDisposition() == FlowDisposition.ACCEPTED
-                        && trace.getAcceptingNode() != null
-                        && trace.getAcceptingNode().getHostname().equals(listener.getHostname()))
-            .collect(ImmutableSortedSet.toImmutableSortedSet(FlowTrace::compareTo));
-
-    if (acceptedFlows.isEmpty()) {
-      return false;
-    }
-    NodeInterfacePair acceptPoint = acceptedFlows.first().getAcceptingNode();
-    if (SessionType.isEbgp(BgpSessionProperties.getSessionType(src))
-        && !src.getEbgpMultihop()
-        && acceptedFlows.first().getHops().size() > 1) {
-      // eBGP expects direct connection (single hop) unless explicitly configured multi-hop
-      return false;
+    // The "initiate connection" traceroutes
+    Map<Pair<BgpPeerConfigId, BgpPeerConfigId>, Flow> forwardFlows = new HashMap<>();
+    for (Pair<BgpPeerConfigId, BgpPeerConfigId> session : sessions) {
+      BgpPeerConfigId initiator = session.getFirst();
+      forwardFlows.put(
+          session,
+          bgpInitiatingFlow(
+              initiator,
+              Objects.requireNonNull(
+                  networkConfigurations.getBgpPointToPointPeerConfig(initiator))));
     }
-
-    if (acceptPoint == null) {
-      return false;
+    SortedMap<Flow, Set<FlowTrace>> forwardTraces =
+        tracerouteEngine.computeAcceptedFlowTraces(
+            dp, ImmutableSet.copyOf(forwardFlows.values()), dp.getFibs(), false);
+
+    // The reply traceroutes
+    Map<Pair<BgpPeerConfigId, BgpPeerConfigId>, Flow> backwardFlows = new HashMap<>();
+    forwardFlows.forEach(
+        (session, forwardFlow) -> {
+          BgpPeerConfigId listener = session.getSecond();
+          SortedSet<FlowTrace> acceptedFlows =
+              acceptedFlowTraces(forwardTraces.get(forwardFlow), listener.getHostname());
+          if (acceptedFlows.isEmpty()) {
+            return;
+          }
+          BgpActivePeerConfig src =
+              networkConfigurations.getBgpPointToPointPeerConfig(session.getFirst());
+          if (SessionType.isEbgp(BgpSessionProperties.getSessionType(src))
+              && !src.getEbgpMultihop()
+              && acceptedFlows.first().getHops().size() > 1) {
+            // eBGP expects direct connection (single hop) unless explicitly configured multi-hop
+            return;
+          }
+          backwardFlows.put(
+              session,
+              new Flow.Builder(forwardFlow)
+                  .setIngressNode(acceptedFlows.first().getAcceptingNode().getHostname())
+                  .setIngressVrf(listener.getVrfName())
+                  .setSrcIp(forwardFlow.getDstIp())
+                  .setDstIp(forwardFlow.getSrcIp())
+                  .setSrcPort(forwardFlow.getDstPort())
+                  .setDstPort(forwardFlow.getSrcPort())
+                  .build());
+        });
+    if (backwardFlows.isEmpty()) {
+      return ImmutableSet.of();
     }
-    String acceptedHostname = acceptPoint.getHostname();
-    // The reply traceroute
-    fb.setIngressNode(acceptedHostname);
-    fb.setIngressVrf(listener.getVrfName());
-    fb.setSrcIp(forwardFlow.getDstIp());
-    fb.setDstIp(forwardFlow.getSrcIp());
-    fb.setSrcPort(forwardFlow.getDstPort());
-    fb.setDstPort(forwardFlow.getSrcPort());
-    Flow backwardFlow = fb.build();
-    traces = tracerouteEngine.processFlows(dp, ImmutableSet.of(backwardFlow), dp.getFibs(), false);
+    SortedMap<Flow, Set<FlowTrace>> backwardTraces =
+        tracerouteEngine.computeAcceptedFlowTraces(
+            dp, ImmutableSet.copyOf(backwardFlows.values()), dp.getFibs(), false);
 
     /*
      * If backward traceroutes fail, do not consider the neighbor reachable
      */
-    return !traces
-        .get(backwardFlow)
+    return backwardFlows
+        .entrySet()
         .stream()
         .filter(
-            trace ->
-                trace.getDisposition() == FlowDisposition.ACCEPTED
-                    && trace.getAcceptingNode() != null
-                    && trace.getAcceptingNode().getHostname().equals(initiator.getHostname()))
-        .collect(ImmutableSet.toImmutableSet())
-        .isEmpty();
+            entry ->
+                !acceptedFlowTraces(
+                        backwardTraces.get(entry.getValue()),
+                        entry.getKey().getFirst().getHostname())
+                    .isEmpty())
+        .map(Entry::getKey)
+        .collect(ImmutableSet.toImmutableSet());
   }
 
   /**
@@ -1119,7 +1162,8 @@ public class CommonUtil {
       }
     }
 
-    // Second pass: add edges to the graph. Note, these are directed edges.
+    // Second pass: find candidate sessions, which are directed edges of the graph.
+    List<Pair<BgpPeerConfigId, BgpPeerConfigId>> candidateSessions = new ArrayList<>();
     for (BgpPeerConfigId neighborId : graph.nodes()) {
       if (neighborId.isDynamic()) {
         // Passive end of the peering cannot initiate a connection
@@ -1157,31 +1201,27 @@ public class CommonUtil {
           // Short-circuit if there is no way the remote end will accept our connection
           continue;
         }
-        /*
-         * Perform reachability checks.
-         */
-        if (checkReachability) {
-          if (isReachableBgpNeighbor(
-              neighborId, candidateNeighborId, neighbor, tracerouteEngine, dp)) {
-            graph.putEdgeValue(
-                neighborId,
-                candidateNeighborId,
-                BgpSessionProperties.from(
-                    neighbor,
-                    Objects.requireNonNull(
-                        networkConfigurations.getBgpPeerConfig(candidateNeighborId))));
-          }
-        } else {
-          graph.putEdgeValue(
-              neighborId,
-              candidateNeighborId,
-              BgpSessionProperties.from(
-                  neighbor,
-                  Objects.requireNonNull(
-                      networkConfigurations.getBgpPeerConfig(candidateNeighborId))));
-        }
+        candidateSessions.add(new Pair<>(neighborId, candidateNeighborId));
       }
     }
+
+    /*
+     * Perform reachability checks, walking the network once per source address for the initiating
+     * flows of all candidate sessions, and then for their replies.
+     */
+    Collection<Pair<BgpPeerConfigId, BgpPeerConfigId>> sessions =
+        checkReachability
+            ? reachableBgpSessions(candidateSessions, networkConfigurations, tracerouteEngine, dp)
+            : candidateSessions;
+    for (Pair<BgpPeerConfigId, BgpPeerConfigId> session : sessions) {
+      graph.putEdgeValue(
+          session.getFirst(),
+          session.getSecond(),
+          BgpSessionProperties.from(
+              Objects.requireNonNull(
+                  networkConfigurations.getBgpPointToPointPeerConfig(session.getFirst())),
+              Objects.requireNonNull(networkConfigurations.getBgpPeerConfig(session.getSecond()))));
+    }
     return ImmutableValueGraph.copyOf(graph);
   }
 
@@ -1572,39 +1612,67 @@ public class CommonUtil {
     return differenceSet;
   }
 
+  /**
+   * Connects each pair of active non-loopback interfaces with addresses in the same subnet, unless
+   * they have an address in common. Interfaces are indexed by subnet and by address, so the cost is
+   * proportional to the number of edges rather than to the square of the size of each subnet.
+   */
   public static Topology synthesizeTopology(Map<String, Configuration> configurations) {
-    SortedSet<Edge> edges = new TreeSet<>();
+    List<Interface> interfaces =
+        configurations
+            .values()
+            .parallelStream()
+            .flatMap(
+                node ->
+                    node.getInterfaces()
+                        .values()
+                        .stream()
+                        .filter(
+                            iface ->
+                                !iface.isLoopback(node.getConfigurationFormat())
+                                    && iface.getActive()))
+            .collect(ImmutableList.toImmutableList());
     Map<Prefix, List<Interface>> prefixInterfaces = new HashMap<>();
-    configurations.forEach(
-        (nodeName, node) -> {
-          for (Interface iface : node.getInterfaces().values()) {
-            if (!iface.isLoopback(node.getConfigurationFormat()) && iface.getActive()) {
-              for (InterfaceAddress address : iface.getAllAddresses()) {
-                if (address.getNetworkBits() < Prefix.MAX_PREFIX_LENGTH) {
-                  Prefix prefix = address.getPrefix();
-                  List<Interface> interfaceBucket =
-                      prefixInterfaces.computeIfAbsent(prefix, k -> new LinkedList<>());
-                  interfaceBucket.add(iface);
-                }
-              }
-            }
-          }
-        });
-    for (List<Interface> bucket : prefixInterfaces.values()) {
-      for (Interface iface1 : bucket) {
-        for (Interface iface2 : bucket) {
-          if (iface1 != iface2
-              // don't connect interfaces that have even a single address in common
-              && Sets.intersection(iface1.getAllAddresses(), iface2.getAllAddresses()).isEmpty()) {
-            edges.add(
-                new Edge(
-                    new NodeInterfacePair(iface1.getOwner().getHostname(), iface1.getName()),
-                    new NodeInterfacePair(iface2.getOwner().getHostname(), iface2.getName())));
-          }
+    Map<InterfaceAddress, Set<Interface>> addressInterfaces = new HashMap<>();
+    for (Interface iface : interfaces) {
+      for (InterfaceAddress address : iface.getAllAddresses()) {
+        addressInterfaces.computeIfAbsent(address, a -> Sets.newIdentityHashSet()).add(iface);
+        if (address.getNetworkBits() < Prefix.MAX_PREFIX_LENGTH) {
+          prefixInterfaces.computeIfAbsent(address.getPrefix(), k -> new ArrayList<>()).add(iface);
         }
       }
     }
-    return new Topology(edges);
+    List<Entry<Interface, List<Interface>>> interfaceBuckets = new ArrayList<>();
+    prefixInterfaces
+        .values()
+        .forEach(
+            bucket ->
+                bucket.forEach(iface -> interfaceBuckets.add(Maps.immutableEntry(iface, bucket))));
+    return new Topology(
+        interfaceBuckets
+            .parallelStream()
+            .flatMap(
+                interfaceBucket -> {
+                  Interface iface1 = interfaceBucket.getKey();
+                  // don't connect interfaces that have even a single address in common
+                  Set<Interface> sharingAddress = Sets.newIdentityHashSet();
+                  iface1
+                      .getAllAddresses()
+                      .forEach(address -> sharingAddress.addAll(addressInterfaces.get(address)));
+                  NodeInterfacePair node1 =
+                      new NodeInterfacePair(iface1.getOwner().getHostname(), iface1.getName());
+                  return interfaceBucket
+                      .getValue()
+                      .stream()
+                      .filter(iface2 -> !sharingAddress.contains(iface2))
+                      .map(
+                          iface2 ->
+                              new Edge(
+                                  node1,
+                                  new NodeInterfacePair(
+                                      iface2.getOwner().getHostname(), iface2.getName())));
+                })
+            .collect(ImmutableSortedSet.toImmutableSortedSet(Comparator.naturalOrder())));
   }
 
   public static SortedMap<Integer, String> toLineMap(String str) {
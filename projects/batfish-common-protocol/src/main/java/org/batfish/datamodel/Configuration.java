@@ -28,6 +28,7 @@ import javax.annotation.Nullable;
 import org.batfish.common.BatfishException;
 import org.batfish.common.Warnings;
 import org.batfish.datamodel.NetworkFactory.NetworkFactoryBuilder;
+import org.batfish.datamodel.acl.CompiledIpAccessLists;
 import org.batfish.datamodel.ospf.OspfProcess;
 import org.batfish.datamodel.routing_policy.RoutingPolicy;
 import org.batfish.datamodel.tracking.TrackMethod;
@@ -192,6 +193,8 @@ public final class Configuration implements Serializable {
 
   private NavigableMap<String, CommunityList> _communityLists;
 
+  private transient volatile CompiledIpAccessLists _compiledIpAccessLists;
+
   private final ConfigurationFormat _configurationFormat;
 
   private LineAction _defaultCrossZoneAction;
@@ -434,6 +437,26 @@ public final class Configuration implements Serializable {
     return _communityLists;
   }
 
+  /**
+   * Returns the {@link IpAccessList}s of this node compiled by {@link
+   * CompiledIpAccessLists#compile(Configuration)}. They are compiled on first use and then kept
+   * with this node, so its ACLs must not be modified afterwards.
+   */
+  @JsonIgnore
+  public CompiledIpAccessLists getCompiledIpAccessLists() {
+    CompiledIpAccessLists compiled = _compiledIpAccessLists;
+    if (compiled == null) {
+      synchronized (this) {
+        compiled = _compiledIpAccessLists;
+        if (compiled == null) {
+          compiled = CompiledIpAccessLists.compile(this);
+          _compiledIpAccessLists = compiled;
+        }
+      }
+    }
+    return compiled;
+  }
+
   @JsonProperty(PROP_CONFIGURATION_FORMAT)
   @JsonPropertyDescription(
       "Best guess at vendor configuration format. Used for setting default values, protocol "
@@ -32,6 +32,9 @@ public interface DataPlane extends Serializable {
    */
   Map<Ip, Map<String, Set<String>>> getIpVrfOwners();
 
+  /** Return the total number of routes in all (main) RIBs */
+  long getNumMainRibRoutes();
+
   /** Return the set of all (main) RIBs. Map structure: hostname -&gt; VRF name -&gt; GenericRib */
   SortedMap<String, SortedMap<String, GenericRib<AbstractRoute>>> getRibs();
 
@@ -81,16 +81,16 @@ public class FibImpl implements Fib {
       return;
     }
     if (!nextHopIp.equals(Route.UNSET_ROUTE_NEXT_HOP_IP)) {
-      Set<AbstractRoute> nextHopLongestPrefixMatchRoutes = rib.longestPrefixMatch(nextHopIp);
-      for (AbstractRoute nextHopLongestPrefixMatchRoute : nextHopLongestPrefixMatchRoutes) {
-        collectNextHopInterfaces(
-            rib,
-            nextHopLongestPrefixMatchRoute,
-            nextHopIp,
-            nextHopInterfaces,
-            newSeenNetworks,
-            depth + 1);
-      }
+      rib.forEachLongestPrefixMatch(
+          nextHopIp,
+          nextHopLongestPrefixMatchRoute ->
+              collectNextHopInterfaces(
+                  rib,
+                  nextHopLongestPrefixMatchRoute,
+                  nextHopIp,
+                  nextHopInterfaces,
+                  newSeenNetworks,
+                  depth + 1));
     } else {
       String nextHopInterface = route.getNextHopInterface();
       if (!Route.UNSET_NEXT_HOP_INTERFACE.equals(nextHopInterface)) {
@@ -118,18 +118,19 @@ public class FibImpl implements Fib {
   @Override
   public @Nonnull Map<String, Map<Ip, Set<AbstractRoute>>> getNextHopInterfaces(Ip ip) {
     Map<String, Map<Ip, Set<AbstractRoute>>> outputNextHopInterfaces = new TreeMap<>();
-    Set<AbstractRoute> nextHopRoutes = _rib.longestPrefixMatch(ip);
-    for (AbstractRoute nextHopRoute : nextHopRoutes) {
-      Map<String, Map<Ip, Set<AbstractRoute>>> currentNextHopInterfaces =
-          _nextHopInterfaces.get(nextHopRoute);
-      currentNextHopInterfaces.forEach(
-          (nextHopInterface, nextHopInterfaceRoutesByFinalNextHopIp) -> {
-            Map<Ip, Set<AbstractRoute>> outputNextHopInterfaceRoutesByFinalNextHopIp =
-                outputNextHopInterfaces.computeIfAbsent(nextHopInterface, k -> new TreeMap<>());
-            outputNextHopInterfaceRoutesByFinalNextHopIp.putAll(
-                nextHopInterfaceRoutesByFinalNextHopIp);
-          });
-    }
+    _rib.forEachLongestPrefixMatch(
+        ip,
+        nextHopRoute ->
+            _nextHopInterfaces
+                .get(nextHopRoute)
+                .forEach(
+                    (nextHopInterface, nextHopInterfaceRoutesByFinalNextHopIp) -> {
+                      Map<Ip, Set<AbstractRoute>> outputNextHopInterfaceRoutesByFinalNextHopIp =
+                          outputNextHopInterfaces.computeIfAbsent(
+                              nextHopInterface, k -> new TreeMap<>());
+                      outputNextHopInterfaceRoutesByFinalNextHopIp.putAll(
+                          nextHopInterfaceRoutesByFinalNextHopIp);
+                    }));
     return outputNextHopInterfaces;
   }
 
@@ -138,12 +139,10 @@ public class FibImpl implements Fib {
       getNextHopInterfacesByRoute(Ip dstIp) {
     Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> nextHopInterfacesByRoute =
         new HashMap<>();
-    Set<AbstractRoute> nextHopRoutes = _rib.longestPrefixMatch(dstIp);
-    for (AbstractRoute nextHopRoute : nextHopRoutes) {
-      Map<String, Map<Ip, Set<AbstractRoute>>> nextHopInterfaces =
-          _nextHopInterfaces.get(nextHopRoute);
-      nextHopInterfacesByRoute.put(nextHopRoute, nextHopInterfaces);
-    }
+    _rib.forEachLongestPrefixMatch(
+        dstIp,
+        nextHopRoute ->
+            nextHopInterfacesByRoute.put(nextHopRoute, _nextHopInterfaces.get(nextHopRoute)));
     return nextHopInterfacesByRoute;
   }
 
@@ -0,0 +1,123 @@
+package org.batfish.datamodel;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * The {@link FlowTrace}s of a {@link Flow}, as a directed acyclic graph of hops in which traces
+ * reaching the same point of the network in the same state share the rest of their hops.
+ *
+ * <p>Each path from a root to an end node is a trace. Through multipath routing, a flow can have
+ * exponentially many more traces than the graph has nodes, so traces are only built on demand by
+ * {@link #getFlowTraces}.
+ */
+public final class FlowTraceDag {
+
+  /** A hop followed by other nodes, or the end of a trace */
+  public static final class Node {
+
+    /** Returns a node ending traces with {@code disposition} and {@code notes} */
+    public static Node end(FlowDisposition disposition, String notes) {
+      return new Node(null, ImmutableList.of(), disposition, notes);
+    }
+
+    /** Returns a node for {@code hop}, followed by {@code successors} */
+    public static Node hop(FlowTraceHop hop, List<Node> successors) {
+      return new Node(hop, successors, null, null);
+    }
+
+    @Nullable private final FlowDisposition _disposition;
+
+    @Nullable private final FlowTraceHop _hop;
+
+    @Nullable private final String _notes;
+
+    private final List<Node> _successors;
+
+    private Node(
+        @Nullable FlowTraceHop hop,
+        List<Node> successors,
+        @Nullable FlowDisposition disposition,
+        @Nullable String notes) {
+      _hop = hop;
+      _successors = successors;
+      _disposition = disposition;
+      _notes = notes;
+    }
+
+    /** The disposition of the traces ending at this node, or null if it is a hop */
+    public @Nullable FlowDisposition getDisposition() {
+      return _disposition;
+    }
+
+    /** The hop at this node, or null if traces end here */
+    public @Nullable FlowTraceHop getHop() {
+      return _hop;
+    }
+
+    /** The notes of the traces ending at this node, or null if it is a hop */
+    public @Nullable String getNotes() {
+      return _notes;
+    }
+
+    /** The nodes following the hop at this node */
+    public List<Node> getSuccessors() {
+      return _successors;
+    }
+  }
+
+  private final List<Node> _roots;
+
+  public FlowTraceDag(List<Node> roots) {
+    _roots = ImmutableList.copyOf(roots);
+  }
+
+  /** Returns the number of traces, without building them */
+  public long countFlowTraces() {
+    Map<Node, Long> counts = new IdentityHashMap<>();
+    return _roots.stream().mapToLong(root -> countFlowTraces(root, counts)).sum();
+  }
+
+  private static long countFlowTraces(Node node, Map<Node, Long> counts) {
+    if (node._hop == null) {
+      return 1L;
+    }
+    Long count = counts.get(node);
+    if (count == null) {
+      count = node._successors.stream().mapToLong(s -> countFlowTraces(s, counts)).sum();
+      counts.put(node, count);
+    }
+    return count;
+  }
+
+  /** Builds every trace, from a root to an end node */
+  public SortedSet<FlowTrace> getFlowTraces() {
+    SortedSet<FlowTrace> flowTraces = new TreeSet<>();
+    List<FlowTraceHop> hops = new ArrayList<>();
+    _roots.forEach(root -> collectFlowTraces(root, hops, flowTraces));
+    return flowTraces;
+  }
+
+  private static void collectFlowTraces(
+      Node node, List<FlowTraceHop> hopsSoFar, SortedSet<FlowTrace> flowTraces) {
+    if (node._hop == null) {
+      flowTraces.add(
+          new FlowTrace(node._disposition, ImmutableList.copyOf(hopsSoFar), node._notes));
+      return;
+    }
+    hopsSoFar.add(node._hop);
+    node._successors.forEach(successor -> collectFlowTraces(successor, hopsSoFar, flowTraces));
+    hopsSoFar.remove(hopsSoFar.size() - 1);
+  }
+
+  /** The nodes at which traces start */
+  public List<Node> getRoots() {
+    return _roots;
+  }
+}
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.function.Consumer;
 
 public interface GenericRib<R extends AbstractRoute> extends Serializable {
 
@@ -52,5 +53,16 @@ public interface GenericRib<R extends AbstractRoute> extends Serializable {
    */
   Set<R> longestPrefixMatch(Ip address, int maxPrefixLength);
 
+  /**
+   * Apply {@code consumer} to each route in the longest prefix match for a given IP address.
+   *
+   * <p>Equivalent to {@code longestPrefixMatch(address).forEach(consumer)}, but implementations may
+   * avoid building the set of matching routes on every lookup.
+   *
+   * @param address the IP address to match
+   * @param consumer the consumer to apply to each matching route
+   */
+  void forEachLongestPrefixMatch(Ip address, Consumer<? super R> consumer);
+
   boolean mergeRoute(R route);
 }
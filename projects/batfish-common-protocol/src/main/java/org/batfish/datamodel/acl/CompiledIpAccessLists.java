@@ -0,0 +1,400 @@
+package org.batfish.datamodel.acl;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongPredicate;
+import javax.annotation.Nullable;
+import org.batfish.datamodel.AclIpSpace;
+import org.batfish.datamodel.AclIpSpaceLine;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.EmptyIpSpace;
+import org.batfish.datamodel.FilterResult;
+import org.batfish.datamodel.Flow;
+import org.batfish.datamodel.HeaderSpace;
+import org.batfish.datamodel.Interface;
+import org.batfish.datamodel.IpAccessList;
+import org.batfish.datamodel.IpAccessListLine;
+import org.batfish.datamodel.IpIpSpace;
+import org.batfish.datamodel.IpSpace;
+import org.batfish.datamodel.IpSpaceReference;
+import org.batfish.datamodel.IpWildcard;
+import org.batfish.datamodel.IpWildcardIpSpace;
+import org.batfish.datamodel.IpWildcardSetIpSpace;
+import org.batfish.datamodel.LineAction;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.PrefixIpSpace;
+import org.batfish.datamodel.SourceNat;
+import org.batfish.datamodel.UniverseIpSpace;
+import org.batfish.datamodel.visitors.GenericIpSpaceVisitor;
+
+/**
+ * The {@link IpAccessList}s of a configuration, compiled for filtering many flows.
+ *
+ * <p>Filtering a flow with {@link IpAccessList#filter} walks the match conditions of the lines with
+ * an {@link Evaluator}, looking up named {@link IpSpace}s and referenced ACLs by name and comparing
+ * {@link org.batfish.datamodel.Ip}s through {@link IpSpace#containsIp}. Here each line is instead
+ * compiled once into a matcher in which named {@link IpSpace}s and referenced ACLs are resolved,
+ * and {@link IpSpace}s are reduced to comparisons of the IPs as longs. Filtering a flow with {@link
+ * #filter} gives the same result as {@link IpAccessList#filter}.
+ */
+public final class CompiledIpAccessLists {
+
+  /** Matches flows, given the interface through which they entered the node */
+  @FunctionalInterface
+  private interface FlowMatcher {
+    boolean matches(Flow flow, @Nullable String srcInterface);
+  }
+
+  /** The lines of an ACL, compiled */
+  private static final class CompiledAcl {
+
+    private final FlowMatcher[] _matchers;
+
+    /** The result of matching each line, shared by all flows matching it */
+    private final FilterResult[] _results;
+
+    private CompiledAcl(List<IpAccessListLine> lines) {
+      _matchers = new FlowMatcher[lines.size()];
+      _results = new FilterResult[lines.size()];
+      for (int i = 0; i < _results.length; i++) {
+        _results[i] = new FilterResult(i, lines.get(i).getAction());
+      }
+    }
+
+    private FilterResult filter(Flow flow, @Nullable String srcInterface, FilterResult noMatch) {
+      for (int i = 0; i < _matchers.length; i++) {
+        if (_matchers[i].matches(flow, srcInterface)) {
+          return _results[i];
+        }
+      }
+      return noMatch;
+    }
+  }
+
+  /** Compiles {@link IpSpace}s into predicates on IPs as longs */
+  private static final class IpSpaceCompiler implements GenericIpSpaceVisitor<LongPredicate> {
+
+    private final Map<String, IpSpace> _namedIpSpaces;
+
+    /** Compiled named {@link IpSpace}s, including those still being compiled */
+    private final Map<String, LongPredicate> _namedMatchers;
+
+    private IpSpaceCompiler(Map<String, IpSpace> namedIpSpaces) {
+      _namedIpSpaces = namedIpSpaces;
+      _namedMatchers = new HashMap<>();
+      namedIpSpaces.keySet().forEach(this::compileNamed);
+    }
+
+    private LongPredicate compileNamed(String name) {
+      LongPredicate matcher = _namedMatchers.get(name);
+      if (matcher != null) {
+        return matcher;
+      }
+      // reached again only through a circular chain of references, which cannot be evaluated
+      _namedMatchers.put(
+          name,
+          ip -> {
+            throw new CircularReferenceException(
+                String.format("Circular reference to IpSpace '%s'", name));
+          });
+      matcher = _namedIpSpaces.get(name).accept(this);
+      _namedMatchers.put(name, matcher);
+      return matcher;
+    }
+
+    @Override
+    public LongPredicate castToGenericIpSpaceVisitorReturnType(Object o) {
+      return (LongPredicate) o;
+    }
+
+    @Override
+    public LongPredicate visitAclIpSpace(AclIpSpace aclIpSpace) {
+      List<AclIpSpaceLine> lines = aclIpSpace.getLines();
+      LongPredicate[] matchers = new LongPredicate[lines.size()];
+      boolean[] permits = new boolean[lines.size()];
+      for (int i = 0; i < matchers.length; i++) {
+        matchers[i] = lines.get(i).getIpSpace().accept(this);
+        permits[i] = lines.get(i).getAction() == LineAction.PERMIT;
+      }
+      return ip -> {
+        for (int i = 0; i < matchers.length; i++) {
+          if (matchers[i].test(ip)) {
+            return permits[i];
+          }
+        }
+        return false;
+      };
+    }
+
+    @Override
+    public LongPredicate visitEmptyIpSpace(EmptyIpSpace emptyIpSpace) {
+      return ip -> false;
+    }
+
+    @Override
+    public LongPredicate visitIpIpSpace(IpIpSpace ipIpSpace) {
+      long value = ipIpSpace.getIp().asLong();
+      return ip -> ip == value;
+    }
+
+    @Override
+    public LongPredicate visitIpSpaceReference(IpSpaceReference ipSpaceReference) {
+      String name = ipSpaceReference.getName();
+      return _namedIpSpaces.containsKey(name) ? compileNamed(name) : ip -> false;
+    }
+
+    @Override
+    public LongPredicate visitIpWildcardIpSpace(IpWildcardIpSpace ipWildcardIpSpace) {
+      IpWildcard ipWildcard = ipWildcardIpSpace.getIpWildcard();
+      long wildcard = ipWildcard.getWildcard().asLong();
+      long value = ipWildcard.getIp().asLong() | wildcard;
+      return ip -> (ip | wildcard) == value;
+    }
+
+    @Override
+    public LongPredicate visitIpWildcardSetIpSpace(IpWildcardSetIpSpace ipWildcardSetIpSpace) {
+      long[] blacklistWildcards = wildcards(ipWildcardSetIpSpace.getBlacklist());
+      long[] blacklistValues = values(ipWildcardSetIpSpace.getBlacklist(), blacklistWildcards);
+      long[] whitelistWildcards = wildcards(ipWildcardSetIpSpace.getWhitelist());
+      long[] whitelistValues = values(ipWildcardSetIpSpace.getWhitelist(), whitelistWildcards);
+      return ip -> {
+        for (int i = 0; i < blacklistWildcards.length; i++) {
+          if ((ip | blacklistWildcards[i]) == blacklistValues[i]) {
+            return false;
+          }
+        }
+        for (int i = 0; i < whitelistWildcards.length; i++) {
+          if ((ip | whitelistWildcards[i]) == whitelistValues[i]) {
+            return true;
+          }
+        }
+        return false;
+      };
+    }
+
+    @Override
+    public LongPredicate visitPrefixIpSpace(PrefixIpSpace prefixIpSpace) {
+      Prefix prefix = prefixIpSpace.getPrefix();
+      long start = prefix.getStartIp().asLong();
+      long end = prefix.getEndIp().asLong();
+      return ip -> start <= ip && ip <= end;
+    }
+
+    @Override
+    public LongPredicate visitUniverseIpSpace(UniverseIpSpace universeIpSpace) {
+      return ip -> true;
+    }
+
+    private static long[] wildcards(Set<IpWildcard> ipWildcards) {
+      return ipWildcards.stream().mapToLong(w -> w.getWildcard().asLong()).toArray();
+    }
+
+    private static long[] values(Set<IpWildcard> ipWildcards, long[] wildcards) {
+      long[] values = ipWildcards.stream().mapToLong(w -> w.getIp().asLong()).toArray();
+      for (int i = 0; i < values.length; i++) {
+        values[i] |= wildcards[i];
+      }
+      return values;
+    }
+  }
+
+  /** Compiles the match conditions of ACL lines */
+  private final class MatchExprCompiler implements GenericAclLineMatchExprVisitor<FlowMatcher> {
+
+    @Override
+    public FlowMatcher visitAndMatchExpr(AndMatchExpr andMatchExpr) {
+      FlowMatcher[] conjuncts =
+          andMatchExpr.getConjuncts().stream().map(this::visit).toArray(FlowMatcher[]::new);
+      return (flow, srcInterface) -> {
+        for (FlowMatcher conjunct : conjuncts) {
+          if (!conjunct.matches(flow, srcInterface)) {
+            return false;
+          }
+        }
+        return true;
+      };
+    }
+
+    @Override
+    public FlowMatcher visitFalseExpr(FalseExpr falseExpr) {
+      return (flow, srcInterface) -> false;
+    }
+
+    @Override
+    public FlowMatcher visitMatchHeaderSpace(MatchHeaderSpace matchHeaderSpace) {
+      HeaderSpace headerSpace = matchHeaderSpace.getHeaderspace();
+      LongPredicate dstIps = compileIpSpace(headerSpace.getDstIps());
+      LongPredicate notDstIps = compileIpSpace(headerSpace.getNotDstIps());
+      LongPredicate srcIps = compileIpSpace(headerSpace.getSrcIps());
+      LongPredicate notSrcIps = compileIpSpace(headerSpace.getNotSrcIps());
+      LongPredicate srcOrDstIps = compileIpSpace(headerSpace.getSrcOrDstIps());
+      // the IP spaces are checked above, and negate is not considered by HeaderSpace#matches
+      HeaderSpace rest =
+          headerSpace
+              .toBuilder()
+              .setDstIps((IpSpace) null)
+              .setNotDstIps((IpSpace) null)
+              .setSrcIps((IpSpace) null)
+              .setNotSrcIps((IpSpace) null)
+              .setSrcOrDstIps((IpSpace) null)
+              .setNegate(false)
+              .build();
+      boolean matchesRest = !rest.equals(HeaderSpace.builder().build());
+      Map<String, IpSpace> noNamedIpSpaces = ImmutableMap.of();
+      return (flow, srcInterface) -> {
+        long dstIp = flow.getDstIp().asLong();
+        long srcIp = flow.getSrcIp().asLong();
+        return (dstIps == null || dstIps.test(dstIp))
+            && (notDstIps == null || !notDstIps.test(dstIp))
+            && (srcIps == null || srcIps.test(srcIp))
+            && (notSrcIps == null || !notSrcIps.test(srcIp))
+            && (srcOrDstIps == null || srcOrDstIps.test(srcIp) || srcOrDstIps.test(dstIp))
+            && (!matchesRest || rest.matches(flow, noNamedIpSpaces));
+      };
+    }
+
+    @Override
+    public FlowMatcher visitMatchSrcInterface(MatchSrcInterface matchSrcInterface) {
+      Set<String> srcInterfaces = matchSrcInterface.getSrcInterfaces();
+      return (flow, srcInterface) -> srcInterfaces.contains(srcInterface);
+    }
+
+    @Override
+    public FlowMatcher visitNotMatchExpr(NotMatchExpr notMatchExpr) {
+      FlowMatcher operand = visit(notMatchExpr.getOperand());
+      return (flow, srcInterface) -> !operand.matches(flow, srcInterface);
+    }
+
+    @Override
+    public FlowMatcher visitOriginatingFromDevice(OriginatingFromDevice originatingFromDevice) {
+      return (flow, srcInterface) -> srcInterface == null;
+    }
+
+    @Override
+    public FlowMatcher visitOrMatchExpr(OrMatchExpr orMatchExpr) {
+      FlowMatcher[] disjuncts =
+          orMatchExpr.getDisjuncts().stream().map(this::visit).toArray(FlowMatcher[]::new);
+      return (flow, srcInterface) -> {
+        for (FlowMatcher disjunct : disjuncts) {
+          if (disjunct.matches(flow, srcInterface)) {
+            return true;
+          }
+        }
+        return false;
+      };
+    }
+
+    @Override
+    public FlowMatcher visitPermittedByAcl(PermittedByAcl permittedByAcl) {
+      String aclName = permittedByAcl.getAclName();
+      CompiledAcl acl = _aclsByName.get(aclName);
+      if (acl == null) {
+        return (flow, srcInterface) -> {
+          throw new UndefinedReferenceException(
+              String.format("Reference to undefined IpAccessList '%s'", aclName));
+        };
+      }
+      FilterResult noMatch = permittedByAcl.getDefaultAccept() ? DEFAULT_PERMITTED : DEFAULT_DENIED;
+      return (flow, srcInterface) ->
+          acl.filter(flow, srcInterface, noMatch).getAction() == LineAction.PERMIT;
+    }
+
+    @Override
+    public FlowMatcher visitTrueExpr(TrueExpr trueExpr) {
+      return (flow, srcInterface) -> true;
+    }
+  }
+
+  private static final FilterResult DEFAULT_DENIED = new FilterResult(null, LineAction.DENY);
+
+  private static final FilterResult DEFAULT_PERMITTED = new FilterResult(null, LineAction.PERMIT);
+
+  /**
+   * Compiles the {@link IpAccessList}s of {@code configuration}, including those of its interface
+   * filters and source NATs that it does not name.
+   */
+  public static CompiledIpAccessLists compile(Configuration configuration) {
+    CompiledIpAccessLists compiled =
+        new CompiledIpAccessLists(configuration.getIpAccessLists(), configuration.getIpSpaces());
+    for (Interface iface : configuration.getInterfaces().values()) {
+      compiled.compileUnnamed(iface.getIncomingFilter());
+      compiled.compileUnnamed(iface.getOutgoingFilter());
+      if (iface.getSourceNats() != null) {
+        for (SourceNat sourceNat : iface.getSourceNats()) {
+          compiled.compileUnnamed(sourceNat.getAcl());
+        }
+      }
+    }
+    return compiled;
+  }
+
+  /**
+   * Compiles {@code availableAcls}, in which {@link IpSpaceReference}s are resolved in {@code
+   * namedIpSpaces}.
+   */
+  public static CompiledIpAccessLists compile(
+      Map<String, IpAccessList> availableAcls, Map<String, IpSpace> namedIpSpaces) {
+    return new CompiledIpAccessLists(availableAcls, namedIpSpaces);
+  }
+
+  /** The compiled ACLs, by identity of the {@link IpAccessList} from which each was compiled */
+  private final Map<IpAccessList, CompiledAcl> _acls;
+
+  private final Map<String, CompiledAcl> _aclsByName;
+
+  private final IpSpaceCompiler _ipSpaceCompiler;
+
+  private final MatchExprCompiler _matchExprCompiler;
+
+  private CompiledIpAccessLists(
+      Map<String, IpAccessList> availableAcls, Map<String, IpSpace> namedIpSpaces) {
+    _acls = new IdentityHashMap<>();
+    _aclsByName = new HashMap<>();
+    _ipSpaceCompiler = new IpSpaceCompiler(namedIpSpaces);
+    _matchExprCompiler = new MatchExprCompiler();
+    // create all ACLs before compiling any line, so that lines can refer to any of them
+    availableAcls.forEach(
+        (name, acl) -> {
+          CompiledAcl compiledAcl = _acls.computeIfAbsent(acl, a -> new CompiledAcl(a.getLines()));
+          _aclsByName.put(name, compiledAcl);
+        });
+    _acls.forEach(this::compileLines);
+  }
+
+  private void compileUnnamed(@Nullable IpAccessList acl) {
+    if (acl != null && !_acls.containsKey(acl)) {
+      _acls.put(acl, compileLines(acl, new CompiledAcl(acl.getLines())));
+    }
+  }
+
+  private CompiledAcl compileLines(IpAccessList acl, CompiledAcl compiledAcl) {
+    List<IpAccessListLine> lines = acl.getLines();
+    for (int i = 0; i < lines.size(); i++) {
+      compiledAcl._matchers[i] = _matchExprCompiler.visit(lines.get(i).getMatchCondition());
+    }
+    return compiledAcl;
+  }
+
+  private @Nullable LongPredicate compileIpSpace(@Nullable IpSpace ipSpace) {
+    return ipSpace == null ? null : ipSpace.accept(_ipSpaceCompiler);
+  }
+
+  /**
+   * Filters {@code flow}, which entered the node through {@code srcInterface}, or originates from
+   * the node if {@code srcInterface} is null, with {@code acl}. If {@code acl} was not compiled
+   * with the others, it is compiled on the spot.
+   *
+   * @return the same result as {@link IpAccessList#filter(Flow, String, Map, Map)}
+   */
+  public FilterResult filter(IpAccessList acl, Flow flow, @Nullable String srcInterface) {
+    CompiledAcl compiledAcl = _acls.get(acl);
+    if (compiledAcl == null) {
+      compiledAcl = compileLines(acl, new CompiledAcl(acl.getLines()));
+    }
+    return compiledAcl.filter(flow, srcInterface, DEFAULT_DENIED);
+  }
+}
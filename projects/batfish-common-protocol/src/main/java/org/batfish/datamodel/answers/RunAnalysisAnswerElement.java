@@ -9,11 +9,16 @@ public class RunAnalysisAnswerElement extends AnswerElement {
 
   private static final String PROP_ANSWERS = "answers";
 
+  private static final String PROP_ELAPSED_MILLIS = "elapsedMillis";
+
   private SortedMap<String, Answer> _answers;
 
+  private SortedMap<String, Long> _elapsedMillis;
+
   @JsonCreator
   public RunAnalysisAnswerElement() {
     _answers = new TreeMap<>();
+    _elapsedMillis = new TreeMap<>();
   }
 
   @JsonProperty(PROP_ANSWERS)
@@ -21,8 +26,19 @@ public class RunAnalysisAnswerElement extends AnswerElement {
     return _answers;
   }
 
+  /** The time taken to answer each question of the analysis, in milliseconds */
+  @JsonProperty(PROP_ELAPSED_MILLIS)
+  public SortedMap<String, Long> getElapsedMillis() {
+    return _elapsedMillis;
+  }
+
   @JsonProperty(PROP_ANSWERS)
   public void setAnswers(SortedMap<String, Answer> answers) {
     _answers = answers;
   }
+
+  @JsonProperty(PROP_ELAPSED_MILLIS)
+  public void setElapsedMillis(SortedMap<String, Long> elapsedMillis) {
+    _elapsedMillis = elapsedMillis;
+  }
 }
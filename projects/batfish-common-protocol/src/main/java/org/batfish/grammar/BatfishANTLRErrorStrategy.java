@@ -63,6 +63,8 @@ public class BatfishANTLRErrorStrategy extends DefaultErrorStrategy {
     }
   }
 
+  private int _firstLine;
+
   private final String[] _lines;
 
   private boolean _recoveredAtEof;
@@ -83,6 +85,7 @@ public class BatfishANTLRErrorStrategy extends DefaultErrorStrategy {
    */
   private BatfishANTLRErrorStrategy(
       int separatorToken, String minimumRequiredSeparatorText, String text) {
+    _firstLine = 1;
     _lines = text.split(Pattern.quote(minimumRequiredSeparatorText), -1);
     _separatorToken = separatorToken;
   }
@@ -137,7 +140,7 @@ public class BatfishANTLRErrorStrategy extends DefaultErrorStrategy {
     if (separator.getType() == Lexer.EOF) {
       _recoveredAtEof = true;
     }
-    String lineText = _lines[separator.getLine() - 1] + separator.getText();
+    String lineText = _lines[separator.getLine() - _firstLine] + separator.getText();
     Token lineToken =
         new UnrecognizedLineToken(lineText, separator.getLine(), _parserStateAtRecovery);
     ErrorNode errorNode = recognizer.createErrorNode(ctx, lineToken);
@@ -206,6 +209,13 @@ public class BatfishANTLRErrorStrategy extends DefaultErrorStrategy {
     }
   }
 
+  /**
+   * Sets the number of the first line of the text, see {@link BatfishCombinedParser#setFirstLine}
+   */
+  void setFirstLine(int firstLine) {
+    _firstLine = firstLine;
+  }
+
   @Override
   public void recover(Parser recognizer, RecognitionException e) {
     beginErrorCondition(recognizer);
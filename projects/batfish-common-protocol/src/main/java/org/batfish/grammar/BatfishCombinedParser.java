@@ -41,6 +41,8 @@ public abstract class BatfishCombinedParser<P extends BatfishParser, L extends B
 
   private final List<String> _warnings;
 
+  private int _firstLine;
+
   public BatfishCombinedParser(
       Class<P> pClass, Class<L> lClass, String input, GrammarSettings settings) {
     _settings = settings;
@@ -49,6 +51,7 @@ public abstract class BatfishCombinedParser<P extends BatfishParser, L extends B
     _warnings = new ArrayList<>();
     _errors = new ArrayList<>();
     _input = input;
+    _firstLine = 1;
     _lineMap = null;
     CharStream inputStream = CharStreams.fromString(input);
     try {
@@ -120,6 +123,11 @@ public abstract class BatfishCombinedParser<P extends BatfishParser, L extends B
     return _errors;
   }
 
+  /** Returns the number of the first line of the input, see {@link #setFirstLine(int)} */
+  public int getFirstLine() {
+    return _firstLine;
+  }
+
   public String getInput() {
     return _input;
   }
@@ -173,6 +181,19 @@ public abstract class BatfishCombinedParser<P extends BatfishParser, L extends B
 
   public abstract ParserRuleContext parse();
 
+  /**
+   * Sets the number of the first line of the input, when the input is the part of a larger text
+   * starting at that line. Line numbers of tokens and errors then refer to the larger text. Must be
+   * called before parsing.
+   */
+  public void setFirstLine(int firstLine) {
+    _firstLine = firstLine;
+    _lexer.setLine(firstLine);
+    if (_parser.getErrorHandler() instanceof BatfishANTLRErrorStrategy) {
+      ((BatfishANTLRErrorStrategy) _parser.getErrorHandler()).setFirstLine(firstLine);
+    }
+  }
+
   public void setLexerErrorListener(BatfishLexerErrorListener lexerErrorListener) {
     _lexerErrorListener = lexerErrorListener;
   }
@@ -104,18 +104,20 @@ public class BatfishParserErrorListener extends BatfishGrammarErrorListener {
     // collect context from text
     String text = _combinedParser.getInput();
     String[] lines = text.split("\n", -1);
-    int errorLineIndex = offendingToken.getLine() - 1;
+    int firstLine = _combinedParser.getFirstLine();
+    int errorLineIndex = offendingToken.getLine() - firstLine;
     int errorContextStartLine = Math.max(errorLineIndex - _settings.getMaxParserContextLines(), 0);
     sb.append("Error context lines:\n");
     for (int i = errorContextStartLine; i < errorLineIndex; i++) {
-      sb.append(String.format("%-11s%s\n", "   " + (i + 1) + ":", lines[i]));
+      sb.append(String.format("%-11s%s\n", "   " + (i + firstLine) + ":", lines[i]));
     }
     sb.append(
-        String.format("%-11s%s\n", ">>>" + (errorLineIndex + 1) + ":", lines[errorLineIndex]));
+        String.format(
+            "%-11s%s\n", ">>>" + (errorLineIndex + firstLine) + ":", lines[errorLineIndex]));
     int errorContextEndLine =
         Math.min(errorLineIndex + _settings.getMaxParserContextLines(), lines.length - 1);
     for (int i = errorLineIndex + 1; i <= errorContextEndLine; i++) {
-      sb.append(String.format("%-11s%s\n", "   " + (i + 1) + ":", lines[i]));
+      sb.append(String.format("%-11s%s\n", "   " + (i + firstLine) + ":", lines[i]));
     }
 
     String error = sb.toString();
@@ -0,0 +1,693 @@
+package org.batfish.grammar;
+
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.RuntimeMetaData;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNConfig;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.ATNSimulator;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.ArrayPredictionContext;
+import org.antlr.v4.runtime.atn.DecisionState;
+import org.antlr.v4.runtime.atn.LexerATNConfig;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.LexerAction;
+import org.antlr.v4.runtime.atn.LexerActionExecutor;
+import org.antlr.v4.runtime.atn.LexerIndexedCustomAction;
+import org.antlr.v4.runtime.atn.OrderedATNConfigSet;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContext;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.atn.SemanticContext;
+import org.antlr.v4.runtime.atn.SingletonPredictionContext;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.dfa.DFAState.PredPrediction;
+import org.batfish.common.BatfishException;
+import org.batfish.common.BatfishLogger;
+
+/**
+ * Saves and loads the DFAs that ANTLR builds while lexing and parsing, so that a new JVM lexes and
+ * parses at full speed from the first file.
+ *
+ * <p>ANTLR caches each prediction it computes from the ATN of a grammar in DFAs shared by all the
+ * lexers or parsers of the grammar. Those start empty in every JVM, so for large grammars the first
+ * few hundred files parsed are several times slower than the rest. None of the ANTLR classes
+ * involved are serializable, so DFAs are written here field by field, with ATN states and lexer
+ * actions referred to by their index in the ATN.
+ *
+ * <p>DFAs are saved together with a hash of the ANTLR runtime version and the serialized ATN of
+ * their grammar, and are only loaded into the same grammar with the same runtime, since the format
+ * depends on runtime internals. A DFA is only replaced if it is still empty, so loading is safe
+ * while other threads parse. If the runtime lacks an internal field that is saved, the cache is
+ * disabled: nothing is saved or loaded. If the saved DFAs of a recognizer cannot be read, none of
+ * them are loaded, and the recognizer builds its DFAs while parsing as it would without the cache.
+ */
+public final class DfaCache {
+
+  /** Version of the file format, to be incremented on incompatible changes */
+  private static final int FORMAT_VERSION = 1;
+
+  private static final int EDGE_ERROR = -2;
+
+  private static final int NULL = -1;
+
+  /** Null if the ANTLR runtime has no such field, in which case the cache is disabled */
+  @Nullable private static final Field CONFLICTING_ALTS = getConflictingAltsField();
+
+  private static final int SEMANTIC_CONTEXT_AND = 3;
+
+  private static final int SEMANTIC_CONTEXT_NONE = 0;
+
+  private static final int SEMANTIC_CONTEXT_OR = 4;
+
+  private static final int SEMANTIC_CONTEXT_PRECEDENCE = 2;
+
+  private static final int SEMANTIC_CONTEXT_PREDICATE = 1;
+
+  private DfaCache() {}
+
+  /** Reads the DFAs of one recognizer */
+  private static final class DfaReader {
+
+    private final ATN _atn;
+
+    @Nullable private final PredictionContextCache _contextCache;
+
+    private final List<PredictionContext> _contexts;
+
+    private final DataInputStream _in;
+
+    private DfaReader(ATNSimulator interpreter, DataInputStream in) {
+      _atn = interpreter.atn;
+      _contextCache = interpreter.getSharedContextCache();
+      _contexts = new ArrayList<>();
+      _in = in;
+    }
+
+    private ATNConfig readConfig() throws IOException {
+      boolean lexer = _in.readBoolean();
+      ATNState state = _atn.states.get(_in.readInt());
+      int alt = _in.readInt();
+      PredictionContext context = readContext();
+      SemanticContext semanticContext = readSemanticContext();
+      int reachesIntoOuterContext = _in.readInt();
+      ATNConfig config;
+      if (lexer) {
+        boolean passedThroughNonGreedyDecision = _in.readBoolean();
+        LexerActionExecutor executor = readExecutor();
+        LexerATNConfig lexerConfig = new LexerATNConfig(state, alt, context, executor);
+        if (passedThroughNonGreedyDecision) {
+          // only set by passing through a non-greedy decision state on the way to the state
+          LexerATNConfig viaNonGreedy = new LexerATNConfig(lexerConfig, nonGreedyDecisionState());
+          lexerConfig = new LexerATNConfig(viaNonGreedy, state);
+        }
+        config = lexerConfig;
+      } else {
+        config = new ATNConfig(state, alt, context, semanticContext);
+      }
+      config.reachesIntoOuterContext = reachesIntoOuterContext;
+      return config;
+    }
+
+    private ATNConfigSet readConfigs() throws IOException {
+      boolean ordered = _in.readBoolean();
+      boolean fullCtx = _in.readBoolean();
+      ATNConfigSet configs = ordered ? new OrderedATNConfigSet() : new ATNConfigSet(fullCtx);
+      int size = _in.readInt();
+      for (int i = 0; i < size; i++) {
+        configs.add(readConfig());
+      }
+      configs.uniqueAlt = _in.readInt();
+      int numWords = _in.readInt();
+      if (numWords != NULL) {
+        long[] words = new long[numWords];
+        for (int i = 0; i < numWords; i++) {
+          words[i] = _in.readLong();
+        }
+        setConflictingAlts(configs, BitSet.valueOf(words));
+      }
+      configs.hasSemanticContext = _in.readBoolean();
+      configs.dipsIntoOuterContext = _in.readBoolean();
+      configs.setReadonly(true);
+      return configs;
+    }
+
+    @Nullable
+    private PredictionContext readContext() throws IOException {
+      int id = _in.readInt();
+      return id == NULL ? null : _contexts.get(id);
+    }
+
+    private void readContexts() throws IOException {
+      int numContexts = _in.readInt();
+      for (int i = 0; i < numContexts; i++) {
+        PredictionContext context;
+        if (_in.readBoolean()) {
+          int size = _in.readInt();
+          PredictionContext[] parents = new PredictionContext[size];
+          int[] returnStates = new int[size];
+          for (int j = 0; j < size; j++) {
+            parents[j] = readContext();
+            returnStates[j] = _in.readInt();
+          }
+          context = new ArrayPredictionContext(parents, returnStates);
+        } else {
+          PredictionContext parent = readContext();
+          context = SingletonPredictionContext.create(parent, _in.readInt());
+        }
+        _contexts.add(_contextCache == null ? context : _contextCache.add(context));
+      }
+    }
+
+    private DFA readDfa() throws IOException {
+      int decision = _in.readInt();
+      DFA dfa = new DFA(_atn.getDecisionState(decision), decision);
+      int numStates = _in.readInt();
+      List<DFAState> states = new ArrayList<>(numStates);
+      for (int i = 0; i < numStates; i++) {
+        boolean inMap = _in.readBoolean();
+        DFAState state = new DFAState(readConfigs());
+        state.stateNumber = _in.readInt();
+        state.isAcceptState = _in.readBoolean();
+        state.prediction = _in.readInt();
+        state.requiresFullContext = _in.readBoolean();
+        state.lexerActionExecutor = readExecutor();
+        int numPredicates = _in.readInt();
+        if (numPredicates != NULL) {
+          state.predicates = new PredPrediction[numPredicates];
+          for (int j = 0; j < numPredicates; j++) {
+            SemanticContext pred = readSemanticContext();
+            state.predicates[j] = new PredPrediction(pred, _in.readInt());
+          }
+        }
+        if (inMap) {
+          dfa.states.put(state, state);
+        }
+        states.add(state);
+      }
+      for (DFAState state : states) {
+        int numEdges = _in.readInt();
+        if (numEdges != NULL) {
+          state.edges = new DFAState[numEdges];
+          for (int j = 0; j < numEdges; j++) {
+            int target = _in.readInt();
+            state.edges[j] =
+                target == NULL
+                    ? null
+                    : target == EDGE_ERROR ? ATNSimulator.ERROR : states.get(target);
+          }
+        }
+      }
+      int s0 = _in.readInt();
+      if (s0 != NULL) {
+        if (dfa.isPrecedenceDfa()) {
+          // the start state of a precedence DFA only holds the start states of each precedence
+          dfa.s0.edges = states.get(s0).edges;
+        } else {
+          dfa.s0 = states.get(s0);
+        }
+      }
+      return dfa;
+    }
+
+    /** Reads the prediction contexts and then the DFAs that refer to them */
+    private List<DFA> readDfas() throws IOException {
+      readContexts();
+      int numDfas = _in.readInt();
+      List<DFA> dfas = new ArrayList<>(numDfas);
+      for (int i = 0; i < numDfas; i++) {
+        dfas.add(readDfa());
+      }
+      return dfas;
+    }
+
+    @Nullable
+    private LexerActionExecutor readExecutor() throws IOException {
+      int numActions = _in.readInt();
+      if (numActions == NULL) {
+        return null;
+      }
+      LexerAction[] actions = new LexerAction[numActions];
+      for (int i = 0; i < numActions; i++) {
+        boolean indexed = _in.readBoolean();
+        if (indexed) {
+          int offset = _in.readInt();
+          actions[i] = new LexerIndexedCustomAction(offset, _atn.lexerActions[_in.readInt()]);
+        } else {
+          actions[i] = _atn.lexerActions[_in.readInt()];
+        }
+      }
+      return new LexerActionExecutor(actions);
+    }
+
+    private SemanticContext readSemanticContext() throws IOException {
+      int type = _in.readByte();
+      switch (type) {
+        case SEMANTIC_CONTEXT_NONE:
+          return SemanticContext.NONE;
+        case SEMANTIC_CONTEXT_PREDICATE:
+          return new SemanticContext.Predicate(_in.readInt(), _in.readInt(), _in.readBoolean());
+        case SEMANTIC_CONTEXT_PRECEDENCE:
+          return new SemanticContext.PrecedencePredicate(_in.readInt());
+        case SEMANTIC_CONTEXT_AND:
+        case SEMANTIC_CONTEXT_OR:
+          int numOperands = _in.readInt();
+          SemanticContext result = readSemanticContext();
+          for (int i = 1; i < numOperands; i++) {
+            SemanticContext operand = readSemanticContext();
+            result =
+                type == SEMANTIC_CONTEXT_AND
+                    ? new SemanticContext.AND(result, operand)
+                    : new SemanticContext.OR(result, operand);
+          }
+          return result;
+        default:
+          throw new BatfishException("Unknown semantic context type: " + type);
+      }
+    }
+
+    private ATNState nonGreedyDecisionState() {
+      return _atn.states
+          .stream()
+          .filter(s -> s instanceof DecisionState && ((DecisionState) s).nonGreedy)
+          .findFirst()
+          .orElseThrow(() -> new BatfishException("No non-greedy decision in lexer ATN"));
+    }
+  }
+
+  /** Writes the DFAs of one recognizer */
+  private static final class DfaWriter {
+
+    private final ATN _atn;
+
+    private final Map<PredictionContext, Integer> _contextIds;
+
+    private final List<PredictionContext> _contexts;
+
+    private final DataOutputStream _out;
+
+    private DfaWriter(ATN atn, DataOutputStream out) {
+      _atn = atn;
+      _contextIds = new IdentityHashMap<>();
+      _contexts = new ArrayList<>();
+      _out = out;
+    }
+
+    /** Numbers {@code context} and its ancestors, ancestors first */
+    private void collectContext(@Nullable PredictionContext context) {
+      if (context == null || _contextIds.containsKey(context)) {
+        return;
+      }
+      for (int i = 0; i < context.size(); i++) {
+        collectContext(context.getParent(i));
+      }
+      _contextIds.put(context, _contexts.size());
+      _contexts.add(context);
+    }
+
+    private int lexerActionIndex(LexerAction action) {
+      int index = Arrays.asList(_atn.lexerActions).indexOf(action);
+      if (index == -1) {
+        throw new BatfishException("Lexer action is not in the ATN: " + action);
+      }
+      return index;
+    }
+
+    private void writeConfig(ATNConfig config) throws IOException {
+      boolean lexer = config instanceof LexerATNConfig;
+      _out.writeBoolean(lexer);
+      _out.writeInt(config.state.stateNumber);
+      _out.writeInt(config.alt);
+      writeContext(config.context);
+      writeSemanticContext(config.semanticContext);
+      _out.writeInt(config.reachesIntoOuterContext);
+      if (lexer) {
+        LexerATNConfig lexerConfig = (LexerATNConfig) config;
+        _out.writeBoolean(lexerConfig.hasPassedThroughNonGreedyDecision());
+        writeExecutor(lexerConfig.getLexerActionExecutor());
+      }
+    }
+
+    private void writeConfigs(ATNConfigSet configs) throws IOException {
+      _out.writeBoolean(configs instanceof OrderedATNConfigSet);
+      _out.writeBoolean(configs.fullCtx);
+      _out.writeInt(configs.size());
+      for (ATNConfig config : configs.elements()) {
+        writeConfig(config);
+      }
+      _out.writeInt(configs.uniqueAlt);
+      BitSet conflictingAlts = getConflictingAlts(configs);
+      if (conflictingAlts == null) {
+        _out.writeInt(NULL);
+      } else {
+        long[] words = conflictingAlts.toLongArray();
+        _out.writeInt(words.length);
+        for (long word : words) {
+          _out.writeLong(word);
+        }
+      }
+      _out.writeBoolean(configs.hasSemanticContext);
+      _out.writeBoolean(configs.dipsIntoOuterContext);
+    }
+
+    private void writeContext(@Nullable PredictionContext context) throws IOException {
+      _out.writeInt(context == null ? NULL : _contextIds.get(context));
+    }
+
+    private void writeContexts() throws IOException {
+      _out.writeInt(_contexts.size());
+      for (PredictionContext context : _contexts) {
+        boolean array = context instanceof ArrayPredictionContext;
+        _out.writeBoolean(array);
+        if (array) {
+          _out.writeInt(context.size());
+          for (int i = 0; i < context.size(); i++) {
+            writeContext(context.getParent(i));
+            _out.writeInt(context.getReturnState(i));
+          }
+        } else {
+          writeContext(context.getParent(0));
+          _out.writeInt(context.getReturnState(0));
+        }
+      }
+    }
+
+    private void writeDfa(DFA dfa, List<DFAState> states) throws IOException {
+      Map<DFAState, Integer> ids = new IdentityHashMap<>();
+      for (DFAState state : states) {
+        ids.put(state, ids.size());
+      }
+      _out.writeInt(dfa.decision);
+      _out.writeInt(states.size());
+      for (DFAState state : states) {
+        // the start state of a precedence DFA is not in the map
+        _out.writeBoolean(dfa.states.get(state) == state);
+        writeConfigs(state.configs);
+        _out.writeInt(state.stateNumber);
+        _out.writeBoolean(state.isAcceptState);
+        _out.writeInt(state.prediction);
+        _out.writeBoolean(state.requiresFullContext);
+        writeExecutor(state.lexerActionExecutor);
+        if (state.predicates == null) {
+          _out.writeInt(NULL);
+        } else {
+          _out.writeInt(state.predicates.length);
+          for (PredPrediction predPrediction : state.predicates) {
+            writeSemanticContext(predPrediction.pred);
+            _out.writeInt(predPrediction.alt);
+          }
+        }
+      }
+      for (DFAState state : states) {
+        if (state.edges == null) {
+          _out.writeInt(NULL);
+          continue;
+        }
+        _out.writeInt(state.edges.length);
+        for (DFAState target : state.edges) {
+          _out.writeInt(
+              target == null ? NULL : target == ATNSimulator.ERROR ? EDGE_ERROR : ids.get(target));
+        }
+      }
+      _out.writeInt(dfa.s0 == null ? NULL : ids.get(dfa.s0));
+    }
+
+    private void writeExecutor(@Nullable LexerActionExecutor executor) throws IOException {
+      if (executor == null) {
+        _out.writeInt(NULL);
+        return;
+      }
+      LexerAction[] actions = executor.getLexerActions();
+      _out.writeInt(actions.length);
+      for (LexerAction action : actions) {
+        boolean indexed = action instanceof LexerIndexedCustomAction;
+        _out.writeBoolean(indexed);
+        if (indexed) {
+          LexerIndexedCustomAction indexedAction = (LexerIndexedCustomAction) action;
+          _out.writeInt(indexedAction.getOffset());
+          _out.writeInt(lexerActionIndex(indexedAction.getAction()));
+        } else {
+          _out.writeInt(lexerActionIndex(action));
+        }
+      }
+    }
+
+    private void writeSemanticContext(SemanticContext semanticContext) throws IOException {
+      if (semanticContext == SemanticContext.NONE) {
+        _out.writeByte(SEMANTIC_CONTEXT_NONE);
+      } else if (semanticContext instanceof SemanticContext.Predicate) {
+        SemanticContext.Predicate predicate = (SemanticContext.Predicate) semanticContext;
+        _out.writeByte(SEMANTIC_CONTEXT_PREDICATE);
+        _out.writeInt(predicate.ruleIndex);
+        _out.writeInt(predicate.predIndex);
+        _out.writeBoolean(predicate.isCtxDependent);
+      } else if (semanticContext instanceof SemanticContext.PrecedencePredicate) {
+        _out.writeByte(SEMANTIC_CONTEXT_PRECEDENCE);
+        _out.writeInt(((SemanticContext.PrecedencePredicate) semanticContext).precedence);
+      } else if (semanticContext instanceof SemanticContext.AND
+          || semanticContext instanceof SemanticContext.OR) {
+        SemanticContext[] operands =
+            semanticContext instanceof SemanticContext.AND
+                ? ((SemanticContext.AND) semanticContext).opnds
+                : ((SemanticContext.OR) semanticContext).opnds;
+        _out.writeByte(
+            semanticContext instanceof SemanticContext.AND
+                ? SEMANTIC_CONTEXT_AND
+                : SEMANTIC_CONTEXT_OR);
+        _out.writeInt(operands.length);
+        for (SemanticContext operand : operands) {
+          writeSemanticContext(operand);
+        }
+      } else {
+        throw new BatfishException("Unknown semantic context: " + semanticContext);
+      }
+    }
+
+    /** Writes the given DFAs, whose states must not change meanwhile */
+    private void writeDfas(List<DFA> dfas) throws IOException {
+      List<List<DFAState>> dfaStates = new ArrayList<>();
+      for (DFA dfa : dfas) {
+        List<DFAState> states = getStates(dfa);
+        for (DFAState state : states) {
+          for (ATNConfig config : state.configs.elements()) {
+            collectContext(config.context);
+          }
+        }
+        dfaStates.add(states);
+      }
+      writeContexts();
+      _out.writeInt(dfas.size());
+      for (int i = 0; i < dfas.size(); i++) {
+        writeDfa(dfas.get(i), dfaStates.get(i));
+      }
+    }
+  }
+
+  @Nullable
+  private static Field getConflictingAltsField() {
+    // not exposed by ATNConfigSet, but part of the identity of a DFA state
+    try {
+      Field field = ATNConfigSet.class.getDeclaredField("conflictingAlts");
+      field.setAccessible(true);
+      return field;
+    } catch (NoSuchFieldException | RuntimeException e) {
+      // e.g. a SecurityException, or an InaccessibleObjectException on newer JVMs
+      return null;
+    }
+  }
+
+  /** Returns whether DFAs can be saved and loaded with this ANTLR runtime */
+  public static boolean isEnabled() {
+    return CONFLICTING_ALTS != null;
+  }
+
+  @Nullable
+  private static BitSet getConflictingAlts(ATNConfigSet configs) {
+    try {
+      assert CONFLICTING_ALTS != null; // only used when enabled
+      return (BitSet) CONFLICTING_ALTS.get(configs);
+    } catch (IllegalAccessException e) {
+      throw new BatfishException("Could not read conflicting alternatives", e);
+    }
+  }
+
+  private static void setConflictingAlts(ATNConfigSet configs, BitSet conflictingAlts) {
+    try {
+      assert CONFLICTING_ALTS != null; // only used when enabled
+      CONFLICTING_ALTS.set(configs, conflictingAlts);
+    } catch (IllegalAccessException e) {
+      throw new BatfishException("Could not set conflicting alternatives", e);
+    }
+  }
+
+  private static DFA[] getDecisionToDfa(Recognizer<?, ?> recognizer) {
+    ATNSimulator interpreter = recognizer.getInterpreter();
+    if (interpreter instanceof LexerATNSimulator) {
+      return ((LexerATNSimulator) interpreter).decisionToDFA;
+    } else {
+      return ((ParserATNSimulator) interpreter).decisionToDFA;
+    }
+  }
+
+  /** Returns the states of {@code dfa}, including its start state and any state only on an edge */
+  private static List<DFAState> getStates(DFA dfa) {
+    Map<DFAState, Boolean> seen = new IdentityHashMap<>();
+    List<DFAState> states = new ArrayList<>();
+    Deque<DFAState> toVisit = new ArrayDeque<>(dfa.states.values());
+    if (dfa.s0 != null) {
+      toVisit.add(dfa.s0);
+    }
+    while (!toVisit.isEmpty()) {
+      DFAState state = toVisit.pop();
+      if (state == ATNSimulator.ERROR || seen.put(state, true) != null) {
+        continue;
+      }
+      states.add(state);
+      if (state.edges != null) {
+        Arrays.stream(state.edges).filter(e -> e != null).forEach(toVisit::add);
+      }
+    }
+    return states;
+  }
+
+  private static String getKey(Recognizer<?, ?> recognizer) {
+    return recognizer.getClass().getName();
+  }
+
+  private static String hashAtn(Recognizer<?, ?> recognizer) {
+    return Hashing.sha256()
+        .newHasher()
+        .putString(RuntimeMetaData.VERSION, StandardCharsets.UTF_8)
+        .putString(recognizer.getSerializedATN(), StandardCharsets.UTF_8)
+        .hash()
+        .toString();
+  }
+
+  /**
+   * Loads the DFAs saved in {@code file} into the empty DFAs of the given recognizers, and returns
+   * the number of DFA states loaded. DFAs saved for other grammars, other versions of the grammars,
+   * or other versions of the ANTLR runtime are ignored, as are DFAs that cannot be read.
+   */
+  public static int load(
+      List<? extends Recognizer<?, ?>> recognizers, Path file, BatfishLogger logger)
+      throws IOException {
+    if (!isEnabled()) {
+      return 0;
+    }
+    Map<String, Recognizer<?, ?>> recognizersByKey = new HashMap<>();
+    recognizers.forEach(r -> recognizersByKey.put(getKey(r), r));
+    int loaded = 0;
+    try (InputStream in = Files.newInputStream(file);
+        LZ4FrameInputStream lis = new LZ4FrameInputStream(in);
+        DataInputStream dis = new DataInputStream(lis)) {
+      if (dis.readInt() != FORMAT_VERSION) {
+        return 0;
+      }
+      int numRecognizers = dis.readInt();
+      for (int i = 0; i < numRecognizers; i++) {
+        String key = dis.readUTF();
+        String atnHash = dis.readUTF();
+        byte[] body = new byte[dis.readInt()];
+        dis.readFully(body);
+        Recognizer<?, ?> recognizer = recognizersByKey.get(key);
+        if (recognizer == null || !atnHash.equals(hashAtn(recognizer))) {
+          continue;
+        }
+        try {
+          loaded += loadDfas(recognizer, body);
+        } catch (IOException | RuntimeException e) {
+          // nothing is replaced before all the DFAs of the recognizer are read
+          logger.warnf("Could not load the DFAs of %s: %s\n", key, e);
+        }
+      }
+    }
+    return loaded;
+  }
+
+  /** Reads all the DFAs in {@code body} first, so that none are replaced if any cannot be read */
+  private static int loadDfas(Recognizer<?, ?> recognizer, byte[] body) throws IOException {
+    DFA[] decisionToDfa = getDecisionToDfa(recognizer);
+    DfaReader reader =
+        new DfaReader(
+            recognizer.getInterpreter(), new DataInputStream(new ByteArrayInputStream(body)));
+    List<DFA> dfas = reader.readDfas();
+    int loaded = 0;
+    for (DFA dfa : dfas) {
+      DFA current = decisionToDfa[dfa.decision];
+      // parsers add states while holding this lock
+      synchronized (current.states) {
+        if (current.states.isEmpty()) {
+          decisionToDfa[dfa.decision] = dfa;
+          loaded += dfa.states.size();
+        }
+      }
+    }
+    return loaded;
+  }
+
+  /**
+   * Saves the DFAs of the given recognizers to {@code file}, replacing it atomically. The
+   * recognizers must not be used meanwhile. Does nothing if the cache is not {@link #isEnabled()
+   * enabled}.
+   */
+  public static void save(List<? extends Recognizer<?, ?>> recognizers, Path file)
+      throws IOException {
+    if (!isEnabled()) {
+      return;
+    }
+    Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), "dfa", ".tmp");
+    try {
+      try (OutputStream out = Files.newOutputStream(tmp);
+          LZ4FrameOutputStream los = new LZ4FrameOutputStream(out);
+          DataOutputStream dos = new DataOutputStream(los)) {
+        dos.writeInt(FORMAT_VERSION);
+        dos.writeInt(recognizers.size());
+        for (Recognizer<?, ?> recognizer : recognizers) {
+          ByteArrayOutputStream body = new ByteArrayOutputStream();
+          List<DFA> dfas = new ArrayList<>();
+          for (DFA dfa : getDecisionToDfa(recognizer)) {
+            if (!dfa.states.isEmpty()) {
+              dfas.add(dfa);
+            }
+          }
+          try (DataOutputStream bodyOut = new DataOutputStream(body)) {
+            new DfaWriter(recognizer.getATN(), bodyOut).writeDfas(dfas);
+          }
+          dos.writeUTF(getKey(recognizer));
+          dos.writeUTF(hashAtn(recognizer));
+          dos.writeInt(body.size());
+          body.writeTo(dos);
+        }
+      }
+      Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+}
@@ -6,25 +6,56 @@ import static org.batfish.common.util.CommonUtil.communityStringToLong;
 import static org.batfish.common.util.CommonUtil.computeIpInterfaceOwners;
 import static org.batfish.common.util.CommonUtil.computeIpNodeOwners;
 import static org.batfish.common.util.CommonUtil.computeNodeInterfaces;
+import static org.batfish.common.util.CommonUtil.copyConfigurations;
+import static org.batfish.common.util.CommonUtil.initBgpTopology;
 import static org.batfish.common.util.CommonUtil.longToCommunity;
+import static org.batfish.common.util.CommonUtil.synthesizeTopology;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.graph.ValueGraph;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.batfish.common.plugin.ITracerouteEngine;
+import org.batfish.datamodel.BgpPeerConfigId;
+import org.batfish.datamodel.BgpProcess;
+import org.batfish.datamodel.BgpSessionProperties;
 import org.batfish.datamodel.Configuration;
 import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.Edge;
+import org.batfish.datamodel.Fib;
+import org.batfish.datamodel.Flow;
+import org.batfish.datamodel.FlowDisposition;
+import org.batfish.datamodel.FlowTrace;
+import org.batfish.datamodel.FlowTraceDag;
+import org.batfish.datamodel.FlowTraceHop;
 import org.batfish.datamodel.Interface;
 import org.batfish.datamodel.InterfaceAddress;
 import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.MockDataPlane;
 import org.batfish.datamodel.NetworkFactory;
 import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.Topology;
+import org.batfish.datamodel.Vrf;
 import org.batfish.datamodel.VrrpGroup;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -188,6 +219,21 @@ public class CommonUtilTest {
                     "node", ImmutableSet.of("active", "shut", "active-black", "shut-black")))));
   }
 
+  @Test
+  public void testCopyConfigurations() {
+    Map<String, Configuration> configurations = setupVrrpTestCase(false);
+    SortedMap<String, Configuration> copies = copyConfigurations(configurations);
+
+    assertThat(copies.keySet(), equalTo(configurations.keySet()));
+    Configuration copy = copies.get("n1");
+    assertThat(copy, not(sameInstance(configurations.get("n1"))));
+    assertThat(copy.getInterfaces().keySet(), equalTo(_i1.getOwner().getInterfaces().keySet()));
+
+    // Modifying a copy leaves the original unchanged
+    copy.getInterfaces().values().forEach(i -> i.setActive(false));
+    assertThat(_i1.getActive(), equalTo(true));
+  }
+
   @Test
   public void testCommunityStringToLong() {
     assertThat(communityStringToLong("0:0"), equalTo(0L));
@@ -221,4 +267,158 @@ public class CommonUtilTest {
     assertThat(longToCommunity(0L), equalTo("0:0"));
     assertThat(longToCommunity(4294967295L), equalTo("65535:65535"));
   }
+
+  /*
+   * n1, n2 and n3 form a full mesh of iBGP sessions, but flows to n3 are never accepted, so only
+   * the sessions between n1 and n2 can be established.
+   */
+  @Test
+  public void testInitBgpTopologyCheckReachability() {
+    Configuration.Builder cb =
+        _nf.configurationBuilder().setConfigurationFormat(ConfigurationFormat.CISCO_IOS);
+    Map<String, Configuration> configurations = new HashMap<>();
+    Map<String, Ip> loopbacks = ImmutableMap.of("n1", new Ip("10.0.0.1"), "n2", new Ip("10.0.0.2"));
+    for (int i = 1; i <= 3; i++) {
+      Configuration c = cb.setHostname("n" + i).build();
+      configurations.put(c.getHostname(), c);
+      Vrf vrf = _nf.vrfBuilder().setOwner(c).setName(Configuration.DEFAULT_VRF_NAME).build();
+      Ip localIp = new Ip("10.0.0." + i);
+      _nf.interfaceBuilder()
+          .setOwner(c)
+          .setVrf(vrf)
+          .setActive(true)
+          .setAddress(new InterfaceAddress(localIp, Prefix.MAX_PREFIX_LENGTH))
+          .build();
+      BgpProcess proc = _nf.bgpProcessBuilder().setVrf(vrf).setRouterId(localIp).build();
+      for (int j = 1; j <= 3; j++) {
+        if (j != i) {
+          _nf.bgpNeighborBuilder()
+              .setBgpProcess(proc)
+              .setLocalIp(localIp)
+              .setLocalAs(1L)
+              .setPeerAddress(new Ip("10.0.0." + j))
+              .setRemoteAs(1L)
+              .build();
+        }
+      }
+    }
+    // accepts each flow to n1 or n2 at the destination, and drops the others
+    List<Set<Flow>> tracedFlows = new ArrayList<>();
+    ITracerouteEngine tracerouteEngine =
+        new ITracerouteEngine() {
+          @Override
+          public SortedMap<Flow, Set<FlowTrace>> computeAcceptedFlowTraces(
+              DataPlane dataPlane,
+              Set<Flow> flows,
+              Map<String, Map<String, Fib>> fibs,
+              boolean ignoreAcls) {
+            tracedFlows.add(flows);
+            SortedMap<Flow, Set<FlowTrace>> traces = new TreeMap<>();
+            for (Flow flow : flows) {
+              String dstNode =
+                  loopbacks
+                      .entrySet()
+                      .stream()
+                      .filter(e -> e.getValue().equals(flow.getDstIp()))
+                      .map(Entry::getKey)
+                      .findFirst()
+                      .orElse(null);
+              traces.put(
+                  flow,
+                  dstNode == null
+                      ? ImmutableSet.of()
+                      : ImmutableSet.of(
+                          new FlowTrace(
+                              FlowDisposition.ACCEPTED,
+                              ImmutableList.of(
+                                  new FlowTraceHop(
+                                      new Edge(flow.getIngressNode(), "i", dstNode, "i"),
+                                      ImmutableSortedSet.of(),
+                                      null)),
+                              "accepted")));
+            }
+            return traces;
+          }
+
+          @Override
+          public SortedMap<Flow, FlowTraceDag> computeFlowTraceDags(
+              DataPlane dataPlane,
+              Set<Flow> flows,
+              Map<String, Map<String, Fib>> fibs,
+              boolean ignoreAcls) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public SortedMap<Flow, Set<FlowTrace>> processFlows(
+              DataPlane dataPlane,
+              Set<Flow> flows,
+              Map<String, Map<String, Fib>> fibs,
+              boolean ignoreAcls) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public SortedMap<Flow, Set<FlowTrace>> processFlowBatch(
+              DataPlane dataPlane,
+              Set<Flow> flows,
+              Map<String, Map<String, Fib>> fibs,
+              boolean ignoreAcls) {
+            throw new UnsupportedOperationException();
+          }
+        };
+
+    ValueGraph<BgpPeerConfigId, BgpSessionProperties> bgpTopology =
+        initBgpTopology(
+            configurations,
+            computeIpNodeOwners(configurations, false),
+            false,
+            true,
+            tracerouteEngine,
+            MockDataPlane.builder().build());
+
+    assertThat(
+        bgpTopology
+            .edges()
+            .stream()
+            .map(e -> e.nodeU().getHostname() + "->" + e.nodeV().getHostname())
+            .collect(ImmutableSet.toImmutableSet()),
+        containsInAnyOrder("n1->n2", "n2->n1"));
+    // the initiating flows of all 6 sessions go in one batch, then the replies of the 4 accepted
+    assertThat(tracedFlows.stream().map(Set::size).collect(Collectors.toList()), contains(6, 4));
+  }
+
+  @Test
+  public void testSynthesizeTopology() {
+    Configuration.Builder cb =
+        _nf.configurationBuilder().setConfigurationFormat(ConfigurationFormat.CISCO_IOS);
+    Configuration c1 = cb.setHostname("c1").build();
+    Configuration c2 = cb.setHostname("c2").build();
+    Configuration c3 = cb.setHostname("c3").build();
+    Interface.Builder ib = _nf.interfaceBuilder().setActive(true);
+    ib.setOwner(c1).setName("i1").setAddress(new InterfaceAddress("10.0.0.1/24")).build();
+    ib.setOwner(c2).setName("i2").setAddress(new InterfaceAddress("10.0.0.2/24")).build();
+    // shares an address with c1:i1, so is not connected to it
+    ib.setOwner(c3)
+        .setName("i3")
+        .setAddress(new InterfaceAddress("10.0.0.3/24"))
+        .setSecondaryAddresses(ImmutableSet.of(new InterfaceAddress("10.0.0.1/24")))
+        .build();
+    ib.setSecondaryAddresses(ImmutableSet.of());
+    // inactive, and on a /32
+    ib.setOwner(c3).setName("i4").setActive(false).setAddress(new InterfaceAddress("10.0.0.4/24"));
+    ib.build();
+    ib.setOwner(c1).setName("i5").setActive(true).setAddress(new InterfaceAddress("10.0.0.5/32"));
+    ib.build();
+
+    Topology topology = synthesizeTopology(ImmutableMap.of("c1", c1, "c2", c2, "c3", c3));
+
+    assertThat(
+        topology.getEdges(),
+        containsInAnyOrder(
+            new Edge("c1", "i1", "c2", "i2"),
+            new Edge("c2", "i2", "c1", "i1"),
+            new Edge("c2", "i2", "c3", "i3"),
+            new Edge("c3", "i3", "c2", "i2")));
+  }
 }
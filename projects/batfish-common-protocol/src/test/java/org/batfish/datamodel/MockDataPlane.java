@@ -151,6 +151,16 @@ public class MockDataPlane implements DataPlane {
     return _ipVrfOwners;
   }
 
+  @Override
+  public long getNumMainRibRoutes() {
+    return _ribs
+        .values()
+        .stream()
+        .flatMap(vrfRibs -> vrfRibs.values().stream())
+        .mapToLong(rib -> rib.getRoutes().size())
+        .sum();
+  }
+
   @Override
   public SortedMap<String, SortedMap<String, GenericRib<AbstractRoute>>> getRibs() {
     return _ribs;
@@ -6,6 +6,7 @@ import java.util.Comparator;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.function.Consumer;
 
 public class MockRib implements GenericRib<AbstractRoute> {
 
@@ -142,6 +143,11 @@ public class MockRib implements GenericRib<AbstractRoute> {
     return _routes;
   }
 
+  @Override
+  public void forEachLongestPrefixMatch(Ip address, Consumer<? super AbstractRoute> consumer) {
+    longestPrefixMatch(address).forEach(consumer);
+  }
+
   @Override
   public Set<AbstractRoute> longestPrefixMatch(Ip address) {
     return _longestPrefixMatchResults.get(address);
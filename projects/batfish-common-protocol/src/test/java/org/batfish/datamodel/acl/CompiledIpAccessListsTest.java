@@ -0,0 +1,155 @@
+package org.batfish.datamodel.acl;
+
+import static org.batfish.datamodel.acl.AclLineMatchExprs.and;
+import static org.batfish.datamodel.acl.AclLineMatchExprs.match;
+import static org.batfish.datamodel.acl.AclLineMatchExprs.matchDst;
+import static org.batfish.datamodel.acl.AclLineMatchExprs.matchSrcInterface;
+import static org.batfish.datamodel.acl.AclLineMatchExprs.not;
+import static org.batfish.datamodel.acl.AclLineMatchExprs.or;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.batfish.datamodel.AclIpSpace;
+import org.batfish.datamodel.Flow;
+import org.batfish.datamodel.HeaderSpace;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.IpAccessList;
+import org.batfish.datamodel.IpAccessListLine;
+import org.batfish.datamodel.IpProtocol;
+import org.batfish.datamodel.IpSpace;
+import org.batfish.datamodel.IpSpaceReference;
+import org.batfish.datamodel.IpWildcard;
+import org.batfish.datamodel.IpWildcardSetIpSpace;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.SubRange;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/** Tests of {@link CompiledIpAccessLists}. */
+public class CompiledIpAccessListsTest {
+
+  private static final List<String> IPS =
+      ImmutableList.of("1.0.0.1", "1.0.1.1", "1.1.0.1", "2.0.0.1", "2.0.0.2", "3.3.3.3");
+
+  @Rule public ExpectedException _thrown = ExpectedException.none();
+
+  private static Flow flow(String srcIp, String dstIp, IpProtocol ipProtocol, int dstPort) {
+    return Flow.builder()
+        .setIngressNode("node")
+        .setTag("tag")
+        .setSrcIp(new Ip(srcIp))
+        .setDstIp(new Ip(dstIp))
+        .setIpProtocol(ipProtocol)
+        .setDstPort(dstPort)
+        .build();
+  }
+
+  private static IpAccessList acl(String name, IpAccessListLine... lines) {
+    return IpAccessList.builder().setName(name).setLines(Arrays.asList(lines)).build();
+  }
+
+  @Test
+  public void testSameAsFilter() {
+    Map<String, IpSpace> namedIpSpaces =
+        ImmutableMap.of(
+            "ipSpace1",
+            AclIpSpace.builder()
+                .thenRejecting(Prefix.parse("1.0.1.0/24").toIpSpace())
+                .thenPermitting(new IpSpaceReference("ipSpace2"))
+                .build(),
+            "ipSpace2",
+            IpWildcardSetIpSpace.builder()
+                .including(new IpWildcard("1.0.0.0/8"), new IpWildcard("2.0.0.1"))
+                .excluding(new IpWildcard("1.1.0.0:0.0.255.255"))
+                .build());
+    IpAccessList referenced =
+        acl(
+            "referenced",
+            IpAccessListLine.rejecting().setMatchCondition(matchDst(new Ip("2.0.0.2"))).build(),
+            IpAccessListLine.accepting()
+                .setMatchCondition(
+                    match(
+                        HeaderSpace.builder()
+                            .setIpProtocols(ImmutableSet.of(IpProtocol.TCP))
+                            .setDstPorts(ImmutableSet.of(new SubRange(20, 30)))
+                            .build()))
+                .build());
+    IpAccessList acl =
+        acl(
+            "acl",
+            IpAccessListLine.rejecting()
+                .setMatchCondition(
+                    and(matchSrcInterface("iface1"), matchDst(new IpSpaceReference("ipSpace1"))))
+                .build(),
+            IpAccessListLine.accepting()
+                .setMatchCondition(
+                    or(
+                        new PermittedByAcl("referenced", true),
+                        match(
+                            HeaderSpace.builder()
+                                .setSrcOrDstIps(new IpSpaceReference("undefined"))
+                                .build())))
+                .build(),
+            IpAccessListLine.rejecting().setMatchCondition(OriginatingFromDevice.INSTANCE).build(),
+            IpAccessListLine.accepting()
+                .setMatchCondition(
+                    not(
+                        match(
+                            HeaderSpace.builder()
+                                .setSrcIps(new IpSpaceReference("ipSpace2"))
+                                .setNotDstIps(Prefix.parse("2.0.0.0/8").toIpSpace())
+                                .build())))
+                .build());
+    Map<String, IpAccessList> acls = ImmutableMap.of("acl", acl, "referenced", referenced);
+    IpAccessList unnamed =
+        acl(
+            "unnamed",
+            IpAccessListLine.accepting().setMatchCondition(new PermittedByAcl("acl")).build());
+    CompiledIpAccessLists compiled = CompiledIpAccessLists.compile(acls, namedIpSpaces);
+
+    for (String srcIp : IPS) {
+      for (String dstIp : IPS) {
+        for (IpProtocol ipProtocol : ImmutableList.of(IpProtocol.TCP, IpProtocol.UDP)) {
+          for (int dstPort : new int[] {22, 80}) {
+            Flow flow = flow(srcIp, dstIp, ipProtocol, dstPort);
+            for (String srcInterface : Arrays.asList(null, "iface1", "iface2")) {
+              for (IpAccessList filter : ImmutableList.of(acl, referenced, unnamed)) {
+                assertThat(
+                    compiled.filter(filter, flow, srcInterface),
+                    equalTo(filter.filter(flow, srcInterface, acls, namedIpSpaces)));
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCircularReference() {
+    Map<String, IpSpace> namedIpSpaces =
+        ImmutableMap.of(
+            "ipSpace1",
+            new IpSpaceReference("ipSpace2"),
+            "ipSpace2",
+            new IpSpaceReference("ipSpace1"));
+    IpAccessList acl =
+        acl(
+            "acl",
+            IpAccessListLine.accepting()
+                .setMatchCondition(matchDst(new IpSpaceReference("ipSpace1")))
+                .build());
+    CompiledIpAccessLists compiled =
+        CompiledIpAccessLists.compile(ImmutableMap.of("acl", acl), namedIpSpaces);
+
+    _thrown.expect(CircularReferenceException.class);
+    compiled.filter(acl, flow("1.0.0.1", "1.0.0.1", IpProtocol.TCP, 22), null);
+  }
+}
@@ -0,0 +1,497 @@
+package org.batfish.bddreachability;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.batfish.common.util.CommonUtil.toImmutableMap;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.function.Supplier;
+import net.sf.javabdd.BDD;
+import org.batfish.common.util.CommonUtil;
+import org.batfish.datamodel.AbstractRoute;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.EmptyIpSpace;
+import org.batfish.datamodel.Fib;
+import org.batfish.datamodel.ForwardingAnalysis;
+import org.batfish.datamodel.ForwardingAnalysisImpl;
+import org.batfish.datamodel.GenericRib;
+import org.batfish.datamodel.Interface;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.IpSpace;
+import org.batfish.datamodel.IpWildcard;
+import org.batfish.datamodel.IpWildcardSetIpSpace;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.Route;
+import org.batfish.datamodel.Topology;
+import org.batfish.datamodel.UniverseIpSpace;
+import org.batfish.datamodel.collections.NodeInterfacePair;
+import org.batfish.symbolic.bdd.BDDOps;
+import org.batfish.symbolic.bdd.BDDPacket;
+import org.batfish.symbolic.bdd.IpSpaceToBDD;
+
+/**
+ * A {@link ForwardingAnalysis} computed directly as {@link BDD BDDs} over the destination IP of a
+ * {@link BDDPacket}, with the same semantics as {@link ForwardingAnalysisImpl}.
+ *
+ * <p>The routes of each VRF are grouped by next-hop interface and next-hop IP in parallel, since
+ * that only reads the RIBs and FIBs. The BDDs are then built on the calling thread, because a
+ * {@link net.sf.javabdd.BDDFactory} is not thread-safe. The {@link IpSpace IpSpaces} of the {@link
+ * ForwardingAnalysis} interface are converted from the BDDs only when first requested, so {@link
+ * BDDReachabilityAnalysisFactory} never builds them.
+ */
+public final class BDDForwardingAnalysis implements ForwardingAnalysis {
+
+  /** The routes of a VRF, grouped by how packets matching them are forwarded. */
+  private static final class VrfRoutes {
+
+    // next-hop interface --> prefixes of the routes through it without a next-hop IP
+    private final Map<String, Set<Prefix>> _dstIpArpPrefixes;
+
+    // prefix --> destination IPs for which it is the longest prefix match
+    private final Map<Prefix, IpSpace> _matchingIps;
+
+    // next-hop interface --> next-hop IP --> prefixes of the routes through it via that IP
+    private final Map<String, Map<Ip, Set<Prefix>>> _nextHopIpPrefixes;
+
+    private final Set<Prefix> _nullRoutedPrefixes;
+
+    // next-hop interface --> prefixes of the routes through it
+    private final Map<String, Set<Prefix>> _prefixes;
+
+    VrfRoutes(GenericRib<AbstractRoute> rib, Fib fib) {
+      Map<String, ImmutableSet.Builder<Prefix>> dstIpArpPrefixes = new HashMap<>();
+      Map<String, Map<Ip, ImmutableSet.Builder<Prefix>>> nextHopIpPrefixes = new HashMap<>();
+      ImmutableSet.Builder<Prefix> nullRoutedPrefixes = ImmutableSet.builder();
+      Map<String, ImmutableSet.Builder<Prefix>> prefixes = new HashMap<>();
+      fib.getNextHopInterfaces()
+          .forEach(
+              (route, nextHopInterfaces) -> {
+                Prefix prefix = route.getNetwork();
+                nextHopInterfaces.forEach(
+                    (iface, nextHopIps) -> {
+                      if (iface.equals(Interface.NULL_INTERFACE_NAME)) {
+                        nullRoutedPrefixes.add(prefix);
+                        return;
+                      }
+                      prefixes.computeIfAbsent(iface, i -> ImmutableSet.builder()).add(prefix);
+                      nextHopIps
+                          .keySet()
+                          .forEach(
+                              nextHopIp -> {
+                                if (nextHopIp.equals(Route.UNSET_ROUTE_NEXT_HOP_IP)) {
+                                  dstIpArpPrefixes
+                                      .computeIfAbsent(iface, i -> ImmutableSet.builder())
+                                      .add(prefix);
+                                } else {
+                                  nextHopIpPrefixes
+                                      .computeIfAbsent(iface, i -> new HashMap<>())
+                                      .computeIfAbsent(nextHopIp, i -> ImmutableSet.builder())
+                                      .add(prefix);
+                                }
+                              });
+                    });
+              });
+      _dstIpArpPrefixes =
+          toImmutableMap(dstIpArpPrefixes, Entry::getKey, e -> e.getValue().build());
+      _matchingIps = rib.getMatchingIps();
+      _nextHopIpPrefixes =
+          toImmutableMap(
+              nextHopIpPrefixes,
+              Entry::getKey,
+              ifaceEntry ->
+                  toImmutableMap(ifaceEntry.getValue(), Entry::getKey, e -> e.getValue().build()));
+      _nullRoutedPrefixes = nullRoutedPrefixes.build();
+      _prefixes = toImmutableMap(prefixes, Entry::getKey, e -> e.getValue().build());
+    }
+  }
+
+  private final Map<String, Map<String, BDD>> _arpReplyBDDs;
+
+  private final Supplier<Map<String, Map<String, IpSpace>>> _arpReplies;
+
+  private final Supplier<Map<org.batfish.datamodel.Edge, IpSpace>> _arpTrueEdge;
+
+  private final Map<org.batfish.datamodel.Edge, BDD> _arpTrueEdgeBDDs;
+
+  private final BDDPacket _bddPacket;
+
+  private final BDDOps _bddOps;
+
+  // BDD variable of a destination IP bit --> position of the bit in the IP
+  private final Map<Integer, Integer> _dstIpBitPositions;
+
+  private final IpSpaceToBDD _dstIpSpaceToBDD;
+
+  private final Supplier<Map<String, Map<String, Map<String, IpSpace>>>> _neighborUnreachable;
+
+  private final Map<String, Map<String, Map<String, BDD>>> _neighborUnreachableBDDs;
+
+  private final Map<String, Map<String, BDD>> _nullRoutedBDDs;
+
+  private final Supplier<Map<String, Map<String, IpSpace>>> _nullRoutedIps;
+
+  private final Map<String, Map<String, BDD>> _routableBDDs;
+
+  private final Supplier<Map<String, Map<String, IpSpace>>> _routableIps;
+
+  public BDDForwardingAnalysis(
+      BDDPacket packet,
+      Map<String, Configuration> configurations,
+      SortedMap<String, SortedMap<String, GenericRib<AbstractRoute>>> ribs,
+      Map<String, Map<String, Fib>> fibs,
+      Topology topology) {
+    _bddPacket = packet;
+    _bddOps = new BDDOps(packet.getFactory());
+    _dstIpSpaceToBDD = new IpSpaceToBDD(packet.getFactory(), packet.getDstIp());
+    BDD[] dstIpBits = packet.getDstIp().getBitvec();
+    ImmutableMap.Builder<Integer, Integer> dstIpBitPositions = ImmutableMap.builder();
+    for (int i = 0; i < dstIpBits.length; i++) {
+      dstIpBitPositions.put(dstIpBits[i].var(), i);
+    }
+    _dstIpBitPositions = dstIpBitPositions.build();
+
+    // read the RIBs and FIBs of all nodes in parallel
+    Map<String, Map<String, IpSpace>> routableIps =
+        ribs.entrySet()
+            .parallelStream()
+            .collect(
+                ImmutableMap.toImmutableMap(
+                    Entry::getKey /* hostname */,
+                    nodeEntry ->
+                        toImmutableMap(
+                            nodeEntry.getValue(),
+                            Entry::getKey /* vrf */,
+                            vrfEntry -> vrfEntry.getValue().getRoutableIps())));
+    Map<String, Map<String, VrfRoutes>> vrfRoutes =
+        fibs.entrySet()
+            .parallelStream()
+            .collect(
+                ImmutableMap.toImmutableMap(
+                    Entry::getKey /* hostname */,
+                    nodeEntry ->
+                        toImmutableMap(
+                            nodeEntry.getValue(),
+                            Entry::getKey /* vrf */,
+                            vrfEntry ->
+                                new VrfRoutes(
+                                    ribs.get(nodeEntry.getKey()).get(vrfEntry.getKey()),
+                                    vrfEntry.getValue()))));
+    Map<String, Map<String, Set<Ip>>> interfaceOwnedIps =
+        CommonUtil.computeInterfaceOwnedIps(configurations, false);
+
+    // then build the BDDs on this thread
+    _routableBDDs =
+        toImmutableMap(
+            routableIps,
+            Entry::getKey,
+            nodeEntry ->
+                toImmutableMap(
+                    nodeEntry.getValue(),
+                    Entry::getKey,
+                    vrfEntry -> vrfEntry.getValue().accept(_dstIpSpaceToBDD)));
+    Map<String, Map<String, Map<Prefix, BDD>>> matchingIpBDDs = new HashMap<>();
+    _nullRoutedBDDs =
+        toImmutableMap(
+            vrfRoutes,
+            Entry::getKey,
+            nodeEntry ->
+                toImmutableMap(
+                    nodeEntry.getValue(),
+                    Entry::getKey,
+                    vrfEntry ->
+                        routeMatchBDD(
+                            vrfEntry.getValue()._nullRoutedPrefixes,
+                            vrfEntry.getValue(),
+                            matchingIpBDDs
+                                .computeIfAbsent(nodeEntry.getKey(), n -> new HashMap<>())
+                                .computeIfAbsent(vrfEntry.getKey(), v -> new HashMap<>()))));
+    _arpReplyBDDs =
+        computeArpReplyBDDs(configurations, interfaceOwnedIps, vrfRoutes, matchingIpBDDs);
+    Map<String, Map<String, BDD>> someoneRepliesBDDs = computeSomeoneRepliesBDDs(topology);
+
+    ImmutableMap.Builder<org.batfish.datamodel.Edge, BDD> arpTrueEdgeBDDs = ImmutableMap.builder();
+    _neighborUnreachableBDDs =
+        toImmutableMap(
+            vrfRoutes,
+            Entry::getKey /* hostname */,
+            nodeEntry -> {
+              String hostname = nodeEntry.getKey();
+              Map<String, BDD> someoneReplies =
+                  someoneRepliesBDDs.getOrDefault(hostname, ImmutableMap.of());
+              return toImmutableMap(
+                  nodeEntry.getValue(),
+                  Entry::getKey /* vrf */,
+                  vrfEntry -> {
+                    VrfRoutes routes = vrfEntry.getValue();
+                    Map<Prefix, BDD> matchingIps =
+                        matchingIpBDDs.get(hostname).get(vrfEntry.getKey());
+                    return toImmutableMap(
+                        routes._prefixes,
+                        Entry::getKey /* outInterface */,
+                        ifaceEntry -> {
+                          String outInterface = ifaceEntry.getKey();
+                          Set<Prefix> dstIpArpPrefixes =
+                              routes._dstIpArpPrefixes.getOrDefault(
+                                  outInterface, ImmutableSet.of());
+                          Map<Ip, Set<Prefix>> nextHopIpPrefixes =
+                              routes._nextHopIpPrefixes.getOrDefault(
+                                  outInterface, ImmutableMap.of());
+                          BDD dstIpArpBDD = routeMatchBDD(dstIpArpPrefixes, routes, matchingIps);
+
+                          NodeInterfacePair out = new NodeInterfacePair(hostname, outInterface);
+                          for (NodeInterfacePair receiver : topology.getNeighbors(out)) {
+                            BDD recvReplies = getArpReplyBDD(receiver);
+                            BDD nextHopIpBDD =
+                                routeMatchBDD(
+                                    nextHopIpPrefixes(nextHopIpPrefixes, recvReplies, true),
+                                    routes,
+                                    matchingIps);
+                            arpTrueEdgeBDDs.put(
+                                new org.batfish.datamodel.Edge(out, receiver),
+                                dstIpArpBDD.and(recvReplies).or(nextHopIpBDD));
+                          }
+
+                          BDD someoneRepliesBDD =
+                              someoneReplies.getOrDefault(
+                                  outInterface, _bddPacket.getFactory().zero());
+                          BDD unrepliedNextHopIpBDD =
+                              routeMatchBDD(
+                                  nextHopIpPrefixes(nextHopIpPrefixes, someoneRepliesBDD, false),
+                                  routes,
+                                  matchingIps);
+                          return dstIpArpBDD.and(someoneRepliesBDD.not()).or(unrepliedNextHopIpBDD);
+                        });
+                  });
+            });
+    _arpTrueEdgeBDDs = arpTrueEdgeBDDs.build();
+
+    _arpReplies = Suppliers.memoize(() -> toIpSpaces(_arpReplyBDDs));
+    _arpTrueEdge =
+        Suppliers.memoize(
+            () -> toImmutableMap(_arpTrueEdgeBDDs, Entry::getKey, e -> toIpSpace(e.getValue())));
+    _neighborUnreachable =
+        Suppliers.memoize(
+            () ->
+                toImmutableMap(
+                    _neighborUnreachableBDDs,
+                    Entry::getKey,
+                    nodeEntry -> toIpSpaces(nodeEntry.getValue())));
+    _nullRoutedIps = Suppliers.memoize(() -> toIpSpaces(_nullRoutedBDDs));
+    _routableIps = Suppliers.memoize(() -> toIpSpaces(_routableBDDs));
+  }
+
+  /**
+   * Compute for each interface of each node the destination IPs for which it would send out an ARP
+   * reply, as in {@link ForwardingAnalysisImpl#computeInterfaceArpReplies}.
+   */
+  private Map<String, Map<String, BDD>> computeArpReplyBDDs(
+      Map<String, Configuration> configurations,
+      Map<String, Map<String, Set<Ip>>> interfaceOwnedIps,
+      Map<String, Map<String, VrfRoutes>> vrfRoutes,
+      Map<String, Map<String, Map<Prefix, BDD>>> matchingIpBDDs) {
+    return toImmutableMap(
+        _routableBDDs,
+        Entry::getKey /* hostname */,
+        nodeEntry -> {
+          String hostname = nodeEntry.getKey();
+          Map<String, Interface> interfaces = configurations.get(hostname).getInterfaces();
+          Map<String, Set<Ip>> ownedIps =
+              interfaceOwnedIps.getOrDefault(hostname, ImmutableMap.of());
+          ImmutableMap.Builder<String, BDD> arpReplies = ImmutableMap.builder();
+          vrfRoutes
+              .getOrDefault(hostname, ImmutableMap.of())
+              .forEach(
+                  (vrf, routes) ->
+                      routes._prefixes.forEach(
+                          (iface, prefixes) -> {
+                            Interface i = interfaces.get(iface);
+                            BDD ipsAssignedToThisInterface =
+                                _bddOps.or(
+                                    ownedIps
+                                        .getOrDefault(iface, ImmutableSet.of())
+                                        .stream()
+                                        .map(_dstIpSpaceToBDD::toBDD)
+                                        .collect(ImmutableSet.toImmutableSet()));
+                            BDD interfaceArpReplies = ipsAssignedToThisInterface;
+                            if (!ipsAssignedToThisInterface.isZero() && i.getProxyArp()) {
+                              BDD ipsRoutedThroughInterface =
+                                  routeMatchBDD(
+                                      prefixes, routes, matchingIpBDDs.get(hostname).get(vrf));
+                              BDD routableIpsForThisVrf = nodeEntry.getValue().get(i.getVrfName());
+                              interfaceArpReplies =
+                                  interfaceArpReplies.or(
+                                      routableIpsForThisVrf.and(ipsRoutedThroughInterface.not()));
+                            }
+                            arpReplies.put(iface, interfaceArpReplies);
+                          }));
+          return arpReplies.build();
+        });
+  }
+
+  /**
+   * Compute for each interface of each node the destination IPs for which some neighbor would send
+   * out an ARP reply.
+   */
+  private Map<String, Map<String, BDD>> computeSomeoneRepliesBDDs(Topology topology) {
+    Map<String, Map<String, BDD>> someoneReplies = new HashMap<>();
+    topology
+        .getEdges()
+        .forEach(
+            edge ->
+                someoneReplies
+                    .computeIfAbsent(edge.getNode1(), n -> new HashMap<>())
+                    .merge(
+                        edge.getInt1(),
+                        getArpReplyBDD(new NodeInterfacePair(edge.getNode2(), edge.getInt2())),
+                        BDD::or));
+    return toImmutableMap(
+        someoneReplies, Entry::getKey, nodeEntry -> ImmutableMap.copyOf(nodeEntry.getValue()));
+  }
+
+  private BDD getArpReplyBDD(NodeInterfacePair iface) {
+    BDD arpReplies =
+        _arpReplyBDDs
+            .getOrDefault(iface.getHostname(), ImmutableMap.of())
+            .get(iface.getInterface());
+    return arpReplies == null ? _bddPacket.getFactory().zero() : arpReplies;
+  }
+
+  /**
+   * Returns the prefixes of the routes via a next-hop IP that is in {@code ips} if {@code in}, or
+   * that is not otherwise.
+   */
+  private Set<Prefix> nextHopIpPrefixes(
+      Map<Ip, Set<Prefix>> nextHopIpPrefixes, BDD ips, boolean in) {
+    return nextHopIpPrefixes
+        .entrySet()
+        .stream()
+        .filter(entry -> _dstIpSpaceToBDD.toBDD(entry.getKey()).and(ips).isZero() != in)
+        .flatMap(entry -> entry.getValue().stream())
+        .collect(ImmutableSet.toImmutableSet());
+  }
+
+  /**
+   * Returns the destination IPs for which the longest prefix match is one of {@code prefixes}, as
+   * in {@link ForwardingAnalysisImpl#computeRouteMatchConditions}.
+   */
+  private BDD routeMatchBDD(Set<Prefix> prefixes, VrfRoutes routes, Map<Prefix, BDD> matchingIps) {
+    return _bddOps.or(
+        prefixes
+            .stream()
+            .map(
+                prefix ->
+                    matchingIps.computeIfAbsent(
+                        prefix, p -> routes._matchingIps.get(p).accept(_dstIpSpaceToBDD)))
+            .collect(ImmutableSet.toImmutableSet()));
+  }
+
+  /**
+   * Converts a {@link BDD} over the destination IP to an {@link IpSpace}. Synchronized on the
+   * packet, like every other use of BDDs over a packet that may be shared by concurrent tasks.
+   */
+  private IpSpace toIpSpace(BDD bdd) {
+    synchronized (_bddPacket) {
+      if (bdd.isZero()) {
+        return EmptyIpSpace.INSTANCE;
+      }
+      if (bdd.isOne()) {
+        return UniverseIpSpace.INSTANCE;
+      }
+      IpWildcardSetIpSpace.Builder ipSpace = IpWildcardSetIpSpace.builder();
+      addIpWildcards(bdd, 0L, 0L, ipSpace);
+      return ipSpace.build();
+    }
+  }
+
+  /**
+   * Adds to {@code ipSpace} an {@link IpWildcard} for each path of {@code bdd} to true, given the
+   * IP bits fixed by the path to {@code bdd}.
+   */
+  private void addIpWildcards(
+      BDD bdd, long bits, long fixedBits, IpWildcardSetIpSpace.Builder ipSpace) {
+    if (bdd.isZero()) {
+      return;
+    }
+    if (bdd.isOne()) {
+      ipSpace.including(new IpWildcard(new Ip(bits), new Ip(Ip.MAX.asLong() & ~fixedBits)));
+      return;
+    }
+    Integer position = _dstIpBitPositions.get(bdd.var());
+    checkArgument(position != null, "BDD constrains more than the destination IP");
+    long bit = 1L << (Prefix.MAX_PREFIX_LENGTH - 1 - position);
+    addIpWildcards(bdd.low(), bits, fixedBits | bit, ipSpace);
+    addIpWildcards(bdd.high(), bits | bit, fixedBits | bit, ipSpace);
+  }
+
+  private Map<String, Map<String, IpSpace>> toIpSpaces(Map<String, Map<String, BDD>> bdds) {
+    return toImmutableMap(
+        bdds,
+        Entry::getKey,
+        outerEntry ->
+            toImmutableMap(
+                outerEntry.getValue(),
+                Entry::getKey,
+                innerEntry -> toIpSpace(innerEntry.getValue())));
+  }
+
+  @Override
+  public Map<String, Map<String, IpSpace>> getArpReplies() {
+    return _arpReplies.get();
+  }
+
+  /** Mapping: hostname -&gt; inInterface -&gt; ipsToArpReplyTo */
+  Map<String, Map<String, BDD>> getArpReplyBDDs() {
+    return _arpReplyBDDs;
+  }
+
+  @Override
+  public Map<org.batfish.datamodel.Edge, IpSpace> getArpTrueEdge() {
+    return _arpTrueEdge.get();
+  }
+
+  /** Mapping: edge -&gt; dstIpsForWhichArpReplySent */
+  Map<org.batfish.datamodel.Edge, BDD> getArpTrueEdgeBDDs() {
+    return _arpTrueEdgeBDDs;
+  }
+
+  /** The {@link BDDPacket} whose destination IP the BDDs of this analysis constrain */
+  BDDPacket getBDDPacket() {
+    return _bddPacket;
+  }
+
+  @Override
+  public Map<String, Map<String, Map<String, IpSpace>>> getNeighborUnreachable() {
+    return _neighborUnreachable.get();
+  }
+
+  /** Mapping: hostname -&gt; vrfName -&gt; outInterface -&gt; dstIpsForWhichNoArpResponse */
+  Map<String, Map<String, Map<String, BDD>>> getNeighborUnreachableBDDs() {
+    return _neighborUnreachableBDDs;
+  }
+
+  /** Mapping: hostname -&gt; vrfName -&gt; nullRoutedIps */
+  Map<String, Map<String, BDD>> getNullRoutedBDDs() {
+    return _nullRoutedBDDs;
+  }
+
+  @Override
+  public Map<String, Map<String, IpSpace>> getNullRoutedIps() {
+    return _nullRoutedIps.get();
+  }
+
+  /** Mapping: hostname -&gt; vrfName -&gt; routableIps */
+  Map<String, Map<String, BDD>> getRoutableBDDs() {
+    return _routableBDDs;
+  }
+
+  @Override
+  public Map<String, Map<String, IpSpace>> getRoutableIps() {
+    return _routableIps.get();
+  }
+}
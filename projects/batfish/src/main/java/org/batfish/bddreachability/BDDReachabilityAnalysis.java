@@ -5,22 +5,30 @@ import static org.batfish.common.util.CommonUtil.toImmutableMap;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Suppliers;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import net.sf.javabdd.BDD;
+import net.sf.javabdd.BDDFactory;
 import org.batfish.common.BatfishException;
 import org.batfish.datamodel.Flow;
 import org.batfish.datamodel.Flow.Builder;
@@ -52,15 +60,16 @@ import org.batfish.z3.state.visitors.DefaultTransitionGenerator;
  * Instead, we keep track of where/how the packet is transformed as it flows through the network,
  * and reconstruct it after the fact. This requires some work that can't be expressed in BDDs.
  *
- * <p>We currently implement backward all-pairs reachability. Forward reachability is useful for
- * questions with a tight source constraint, e.g. "find me packets send from node A that get
- * dropped". When reasoning about many sources simultaneously, we have to somehow remember the
- * source, which is very expensive for a large number of sources. Something like multipath
- * consistency -- "find me a packet and a node such that when the node sends the packet, it can be
- * either accepted and dropped" -- for which there are many sources but only a few sinks ({@link
- * Accept}, {@link Drop}, and {@link NeighborUnreachable}), backward reachability is much more
- * efficient. We still have to remember the sinks, but there's only ever 3 of those, no matter how
- * many sources there are.
+ * <p>We implement both backward all-pairs reachability and forward reachability. Forward
+ * reachability is useful for questions with a tight source constraint, e.g. "find me packets send
+ * from node A that get dropped". When reasoning about many sources simultaneously, we have to
+ * somehow remember the source, which we do by tagging the packets of each source with a value of an
+ * extra source variable. That is still expensive for a large number of sources. Something like
+ * multipath consistency -- "find me a packet and a node such that when the node sends the packet,
+ * it can be either accepted and dropped" -- for which there are many sources but only a few sinks
+ * ({@link Accept}, {@link Drop}, and {@link NeighborUnreachable}), backward reachability is much
+ * more efficient. We still have to remember the sinks, but there's only ever 3 of those, no matter
+ * how many sources there are.
  */
 public class BDDReachabilityAnalysis {
   private final BDDPacket _bddPacket;
@@ -73,25 +82,45 @@ public class BDDReachabilityAnalysis {
 
   private final Map<StateExpr, BDD> _graphRoots;
 
+  // state --> index of its strongly connected component, in reverse topological order
+  private final Map<StateExpr, Integer> _sccOrder;
+
   // state --> final state --> predicate
   private final Supplier<Map<StateExpr, Map<StateExpr, BDD>>> _reverseReachableStates;
 
   // for NAT
   private final BDD _srcIpVars;
 
+  // for forward reachability: graph root --> value of the source variable tagging its packets
+  private final Supplier<Map<StateExpr, BDD>> _rootSourceBDDs;
+
   private Set<StateExpr> _leafStates;
 
   BDDReachabilityAnalysis(
       BDDPacket packet,
       Map<StateExpr, BDD> graphRoots,
       Map<StateExpr, Map<StateExpr, Edge>> transitions) {
+    this(packet, graphRoots, transitions, ImmutableMap::of);
+  }
+
+  /**
+   * @param rootSourceBDDs Supplies the value of the source variable of each root, for forward
+   *     reachability. Only called if there is more than one root.
+   */
+  BDDReachabilityAnalysis(
+      BDDPacket packet,
+      Map<StateExpr, BDD> graphRoots,
+      Map<StateExpr, Map<StateExpr, Edge>> transitions,
+      Supplier<Map<StateExpr, BDD>> rootSourceBDDs) {
     _bddPacket = packet;
     _edges = computeEdges(graphRoots, transitions);
     _reverseEdges = computeReverseEdges(_edges);
+    _sccOrder = computeSccOrder(_edges);
     _graphRoots = ImmutableMap.copyOf(graphRoots);
     _reverseReachableStates = Suppliers.memoize(this::computeReverseReachableStates);
     _leafStates = computeTerminalStates();
     _srcIpVars = new BDDOps(_bddPacket.getFactory()).and(_bddPacket.getSrcIp().getBitvec());
+    _rootSourceBDDs = rootSourceBDDs;
   }
 
   private static Map<StateExpr, Map<StateExpr, Edge>> computeEdges(
@@ -148,81 +177,321 @@ public class BDDReachabilityAnalysis {
   private Map<StateExpr, Map<StateExpr, BDD>> computeReverseReachableStates(
       List<StateExpr> leaves) {
     Map<StateExpr, Map<StateExpr, BDD>> reverseReachableStates = new HashMap<>();
-    Multimap<StateExpr, StateExpr> dirty = HashMultimap.create();
     for (StateExpr leaf : leaves) {
-      reverseReachableStates.put(leaf, ImmutableMap.of(leaf, _bddPacket.getFactory().one()));
-      dirty.put(leaf, leaf);
+      computeReverseReachableStates(leaf)
+          .forEach(
+              (state, bdd) ->
+                  reverseReachableStates
+                      .computeIfAbsent(state, k -> new HashMap<>())
+                      .put(leaf, bdd));
     }
+    return toImmutableMap(
+        reverseReachableStates,
+        Entry::getKey,
+        rootEntry -> toImmutableMap(rootEntry.getValue(), Entry::getKey, Entry::getValue));
+  }
 
-    List<Long> roundTimes = new LinkedList<>();
-    List<Integer> roundDirties = new LinkedList<>();
+  /*
+   * node --> set of headers that can reach leaf from node.
+   */
+  private Map<StateExpr, BDD> computeReverseReachableStates(StateExpr leaf) {
+    return computeReverseReachableStates(ImmutableSet.of(leaf), state -> true);
+  }
+
+  /*
+   * node --> set of headers that can reach one of leaves from node, only going through states
+   * accepted by inGraph.
+   *
+   * Worklist fixpoint: states are processed in reverse topological order of the strongly connected
+   * components of the graph, so each component is only visited once all components it can reach
+   * have converged. Only the newly reached headers of a state (its pending delta) are propagated
+   * backward along its in-edges.
+   */
+  private Map<StateExpr, BDD> computeReverseReachableStates(
+      Set<StateExpr> leaves, Predicate<StateExpr> inGraph) {
+    Map<StateExpr, BDD> reach = new HashMap<>();
+    Map<StateExpr, BDD> pending = new HashMap<>();
+    PriorityQueue<StateExpr> worklist =
+        new PriorityQueue<>(Comparator.comparingInt(state -> _sccOrder.getOrDefault(state, -1)));
+
+    BDD one = _bddPacket.getFactory().one();
+    for (StateExpr leaf : leaves) {
+      reach.put(leaf, one);
+      pending.put(leaf, one);
+      worklist.add(leaf);
+    }
 
-    while (!dirty.isEmpty()) {
-      Multimap<StateExpr, StateExpr> newDirty = HashMultimap.create();
-      long time = System.currentTimeMillis();
+    while (!worklist.isEmpty()) {
+      StateExpr postState = worklist.poll();
+      BDD postStateDelta = pending.remove(postState);
+      Map<StateExpr, Edge> postStateInEdges = _reverseEdges.get(postState);
+      if (postStateInEdges == null) {
+        // postState has no in-edges
+        continue;
+      }
+
+      BDD postStateBDD = reach.get(postState);
+      postStateInEdges.forEach(
+          (preState, edge) -> {
+            if (!inGraph.test(preState)) {
+              return;
+            }
 
-      dirty.forEach(
-          (postState, leaf) -> {
-            Map<StateExpr, Edge> postStateInEdges = _reverseEdges.get(postState);
-            if (postStateInEdges == null) {
-              // preState has no in-edges
+            /*
+             * Backward source NAT is not distributive over disjunction, so edges with source NAT
+             * are always evaluated against the full post-state BDD.
+             */
+            BDD result =
+                edge.getSourceNats() == null
+                    ? transitBackward(postStateDelta, edge)
+                    : transitBackward(postStateBDD, edge);
+            if (result.isZero()) {
               return;
             }
 
-            BDD postStateBDD = reverseReachableStates.get(postState).get(leaf);
-            postStateInEdges.forEach(
-                (preState, edge) -> {
-                  BDD constraint = edge.getConstraint();
-                  BDD result = constraint == null ? postStateBDD : postStateBDD.and(constraint);
-                  if (result.isZero()) {
-                    return;
-                  }
-
-                  // apply source nat backward
-                  List<BDDSourceNat> sourceNats = edge.getSourceNats();
-                  if (sourceNats != null) {
-                    BDD orig = result;
-                    BDD origExistSrcIp = orig.exist(_srcIpVars);
-                    // non-natted case: srcIp unchanged, none of the lines match
-                    result =
-                        sourceNats
-                            .stream()
-                            .map(srcNat -> srcNat._condition.not())
-                            .reduce(orig, BDD::and);
-                    // natted cases
-                    for (BDDSourceNat sourceNat : sourceNats) {
-                      if (!orig.and(sourceNat._updateSrcIp).isZero()) {
-                        // this could be the NAT rule that was applied
-                        result = result.or(origExistSrcIp.and(sourceNat._condition));
-                      }
-                    }
-                    assert !result.isZero();
-                  }
-
-                  // update preState BDD reverse-reachable from leaf
-                  Map<StateExpr, BDD> reverseReachPreState =
-                      reverseReachableStates.computeIfAbsent(preState, k -> new HashMap<>());
-                  BDD oldReach = reverseReachPreState.get(leaf);
-                  BDD newReach = oldReach == null ? result : oldReach.or(result);
-
-                  if (oldReach == null || !oldReach.equals(newReach)) {
-                    reverseReachPreState.put(leaf, newReach);
-                    newDirty.put(preState, leaf);
-                  }
-                });
+            // update preState BDD reverse-reachable from leaf
+            BDD oldReach = reach.get(preState);
+            BDD added = oldReach == null ? result : result.apply(oldReach, BDDFactory.diff);
+            if (added.isZero()) {
+              return;
+            }
+            reach.put(preState, oldReach == null ? added : oldReach.or(added));
+
+            BDD oldPending = pending.get(preState);
+            if (oldPending == null) {
+              pending.put(preState, added);
+              worklist.add(preState);
+            } else {
+              pending.put(preState, oldPending.or(added));
+            }
           });
+    }
+    return reach;
+  }
 
-      dirty = newDirty;
+  /** Compute the set of headers at the edge's pre-state that can reach {@code postStateBDD}. */
+  private BDD transitBackward(BDD postStateBDD, Edge edge) {
+    BDD constraint = edge.getConstraint();
+    BDD result = constraint == null ? postStateBDD : postStateBDD.and(constraint);
+    if (result.isZero()) {
+      return result;
+    }
 
-      time = System.currentTimeMillis() - time;
-      roundTimes.add(time);
-      roundDirties.add(dirty.size());
+    // apply source nat backward
+    List<BDDSourceNat> sourceNats = edge.getSourceNats();
+    if (sourceNats != null) {
+      BDD orig = result;
+      BDD origExistSrcIp = orig.exist(_srcIpVars);
+      // non-natted case: srcIp unchanged, none of the lines match
+      result = sourceNats.stream().map(srcNat -> srcNat._condition.not()).reduce(orig, BDD::and);
+      // natted cases
+      for (BDDSourceNat sourceNat : sourceNats) {
+        if (!orig.and(sourceNat._updateSrcIp).isZero()) {
+          // this could be the NAT rule that was applied
+          result = result.or(origExistSrcIp.and(sourceNat._condition));
+        }
+      }
+      assert !result.isZero();
     }
+    return result;
+  }
 
-    return toImmutableMap(
-        reverseReachableStates,
-        Entry::getKey,
-        rootEntry -> toImmutableMap(rootEntry.getValue(), Entry::getKey, Entry::getValue));
+  /*
+   * state --> set of headers that can reach state from the graph roots, each tagged with the value
+   * of the source variable of its root.
+   *
+   * Worklist fixpoint, the mirror image of the backward one: states are processed in topological
+   * order of the strongly connected components, and only the pending delta of a state is propagated
+   * forward along its out-edges. If stopAtFirstHit is set, the headers of a root stop being
+   * propagated once some of them reach one of targets, and the fixpoint ends once all roots have.
+   */
+  private Map<StateExpr, BDD> computeForwardReachableStates(
+      Map<StateExpr, BDD> rootSourceBDDs, Set<StateExpr> targets, boolean stopAtFirstHit) {
+    Map<StateExpr, BDD> reach = new HashMap<>();
+    Map<StateExpr, BDD> pending = new HashMap<>();
+    PriorityQueue<StateExpr> worklist =
+        new PriorityQueue<>(Comparator.comparingInt(state -> -_sccOrder.getOrDefault(state, -1)));
+
+    _graphRoots.forEach(
+        (root, headerSpace) -> {
+          BDD rootBDD = headerSpace.and(rootSourceBDDs.get(root));
+          if (!rootBDD.isZero()) {
+            reach.put(root, rootBDD);
+            pending.put(root, rootBDD);
+            worklist.add(root);
+          }
+        });
+
+    // the source variables, and the tagged headers of the roots that have not reached a target yet
+    BDD sourceVars = supportOf(rootSourceBDDs.values());
+    BDD live = _bddPacket.getFactory().one();
+
+    while (!worklist.isEmpty() && !live.isZero()) {
+      StateExpr preState = worklist.poll();
+      BDD preStateDelta = pending.remove(preState).and(live);
+      Map<StateExpr, Edge> preStateOutEdges = _edges.get(preState);
+      if (preStateOutEdges == null || preStateDelta.isZero()) {
+        continue;
+      }
+
+      for (Entry<StateExpr, Edge> outEdge : preStateOutEdges.entrySet()) {
+        StateExpr postState = outEdge.getKey();
+        BDD result = transitForward(preStateDelta, outEdge.getValue());
+        if (result.isZero()) {
+          continue;
+        }
+
+        // update postState BDD forward-reachable from the roots
+        BDD oldReach = reach.get(postState);
+        BDD added = oldReach == null ? result : result.apply(oldReach, BDDFactory.diff);
+        if (added.isZero()) {
+          continue;
+        }
+        reach.put(postState, oldReach == null ? added : oldReach.or(added));
+
+        if (stopAtFirstHit && targets.contains(postState)) {
+          // stop the roots whose headers were just added
+          BDD hitSources = added.exist(added.support().exist(sourceVars));
+          live = live.and(hitSources.not());
+        }
+
+        BDD oldPending = pending.get(postState);
+        if (oldPending == null) {
+          pending.put(postState, added);
+          worklist.add(postState);
+        } else {
+          pending.put(postState, oldPending.or(added));
+        }
+      }
+    }
+    return reach;
+  }
+
+  /** Compute the set of headers at the edge's post-state given {@code preStateBDD}. */
+  private BDD transitForward(BDD preStateBDD, Edge edge) {
+    BDD constraint = edge.getConstraint();
+    BDD result = constraint == null ? preStateBDD : preStateBDD.and(constraint);
+    if (result.isZero()) {
+      return result;
+    }
+
+    // apply source nat forward: the first matching line rewrites srcIp into its pool
+    List<BDDSourceNat> sourceNats = edge.getSourceNats();
+    if (sourceNats != null) {
+      BDD remaining = result;
+      result = _bddPacket.getFactory().zero();
+      for (BDDSourceNat sourceNat : sourceNats) {
+        BDD natted = remaining.and(sourceNat._condition);
+        if (!natted.isZero()) {
+          result = result.or(natted.exist(_srcIpVars).and(sourceNat._updateSrcIp));
+        }
+        remaining = remaining.and(sourceNat._condition.not());
+      }
+      result = result.or(remaining);
+    }
+    return result;
+  }
+
+  /** Whether source NAT rewrites any of the headers that reach the states of {@code reach}. */
+  private boolean rewritesSrcIp(Map<StateExpr, BDD> reach) {
+    return reach
+        .entrySet()
+        .stream()
+        .anyMatch(
+            entry -> {
+              Map<StateExpr, Edge> outEdges = _edges.get(entry.getKey());
+              return outEdges != null
+                  && outEdges
+                      .values()
+                      .stream()
+                      .filter(edge -> edge.getSourceNats() != null)
+                      .anyMatch(
+                          edge -> {
+                            BDD headers = entry.getValue().and(edge.getConstraint());
+                            return edge.getSourceNats()
+                                .stream()
+                                .anyMatch(srcNat -> !headers.and(srcNat._condition).isZero());
+                          });
+            });
+  }
+
+  /** Return the conjunction of the variables of {@code bdds}. */
+  private BDD supportOf(Collection<BDD> bdds) {
+    return bdds.stream().map(BDD::support).reduce(_bddPacket.getFactory().one(), BDD::and);
+  }
+
+  /**
+   * Number the strongly connected components of the graph in reverse topological order (i.e. if
+   * there is an edge from a state in component A to a state in a different component B, then B is
+   * numbered before A), and map each state to the number of its component. Uses an iterative
+   * version of Tarjan's algorithm, since the graph can be too deep for recursion.
+   */
+  @VisibleForTesting
+  static Map<StateExpr, Integer> computeSccOrder(Map<StateExpr, Map<StateExpr, Edge>> edges) {
+    Set<StateExpr> states = new HashSet<>(edges.keySet());
+    edges.values().forEach(postStates -> states.addAll(postStates.keySet()));
+
+    Map<StateExpr, Integer> index = new HashMap<>();
+    Map<StateExpr, Integer> lowLink = new HashMap<>();
+    Deque<StateExpr> sccStack = new ArrayDeque<>();
+    Set<StateExpr> onSccStack = new HashSet<>();
+    Deque<Entry<StateExpr, Iterator<StateExpr>>> callStack = new ArrayDeque<>();
+    Map<StateExpr, Integer> sccOrder = new HashMap<>();
+    int nextIndex = 0;
+    int nextScc = 0;
+
+    for (StateExpr start : states) {
+      if (index.containsKey(start)) {
+        continue;
+      }
+      index.put(start, nextIndex);
+      lowLink.put(start, nextIndex);
+      nextIndex++;
+      sccStack.push(start);
+      onSccStack.add(start);
+      callStack.push(Maps.immutableEntry(start, successors(edges, start)));
+
+      while (!callStack.isEmpty()) {
+        StateExpr state = callStack.peek().getKey();
+        Iterator<StateExpr> succs = callStack.peek().getValue();
+        if (succs.hasNext()) {
+          StateExpr succ = succs.next();
+          if (!index.containsKey(succ)) {
+            index.put(succ, nextIndex);
+            lowLink.put(succ, nextIndex);
+            nextIndex++;
+            sccStack.push(succ);
+            onSccStack.add(succ);
+            callStack.push(Maps.immutableEntry(succ, successors(edges, succ)));
+          } else if (onSccStack.contains(succ)) {
+            lowLink.put(state, Math.min(lowLink.get(state), index.get(succ)));
+          }
+          continue;
+        }
+
+        callStack.pop();
+        if (!callStack.isEmpty()) {
+          StateExpr caller = callStack.peek().getKey();
+          lowLink.put(caller, Math.min(lowLink.get(caller), lowLink.get(state)));
+        }
+        if (lowLink.get(state).equals(index.get(state))) {
+          StateExpr member;
+          do {
+            member = sccStack.pop();
+            onSccStack.remove(member);
+            sccOrder.put(member, nextScc);
+          } while (member != state);
+          nextScc++;
+        }
+      }
+    }
+    return ImmutableMap.copyOf(sccOrder);
+  }
+
+  private static Iterator<StateExpr> successors(
+      Map<StateExpr, Map<StateExpr, Edge>> edges, StateExpr state) {
+    Map<StateExpr, Edge> outEdges = edges.get(state);
+    return outEdges == null ? Collections.emptyIterator() : outEdges.keySet().iterator();
   }
 
   private Set<StateExpr> computeTerminalStates() {
@@ -289,6 +558,67 @@ public class BDDReachabilityAnalysis {
                 entry -> entry.getValue().get(Accept.INSTANCE)));
   }
 
+  /**
+   * Forward reachability: for each ingress location that can reach any of {@code targets}, compute
+   * the set of headers it can send that do. Prefer this over the backward analysis when there are
+   * few sources, since only the states the sources reach are visited.
+   *
+   * <p>The headers are the ones originally sent, also if source NAT rewrites them along the way. In
+   * that case they are recovered by the backward analysis, restricted to the states the forward
+   * analysis reached.
+   *
+   * @param stopAtFirstHit If true, stop propagating the headers of each location once some of them
+   *     reach a target. The result then still contains exactly the locations that can reach a
+   *     target, but maps each of them to a nonempty subset of its headers that do.
+   */
+  public Map<IngressLocation, BDD> getIngressLocationForwardReachableBDDs(
+      Set<StateExpr> targets, boolean stopAtFirstHit) {
+    Map<StateExpr, BDD> rootSourceBDDs = getRootSourceBDDs();
+    Map<StateExpr, BDD> reach =
+        computeForwardReachableStates(rootSourceBDDs, targets, stopAtFirstHit);
+    Set<StateExpr> reachedTargets =
+        targets.stream().filter(reach::containsKey).collect(ImmutableSet.toImmutableSet());
+    if (reachedTargets.isEmpty()) {
+      return ImmutableMap.of();
+    }
+    BDD targetBDD =
+        reachedTargets.stream().map(reach::get).reduce(_bddPacket.getFactory().zero(), BDD::or);
+    BDD sourceVars = supportOf(rootSourceBDDs.values());
+    Map<StateExpr, BDD> originalHeaders =
+        rewritesSrcIp(reach)
+            ? computeReverseReachableStates(reachedTargets, reach::containsKey)
+            : null;
+
+    ImmutableMap.Builder<IngressLocation, BDD> result = ImmutableMap.builder();
+    rootSourceBDDs.forEach(
+        (root, sourceBDD) -> {
+          BDD rootBDD = targetBDD.and(sourceBDD);
+          if (rootBDD.isZero()) {
+            return;
+          }
+          result.put(
+              toIngressLocation(root),
+              originalHeaders == null ? rootBDD.exist(sourceVars) : originalHeaders.get(root));
+        });
+    return result.build();
+  }
+
+  /*
+   * graph root --> value of the source variable tagging its headers. With a single root there is
+   * nothing to distinguish, so the source variable is not needed.
+   */
+  private Map<StateExpr, BDD> getRootSourceBDDs() {
+    if (_graphRoots.size() <= 1) {
+      BDD one = _bddPacket.getFactory().one();
+      return toImmutableMap(_graphRoots.keySet(), root -> root, root -> one);
+    }
+    Map<StateExpr, BDD> rootSourceBDDs = _rootSourceBDDs.get();
+    Preconditions.checkState(
+        rootSourceBDDs.keySet().containsAll(_graphRoots.keySet()),
+        "Missing source variable values for some roots");
+    return toImmutableMap(_graphRoots.keySet(), root -> root, rootSourceBDDs::get);
+  }
+
   private static IngressLocation toIngressLocation(StateExpr stateExpr) {
     Preconditions.checkArgument(
         stateExpr instanceof OriginateVrf || stateExpr instanceof OriginateInterfaceLink);
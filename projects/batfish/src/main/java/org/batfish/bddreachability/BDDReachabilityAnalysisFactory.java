@@ -2,13 +2,18 @@ package org.batfish.bddreachability;
 
 import static org.batfish.common.util.CommonUtil.toImmutableMap;
 
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Streams;
+import com.google.common.math.LongMath;
+import java.math.RoundingMode;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 import net.sf.javabdd.BDD;
@@ -24,6 +29,7 @@ import org.batfish.specifier.IpSpaceAssignment;
 import org.batfish.specifier.Location;
 import org.batfish.specifier.LocationVisitor;
 import org.batfish.symbolic.bdd.BDDAcl;
+import org.batfish.symbolic.bdd.BDDInteger;
 import org.batfish.symbolic.bdd.BDDPacket;
 import org.batfish.symbolic.bdd.IpSpaceToBDD;
 import org.batfish.z3.expr.StateExpr;
@@ -61,6 +67,8 @@ import org.batfish.z3.state.PreOutVrf;
  * and set of pool IPs).
  */
 public final class BDDReachabilityAnalysisFactory {
+  private static final String SOURCE_VAR_NAME = "ReachabilitySource";
+
   // node name --> acl name --> set of packets denied by the acl.
   private final Map<String, Map<String, BDD>> _aclDenyBDDs;
 
@@ -89,8 +97,6 @@ public final class BDDReachabilityAnalysisFactory {
   // preState --> postState --> edge.
   private final Map<StateExpr, Map<StateExpr, Edge>> _edges;
 
-  private final ForwardingAnalysis _forwardingAnalysis;
-
   private IpSpaceToBDD _dstIpSpaceToBDD;
 
   /*
@@ -99,6 +105,16 @@ public final class BDDReachabilityAnalysisFactory {
    */
   private final Map<String, Map<String, Map<String, BDD>>> _neighborUnreachableBDDs;
 
+  // node --> vrf --> set of packets null-routed by the vrf
+  private final Map<String, Map<String, BDD>> _nullRoutedBDDs;
+
+  /*
+   * graph root --> value of the source variable that forward reachability tags the packets sent
+   * from the root with. Covers every possible root of the graph, so the variable is allocated once
+   * per factory rather than once per analysis.
+   */
+  private final Supplier<Map<StateExpr, BDD>> _rootSourceBDDs;
+
   // node --> vrf --> set of packets routable by the vrf
   private final Map<String, Map<String, BDD>> _routableBDDs;
 
@@ -112,20 +128,32 @@ public final class BDDReachabilityAnalysisFactory {
       BDDPacket packet, Map<String, Configuration> configs, ForwardingAnalysis forwardingAnalysis) {
     _bddPacket = packet;
     _configs = configs;
-    _forwardingAnalysis = forwardingAnalysis;
     _dstIpSpaceToBDD = new IpSpaceToBDD(_bddPacket.getFactory(), _bddPacket.getDstIp());
 
     Map<String, Map<String, BDDAcl>> bddAcls = computeBDDAcls(_bddPacket, configs);
     _aclDenyBDDs = computeAclDenyBDDs(bddAcls);
     _aclPermitBDDs = computeAclPermitBDDs(bddAcls);
 
-    _arpTrueEdgeBDDs = computeArpTrueEdgeBDDs(forwardingAnalysis, _dstIpSpaceToBDD);
-    _neighborUnreachableBDDs = computeNeighborUnreachableBDDs(forwardingAnalysis, _dstIpSpaceToBDD);
-    _routableBDDs = computeRoutableBDDs(forwardingAnalysis, _dstIpSpaceToBDD);
+    if (forwardingAnalysis instanceof BDDForwardingAnalysis
+        && ((BDDForwardingAnalysis) forwardingAnalysis).getBDDPacket() == packet) {
+      // already computed over the same packet variables
+      BDDForwardingAnalysis bddForwardingAnalysis = (BDDForwardingAnalysis) forwardingAnalysis;
+      _arpTrueEdgeBDDs = bddForwardingAnalysis.getArpTrueEdgeBDDs();
+      _neighborUnreachableBDDs = bddForwardingAnalysis.getNeighborUnreachableBDDs();
+      _nullRoutedBDDs = bddForwardingAnalysis.getNullRoutedBDDs();
+      _routableBDDs = bddForwardingAnalysis.getRoutableBDDs();
+    } else {
+      _arpTrueEdgeBDDs = computeArpTrueEdgeBDDs(forwardingAnalysis, _dstIpSpaceToBDD);
+      _neighborUnreachableBDDs =
+          computeNeighborUnreachableBDDs(forwardingAnalysis, _dstIpSpaceToBDD);
+      _nullRoutedBDDs = computeNullRoutedBDDs(forwardingAnalysis, _dstIpSpaceToBDD);
+      _routableBDDs = computeRoutableBDDs(forwardingAnalysis, _dstIpSpaceToBDD);
+    }
     _vrfAcceptBDDs = computeVrfAcceptBDDs(configs, _dstIpSpaceToBDD);
     _vrfNotAcceptBDDs = computeVrfNotAcceptBDDs(_vrfAcceptBDDs);
 
     _edges = computeEdges();
+    _rootSourceBDDs = Suppliers.memoize(this::computeRootSourceBDDs);
     _bddTransitions =
         toImmutableMap(
             _edges,
@@ -189,6 +217,18 @@ public final class BDDReachabilityAnalysisFactory {
         preStateEntry -> toImmutableMap(preStateEntry.getValue(), Entry::getKey, Entry::getValue));
   }
 
+  private static Map<String, Map<String, BDD>> computeNullRoutedBDDs(
+      ForwardingAnalysis forwardingAnalysis, IpSpaceToBDD ipSpaceToBDD) {
+    return toImmutableMap(
+        forwardingAnalysis.getNullRoutedIps(),
+        Entry::getKey,
+        nodeEntry ->
+            toImmutableMap(
+                nodeEntry.getValue(),
+                Entry::getKey,
+                vrfEntry -> vrfEntry.getValue().accept(ipSpaceToBDD)));
+  }
+
   private static Map<String, Map<String, BDD>> computeRoutableBDDs(
       ForwardingAnalysis forwardingAnalysis, IpSpaceToBDD ipSpaceToBDD) {
     return toImmutableMap(
@@ -456,8 +496,7 @@ public final class BDDReachabilityAnalysisFactory {
   }
 
   private Stream<Edge> generateRules_PreOutEdge_PreOutEdgePostNat() {
-    return _forwardingAnalysis
-        .getArpTrueEdge()
+    return _arpTrueEdgeBDDs
         .keySet()
         .stream()
         .map(
@@ -496,8 +535,7 @@ public final class BDDReachabilityAnalysisFactory {
   }
 
   private Stream<Edge> generateRules_PreOutEdgePostNat_NodeDropAclOut() {
-    return _forwardingAnalysis
-        .getArpTrueEdge()
+    return _arpTrueEdgeBDDs
         .keySet()
         .stream()
         .flatMap(
@@ -522,8 +560,7 @@ public final class BDDReachabilityAnalysisFactory {
   }
 
   private Stream<Edge> generateRules_PreOutEdgePostNat_PreInInterface() {
-    return _forwardingAnalysis
-        .getArpTrueEdge()
+    return _arpTrueEdgeBDDs
         .keySet()
         .stream()
         .map(
@@ -549,8 +586,7 @@ public final class BDDReachabilityAnalysisFactory {
   }
 
   private Stream<Edge> generateRules_PreOutVrf_NodeDropNullRoute() {
-    return _forwardingAnalysis
-        .getNullRoutedIps()
+    return _nullRoutedBDDs
         .entrySet()
         .stream()
         .flatMap(
@@ -563,7 +599,7 @@ public final class BDDReachabilityAnalysisFactory {
                         vrfEntry -> {
                           String node = nodeEntry.getKey();
                           String vrf = vrfEntry.getKey();
-                          BDD nullRoutedBDD = vrfEntry.getValue().accept(_dstIpSpaceToBDD);
+                          BDD nullRoutedBDD = vrfEntry.getValue();
                           return new Edge(
                               new PreOutVrf(node, vrf), new NodeDropNullRoute(node), nullRoutedBDD);
                         }));
@@ -656,27 +692,68 @@ public final class BDDReachabilityAnalysisFactory {
     };
   }
 
+  /** The packet over whose variables the edges of the graph are encoded */
+  public BDDPacket getBDDPacket() {
+    return _bddPacket;
+  }
+
   public BDDReachabilityAnalysis bddReachabilityAnalysis(IpSpaceAssignment srcIpSpaceAssignment) {
     return bddReachabilityAnalysis(srcIpSpaceAssignment, UniverseIpSpace.INSTANCE);
   }
 
   public BDDReachabilityAnalysis bddReachabilityAnalysis(
       IpSpaceAssignment srcIpSpaceAssignment, IpSpace dstIpSpace) {
+    IpSpaceToBDD dstIpSpaceToBDD = new IpSpaceToBDD(_bddPacket.getFactory(), _bddPacket.getDstIp());
+    return bddReachabilityAnalysis(srcIpSpaceAssignment, dstIpSpace.accept(dstIpSpaceToBDD));
+  }
+
+  /**
+   * Create a {@link BDDReachabilityAnalysis} of the packets in {@code headerSpace} sent from the
+   * locations of {@code srcIpSpaceAssignment} with their assigned source IPs.
+   */
+  public BDDReachabilityAnalysis bddReachabilityAnalysis(
+      IpSpaceAssignment srcIpSpaceAssignment, BDD headerSpace) {
     Map<StateExpr, BDD> roots = new HashMap<>();
     IpSpaceToBDD srcIpSpaceToBDD = new IpSpaceToBDD(_bddPacket.getFactory(), _bddPacket.getSrcIp());
-    IpSpaceToBDD dstIpSpaceToBDD = new IpSpaceToBDD(_bddPacket.getFactory(), _bddPacket.getDstIp());
-    BDD dstIpSpaceBDD = dstIpSpace.accept(dstIpSpaceToBDD);
 
     for (IpSpaceAssignment.Entry entry : srcIpSpaceAssignment.getEntries()) {
       BDD srcIpSpaceBDD = entry.getIpSpace().accept(srcIpSpaceToBDD);
-      BDD headerspaceBDD = srcIpSpaceBDD.and(dstIpSpaceBDD);
+      BDD headerspaceBDD = srcIpSpaceBDD.and(headerSpace);
       for (Location loc : entry.getLocations()) {
         StateExpr root = loc.accept(getLocationToStateExpr());
         roots.put(root, headerspaceBDD);
       }
     }
 
-    return new BDDReachabilityAnalysis(_bddPacket, roots, _edges);
+    return new BDDReachabilityAnalysis(_bddPacket, roots, _edges, _rootSourceBDDs);
+  }
+
+  private Map<StateExpr, BDD> computeRootSourceBDDs() {
+    List<StateExpr> roots =
+        _configs
+            .values()
+            .stream()
+            .flatMap(
+                c ->
+                    Stream.<StateExpr>concat(
+                        c.getVrfs()
+                            .keySet()
+                            .stream()
+                            .map(vrf -> new OriginateVrf(c.getHostname(), vrf)),
+                        c.getInterfaces()
+                            .keySet()
+                            .stream()
+                            .map(iface -> new OriginateInterfaceLink(c.getHostname(), iface))))
+            .collect(ImmutableList.toImmutableList());
+    if (roots.size() <= 1) {
+      // nothing to distinguish
+      return CommonUtil.toImmutableMap(roots, root -> root, root -> _bddPacket.getFactory().one());
+    }
+    int bitsRequired = LongMath.log2(roots.size(), RoundingMode.CEILING);
+    BDDInteger var = _bddPacket.allocateBDDInteger(SOURCE_VAR_NAME, bitsRequired, false);
+    ImmutableMap.Builder<StateExpr, BDD> rootSourceBDDs = ImmutableMap.builder();
+    CommonUtil.forEachWithIndex(roots, (idx, root) -> rootSourceBDDs.put(root, var.value(idx)));
+    return rootSourceBDDs.build();
   }
 
   private String ifaceVrf(String node, String iface) {
@@ -414,6 +414,12 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     }
   }
 
+  private static final String ARG_ANALYSIS_THREADS = "analysisthreads";
+
+  private static final String ARG_BDD_REACHABILITY = "bddreachability";
+
+  private static final String ARG_CACHE_HEAP_PERCENT = "cacheheappercent";
+
   public static final String ARG_CHECK_BGP_REACHABILITY = "checkbgpsessionreachability";
 
   public static final String ARG_COORDINATOR_HOST = "coordinatorhost";
@@ -454,8 +460,12 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
   private static final String ARG_JOBS = "jobs";
 
+  private static final String ARG_LAZY_CONFIGURATIONS = "lazyconfigurations";
+
   private static final String ARG_LOG_TEE = "logtee";
 
+  private static final String ARG_MAX_CONCURRENT_TASKS = "maxconcurrenttasks";
+
   private static final String ARG_MAX_PARSER_CONTEXT_LINES = "maxparsercontextlines";
 
   private static final String ARG_MAX_PARSER_CONTEXT_TOKENS = "maxparsercontexttokens";
@@ -468,6 +478,16 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
   public static final String ARG_PARENT_PID = "parentpid";
 
+  private static final String ARG_PARSE_CACHE_DIR = "parsecachedir";
+
+  private static final String ARG_PARSE_CHUNK_LINES = "parsechunklines";
+
+  public static final String ARG_PARSER_DFA_CACHE = "parserdfacache";
+
+  public static final String ARG_PARSER_WARMUP_DIR = "parserwarmupdir";
+
+  private static final String ARG_PIPELINE_CONFIGURATIONS = "pipelineconfigs";
+
   private static final String ARG_PRINT_PARSE_TREES = "ppt";
 
   private static final String ARG_PRINT_PARSE_TREE_LINE_NUMS = "printparsetreelinenums";
@@ -476,6 +496,8 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
   public static final String ARG_RUN_MODE = "runmode";
 
+  private static final String ARG_SEGMENTED_STORAGE = "segmentedstorage";
+
   private static final String ARG_SEQUENTIAL = "sequential";
 
   private static final String ARG_SERIALIZE_TO_TEXT = "stext";
@@ -488,6 +510,8 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
   public static final String ARG_SERVICE_PORT = "serviceport";
 
+  private static final String ARG_STREAM_EXTRACTION = "streamextraction";
+
   private static final String ARG_TRACING_AGENT_HOST = "tracingagenthost";
 
   private static final String ARG_TRACING_AGENT_PORT = "tracingagentport";
@@ -524,6 +548,8 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
   private static final String ARGNAME_STRINGS = "string..";
 
+  public static final int DEFAULT_CACHE_HEAP_PERCENT = 50;
+
   private static final String EXECUTABLE_NAME = "batfish";
 
   private static final String CAN_EXECUTE = "canexecute";
@@ -605,6 +631,11 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     return _config.getString(BfConsts.ARG_ANALYSIS_NAME);
   }
 
+  /** The maximum number of questions of an analysis answered concurrently */
+  public int getAnalysisThreads() {
+    return _config.getInt(ARG_ANALYSIS_THREADS);
+  }
+
   public boolean getAnalyze() {
     return _config.getBoolean(BfConsts.COMMAND_ANALYZE);
   }
@@ -621,6 +652,16 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     return _baseTestrigSettings;
   }
 
+  /** Whether to answer standard reachability questions with BDDs when they can be */
+  public boolean getBddReachability() {
+    return _config.getBoolean(ARG_BDD_REACHABILITY);
+  }
+
+  /** Percentage of the maximum heap that the worker's snapshot caches may use */
+  public int getCacheHeapPercent() {
+    return _config.getInt(ARG_CACHE_HEAP_PERCENT);
+  }
+
   public boolean getCompileEnvironment() {
     return _config.getBoolean(BfConsts.COMMAND_COMPILE_DIFF_ENVIRONMENT);
   }
@@ -759,6 +800,10 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     return _config.getString(BfConsts.ARG_LOG_LEVEL);
   }
 
+  public boolean getLazyConfigurations() {
+    return _config.getBoolean(ARG_LAZY_CONFIGURATIONS);
+  }
+
   public boolean getLogTee() {
     return _config.getBoolean(ARG_LOG_TEE);
   }
@@ -767,6 +812,52 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     return _config.getInt(ARG_PARENT_PID);
   }
 
+  /**
+   * Directory of the per-network caches of parsing and conversion results, or {@code null} if
+   * results are not cached
+   */
+  @Nullable
+  public Path getParseCacheDir() {
+    return nullablePath(_config.getString(ARG_PARSE_CACHE_DIR));
+  }
+
+  /**
+   * Approximate number of lines of the chunks in which large Cisco and flat Juniper configuration
+   * files are split at top-level stanza boundaries and parsed in parallel, or 0 to parse each file
+   * as a whole
+   */
+  public int getParseChunkLines() {
+    return _config.getInt(ARG_PARSE_CHUNK_LINES);
+  }
+
+  /**
+   * File of the lexer and parser DFAs saved by the warmup run mode and loaded at startup, or {@code
+   * null} if they are not saved
+   */
+  @Nullable
+  public Path getParserDfaCache() {
+    return nullablePath(_config.getString(ARG_PARSER_DFA_CACHE));
+  }
+
+  /** Directory of the configuration files parsed by the warmup run mode */
+  @Nullable
+  public Path getParserWarmupDir() {
+    return nullablePath(_config.getString(ARG_PARSER_WARMUP_DIR));
+  }
+
+  /**
+   * Whether to hand off each configuration to the next processing step as soon as it is parsed or
+   * deserialized, instead of holding all configurations in memory between steps
+   */
+  public boolean getPipelineConfigurations() {
+    return _config.getBoolean(ARG_PIPELINE_CONFIGURATIONS);
+  }
+
+  /** Maximum number of tasks a worker runs at the same time */
+  public int getMaxConcurrentTasks() {
+    return _config.getInt(ARG_MAX_CONCURRENT_TASKS);
+  }
+
   @Override
   public int getMaxParserContextLines() {
     return _config.getInt(ARG_MAX_PARSER_CONTEXT_LINES);
@@ -833,6 +924,10 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     return RunMode.valueOf(_config.getString(ARG_RUN_MODE).toUpperCase());
   }
 
+  public boolean getSegmentedStorage() {
+    return _config.getBoolean(ARG_SEGMENTED_STORAGE);
+  }
+
   public boolean getSequential() {
     return _config.getBoolean(ARG_SEQUENTIAL);
   }
@@ -902,6 +997,14 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     return Paths.get(_config.getString(BfConsts.ARG_STORAGE_BASE));
   }
 
+  /**
+   * Whether to extract Cisco configurations while parsing, discarding the parse tree of each
+   * top-level stanza once it is extracted instead of keeping the parse tree of the whole file
+   */
+  public boolean getStreamExtraction() {
+    return _config.getBoolean(ARG_STREAM_EXTRACTION);
+  }
+
   public boolean getSynthesizeJsonTopology() {
     return _config.getBoolean(BfConsts.ARG_SYNTHESIZE_JSON_TOPOLOGY);
   }
@@ -980,12 +1083,15 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
   private void initConfigDefaults() {
     setDefaultProperty(BfConsts.ARG_ANALYSIS_NAME, null);
+    setDefaultProperty(ARG_ANALYSIS_THREADS, 1);
     setDefaultProperty(BfConsts.ARG_BDP_DETAIL, false);
     setDefaultProperty(BfConsts.ARG_BDP_MAX_OSCILLATION_RECOVERY_ATTEMPTS, 0);
     setDefaultProperty(BfConsts.ARG_BDP_MAX_RECORDED_ITERATIONS, 5);
     setDefaultProperty(BfConsts.ARG_BDP_PRINT_ALL_ITERATIONS, false);
     setDefaultProperty(BfConsts.ARG_BDP_PRINT_OSCILLATING_ITERATIONS, false);
     setDefaultProperty(BfConsts.ARG_BDP_RECORD_ALL_ITERATIONS, false);
+    setDefaultProperty(ARG_BDD_REACHABILITY, false);
+    setDefaultProperty(ARG_CACHE_HEAP_PERCENT, DEFAULT_CACHE_HEAP_PERCENT);
     setDefaultProperty(CAN_EXECUTE, true);
     setDefaultProperty(BfConsts.ARG_CONTAINER, null);
     setDefaultProperty(ARG_COORDINATOR_REGISTER, false);
@@ -1018,8 +1124,10 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     setDefaultProperty(ARG_IGNORE_UNSUPPORTED, true);
     setDefaultProperty(ARG_IGNORE_UNKNOWN, true);
     setDefaultProperty(ARG_JOBS, Integer.MAX_VALUE);
+    setDefaultProperty(ARG_LAZY_CONFIGURATIONS, false);
     setDefaultProperty(ARG_LOG_TEE, false);
     setDefaultProperty(BfConsts.ARG_LOG_LEVEL, "debug");
+    setDefaultProperty(ARG_MAX_CONCURRENT_TASKS, 1);
     setDefaultProperty(ARG_MAX_PARSER_CONTEXT_LINES, 10);
     setDefaultProperty(ARG_MAX_PARSER_CONTEXT_TOKENS, 10);
     setDefaultProperty(ARG_MAX_PARSE_TREE_PRINT_LENGTH, 0);
@@ -1030,12 +1138,18 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     setDefaultProperty(BfConsts.ARG_PEDANTIC_SUPPRESS, false);
     setDefaultProperty(BfConsts.ARG_PRETTY_PRINT_ANSWER, false);
     setDefaultProperty(ARG_PARENT_PID, -1);
+    setDefaultProperty(ARG_PARSE_CACHE_DIR, null);
+    setDefaultProperty(ARG_PARSE_CHUNK_LINES, 0);
+    setDefaultProperty(ARG_PARSER_DFA_CACHE, null);
+    setDefaultProperty(ARG_PARSER_WARMUP_DIR, null);
+    setDefaultProperty(ARG_PIPELINE_CONFIGURATIONS, false);
     setDefaultProperty(ARG_PRINT_PARSE_TREES, false);
     setDefaultProperty(ARG_PRINT_PARSE_TREE_LINE_NUMS, false);
     setDefaultProperty(ARG_PRINT_SYMMETRIC_EDGES, false);
     setDefaultProperty(BfConsts.ARG_QUESTION_NAME, null);
     setDefaultProperty(BfConsts.ARG_RED_FLAG_SUPPRESS, false);
     setDefaultProperty(ARG_RUN_MODE, RunMode.WORKER.toString());
+    setDefaultProperty(ARG_SEGMENTED_STORAGE, false);
     setDefaultProperty(ARG_SEQUENTIAL, false);
     setDefaultProperty(ARG_SERIALIZE_TO_TEXT, false);
     setDefaultProperty(ARG_SERVICE_BIND_HOST, Ip.ZERO.toString());
@@ -1049,6 +1163,7 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     setDefaultProperty(BfConsts.ARG_SSL_TRUSTSTORE_FILE, null);
     setDefaultProperty(BfConsts.ARG_SSL_TRUSTSTORE_PASSWORD, null);
     setDefaultProperty(BfConsts.ARG_STORAGE_BASE, null);
+    setDefaultProperty(ARG_STREAM_EXTRACTION, false);
     setDefaultProperty(BfConsts.ARG_SYNTHESIZE_JSON_TOPOLOGY, false);
     setDefaultProperty(BfConsts.ARG_TASK_PLUGIN, null);
     setDefaultProperty(ARG_THROW_ON_LEXER_ERROR, true);
@@ -1077,6 +1192,11 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
     addOption(BfConsts.ARG_ANALYSIS_NAME, "name of analysis", ARGNAME_NAME);
 
+    addOption(
+        ARG_ANALYSIS_THREADS,
+        "number of questions of an analysis answered concurrently",
+        ARGNAME_NUMBER);
+
     addBooleanOption(
         BfConsts.ARG_BDP_DETAIL,
         "Set to true to print/record detailed protocol-specific information about routes in each"
@@ -1109,6 +1229,15 @@ public final class Settings extends BaseSettings implements GrammarSettings {
         "Set to true to record all iterations, including during oscillation. Ignores max recorded "
             + "iterations value.");
 
+    addBooleanOption(
+        ARG_BDD_REACHABILITY,
+        "whether to answer standard reachability questions with BDDs when they can be");
+
+    addOption(
+        ARG_CACHE_HEAP_PERCENT,
+        "percentage of the maximum heap to use for caching snapshot configurations and data planes",
+        ARGNAME_NUMBER);
+
     addBooleanOption(
         ARG_CHECK_BGP_REACHABILITY,
         "whether to check BGP session reachability during data plane computation");
@@ -1212,8 +1341,16 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
     addBooleanOption(ARG_HISTOGRAM, "build histogram of unimplemented features");
 
+    addBooleanOption(
+        ARG_LAZY_CONFIGURATIONS, "only deserialize the configurations of nodes that are accessed");
+
     addBooleanOption(ARG_LOG_TEE, "print output to both logfile and standard out");
 
+    addOption(
+        ARG_MAX_CONCURRENT_TASKS,
+        "maximum number of tasks a worker service runs concurrently",
+        ARGNAME_NUMBER);
+
     addOption(
         ARG_MAX_PARSER_CONTEXT_LINES,
         "max number of surrounding lines to print on parser error",
@@ -1238,6 +1375,32 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
     addOption(ARG_PARENT_PID, "name of parent PID", ARGNAME_NUMBER);
 
+    addOption(
+        ARG_PARSE_CACHE_DIR,
+        "directory in which to cache parsing and conversion results of unchanged files",
+        ARGNAME_PATH);
+
+    addOption(
+        ARG_PARSE_CHUNK_LINES,
+        "split large cisco and flat juniper configuration files into chunks of about this many "
+            + "lines at top-level stanza boundaries and parse them in parallel (0 to disable)",
+        ARGNAME_NUMBER);
+
+    addOption(
+        ARG_PARSER_DFA_CACHE,
+        "file of lexer and parser dfas saved by warmup runmode and loaded at startup",
+        ARGNAME_PATH);
+
+    addOption(
+        ARG_PARSER_WARMUP_DIR,
+        "directory of representative configuration files parsed by warmup runmode",
+        ARGNAME_PATH);
+
+    addBooleanOption(
+        ARG_PIPELINE_CONFIGURATIONS,
+        "parse and serialize, and deserialize and convert, configurations in a pipeline with "
+            + "bounded in-flight work instead of holding all of them in memory at once");
+
     addBooleanOption(BfConsts.ARG_PEDANTIC_SUPPRESS, "suppresses pedantic warnings");
 
     addBooleanOption(BfConsts.ARG_PRETTY_PRINT_ANSWER, "pretty print answer");
@@ -1259,6 +1422,10 @@ public final class Settings extends BaseSettings implements GrammarSettings {
         "mode to run in",
         Arrays.stream(RunMode.values()).map(Object::toString).collect(Collectors.joining("|")));
 
+    addBooleanOption(
+        ARG_SEGMENTED_STORAGE,
+        "store configurations in a single indexed file whose nodes can be loaded individually");
+
     addBooleanOption(ARG_SEQUENTIAL, "force sequential operation");
 
     addBooleanOption(ARG_SERIALIZE_TO_TEXT, "serialize to text");
@@ -1283,6 +1450,11 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
     addOption(BfConsts.ARG_STORAGE_BASE, "path to the storage base", ARGNAME_PATH);
 
+    addBooleanOption(
+        ARG_STREAM_EXTRACTION,
+        "extract cisco configurations while parsing instead of from the parse tree of the whole "
+            + "file");
+
     addBooleanOption(
         BfConsts.ARG_SYNTHESIZE_JSON_TOPOLOGY,
         "synthesize json topology from interface ip subnet information");
@@ -1365,6 +1537,7 @@ public final class Settings extends BaseSettings implements GrammarSettings {
 
     // REGULAR OPTIONS
     getStringOptionValue(BfConsts.ARG_ANALYSIS_NAME);
+    getIntOptionValue(ARG_ANALYSIS_THREADS);
     getBooleanOptionValue(BfConsts.COMMAND_ANALYZE);
     getBooleanOptionValue(BfConsts.COMMAND_ANSWER);
     getBooleanOptionValue(BfConsts.ARG_BDP_RECORD_ALL_ITERATIONS);
@@ -1373,6 +1546,8 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     getIntOptionValue(BfConsts.ARG_BDP_MAX_RECORDED_ITERATIONS);
     getBooleanOptionValue(BfConsts.ARG_BDP_PRINT_ALL_ITERATIONS);
     getBooleanOptionValue(BfConsts.ARG_BDP_PRINT_OSCILLATING_ITERATIONS);
+    getBooleanOptionValue(ARG_BDD_REACHABILITY);
+    getIntOptionValue(ARG_CACHE_HEAP_PERCENT);
     getBooleanOptionValue(ARG_CHECK_BGP_REACHABILITY);
     getBooleanOptionValue(BfConsts.COMMAND_COMPILE_DIFF_ENVIRONMENT);
     getStringOptionValue(BfConsts.ARG_CONTAINER);
@@ -1403,13 +1578,20 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     getBooleanOptionValue(ARG_IGNORE_UNSUPPORTED);
     getBooleanOptionValue(BfConsts.COMMAND_INIT_INFO);
     getIntOptionValue(ARG_JOBS);
+    getBooleanOptionValue(ARG_LAZY_CONFIGURATIONS);
     getBooleanOptionValue(ARG_LOG_TEE);
+    getIntOptionValue(ARG_MAX_CONCURRENT_TASKS);
     getIntOptionValue(ARG_MAX_PARSER_CONTEXT_LINES);
     getIntOptionValue(ARG_MAX_PARSER_CONTEXT_TOKENS);
     getIntOptionValue(ARG_MAX_PARSE_TREE_PRINT_LENGTH);
     getIntOptionValue(ARG_MAX_RUNTIME_MS);
     getStringOptionValue(BfConsts.ARG_OUTPUT_ENV);
     getIntOptionValue(ARG_PARENT_PID);
+    getPathOptionValue(ARG_PARSE_CACHE_DIR);
+    getIntOptionValue(ARG_PARSE_CHUNK_LINES);
+    getPathOptionValue(ARG_PARSER_DFA_CACHE);
+    getPathOptionValue(ARG_PARSER_WARMUP_DIR);
+    getBooleanOptionValue(ARG_PIPELINE_CONFIGURATIONS);
     getBooleanOptionValue(BfConsts.ARG_PEDANTIC_SUPPRESS);
     getBooleanOptionValue(BfConsts.ARG_PRETTY_PRINT_ANSWER);
     getBooleanOptionValue(ARG_PRINT_PARSE_TREES);
@@ -1419,6 +1601,7 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     getBooleanOptionValue(BfConsts.ARG_RED_FLAG_SUPPRESS);
     getBooleanOptionValue(BfConsts.COMMAND_REPORT);
     getStringOptionValue(ARG_RUN_MODE);
+    getBooleanOptionValue(ARG_SEGMENTED_STORAGE);
     getBooleanOptionValue(ARG_SEQUENTIAL);
     getBooleanOptionValue(BfConsts.COMMAND_PARSE_VENDOR_INDEPENDENT);
     getBooleanOptionValue(ARG_SERIALIZE_TO_TEXT);
@@ -1436,6 +1619,7 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     getPathOptionValue(BfConsts.ARG_SSL_TRUSTSTORE_FILE);
     getStringOptionValue(BfConsts.ARG_SSL_TRUSTSTORE_PASSWORD);
     getPathOptionValue(BfConsts.ARG_STORAGE_BASE);
+    getBooleanOptionValue(ARG_STREAM_EXTRACTION);
     getBooleanOptionValue(BfConsts.ARG_SYNTHESIZE_JSON_TOPOLOGY);
     getStringOptionValue(BfConsts.ARG_TASK_PLUGIN);
     getStringOptionValue(BfConsts.ARG_TESTRIG);
@@ -1456,6 +1640,18 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     _activeTestrigSettings = activeTestrigSettings;
   }
 
+  public void setAnalysisName(String analysisName) {
+    _config.setProperty(BfConsts.ARG_ANALYSIS_NAME, analysisName);
+  }
+
+  public void setAnalysisThreads(int analysisThreads) {
+    _config.setProperty(ARG_ANALYSIS_THREADS, analysisThreads);
+  }
+
+  public void setBddReachability(boolean bddReachability) {
+    _config.setProperty(ARG_BDD_REACHABILITY, bddReachability);
+  }
+
   public void setCanExecute(boolean canExecute) {
     _config.setProperty(CAN_EXECUTE, canExecute);
   }
@@ -1529,6 +1725,38 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     _config.setProperty(ARG_MAX_RUNTIME_MS, runtimeMs);
   }
 
+  public void setParseCacheDir(@Nullable Path parseCacheDir) {
+    if (parseCacheDir != null) {
+      _config.setProperty(ARG_PARSE_CACHE_DIR, parseCacheDir.toString());
+    } else {
+      _config.clearProperty(ARG_PARSE_CACHE_DIR);
+    }
+  }
+
+  public void setParseChunkLines(int parseChunkLines) {
+    _config.setProperty(ARG_PARSE_CHUNK_LINES, parseChunkLines);
+  }
+
+  public void setParserDfaCache(@Nullable Path parserDfaCache) {
+    if (parserDfaCache != null) {
+      _config.setProperty(ARG_PARSER_DFA_CACHE, parserDfaCache.toString());
+    } else {
+      _config.clearProperty(ARG_PARSER_DFA_CACHE);
+    }
+  }
+
+  public void setParserWarmupDir(@Nullable Path parserWarmupDir) {
+    if (parserWarmupDir != null) {
+      _config.setProperty(ARG_PARSER_WARMUP_DIR, parserWarmupDir.toString());
+    } else {
+      _config.clearProperty(ARG_PARSER_WARMUP_DIR);
+    }
+  }
+
+  public void setPipelineConfigurations(boolean pipelineConfigurations) {
+    _config.setProperty(ARG_PIPELINE_CONFIGURATIONS, pipelineConfigurations);
+  }
+
   @Override
   public void setPrintParseTree(boolean printParseTree) {
     _config.setProperty(ARG_PRINT_PARSE_TREES, printParseTree);
@@ -1587,6 +1815,10 @@ public final class Settings extends BaseSettings implements GrammarSettings {
     _config.setProperty(BfConsts.ARG_STORAGE_BASE, storageBase.toString());
   }
 
+  public void setStreamExtraction(boolean streamExtraction) {
+    _config.setProperty(ARG_STREAM_EXTRACTION, streamExtraction);
+  }
+
   public void setTaskId(String taskId) {
     _config.setProperty(TASK_ID, taskId);
   }
@@ -0,0 +1,214 @@
+package org.batfish.dataplane;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Sets;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.Flow;
+import org.batfish.datamodel.HeaderSpace;
+import org.batfish.datamodel.Interface;
+import org.batfish.datamodel.IpAccessList;
+import org.batfish.datamodel.IpAccessListLine;
+import org.batfish.datamodel.SourceNat;
+import org.batfish.datamodel.acl.MatchHeaderSpace;
+import org.batfish.datamodel.acl.TypeMatchExprsCollector;
+
+/**
+ * Partitions flows into classes of flows that a traceroute cannot tell apart. Forwarding only
+ * inspects the ingress location and destination IP of a flow, and ACLs only inspect the header
+ * fields matched by some {@link HeaderSpace} of some line, so flows agreeing on all of those have
+ * the same traces, up to the flows transformed by source NAT.
+ */
+final class FlowClassifier {
+
+  /** The fields of a {@link Flow} that ACLs may inspect besides its destination IP */
+  private enum Field {
+    DSCP,
+    DST_PORT,
+    FRAGMENT_OFFSET,
+    ICMP_CODE,
+    ICMP_TYPE,
+    IP_PROTOCOL,
+    PACKET_LENGTH,
+    SRC_IP,
+    SRC_PORT,
+    STATE,
+    TCP_FLAGS
+  }
+
+  private static final String CLASS_TAG = "FLOW_CLASS";
+
+  /**
+   * The fields inspected by the ACLs of each node. Computed once per {@link Configuration}, which
+   * is not modified once traced, and dropped with it.
+   */
+  private static final LoadingCache<Configuration, Set<Field>> INSPECTED_FIELDS =
+      CacheBuilder.newBuilder()
+          .weakKeys()
+          .build(CacheLoader.from(FlowClassifier::computeInspectedFields));
+
+  private final Set<Field> _inspectedFields;
+
+  /** Creates a classifier for flows traced through the network of {@code configurations} */
+  FlowClassifier(Collection<Configuration> configurations) {
+    _inspectedFields = EnumSet.noneOf(Field.class);
+    for (Configuration c : configurations) {
+      _inspectedFields.addAll(INSPECTED_FIELDS.getUnchecked(c));
+    }
+  }
+
+  /** Returns the fields inspected by the ACLs of {@code c} */
+  private static Set<Field> computeInspectedFields(Configuration c) {
+    Set<Field> inspectedFields = EnumSet.noneOf(Field.class);
+    TypeMatchExprsCollector<MatchHeaderSpace> collector =
+        new TypeMatchExprsCollector<>(MatchHeaderSpace.class);
+    c.getIpAccessLists()
+        .values()
+        .forEach(acl -> addInspectedFields(acl, collector, inspectedFields));
+    for (Interface iface : c.getInterfaces().values()) {
+      addInspectedFields(iface.getIncomingFilter(), collector, inspectedFields);
+      addInspectedFields(iface.getOutgoingFilter(), collector, inspectedFields);
+      if (iface.getSourceNats() != null) {
+        for (SourceNat sourceNat : iface.getSourceNats()) {
+          addInspectedFields(sourceNat.getAcl(), collector, inspectedFields);
+        }
+      }
+    }
+    return Sets.immutableEnumSet(inspectedFields);
+  }
+
+  private static void addInspectedFields(
+      @Nullable IpAccessList acl,
+      TypeMatchExprsCollector<MatchHeaderSpace> collector,
+      Set<Field> inspectedFields) {
+    if (acl == null) {
+      return;
+    }
+    for (IpAccessListLine line : acl.getLines()) {
+      for (MatchHeaderSpace matchHeaderSpace : collector.visit(line.getMatchCondition())) {
+        addInspectedFields(matchHeaderSpace.getHeaderspace(), inspectedFields);
+      }
+    }
+  }
+
+  /** Adds the fields inspected by {@link HeaderSpace#matches} for {@code headerSpace} */
+  private static void addInspectedFields(HeaderSpace headerSpace, Set<Field> inspectedFields) {
+    if (!headerSpace.getDscps().isEmpty() || !headerSpace.getNotDscps().isEmpty()) {
+      inspectedFields.add(Field.DSCP);
+    }
+    if (!headerSpace.getDstPorts().isEmpty() || !headerSpace.getNotDstPorts().isEmpty()) {
+      inspectedFields.add(Field.DST_PORT);
+    }
+    if (!headerSpace.getDstProtocols().isEmpty() || !headerSpace.getNotDstProtocols().isEmpty()) {
+      inspectedFields.add(Field.IP_PROTOCOL);
+      inspectedFields.add(Field.DST_PORT);
+    }
+    // negated ICMP codes and types are matched against the fragment offset
+    if (!headerSpace.getFragmentOffsets().isEmpty()
+        || !headerSpace.getNotFragmentOffsets().isEmpty()
+        || !headerSpace.getNotIcmpCodes().isEmpty()
+        || !headerSpace.getNotIcmpTypes().isEmpty()) {
+      inspectedFields.add(Field.FRAGMENT_OFFSET);
+    }
+    if (!headerSpace.getIcmpCodes().isEmpty()) {
+      inspectedFields.add(Field.ICMP_CODE);
+    }
+    if (!headerSpace.getIcmpTypes().isEmpty()) {
+      inspectedFields.add(Field.ICMP_TYPE);
+    }
+    if (!headerSpace.getIpProtocols().isEmpty() || !headerSpace.getNotIpProtocols().isEmpty()) {
+      inspectedFields.add(Field.IP_PROTOCOL);
+    }
+    if (!headerSpace.getPacketLengths().isEmpty() || !headerSpace.getNotPacketLengths().isEmpty()) {
+      inspectedFields.add(Field.PACKET_LENGTH);
+    }
+    if (headerSpace.getSrcIps() != null
+        || headerSpace.getNotSrcIps() != null
+        || headerSpace.getSrcOrDstIps() != null) {
+      inspectedFields.add(Field.SRC_IP);
+    }
+    if (!headerSpace.getSrcOrDstPorts().isEmpty()) {
+      inspectedFields.add(Field.SRC_PORT);
+      inspectedFields.add(Field.DST_PORT);
+    }
+    if (!headerSpace.getSrcOrDstProtocols().isEmpty()) {
+      inspectedFields.add(Field.IP_PROTOCOL);
+      inspectedFields.add(Field.SRC_PORT);
+      inspectedFields.add(Field.DST_PORT);
+    }
+    if (!headerSpace.getSrcPorts().isEmpty() || !headerSpace.getNotSrcPorts().isEmpty()) {
+      inspectedFields.add(Field.SRC_PORT);
+    }
+    if (!headerSpace.getSrcProtocols().isEmpty() || !headerSpace.getNotSrcProtocols().isEmpty()) {
+      inspectedFields.add(Field.IP_PROTOCOL);
+      inspectedFields.add(Field.SRC_PORT);
+    }
+    if (!headerSpace.getStates().isEmpty()) {
+      inspectedFields.add(Field.STATE);
+    }
+    if (!headerSpace.getTcpFlags().isEmpty()) {
+      inspectedFields.add(Field.TCP_FLAGS);
+    }
+  }
+
+  /**
+   * Returns the class of {@code flow}: a flow keeping only the fields of {@code flow} that are
+   * inspected by a traceroute, and defaults for the others.
+   */
+  Flow classOf(Flow flow) {
+    Flow.Builder builder =
+        new Flow.Builder()
+            .setTag(CLASS_TAG)
+            .setIngressNode(flow.getIngressNode())
+            .setIngressInterface(flow.getIngressInterface())
+            .setIngressVrf(flow.getIngressVrf())
+            .setDstIp(flow.getDstIp());
+    if (_inspectedFields.contains(Field.DSCP)) {
+      builder.setDscp(flow.getDscp());
+    }
+    if (_inspectedFields.contains(Field.DST_PORT)) {
+      builder.setDstPort(flow.getDstPort());
+    }
+    if (_inspectedFields.contains(Field.FRAGMENT_OFFSET)) {
+      builder.setFragmentOffset(flow.getFragmentOffset());
+    }
+    if (_inspectedFields.contains(Field.ICMP_CODE)) {
+      builder.setIcmpCode(flow.getIcmpCode());
+    }
+    if (_inspectedFields.contains(Field.ICMP_TYPE)) {
+      builder.setIcmpType(flow.getIcmpType());
+    }
+    if (_inspectedFields.contains(Field.IP_PROTOCOL)) {
+      builder.setIpProtocol(flow.getIpProtocol());
+    }
+    if (_inspectedFields.contains(Field.PACKET_LENGTH)) {
+      builder.setPacketLength(flow.getPacketLength());
+    }
+    if (_inspectedFields.contains(Field.SRC_IP)) {
+      builder.setSrcIp(flow.getSrcIp());
+    }
+    if (_inspectedFields.contains(Field.SRC_PORT)) {
+      builder.setSrcPort(flow.getSrcPort());
+    }
+    if (_inspectedFields.contains(Field.STATE)) {
+      builder.setState(flow.getState());
+    }
+    if (_inspectedFields.contains(Field.TCP_FLAGS)) {
+      builder
+          .setTcpFlagsAck(flow.getTcpFlagsAck())
+          .setTcpFlagsCwr(flow.getTcpFlagsCwr())
+          .setTcpFlagsEce(flow.getTcpFlagsEce())
+          .setTcpFlagsFin(flow.getTcpFlagsFin())
+          .setTcpFlagsPsh(flow.getTcpFlagsPsh())
+          .setTcpFlagsRst(flow.getTcpFlagsRst())
+          .setTcpFlagsSyn(flow.getTcpFlagsSyn())
+          .setTcpFlagsUrg(flow.getTcpFlagsUrg());
+    }
+    return builder.build();
+  }
+}
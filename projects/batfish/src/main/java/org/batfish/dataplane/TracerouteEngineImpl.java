@@ -8,6 +8,7 @@ import org.batfish.datamodel.DataPlane;
 import org.batfish.datamodel.Fib;
 import org.batfish.datamodel.Flow;
 import org.batfish.datamodel.FlowTrace;
+import org.batfish.datamodel.FlowTraceDag;
 
 public class TracerouteEngineImpl implements ITracerouteEngine {
   private static ITracerouteEngine _instance = new TracerouteEngineImpl();
@@ -18,6 +19,26 @@ public class TracerouteEngineImpl implements ITracerouteEngine {
 
   private TracerouteEngineImpl() {}
 
+  @Override
+  public SortedMap<Flow, Set<FlowTrace>> computeAcceptedFlowTraces(
+      DataPlane dataPlane,
+      Set<Flow> flows,
+      Map<String, Map<String, Fib>> fibs,
+      boolean ignoreAcls) {
+    return new TracerouteEngineImplContext(dataPlane, flows, fibs, ignoreAcls)
+        .computeAcceptedFlowTraces();
+  }
+
+  @Override
+  public SortedMap<Flow, FlowTraceDag> computeFlowTraceDags(
+      DataPlane dataPlane,
+      Set<Flow> flows,
+      Map<String, Map<String, Fib>> fibs,
+      boolean ignoreAcls) {
+    return new TracerouteEngineImplContext(dataPlane, flows, fibs, ignoreAcls)
+        .computeFlowTraceDags();
+  }
+
   @Override
   public SortedMap<Flow, Set<FlowTrace>> processFlows(
       DataPlane dataPlane,
@@ -26,4 +47,13 @@ public class TracerouteEngineImpl implements ITracerouteEngine {
       boolean ignoreAcls) {
     return new TracerouteEngineImplContext(dataPlane, flows, fibs, ignoreAcls).processFlows();
   }
+
+  @Override
+  public SortedMap<Flow, Set<FlowTrace>> processFlowBatch(
+      DataPlane dataPlane,
+      Set<Flow> flows,
+      Map<String, Map<String, Fib>> fibs,
+      boolean ignoreAcls) {
+    return new TracerouteEngineImplContext(dataPlane, flows, fibs, ignoreAcls).processFlowBatch();
+  }
 }
@@ -6,13 +6,13 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import java.util.ArrayList;
-import java.util.Collections;
+import com.google.common.collect.ImmutableSortedSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.Set;
 import java.util.SortedMap;
@@ -20,9 +20,11 @@ import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.batfish.common.BatfishException;
+import org.batfish.common.Pair;
 import org.batfish.common.util.CommonUtil;
 import org.batfish.datamodel.AbstractRoute;
 import org.batfish.datamodel.Configuration;
@@ -33,62 +35,415 @@ import org.batfish.datamodel.FilterResult;
 import org.batfish.datamodel.Flow;
 import org.batfish.datamodel.FlowDisposition;
 import org.batfish.datamodel.FlowTrace;
+import org.batfish.datamodel.FlowTraceDag;
 import org.batfish.datamodel.FlowTraceHop;
 import org.batfish.datamodel.ForwardingAnalysis;
 import org.batfish.datamodel.Interface;
 import org.batfish.datamodel.Ip;
 import org.batfish.datamodel.IpAccessList;
-import org.batfish.datamodel.IpSpace;
 import org.batfish.datamodel.LineAction;
 import org.batfish.datamodel.Route;
 import org.batfish.datamodel.SourceNat;
+import org.batfish.datamodel.acl.CompiledIpAccessLists;
 import org.batfish.datamodel.collections.NodeInterfacePair;
 
 class TracerouteEngineImplContext {
-  private static class TransmissionContext {
-
-    private final Map<String, IpAccessList> _aclDefinitions;
-    private final String _currentNodeName;
-    private String _filterOutNotes;
-    private final Set<FlowTrace> _flowTraces;
-    private final List<FlowTraceHop> _hopsSoFar;
-    private final NavigableMap<String, IpSpace> _namedIpSpaces;
+  /**
+   * Builds the {@link FlowTraceDag} of a flow. What follows the reception of the flow through an
+   * edge depends only on the edge, the transformed flow, and which of the edges traversed after it
+   * were already traversed before it, where traces loop. It is computed once, and shared by every
+   * trace reaching the edge with the same transformed flow after traversing the same of those
+   * edges.
+   */
+  private final class FlowTraceDagBuilder {
+
     private final Flow _originalFlow;
-    private final SortedSet<String> _routesForThisNextHopInterface;
-    private final Flow _transformedFlow;
 
-    private TransmissionContext(
-        Map<String, IpAccessList> aclDefinitions,
-        String currentNodeName,
-        Set<FlowTrace> flowTraces,
-        List<FlowTraceHop> hopsSoFar,
-        NavigableMap<String, IpSpace> namedIpSpaces,
-        Flow originalFlow,
-        SortedSet<String> routesForThisNextHopInterface,
-        Flow transformedFlow) {
-      _aclDefinitions = aclDefinitions;
-      _currentNodeName = currentNodeName;
-      _flowTraces = flowTraces;
-      _hopsSoFar = hopsSoFar;
-      _namedIpSpaces = namedIpSpaces;
+    /** The last reception computed through each edge with each transformed flow */
+    private final Map<Pair<Edge, Flow>, Reception> _receptions;
+
+    /** The edges traversed by the traces being built, up to the current hop */
+    private final Set<Edge> _visitedEdges;
+
+    private FlowTraceDagBuilder(Flow originalFlow) {
       _originalFlow = originalFlow;
-      _routesForThisNextHopInterface = routesForThisNextHopInterface;
-      _transformedFlow = transformedFlow;
+      _receptions = new HashMap<>();
+      _visitedEdges = new HashSet<>();
     }
 
-    private TransmissionContext branch() {
-      TransmissionContext transmissionContext =
-          new TransmissionContext(
-              _aclDefinitions,
-              _currentNodeName,
-              _flowTraces,
-              new ArrayList<>(_hopsSoFar),
-              _namedIpSpaces,
+    private FlowTraceDag build() {
+      String ingressNodeName = _originalFlow.getIngressNode();
+      String ingressInterfaceName = _originalFlow.getIngressInterface();
+      Set<Edge> traversedEdges = new HashSet<>();
+      Set<Edge> loopEdges = new HashSet<>();
+      if (ingressInterfaceName != null) {
+        Edge edge =
+            new Edge(
+                TRACEROUTE_INGRESS_NODE_NAME,
+                TRACEROUTE_INGRESS_NODE_INTERFACE_NAME,
+                ingressNodeName,
+                ingressInterfaceName);
+        return new FlowTraceDag(
+            ImmutableList.of(
+                receive(edge, new TreeSet<>(), null, _originalFlow, traversedEdges, loopEdges)));
+      }
+      return new FlowTraceDag(
+          forward(
+              ingressNodeName,
+              firstNonNull(_originalFlow.getIngressVrf(), Configuration.DEFAULT_VRF_NAME),
+              null,
               _originalFlow,
-              _routesForThisNextHopInterface,
-              _transformedFlow);
-      transmissionContext._filterOutNotes = _filterOutNotes;
-      return transmissionContext;
+              traversedEdges,
+              loopEdges));
+    }
+
+    /**
+     * Returns the nodes following the arrival of {@code transformedFlow} at {@code currentNodeName}
+     * in {@code vrfName}, through {@code srcInterface} or originating there if it is null. The
+     * edges traversed meanwhile are added to {@code traversedEdges}, and those at which traces loop
+     * to {@code loopEdges}.
+     */
+    private List<FlowTraceDag.Node> forward(
+        String currentNodeName,
+        String vrfName,
+        @Nullable String srcInterface,
+        Flow transformedFlow,
+        Set<Edge> traversedEdges,
+        Set<Edge> loopEdges) {
+      Ip dstIp = transformedFlow.getDstIp();
+      Configuration currentConfiguration = _configurations.get(currentNodeName);
+      if (currentConfiguration == null) {
+        throw new BatfishException(
+            String.format(
+                "Node %s is not in the network, cannot perform traceroute", currentNodeName));
+      }
+      if (accepts(currentNodeName, vrfName, dstIp)) {
+        return ImmutableList.of(end(FlowDisposition.ACCEPTED));
+      }
+      Fib fib = _fibs.get(currentNodeName).get(vrfName);
+      Map<String, Map<Ip, Set<AbstractRoute>>> nextHopInterfacesWithRoutes =
+          fib.getNextHopInterfaces(dstIp);
+      if (nextHopInterfacesWithRoutes.isEmpty()) {
+        return ImmutableList.of(end(FlowDisposition.NO_ROUTE));
+      }
+      Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> nextHopInterfacesByRoute =
+          fib.getNextHopInterfacesByRoute(dstIp);
+      CompiledIpAccessLists compiledAcls = getCompiledAcls(currentNodeName);
+      ImmutableList.Builder<FlowTraceDag.Node> nodes = ImmutableList.builder();
+      for (String nextHopInterfaceName : nextHopInterfacesWithRoutes.keySet()) {
+        SortedSet<String> routes = new TreeSet<>();
+        Ip finalNextHopIp =
+            collectRoutesForNextHopInterface(
+                nextHopInterfacesByRoute, nextHopInterfaceName, routes);
+        NodeInterfacePair nextHopInterface =
+            new NodeInterfacePair(currentNodeName, nextHopInterfaceName);
+        Edge exitEdge =
+            new Edge(
+                nextHopInterface,
+                new NodeInterfacePair(Configuration.NODE_NONE_NAME, Interface.NULL_INTERFACE_NAME));
+        if (nextHopInterfaceName.equals(Interface.NULL_INTERFACE_NAME)) {
+          nodes.add(
+              FlowTraceDag.Node.hop(
+                  new FlowTraceHop(
+                      exitEdge, routes, null, null, hopFlow(_originalFlow, transformedFlow)),
+                  ImmutableList.of(end(FlowDisposition.NULL_ROUTED))));
+          continue;
+        }
+        Interface outgoingInterface =
+            currentConfiguration.getInterfaces().get(nextHopInterfaceName);
+        Flow newTransformedFlow =
+            applySourceNat(
+                transformedFlow, srcInterface, compiledAcls, outgoingInterface.getSourceNats());
+        Flow hopFlow = hopFlow(_originalFlow, newTransformedFlow);
+        IpAccessList outFilter = outgoingInterface.getOutgoingFilter();
+        String filterOut = null;
+        if (!_ignoreAcls && outFilter != null) {
+          FilterResult result = compiledAcls.filter(outFilter, newTransformedFlow, srcInterface);
+          String filterNotes = filterNotes(outFilter, result);
+          if (result.getAction() == LineAction.DENY) {
+            nodes.add(
+                FlowTraceDag.Node.hop(
+                    new FlowTraceHop(exitEdge, routes, null, null, hopFlow),
+                    ImmutableList.of(
+                        FlowTraceDag.Node.end(
+                            FlowDisposition.DENIED_OUT,
+                            FlowDisposition.DENIED_OUT + filterNotes))));
+            continue;
+          }
+          filterOut = filterNotes;
+        }
+        SortedSet<Edge> edges = _dataPlane.getTopology().getInterfaceEdges().get(nextHopInterface);
+        Ip arpIp = finalNextHopIp != null ? finalNextHopIp : dstIp;
+        if (edges == null || isNeighborUnreachable(currentNodeName, nextHopInterfaceName, arpIp)) {
+          nodes.add(
+              FlowTraceDag.Node.hop(
+                  new FlowTraceHop(exitEdge, routes, filterOut, null, hopFlow),
+                  ImmutableList.of(end(FlowDisposition.NEIGHBOR_UNREACHABLE_OR_EXITS_NETWORK))));
+          continue;
+        }
+        for (Edge edge : edges) {
+          if (edge.getNode1().equals(currentNodeName) && repliesToArp(edge, arpIp)) {
+            nodes.add(
+                receive(edge, routes, filterOut, newTransformedFlow, traversedEdges, loopEdges));
+          }
+        }
+      }
+      return nodes.build();
+    }
+
+    /**
+     * Returns the node of the hop through {@code edge} of {@code transformedFlow}, reusing what
+     * follows a previous reception through {@code edge} of the same flow if it is still valid.
+     */
+    private FlowTraceDag.Node receive(
+        Edge edge,
+        SortedSet<String> routes,
+        @Nullable String filterOut,
+        Flow transformedFlow,
+        Set<Edge> traversedEdges,
+        Set<Edge> loopEdges) {
+      Flow hopFlow = hopFlow(_originalFlow, transformedFlow);
+      if (_visitedEdges.contains(edge)) {
+        loopEdges.add(edge);
+        return FlowTraceDag.Node.hop(
+            new FlowTraceHop(edge, routes, filterOut, null, hopFlow),
+            ImmutableList.of(end(FlowDisposition.LOOP)));
+      }
+      Pair<Edge, Flow> key = new Pair<>(edge, transformedFlow);
+      Reception reception = _receptions.get(key);
+      if (reception == null || !reception.isValidAfter(_visitedEdges)) {
+        reception = computeReception(edge, transformedFlow);
+        _receptions.put(key, reception);
+      }
+      traversedEdges.addAll(reception._traversedEdges);
+      loopEdges.addAll(reception._loopEdges);
+      return FlowTraceDag.Node.hop(
+          new FlowTraceHop(edge, routes, filterOut, reception._filterIn, hopFlow),
+          reception._successors);
+    }
+
+    private Reception computeReception(Edge edge, Flow transformedFlow) {
+      Set<Edge> traversedEdges = new HashSet<>();
+      Set<Edge> loopEdges = new HashSet<>();
+      traversedEdges.add(edge);
+      String nextNodeName = edge.getNode2();
+      Interface nextInterface =
+          _configurations.get(nextNodeName).getInterfaces().get(edge.getInt2());
+      IpAccessList inFilter = nextInterface.getIncomingFilter();
+      String filterIn = null;
+      if (!_ignoreAcls && inFilter != null) {
+        FilterResult result = getCompiledAcls(nextNodeName).filter(inFilter, transformedFlow, null);
+        String filterNotes = filterNotes(inFilter, result);
+        if (result.getAction() == LineAction.DENY) {
+          return new Reception(
+              null,
+              ImmutableList.of(
+                  FlowTraceDag.Node.end(
+                      FlowDisposition.DENIED_IN, FlowDisposition.DENIED_IN + filterNotes)),
+              traversedEdges,
+              loopEdges);
+        }
+        filterIn = filterNotes;
+      }
+      _visitedEdges.add(edge);
+      List<FlowTraceDag.Node> successors =
+          forward(
+              nextNodeName,
+              nextInterface.getVrfName(),
+              edge.getInt2(),
+              transformedFlow,
+              traversedEdges,
+              loopEdges);
+      _visitedEdges.remove(edge);
+      // loops back to edges traversed after the reception do not depend on the edges before it
+      loopEdges.removeAll(traversedEdges);
+      return new Reception(filterIn, successors, traversedEdges, loopEdges);
+    }
+  }
+
+  /** What follows the reception of a flow through an edge, when computed */
+  private static final class Reception {
+
+    @Nullable private final String _filterIn;
+
+    /** Edges traversed before the reception, at which traces following it loop */
+    private final Set<Edge> _loopEdges;
+
+    private final List<FlowTraceDag.Node> _successors;
+
+    /** The edge of the reception, and the edges traversed after it */
+    private final Set<Edge> _traversedEdges;
+
+    private Reception(
+        @Nullable String filterIn,
+        List<FlowTraceDag.Node> successors,
+        Set<Edge> traversedEdges,
+        Set<Edge> loopEdges) {
+      _filterIn = filterIn;
+      _successors = successors;
+      _traversedEdges = traversedEdges;
+      _loopEdges = loopEdges;
+    }
+
+    /** Returns whether the same follows a reception after traversing {@code visitedEdges} */
+    private boolean isValidAfter(Set<Edge> visitedEdges) {
+      return visitedEdges.containsAll(_loopEdges)
+          && _traversedEdges.stream().noneMatch(visitedEdges::contains);
+    }
+  }
+
+  /**
+   * Walks the network once for flows that only differ in their destination IP, keeping together the
+   * destinations that take the same path, and collects the accepted traces of each destination. The
+   * hops of those traces only have their edges.
+   */
+  private final class AcceptedTraceWalker {
+
+    private final Map<Ip, Set<FlowTrace>> _acceptedTraces;
+
+    /** The edges traversed to the current hop, in order */
+    private final LinkedHashSet<Edge> _path;
+
+    private AcceptedTraceWalker(Set<Ip> dstIps) {
+      _acceptedTraces = new HashMap<>();
+      dstIps.forEach(dstIp -> _acceptedTraces.put(dstIp, new TreeSet<>()));
+      _path = new LinkedHashSet<>();
+    }
+
+    /**
+     * Returns the accepted traces of each of {@code flowsByDstIp}, which only differ in their
+     * destination IP
+     */
+    private Map<Ip, Set<FlowTrace>> walk(Map<Ip, Flow> flowsByDstIp) {
+      Flow flow = flowsByDstIp.values().iterator().next();
+      String ingressNodeName = flow.getIngressNode();
+      String ingressInterfaceName = flow.getIngressInterface();
+      if (ingressInterfaceName != null) {
+        receive(
+            new Edge(
+                TRACEROUTE_INGRESS_NODE_NAME,
+                TRACEROUTE_INGRESS_NODE_INTERFACE_NAME,
+                ingressNodeName,
+                ingressInterfaceName),
+            flowsByDstIp);
+      } else {
+        forward(
+            ingressNodeName,
+            firstNonNull(flow.getIngressVrf(), Configuration.DEFAULT_VRF_NAME),
+            null,
+            flowsByDstIp);
+      }
+      return _acceptedTraces;
+    }
+
+    /**
+     * Forwards each of {@code transformedFlows}, keyed by destination IP, from {@code
+     * currentNodeName} in {@code vrfName}, where it arrived through {@code srcInterface} or
+     * originated if it is null
+     */
+    private void forward(
+        String currentNodeName,
+        String vrfName,
+        @Nullable String srcInterface,
+        Map<Ip, Flow> transformedFlows) {
+      Configuration currentConfiguration = _configurations.get(currentNodeName);
+      if (currentConfiguration == null) {
+        throw new BatfishException(
+            String.format(
+                "Node %s is not in the network, cannot perform traceroute", currentNodeName));
+      }
+      Fib fib = _fibs.get(currentNodeName).get(vrfName);
+      CompiledIpAccessLists compiledAcls = getCompiledAcls(currentNodeName);
+      Map<Edge, Map<Ip, Flow>> flowsByEdge = new HashMap<>();
+      for (Entry<Ip, Flow> entry : transformedFlows.entrySet()) {
+        Ip dstIp = entry.getKey();
+        Flow transformedFlow = entry.getValue();
+        if (accepts(currentNodeName, vrfName, dstIp)) {
+          _acceptedTraces.get(dstIp).add(acceptedTrace());
+          continue;
+        }
+        Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> nextHopInterfacesByRoute =
+            fib.getNextHopInterfacesByRoute(dstIp);
+        for (String nextHopInterfaceName : fib.getNextHopInterfaces(dstIp).keySet()) {
+          if (nextHopInterfaceName.equals(Interface.NULL_INTERFACE_NAME)) {
+            continue;
+          }
+          Ip finalNextHopIp =
+              collectRoutesForNextHopInterface(
+                  nextHopInterfacesByRoute, nextHopInterfaceName, null);
+          Interface outgoingInterface =
+              currentConfiguration.getInterfaces().get(nextHopInterfaceName);
+          Flow newTransformedFlow =
+              applySourceNat(
+                  transformedFlow, srcInterface, compiledAcls, outgoingInterface.getSourceNats());
+          IpAccessList outFilter = outgoingInterface.getOutgoingFilter();
+          if (!_ignoreAcls
+              && outFilter != null
+              && compiledAcls.filter(outFilter, newTransformedFlow, srcInterface).getAction()
+                  == LineAction.DENY) {
+            continue;
+          }
+          SortedSet<Edge> edges =
+              _dataPlane
+                  .getTopology()
+                  .getInterfaceEdges()
+                  .get(new NodeInterfacePair(currentNodeName, nextHopInterfaceName));
+          Ip arpIp = finalNextHopIp != null ? finalNextHopIp : dstIp;
+          if (edges == null
+              || isNeighborUnreachable(currentNodeName, nextHopInterfaceName, arpIp)) {
+            continue;
+          }
+          for (Edge edge : edges) {
+            if (edge.getNode1().equals(currentNodeName) && repliesToArp(edge, arpIp)) {
+              flowsByEdge
+                  .computeIfAbsent(edge, e -> new HashMap<>())
+                  .put(dstIp, newTransformedFlow);
+            }
+          }
+        }
+      }
+      flowsByEdge.forEach(this::receive);
+    }
+
+    /** Receives {@code transformedFlows}, keyed by destination IP, through {@code edge} */
+    private void receive(Edge edge, Map<Ip, Flow> transformedFlows) {
+      if (_path.contains(edge)) {
+        // the flows loop
+        return;
+      }
+      String nextNodeName = edge.getNode2();
+      Interface nextInterface =
+          _configurations.get(nextNodeName).getInterfaces().get(edge.getInt2());
+      IpAccessList inFilter = nextInterface.getIncomingFilter();
+      Map<Ip, Flow> permittedFlows = transformedFlows;
+      if (!_ignoreAcls && inFilter != null) {
+        CompiledIpAccessLists compiledAcls = getCompiledAcls(nextNodeName);
+        permittedFlows =
+            transformedFlows
+                .entrySet()
+                .stream()
+                .filter(
+                    e ->
+                        compiledAcls.filter(inFilter, e.getValue(), null).getAction()
+                            != LineAction.DENY)
+                .collect(ImmutableMap.toImmutableMap(Entry::getKey, Entry::getValue));
+        if (permittedFlows.isEmpty()) {
+          return;
+        }
+      }
+      _path.add(edge);
+      forward(nextNodeName, nextInterface.getVrfName(), edge.getInt2(), permittedFlows);
+      _path.remove(edge);
+    }
+
+    private FlowTrace acceptedTrace() {
+      return new FlowTrace(
+          FlowDisposition.ACCEPTED,
+          _path
+              .stream()
+              .map(edge -> new FlowTraceHop(edge, ImmutableSortedSet.of(), null))
+              .collect(ImmutableList.toImmutableList()),
+          FlowDisposition.ACCEPTED.toString());
     }
   }
 
@@ -108,8 +463,7 @@ class TracerouteEngineImplContext {
   static Flow applySourceNat(
       Flow flow,
       @Nullable String srcInterface,
-      Map<String, IpAccessList> aclDefinitions,
-      Map<String, IpSpace> namedIpSpaces,
+      CompiledIpAccessLists compiledAcls,
       @Nullable List<SourceNat> sourceNats) {
     if (CommonUtil.isNullOrEmpty(sourceNats)) {
       return flow;
@@ -120,10 +474,7 @@ class TracerouteEngineImplContext {
             .filter(
                 sourceNat ->
                     sourceNat.getAcl() != null
-                        && sourceNat
-                                .getAcl()
-                                .filter(flow, srcInterface, aclDefinitions, namedIpSpaces)
-                                .getAction()
+                        && compiledAcls.filter(sourceNat.getAcl(), flow, srcInterface).getAction()
                             != LineAction.DENY)
             .findFirst();
     if (!matchingSourceNat.isPresent()) {
@@ -168,6 +519,7 @@ class TracerouteEngineImplContext {
   }
 
   private final Map<String, Configuration> _configurations;
+
   private final DataPlane _dataPlane;
   private final Map<String, Map<String, Fib>> _fibs;
   private final Set<Flow> _flows;
@@ -189,204 +541,145 @@ class TracerouteEngineImplContext {
     _forwardingAnalysis = _dataPlane.getForwardingAnalysis();
   }
 
-  private void collectFlowTraces(
-      String currentNodeName,
-      String currentVrfName,
-      Set<Edge> visitedEdges,
-      List<FlowTraceHop> hopsSoFar,
-      Set<FlowTrace> flowTraces,
-      Flow originalFlow,
-      Flow transformedFlow) {
-    Ip dstIp = transformedFlow.getDstIp();
-    Configuration currentConfiguration = _configurations.get(currentNodeName);
-    if (currentConfiguration == null) {
-      throw new BatfishException(
-          String.format(
-              "Node %s is not in the network, cannot perform traceroute", currentNodeName));
+  private static void checkFlow(Flow flow) {
+    if (flow.getIngressNode() == null) {
+      throw new BatfishException("Cannot construct flow trace since ingressNode is not specified");
     }
-    if (_dataPlane
-        .getIpVrfOwners()
-        .getOrDefault(dstIp, ImmutableMap.of())
-        .getOrDefault(currentNodeName, ImmutableSet.of())
-        .contains(currentVrfName)) {
-      FlowTrace trace =
-          new FlowTrace(FlowDisposition.ACCEPTED, hopsSoFar, FlowDisposition.ACCEPTED.toString());
-      flowTraces.add(trace);
-    } else {
-      Map<String, IpAccessList> aclDefinitions = currentConfiguration.getIpAccessLists();
-      NavigableMap<String, IpSpace> namedIpSpaces = currentConfiguration.getIpSpaces();
-      String vrfName;
-      String srcInterface;
-      if (hopsSoFar.isEmpty()) {
-        vrfName = transformedFlow.getIngressVrf();
-        srcInterface = null;
-      } else {
-        FlowTraceHop lastHop = hopsSoFar.get(hopsSoFar.size() - 1);
-        srcInterface = lastHop.getEdge().getInt2();
-        vrfName = currentConfiguration.getInterfaces().get(srcInterface).getVrf().getName();
-      }
-      Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> nextHopInterfacesByRoute =
-          _fibs.get(currentNodeName).get(vrfName).getNextHopInterfacesByRoute(dstIp);
-      Map<String, Map<Ip, Set<AbstractRoute>>> nextHopInterfacesWithRoutes =
-          _fibs.get(currentNodeName).get(vrfName).getNextHopInterfaces(dstIp);
-      if (!nextHopInterfacesWithRoutes.isEmpty()) {
-        for (String nextHopInterfaceName : nextHopInterfacesWithRoutes.keySet()) {
-          // SortedSet<String> routesForThisNextHopInterface = new
-          // TreeSet<>(
-          // nextHopInterfacesWithRoutes.get(nextHopInterfaceName)
-          // .stream().map(ar -> ar.toString())
-          // .collect(Collectors.toSet()));
-          SortedSet<String> routesForThisNextHopInterface = new TreeSet<>();
-          Ip finalNextHopIp = null;
-          for (Entry<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> e :
-              nextHopInterfacesByRoute.entrySet()) {
-            AbstractRoute routeCandidate = e.getKey();
-            Map<String, Map<Ip, Set<AbstractRoute>>> routeCandidateNextHopInterfaces = e.getValue();
-            if (routeCandidateNextHopInterfaces.containsKey(nextHopInterfaceName)) {
-              Ip nextHopIp = routeCandidate.getNextHopIp();
-              if (!nextHopIp.equals(Route.UNSET_ROUTE_NEXT_HOP_IP)) {
-                Set<Ip> finalNextHopIps =
-                    routeCandidateNextHopInterfaces.get(nextHopInterfaceName).keySet();
-                if (finalNextHopIps.size() > 1) {
-                  throw new BatfishException(
-                      "Can not currently handle multiple final next hop ips across multiple "
-                          + "routes leading to one next hop interface");
-                }
-                Ip newFinalNextHopIp = finalNextHopIps.iterator().next();
-                if (finalNextHopIp != null && !newFinalNextHopIp.equals(finalNextHopIp)) {
-                  throw new BatfishException(
-                      "Can not currently handle multiple final next hop ips for same next hop "
-                          + "interface");
-                }
-                finalNextHopIp = newFinalNextHopIp;
-              }
-              routesForThisNextHopInterface.add(routeCandidate + "_fnhip:" + finalNextHopIp);
-            }
+    if (flow.getDstIp() == null) {
+      throw new BatfishException("Cannot construct flow trace since dstIp is not specified");
+    }
+  }
+
+  private static FlowTraceDag.Node end(FlowDisposition disposition) {
+    return FlowTraceDag.Node.end(disposition, disposition.toString());
+  }
+
+  /**
+   * Returns the compiled ACLs of the node, which are kept with its configuration and so reused by
+   * later traceroutes of the same snapshot
+   */
+  private CompiledIpAccessLists getCompiledAcls(String nodeName) {
+    return _configurations.get(nodeName).getCompiledIpAccessLists();
+  }
+
+  /**
+   * Adds to {@code routes}, unless it is null, each route of {@code nextHopInterfacesByRoute}
+   * forwarding through {@code nextHopInterfaceName}, returning the final next hop IP through that
+   * interface, or null if none of those routes has a next hop IP.
+   */
+  @Nullable
+  private static Ip collectRoutesForNextHopInterface(
+      Map<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> nextHopInterfacesByRoute,
+      String nextHopInterfaceName,
+      @Nullable SortedSet<String> routes) {
+    Ip finalNextHopIp = null;
+    for (Entry<AbstractRoute, Map<String, Map<Ip, Set<AbstractRoute>>>> e :
+        nextHopInterfacesByRoute.entrySet()) {
+      AbstractRoute routeCandidate = e.getKey();
+      Map<String, Map<Ip, Set<AbstractRoute>>> routeCandidateNextHopInterfaces = e.getValue();
+      if (routeCandidateNextHopInterfaces.containsKey(nextHopInterfaceName)) {
+        Ip nextHopIp = routeCandidate.getNextHopIp();
+        if (!nextHopIp.equals(Route.UNSET_ROUTE_NEXT_HOP_IP)) {
+          Set<Ip> finalNextHopIps =
+              routeCandidateNextHopInterfaces.get(nextHopInterfaceName).keySet();
+          if (finalNextHopIps.size() > 1) {
+            throw new BatfishException(
+                "Can not currently handle multiple final next hop ips across multiple "
+                    + "routes leading to one next hop interface");
           }
-          NodeInterfacePair nextHopInterface =
-              new NodeInterfacePair(currentNodeName, nextHopInterfaceName);
-          if (nextHopInterfaceName.equals(Interface.NULL_INTERFACE_NAME)) {
-            List<FlowTraceHop> newHops = new ArrayList<>(hopsSoFar);
-            Edge newEdge =
-                new Edge(
-                    nextHopInterface,
-                    new NodeInterfacePair(
-                        Configuration.NODE_NONE_NAME, Interface.NULL_INTERFACE_NAME));
-            FlowTraceHop newHop =
-                new FlowTraceHop(
-                    newEdge,
-                    routesForThisNextHopInterface,
-                    null,
-                    null,
-                    hopFlow(originalFlow, transformedFlow));
-            newHops.add(newHop);
-            FlowTrace nullRouteTrace =
-                new FlowTrace(
-                    FlowDisposition.NULL_ROUTED, newHops, FlowDisposition.NULL_ROUTED.toString());
-            flowTraces.add(nullRouteTrace);
-          } else {
-            Interface outgoingInterface =
-                _configurations
-                    .get(nextHopInterface.getHostname())
-                    .getInterfaces()
-                    .get(nextHopInterface.getInterface());
-
-            // Apply any relevant source NAT rules.
-            Flow newTransformedFlow =
-                applySourceNat(
-                    transformedFlow,
-                    srcInterface,
-                    aclDefinitions,
-                    namedIpSpaces,
-                    outgoingInterface.getSourceNats());
-
-            SortedSet<Edge> edges =
-                _dataPlane.getTopology().getInterfaceEdges().get(nextHopInterface);
-            TransmissionContext transmissionContext =
-                new TransmissionContext(
-                    aclDefinitions,
-                    currentNodeName,
-                    flowTraces,
-                    hopsSoFar,
-                    namedIpSpaces,
-                    originalFlow,
-                    routesForThisNextHopInterface,
-                    newTransformedFlow);
-            if (edges != null) {
-              processCurrentNextHopInterfaceEdges(
-                  visitedEdges,
-                  srcInterface,
-                  dstIp,
-                  nextHopInterfaceName,
-                  finalNextHopIp,
-                  nextHopInterface,
-                  edges,
-                  transmissionContext);
-            } else {
-              /*
-               * Interface has no edges
-               */
-              /* Check if denied out. If not, make standard neighbor-unreachable trace. */
-              IpAccessList outFilter = outgoingInterface.getOutgoingFilter();
-              boolean denied = false;
-              if (!_ignoreAcls && outFilter != null) {
-                FlowDisposition disposition = FlowDisposition.DENIED_OUT;
-                denied =
-                    flowTraceFilterHelper(
-                        srcInterface,
-                        outFilter,
-                        disposition,
-                        nextHopInterface,
-                        transmissionContext);
-              }
-              if (!denied) {
-                Edge neighborUnreachbleEdge =
-                    new Edge(
-                        nextHopInterface,
-                        new NodeInterfacePair(
-                            Configuration.NODE_NONE_NAME, Interface.NULL_INTERFACE_NAME));
-                FlowTraceHop neighborUnreachableHop =
-                    new FlowTraceHop(
-                        neighborUnreachbleEdge,
-                        routesForThisNextHopInterface,
-                        null,
-                        null,
-                        hopFlow(originalFlow, newTransformedFlow));
-                neighborUnreachableHop.setFilterOut(transmissionContext._filterOutNotes);
-                hopsSoFar.add(neighborUnreachableHop);
-                FlowTrace trace =
-                    new FlowTrace(
-                        FlowDisposition.NEIGHBOR_UNREACHABLE_OR_EXITS_NETWORK,
-                        hopsSoFar,
-                        FlowDisposition.NEIGHBOR_UNREACHABLE_OR_EXITS_NETWORK.toString());
-                flowTraces.add(trace);
-              }
-            }
+          Ip newFinalNextHopIp = finalNextHopIps.iterator().next();
+          if (finalNextHopIp != null && !newFinalNextHopIp.equals(finalNextHopIp)) {
+            throw new BatfishException(
+                "Can not currently handle multiple final next hop ips for same next hop "
+                    + "interface");
           }
+          finalNextHopIp = newFinalNextHopIp;
+        }
+        if (routes != null) {
+          routes.add(routeCandidate + "_fnhip:" + finalNextHopIp);
         }
-      } else {
-        FlowTrace trace =
-            new FlowTrace(FlowDisposition.NO_ROUTE, hopsSoFar, FlowDisposition.NO_ROUTE.toString());
-        flowTraces.add(trace);
       }
     }
+    return finalNextHopIp;
   }
 
-  private boolean flowTraceFilterHelper(
-      @Nullable String srcInterface,
-      IpAccessList filter,
-      FlowDisposition disposition,
-      @Nullable NodeInterfacePair outInterface,
-      TransmissionContext transmissionContext) {
-    boolean out = disposition == FlowDisposition.DENIED_OUT;
-    FilterResult outResult =
-        filter.filter(
-            transmissionContext._transformedFlow,
-            srcInterface,
-            transmissionContext._aclDefinitions,
-            transmissionContext._namedIpSpaces);
-    String outFilterName = filter.getName();
-    Integer matchLine = outResult.getMatchLine();
+  /** Returns whether {@code vrfName} of {@code nodeName} accepts flows to {@code dstIp} */
+  private boolean accepts(String nodeName, String vrfName, Ip dstIp) {
+    return _dataPlane
+        .getIpVrfOwners()
+        .getOrDefault(dstIp, ImmutableMap.of())
+        .getOrDefault(nodeName, ImmutableSet.of())
+        .contains(vrfName);
+  }
+
+  /**
+   * Returns whether the receiving interface of {@code edge} would reply to an ARP request for
+   * {@code arpIp}
+   */
+  private boolean repliesToArp(Edge edge, Ip arpIp) {
+    return _forwardingAnalysis
+        .getArpReplies()
+        .get(edge.getNode2())
+        .get(edge.getInt2())
+        .containsIp(arpIp, _configurations.get(edge.getNode2()).getIpSpaces());
+  }
+
+  /**
+   * Returns whether no neighbor would reply to an ARP request for {@code arpIp} sent out {@code
+   * nextHopInterfaceName} of {@code nodeName}
+   */
+  private boolean isNeighborUnreachable(String nodeName, String nextHopInterfaceName, Ip arpIp) {
+    Configuration c = _configurations.get(nodeName);
+    return _forwardingAnalysis
+        .getNeighborUnreachable()
+        .get(nodeName)
+        .get(c.getInterfaces().get(nextHopInterfaceName).getVrfName())
+        .get(nextHopInterfaceName)
+        .containsIp(arpIp, c.getIpSpaces());
+  }
+
+  /** Performs a traceroute of each flow, returning its traces as a {@link FlowTraceDag} */
+  SortedMap<Flow, FlowTraceDag> computeFlowTraceDags() {
+    Map<Flow, FlowTraceDag> flowTraceDags = new ConcurrentHashMap<>();
+    _flows
+        .parallelStream()
+        .forEach(
+            flow -> {
+              checkFlow(flow);
+              flowTraceDags.put(flow, new FlowTraceDagBuilder(flow).build());
+            });
+    return new TreeMap<>(flowTraceDags);
+  }
+
+  /**
+   * Returns the accepted traces of each flow, walking the network once for all the flows that only
+   * differ in their destination IP
+   */
+  SortedMap<Flow, Set<FlowTrace>> computeAcceptedFlowTraces() {
+    _flows.forEach(TracerouteEngineImplContext::checkFlow);
+    Map<Flow, List<Flow>> flowsBySource =
+        _flows
+            .stream()
+            .collect(
+                Collectors.groupingBy(flow -> new Flow.Builder(flow).setDstIp(Ip.ZERO).build()));
+    Map<Flow, Set<FlowTrace>> acceptedTraces = new ConcurrentHashMap<>();
+    flowsBySource
+        .values()
+        .parallelStream()
+        .forEach(
+            flows -> {
+              Map<Ip, Flow> flowsByDstIp =
+                  flows.stream().collect(ImmutableMap.toImmutableMap(Flow::getDstIp, f -> f));
+              Map<Ip, Set<FlowTrace>> tracesByDstIp =
+                  new AcceptedTraceWalker(flowsByDstIp.keySet()).walk(flowsByDstIp);
+              flows.forEach(flow -> acceptedTraces.put(flow, tracesByDstIp.get(flow.getDstIp())));
+            });
+    return new TreeMap<>(acceptedTraces);
+  }
+
+  /** Returns the notes on the line of {@code filter} that gave {@code result} */
+  private static String filterNotes(IpAccessList filter, FilterResult result) {
+    Integer matchLine = result.getMatchLine();
     String lineDesc;
     if (matchLine != null) {
       lineDesc = filter.getLines().get(matchLine).getName();
@@ -396,36 +689,7 @@ class TracerouteEngineImplContext {
     } else {
       lineDesc = "no-match";
     }
-    boolean denied = outResult.getAction() == LineAction.DENY;
-    if (denied) {
-      String notes = disposition + "{" + outFilterName + "}{" + lineDesc + "}";
-      if (out) {
-        Edge deniedOutEdge =
-            new Edge(
-                outInterface,
-                new NodeInterfacePair(Configuration.NODE_NONE_NAME, Interface.NULL_INTERFACE_NAME));
-        FlowTraceHop deniedOutHop =
-            new FlowTraceHop(
-                deniedOutEdge,
-                transmissionContext._routesForThisNextHopInterface,
-                null,
-                null,
-                hopFlow(transmissionContext._originalFlow, transmissionContext._transformedFlow));
-        transmissionContext._hopsSoFar.add(deniedOutHop);
-      }
-      FlowTrace trace = new FlowTrace(disposition, transmissionContext._hopsSoFar, notes);
-      transmissionContext._flowTraces.add(trace);
-    } else {
-      String filterNotes = "{" + outFilterName + "}{" + lineDesc + "}";
-      if (out) {
-        transmissionContext._filterOutNotes = filterNotes;
-      } else {
-        FlowTraceHop hop =
-            transmissionContext._hopsSoFar.get(transmissionContext._hopsSoFar.size() - 1);
-        hop.setFilterIn(filterNotes);
-      }
-    }
-    return denied;
+    return "{" + filter.getName() + "}{" + lineDesc + "}";
   }
 
   @Nullable
@@ -437,212 +701,72 @@ class TracerouteEngineImplContext {
     }
   }
 
-  private FlowTrace neighborUnreachableTrace(
-      NodeInterfacePair srcInterface, TransmissionContext transmissionContext) {
-    Edge neighborUnreachbleEdge =
-        new Edge(
-            srcInterface,
-            new NodeInterfacePair(Configuration.NODE_NONE_NAME, Interface.NULL_INTERFACE_NAME));
-    FlowTraceHop neighborUnreachableHop =
-        new FlowTraceHop(
-            neighborUnreachbleEdge,
-            transmissionContext._routesForThisNextHopInterface,
-            null,
-            null,
-            hopFlow(transmissionContext._originalFlow, transmissionContext._transformedFlow));
-    neighborUnreachableHop.setFilterOut(transmissionContext._filterOutNotes);
-    List<FlowTraceHop> newHops =
-        ImmutableList.<FlowTraceHop>builder()
-            .addAll(transmissionContext._hopsSoFar)
-            .add(neighborUnreachableHop)
-            .build();
-    FlowTrace trace =
-        new FlowTrace(
-            FlowDisposition.NEIGHBOR_UNREACHABLE_OR_EXITS_NETWORK,
-            newHops,
-            FlowDisposition.NEIGHBOR_UNREACHABLE_OR_EXITS_NETWORK.toString());
-    return trace;
-  }
-
-  private void processCurrentNextHopInterfaceEdges(
-      Set<Edge> visitedEdges,
-      String srcInterface,
-      Ip dstIp,
-      String nextHopInterfaceName,
-      @Nullable Ip finalNextHopIp,
-      NodeInterfacePair nextHopInterface,
-      SortedSet<Edge> edges,
-      TransmissionContext transmissionContext) {
-    if (!processFlowTransmission(
-        srcInterface,
-        dstIp,
-        nextHopInterfaceName,
-        finalNextHopIp,
-        nextHopInterface,
-        transmissionContext)) {
-      return;
-    }
-    for (Edge edge : edges) {
-      if (!edge.getNode1().equals(transmissionContext._currentNodeName)) {
-        continue;
-      }
-      processFlowReception(
-          edge, transmissionContext, visitedEdges, finalNextHopIp != null ? finalNextHopIp : dstIp);
-    }
-  }
-
-  void processFlowReception(
-      Edge edge,
-      TransmissionContext oldTransmissionContext,
-      Set<Edge> visitedEdges,
-      @Nullable Ip arpIp) {
-    // do nothing if this neighbor would not have replied to ARP (excluding injection case)
-    if (arpIp != null
-        && !_forwardingAnalysis
-            .getArpReplies()
-            .get(edge.getNode2())
-            .get(edge.getInt2())
-            .containsIp(arpIp, _configurations.get(edge.getNode2()).getIpSpaces())) {
-      return;
-    }
-
-    // branch because other edges share the same oldTransmissionContext
-    TransmissionContext transmissionContext = oldTransmissionContext.branch();
-    Set<Edge> newVisitedEdges = new LinkedHashSet<>(visitedEdges);
-    FlowTraceHop newHop =
-        new FlowTraceHop(
-            edge,
-            transmissionContext._routesForThisNextHopInterface,
-            null,
-            null,
-            hopFlow(transmissionContext._originalFlow, transmissionContext._transformedFlow));
-    newHop.setFilterOut(transmissionContext._filterOutNotes);
-    newVisitedEdges.add(edge);
-    transmissionContext._hopsSoFar.add(newHop);
-    if (visitedEdges.contains(edge)) {
-      FlowTrace trace =
-          new FlowTrace(
-              FlowDisposition.LOOP,
-              transmissionContext._hopsSoFar,
-              FlowDisposition.LOOP.toString());
-      transmissionContext._flowTraces.add(trace);
-      return;
-    }
-    String nextNodeName = edge.getNode2();
-    // check input filter
-    Interface nextInterface = _configurations.get(nextNodeName).getInterfaces().get(edge.getInt2());
-    IpAccessList inFilter = nextInterface.getIncomingFilter();
-    if (!_ignoreAcls && inFilter != null) {
-      FlowDisposition disposition = FlowDisposition.DENIED_IN;
-      boolean denied =
-          flowTraceFilterHelper(null, inFilter, disposition, null, transmissionContext);
-      if (denied) {
-        return;
-      }
-    }
-    // recurse
-    collectFlowTraces(
-        nextNodeName,
-        nextInterface.getVrfName(),
-        newVisitedEdges,
-        transmissionContext._hopsSoFar,
-        transmissionContext._flowTraces,
-        transmissionContext._originalFlow,
-        transmissionContext._transformedFlow);
+  SortedMap<Flow, Set<FlowTrace>> processFlows() {
+    _flows.parallelStream().forEach(flow -> _flowTraces.put(flow, computeFlowTraces(flow)));
+    return new TreeMap<>(_flowTraces);
   }
 
-  SortedMap<Flow, Set<FlowTrace>> processFlows() {
-    _flows
+  /**
+   * Performs a traceroute of each flow, tracing only one flow of each class of flows agreeing on
+   * all the fields inspected along the way, and deriving the traces of the other flows of the class
+   * from its traces.
+   */
+  SortedMap<Flow, Set<FlowTrace>> processFlowBatch() {
+    _flows.forEach(TracerouteEngineImplContext::checkFlow);
+    FlowClassifier classifier = new FlowClassifier(_configurations.values());
+    Map<Flow, List<Flow>> flowsByClass =
+        _flows.parallelStream().collect(Collectors.groupingByConcurrent(classifier::classOf));
+    flowsByClass
+        .values()
         .parallelStream()
         .forEach(
-            flow -> {
-              Set<FlowTrace> currentFlowTraces = new TreeSet<>();
-              _flowTraces.put(flow, currentFlowTraces);
-              String ingressNodeName = flow.getIngressNode();
-              if (ingressNodeName == null) {
-                throw new BatfishException(
-                    "Cannot construct flow trace since ingressNode is not specified");
-              }
-              Ip dstIp = flow.getDstIp();
-              if (dstIp == null) {
-                throw new BatfishException(
-                    "Cannot construct flow trace since dstIp is not specified");
-              }
-              Set<Edge> visitedEdges = Collections.emptySet();
-              List<FlowTraceHop> hops = new ArrayList<>();
-              String ingressInterfaceName = flow.getIngressInterface();
-              if (ingressInterfaceName != null) {
-                Edge edge =
-                    new Edge(
-                        TRACEROUTE_INGRESS_NODE_NAME,
-                        TRACEROUTE_INGRESS_NODE_INTERFACE_NAME,
-                        ingressNodeName,
-                        ingressInterfaceName);
-                TransmissionContext transmissionContext =
-                    new TransmissionContext(
-                        _configurations.get(ingressNodeName).getIpAccessLists(),
-                        ingressNodeName,
-                        currentFlowTraces,
-                        hops,
-                        _configurations.get(ingressNodeName).getIpSpaces(),
-                        flow,
-                        new TreeSet<>(),
-                        flow);
-                processFlowReception(edge, transmissionContext, new TreeSet<>(), null);
-              } else {
-                collectFlowTraces(
-                    ingressNodeName,
-                    firstNonNull(flow.getIngressVrf(), Configuration.DEFAULT_VRF_NAME),
-                    visitedEdges,
-                    hops,
-                    currentFlowTraces,
-                    flow,
-                    flow);
+            members -> {
+              Flow representative = members.get(0);
+              Set<FlowTrace> representativeTraces = computeFlowTraces(representative);
+              _flowTraces.put(representative, representativeTraces);
+              for (Flow member : members.subList(1, members.size())) {
+                _flowTraces.put(member, retargetFlowTraces(representativeTraces, member));
               }
             });
     return new TreeMap<>(_flowTraces);
   }
 
-  private boolean processFlowTransmission(
-      String srcInterface,
-      Ip dstIp,
-      String nextHopInterfaceName,
-      Ip finalNextHopIp,
-      NodeInterfacePair nextHopInterface,
-      TransmissionContext transmissionContext) {
-    // check output filter
-    IpAccessList outFilter =
-        _configurations
-            .get(transmissionContext._currentNodeName)
-            .getInterfaces()
-            .get(nextHopInterfaceName)
-            .getOutgoingFilter();
-    if (!_ignoreAcls && outFilter != null) {
-      FlowDisposition disposition = FlowDisposition.DENIED_OUT;
-      boolean denied =
-          flowTraceFilterHelper(
-              srcInterface,
-              outFilter,
-              disposition,
-              new NodeInterfacePair(transmissionContext._currentNodeName, nextHopInterfaceName),
-              transmissionContext);
-      if (denied) {
-        return false;
-      }
-    }
-    Ip arpIp = finalNextHopIp != null ? finalNextHopIp : dstIp;
-    Configuration c = _configurations.get(transmissionContext._currentNodeName);
-    // halt processing and add neighbor-unreachable trace if no one would respond
-    if (_forwardingAnalysis
-        .getNeighborUnreachable()
-        .get(transmissionContext._currentNodeName)
-        .get(c.getInterfaces().get(nextHopInterfaceName).getVrfName())
-        .get(nextHopInterfaceName)
-        .containsIp(arpIp, c.getIpSpaces())) {
-      FlowTrace trace = neighborUnreachableTrace(nextHopInterface, transmissionContext);
-      transmissionContext._flowTraces.add(trace);
-      return false;
+  /**
+   * Returns the traces of {@code flow}, given the traces {@code flowTraces} of another flow of the
+   * same class. They only differ by the transformed flows of their hops, in which source NAT only
+   * rewrote the source IP.
+   */
+  private static Set<FlowTrace> retargetFlowTraces(Set<FlowTrace> flowTraces, Flow flow) {
+    Set<FlowTrace> retargeted = new TreeSet<>();
+    for (FlowTrace trace : flowTraces) {
+      List<FlowTraceHop> hops =
+          trace
+              .getHops()
+              .stream()
+              .map(
+                  hop ->
+                      hop.getTransformedFlow() == null
+                          ? hop
+                          : new FlowTraceHop(
+                              hop.getEdge(),
+                              hop.getRoutes(),
+                              hop.getFilterOut(),
+                              hop.getFilterIn(),
+                              new Flow.Builder(flow)
+                                  .setSrcIp(hop.getTransformedFlow().getSrcIp())
+                                  .build()))
+              .collect(ImmutableList.toImmutableList());
+      retargeted.add(new FlowTrace(trace.getDisposition(), hops, trace.getNotes()));
     }
-    return true;
+    return retargeted;
+  }
+
+  /**
+   * Returns the traces of {@code flow}, expanded from its {@link FlowTraceDag} so that what follows
+   * each reception is computed once for all the traces sharing it
+   */
+  private Set<FlowTrace> computeFlowTraces(Flow flow) {
+    checkFlow(flow);
+    return new FlowTraceDagBuilder(flow).build().getFlowTraces();
   }
 }
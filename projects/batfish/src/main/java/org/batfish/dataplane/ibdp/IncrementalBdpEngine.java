@@ -7,37 +7,62 @@ import static org.batfish.common.util.CommonUtil.initBgpTopology;
 import static org.batfish.common.util.CommonUtil.toImmutableSortedMap;
 import static org.batfish.dataplane.rib.AbstractRib.importRib;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+import com.google.common.graph.EndpointPair;
+import com.google.common.graph.Graphs;
+import com.google.common.graph.ImmutableValueGraph;
+import com.google.common.graph.MutableValueGraph;
 import com.google.common.graph.Network;
 import com.google.common.graph.ValueGraph;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.BdpOscillationException;
 import org.batfish.common.Version;
 import org.batfish.common.plugin.DataPlanePlugin.ComputeDataPlaneResult;
 import org.batfish.datamodel.AbstractRoute;
+import org.batfish.datamodel.BgpActivePeerConfig;
 import org.batfish.datamodel.BgpAdvertisement;
+import org.batfish.datamodel.BgpPassivePeerConfig;
 import org.batfish.datamodel.BgpPeerConfigId;
 import org.batfish.datamodel.BgpProcess;
 import org.batfish.datamodel.BgpRoute;
 import org.batfish.datamodel.BgpSessionProperties;
 import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.ConnectedRoute;
+import org.batfish.datamodel.Edge;
+import org.batfish.datamodel.GenericRib;
+import org.batfish.datamodel.Interface;
 import org.batfish.datamodel.Ip;
 import org.batfish.datamodel.IsisRoute;
 import org.batfish.datamodel.NetworkConfigurations;
 import org.batfish.datamodel.OspfExternalType1Route;
 import org.batfish.datamodel.OspfExternalType2Route;
 import org.batfish.datamodel.Topology;
+import org.batfish.datamodel.Vrf;
 import org.batfish.datamodel.answers.IncrementalBdpAnswerElement;
+import org.batfish.datamodel.collections.NodeInterfacePair;
 import org.batfish.datamodel.eigrp.EigrpEdge;
 import org.batfish.datamodel.eigrp.EigrpInterface;
 import org.batfish.datamodel.eigrp.EigrpTopology;
@@ -75,12 +100,418 @@ class IncrementalBdpEngine {
       Topology topology,
       Set<BgpAdvertisement> externalAdverts) {
     _bfLogger.resetTimer();
-    IncrementalDataPlane.Builder dpBuilder = IncrementalDataPlane.builder();
     _bfLogger.info("\nComputing Data Plane using iBDP\n");
 
     Map<Ip, Set<String>> ipOwners = computeIpNodeOwners(configurations, true);
     Map<Ip, Map<String, Set<String>>> ipVrfOwners =
         computeIpVrfOwners(true, computeNodeInterfaces(configurations));
+    ComputeDataPlaneResult result =
+        computeDataPlane(configurations, topology, externalAdverts, ipOwners, ipVrfOwners);
+    _bfLogger.printElapsedTime();
+    return result;
+  }
+
+  /**
+   * Compute the data plane for {@code configurations}, reusing the routes computed for {@code
+   * baseDataPlane} wherever they cannot have been affected by the differences between the two
+   * networks.
+   *
+   * <p>Nodes outside of the set computed by {@link #computeAffectedNodes} converge to exactly the
+   * same RIBs and FIBs as in {@code baseDataPlane}, so their routes are taken from it unchanged,
+   * and the fixed-point computation runs on the affected nodes only.
+   *
+   * @param baseDataPlane the previously computed data plane to reuse
+   * @param changedNodes nodes whose configuration differs in any way from the one {@code
+   *     baseDataPlane} was computed for (including nodes only present in one of the networks)
+   * @param baseExternalAdverts the external BGP advertisements {@code baseDataPlane} was computed
+   *     for
+   * @param configurations the configurations of the new network
+   * @param topology the Layer-3 topology of the new network
+   * @param externalAdverts the external BGP advertisements of the new network
+   */
+  ComputeDataPlaneResult computeDataPlaneIncrementally(
+      IncrementalDataPlane baseDataPlane,
+      Set<String> changedNodes,
+      Set<BgpAdvertisement> baseExternalAdverts,
+      Map<String, Configuration> configurations,
+      Topology topology,
+      Set<BgpAdvertisement> externalAdverts) {
+    _bfLogger.resetTimer();
+    _bfLogger.info("\nComputing Data Plane using iBDP, reusing a previous data plane\n");
+
+    Map<Ip, Set<String>> ipOwners = computeIpNodeOwners(configurations, true);
+    Map<Ip, Map<String, Set<String>>> ipVrfOwners =
+        computeIpVrfOwners(true, computeNodeInterfaces(configurations));
+    Set<String> affectedNodes =
+        computeAffectedNodes(
+            changedNodes,
+            baseExternalAdverts,
+            externalAdverts,
+            baseDataPlane,
+            configurations,
+            topology,
+            ipOwners);
+    if (affectedNodes.containsAll(configurations.keySet())) {
+      _bfLogger.infof(
+          "All %d nodes are affected by the changes, computing data plane from scratch\n",
+          configurations.size());
+      ComputeDataPlaneResult result =
+          computeDataPlane(configurations, topology, externalAdverts, ipOwners, ipVrfOwners);
+      _bfLogger.printElapsedTime();
+      return result;
+    }
+    _bfLogger.infof(
+        "Recomputing %d affected nodes out of %d\n",
+        configurations.keySet().stream().filter(affectedNodes::contains).count(),
+        configurations.size());
+
+    Map<String, Configuration> affectedConfigurations =
+        toImmutableSortedMap(
+            configurations
+                .values()
+                .stream()
+                .filter(c -> affectedNodes.contains(c.getHostname()))
+                .collect(ImmutableList.toImmutableList()),
+            Configuration::getHostname,
+            Function.identity());
+    // Edges between affected and unaffected nodes carry no routes, so they can be left out
+    Topology affectedTopology =
+        new Topology(
+            topology
+                .getEdges()
+                .stream()
+                .filter(
+                    e ->
+                        affectedNodes.contains(e.getNode1())
+                            && affectedNodes.contains(e.getNode2()))
+                .collect(ImmutableSortedSet.toImmutableSortedSet(Comparator.naturalOrder())));
+    ComputeDataPlaneResult affectedResult =
+        computeDataPlane(
+            affectedConfigurations, affectedTopology, externalAdverts, ipOwners, ipVrfOwners);
+    IncrementalDataPlane affectedDataPlane = (IncrementalDataPlane) affectedResult._dataPlane;
+
+    // Stitch the recomputed nodes together with the reused ones
+    SortedMap<String, Node> nodes = new TreeMap<>(affectedDataPlane.getNodes());
+    Map<String, Configuration> unaffectedConfigurations = new HashMap<>();
+    baseDataPlane
+        .getNodes()
+        .forEach(
+            (hostname, node) -> {
+              Configuration c = configurations.get(hostname);
+              if (c != null && !affectedNodes.contains(hostname)) {
+                // The routes are the same, but the rest of the configuration (e.g., ACLs) may not
+                nodes.put(hostname, changedNodes.contains(hostname) ? new Node(c, node) : node);
+                unaffectedConfigurations.put(hostname, node.getConfiguration());
+              }
+            });
+    MutableValueGraph<BgpPeerConfigId, BgpSessionProperties> bgpTopology =
+        Graphs.copyOf(affectedDataPlane.getBgpTopology());
+    ValueGraph<BgpPeerConfigId, BgpSessionProperties> baseBgpTopology =
+        baseDataPlane.getBgpTopology();
+    if (baseBgpTopology == null) {
+      // The BGP topology is not serialized with the data plane, so recompute the unaffected part
+      baseBgpTopology =
+          initBgpTopology(
+              unaffectedConfigurations,
+              ipOwners,
+              false,
+              _settings.getCheckBgpSessionReachability(),
+              TracerouteEngineImpl.getInstance(),
+              baseDataPlane);
+    }
+    for (EndpointPair<BgpPeerConfigId> edge : baseBgpTopology.edges()) {
+      if (unaffectedConfigurations.containsKey(edge.nodeU().getHostname())
+          && unaffectedConfigurations.containsKey(edge.nodeV().getHostname())) {
+        bgpTopology.putEdgeValue(
+            edge.nodeU(), edge.nodeV(), baseBgpTopology.edgeValue(edge.nodeU(), edge.nodeV()));
+      }
+    }
+
+    IncrementalDataPlane dp =
+        IncrementalDataPlane.builder()
+            .setIpOwners(ipOwners)
+            .setIpVrfOwners(ipVrfOwners)
+            .setNodes(nodes)
+            .setTopology(topology)
+            .setBgpTopology(ImmutableValueGraph.copyOf(bgpTopology))
+            .build();
+    _bfLogger.printElapsedTime();
+    return new ComputeDataPlaneResult(affectedResult._answerElement, dp);
+  }
+
+  /**
+   * Compute the set of nodes whose routes may differ from the ones in {@code baseDataPlane}.
+   *
+   * <p>The affected set is seeded with the nodes whose routing configuration (as compared by {@link
+   * RoutingConfigurations}) or external BGP advertisements differ, the endpoints of Layer-3 edges
+   * present in only one of the networks, and the nodes affected by changes in IP ownership. It is
+   * then closed under the adjacencies along which routes are exchanged in either network: Layer-3
+   * edges whose endpoints both run the same IGP, and candidate BGP sessions. The closure does not
+   * stop at nodes whose exported routes turn out to be unchanged.
+   *
+   * <p>Whether a BGP session is established also depends on the forwarding and the ACLs along the
+   * path between its endpoints, which is why {@code changedNodes} also contains nodes whose
+   * configuration differs only in ways that do not affect their own routes. A session whose
+   * endpoints reach each other over a connected link only depends on the endpoints themselves. Any
+   * other session depends on the whole Layer-3 component of its endpoints, which is recomputed
+   * along with them if any of its nodes is affected or changed.
+   */
+  @VisibleForTesting
+  static Set<String> computeAffectedNodes(
+      Set<String> changedNodes,
+      Set<BgpAdvertisement> baseExternalAdverts,
+      Set<BgpAdvertisement> externalAdverts,
+      IncrementalDataPlane baseDataPlane,
+      Map<String, Configuration> configurations,
+      Topology topology,
+      Map<Ip, Set<String>> ipOwners) {
+    Map<String, Configuration> baseConfigurations = baseDataPlane.getConfigurations();
+    Map<Ip, Set<String>> baseIpOwners = baseDataPlane.getIpOwners();
+    Topology baseTopology = baseDataPlane.getTopology();
+    Set<String> seeds = new HashSet<>();
+    for (String hostname : changedNodes) {
+      Configuration baseConfiguration = baseConfigurations.get(hostname);
+      Configuration configuration = configurations.get(hostname);
+      if (baseConfiguration == null
+          || configuration == null
+          || !RoutingConfigurations.sameRoutingConfiguration(baseConfiguration, configuration)) {
+        seeds.add(hostname);
+      }
+    }
+    Sets.symmetricDifference(baseExternalAdverts, externalAdverts)
+        .forEach(advert -> seeds.add(advert.getDstNode()));
+    for (Edge edge : Sets.symmetricDifference(baseTopology.getEdges(), topology.getEdges())) {
+      seeds.add(edge.getNode1());
+      seeds.add(edge.getNode2());
+    }
+
+    /*
+     * IP ownership is global state: it decides which BGP peers are considered internal. Seed the
+     * old and new owners of any IP whose owners changed, and any node with a BGP peer on that IP.
+     */
+    Set<Ip> changedIps =
+        Sets.union(baseIpOwners.keySet(), ipOwners.keySet())
+            .stream()
+            .filter(ip -> !Objects.equals(baseIpOwners.get(ip), ipOwners.get(ip)))
+            .collect(ImmutableSet.toImmutableSet());
+    for (Ip ip : changedIps) {
+      seeds.addAll(baseIpOwners.getOrDefault(ip, ImmutableSet.of()));
+      seeds.addAll(ipOwners.getOrDefault(ip, ImmutableSet.of()));
+    }
+    if (!changedIps.isEmpty()) {
+      for (Configuration c :
+          Iterables.concat(baseConfigurations.values(), configurations.values())) {
+        if (referencesBgpPeerIp(c, changedIps)) {
+          seeds.add(c.getHostname());
+        }
+      }
+    }
+
+    // Undirected adjacency along which routes may be exchanged, in either network
+    Map<String, Set<String>> neighbors = new HashMap<>();
+    BiConsumer<String, String> addAdjacency =
+        (n1, n2) -> {
+          neighbors.computeIfAbsent(n1, n -> new HashSet<>()).add(n2);
+          neighbors.computeIfAbsent(n2, n -> new HashSet<>()).add(n1);
+        };
+    for (Edge edge : baseTopology.getEdges()) {
+      if (runSameIgp(baseConfigurations, edge)) {
+        addAdjacency.accept(edge.getNode1(), edge.getNode2());
+      }
+    }
+    for (Edge edge : topology.getEdges()) {
+      if (runSameIgp(configurations, edge)) {
+        addAdjacency.accept(edge.getNode1(), edge.getNode2());
+      }
+    }
+
+    // Layer-3 components, and the neighbors on the other side of each interface, in either network
+    Map<String, Set<String>> l3Neighbors = new HashMap<>();
+    Map<NodeInterfacePair, Set<String>> linkNeighbors = new HashMap<>();
+    for (Edge edge : Iterables.concat(baseTopology.getEdges(), topology.getEdges())) {
+      l3Neighbors.computeIfAbsent(edge.getNode1(), n -> new HashSet<>()).add(edge.getNode2());
+      l3Neighbors.computeIfAbsent(edge.getNode2(), n -> new HashSet<>()).add(edge.getNode1());
+      linkNeighbors
+          .computeIfAbsent(edge.getInterface1(), i -> new HashSet<>())
+          .add(edge.getNode2());
+    }
+    Map<String, Set<String>> l3Components = new HashMap<>();
+
+    // The nodes each candidate BGP session depends on, and that must be recomputed along with it
+    Set<Set<String>> sessionDependencies = new HashSet<>();
+    BiConsumer<Map<String, Configuration>, Map<Ip, Set<String>>> addSessions =
+        (configs, owners) -> {
+          NetworkConfigurations nc = NetworkConfigurations.of(configs);
+          for (EndpointPair<BgpPeerConfigId> session :
+              initBgpTopology(configs, owners, true).edges()) {
+            String hostnameU = session.nodeU().getHostname();
+            String hostnameV = session.nodeV().getHostname();
+            addAdjacency.accept(hostnameU, hostnameV);
+            if (overConnectedLink(session, nc, baseDataPlane, linkNeighbors)) {
+              sessionDependencies.add(ImmutableSet.of(hostnameU, hostnameV));
+            } else {
+              sessionDependencies.add(
+                  ImmutableSet.<String>builder()
+                      .addAll(l3Component(hostnameU, l3Neighbors, l3Components))
+                      .addAll(l3Component(hostnameV, l3Neighbors, l3Components))
+                      .build());
+            }
+          }
+        };
+    addSessions.accept(baseConfigurations, baseIpOwners);
+    addSessions.accept(configurations, ipOwners);
+
+    Set<String> affectedNodes = new HashSet<>();
+    addClosure(seeds, neighbors, affectedNodes);
+    boolean grown = true;
+    while (grown) {
+      grown = false;
+      for (Set<String> dependencies : sessionDependencies) {
+        if (!affectedNodes.containsAll(dependencies)
+            && dependencies
+                .stream()
+                .anyMatch(n -> affectedNodes.contains(n) || changedNodes.contains(n))) {
+          addClosure(dependencies, neighbors, affectedNodes);
+          grown = true;
+        }
+      }
+    }
+    return affectedNodes;
+  }
+
+  /** Add {@code nodes} and everything reachable from them via {@code neighbors} to {@code set}. */
+  private static void addClosure(
+      Set<String> nodes, Map<String, Set<String>> neighbors, Set<String> set) {
+    Deque<String> queue = new ArrayDeque<>();
+    for (String node : nodes) {
+      if (set.add(node)) {
+        queue.push(node);
+      }
+    }
+    while (!queue.isEmpty()) {
+      String node = queue.pop();
+      for (String neighbor : neighbors.getOrDefault(node, ImmutableSet.of())) {
+        if (set.add(neighbor)) {
+          queue.push(neighbor);
+        }
+      }
+    }
+  }
+
+  /** Return the connected component of {@code node}, memoized in {@code components}. */
+  private static Set<String> l3Component(
+      String node, Map<String, Set<String>> l3Neighbors, Map<String, Set<String>> components) {
+    Set<String> component = components.get(node);
+    if (component == null) {
+      Set<String> nodes = new HashSet<>();
+      addClosure(ImmutableSet.of(node), l3Neighbors, nodes);
+      component = ImmutableSet.copyOf(nodes);
+      for (String n : component) {
+        components.put(n, component);
+      }
+    }
+    return component;
+  }
+
+  /** Check whether both endpoints of {@code edge} run the same IGP on it. */
+  private static boolean runSameIgp(Map<String, Configuration> configurations, Edge edge) {
+    Configuration c1 = configurations.get(edge.getNode1());
+    Configuration c2 = configurations.get(edge.getNode2());
+    if (c1 == null || c2 == null) {
+      return false;
+    }
+    Interface i1 = c1.getInterfaces().get(edge.getInt1());
+    Interface i2 = c2.getInterfaces().get(edge.getInt2());
+    if (i1 == null || i2 == null) {
+      return false;
+    }
+    return (i1.getOspfEnabled() && i2.getOspfEnabled())
+        || (i1.getRipEnabled() && i2.getRipEnabled())
+        || (i1.getEigrp() != null && i2.getEigrp() != null)
+        || (i1.getIsis() != null && i2.getIsis() != null);
+  }
+
+  /**
+   * Check whether the endpoints of a BGP {@code session} reach each other's addresses directly over
+   * a connected link, according to the routes in {@code baseDataPlane}. If so, whether the session
+   * is established only depends on the forwarding and ACLs of its endpoints.
+   */
+  private static boolean overConnectedLink(
+      EndpointPair<BgpPeerConfigId> session,
+      NetworkConfigurations nc,
+      IncrementalDataPlane baseDataPlane,
+      Map<NodeInterfacePair, Set<String>> linkNeighbors) {
+    BgpPeerConfigId activeId = session.nodeU().isDynamic() ? session.nodeV() : session.nodeU();
+    BgpPeerConfigId otherId = session.adjacentNode(activeId);
+    BgpActivePeerConfig activePeer = nc.getBgpPointToPointPeerConfig(activeId);
+    if (activePeer == null || activePeer.getLocalIp() == null) {
+      return false;
+    }
+    return reachesOverConnectedLink(
+            activeId, activePeer.getPeerAddress(), otherId, baseDataPlane, linkNeighbors)
+        && reachesOverConnectedLink(
+            otherId, activePeer.getLocalIp(), activeId, baseDataPlane, linkNeighbors);
+  }
+
+  /**
+   * Check whether the longest prefix matches for {@code ip} at {@code from} are all connected
+   * routes out of interfaces only leading to the node of {@code to}.
+   */
+  private static boolean reachesOverConnectedLink(
+      BgpPeerConfigId from,
+      Ip ip,
+      BgpPeerConfigId to,
+      IncrementalDataPlane baseDataPlane,
+      Map<NodeInterfacePair, Set<String>> linkNeighbors) {
+    Map<String, GenericRib<AbstractRoute>> ribs = baseDataPlane.getRibs().get(from.getHostname());
+    GenericRib<AbstractRoute> rib = ribs == null ? null : ribs.get(from.getVrfName());
+    if (rib == null) {
+      return false;
+    }
+    Set<AbstractRoute> routes = rib.longestPrefixMatch(ip);
+    return !routes.isEmpty()
+        && routes
+            .stream()
+            .allMatch(
+                route ->
+                    route instanceof ConnectedRoute
+                        && ImmutableSet.of(to.getHostname())
+                            .equals(
+                                linkNeighbors.get(
+                                    new NodeInterfacePair(
+                                        from.getHostname(), route.getNextHopInterface()))));
+  }
+
+  /** Check whether any BGP peer of {@code c} has its local or remote address in {@code ips}. */
+  private static boolean referencesBgpPeerIp(Configuration c, Set<Ip> ips) {
+    for (Vrf vrf : c.getVrfs().values()) {
+      BgpProcess proc = vrf.getBgpProcess();
+      if (proc == null) {
+        continue;
+      }
+      for (BgpActivePeerConfig peer : proc.getActiveNeighbors().values()) {
+        if (ips.contains(peer.getLocalIp()) || ips.contains(peer.getPeerAddress())) {
+          return true;
+        }
+      }
+      for (BgpPassivePeerConfig peer : proc.getPassiveNeighbors().values()) {
+        if (ips.contains(peer.getLocalIp())
+            || (peer.getPeerPrefix() != null
+                && ips.stream().anyMatch(peer.getPeerPrefix()::containsIp))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private ComputeDataPlaneResult computeDataPlane(
+      Map<String, Configuration> configurations,
+      Topology topology,
+      Set<BgpAdvertisement> externalAdverts,
+      Map<Ip, Set<String>> ipOwners,
+      Map<Ip, Map<String, Set<String>>> ipVrfOwners) {
+    IncrementalDataPlane.Builder dpBuilder = IncrementalDataPlane.builder();
     dpBuilder.setIpOwners(ipOwners);
     dpBuilder.setIpVrfOwners(ipVrfOwners);
 
@@ -164,7 +595,6 @@ class IncrementalBdpEngine {
     // Generate the answers from the computation, compute final FIBs
     computeFibs(nodes);
     answerElement.setVersion(Version.getVersion());
-    _bfLogger.printElapsedTime();
     return new ComputeDataPlaneResult(answerElement, dp);
   }
 
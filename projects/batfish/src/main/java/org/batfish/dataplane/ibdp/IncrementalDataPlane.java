@@ -15,6 +15,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
+import javax.annotation.Nullable;
 import org.batfish.datamodel.AbstractRoute;
 import org.batfish.datamodel.BgpPeerConfigId;
 import org.batfish.datamodel.BgpRoute;
@@ -130,6 +131,13 @@ public final class IncrementalDataPlane implements Serializable, DataPlane {
 
   private final Map<String, Node> _nodes;
 
+  /**
+   * Computed on first use, once the RIBs have converged. Not serialized, so it is recomputed once
+   * after a data plane is loaded. Concurrent first uses compute the same value, so it is safe to
+   * publish without locking.
+   */
+  @Nullable private transient volatile Long _numMainRibRoutes;
+
   private transient SortedMap<String, SortedMap<String, GenericRib<AbstractRoute>>> _ribs;
 
   private final Topology _topology;
@@ -224,6 +232,22 @@ public final class IncrementalDataPlane implements Serializable, DataPlane {
     return _ipVrfOwners;
   }
 
+  @Override
+  public long getNumMainRibRoutes() {
+    Long numMainRibRoutes = _numMainRibRoutes;
+    if (numMainRibRoutes == null) {
+      numMainRibRoutes =
+          _nodes
+              .values()
+              .stream()
+              .flatMap(n -> n.getVirtualRouters().values().stream())
+              .mapToLong(vr -> vr.getMainRib().getRoutes().size())
+              .sum();
+      _numMainRibRoutes = numMainRibRoutes;
+    }
+    return numMainRibRoutes;
+  }
+
   public Map<String, Node> getNodes() {
     return _nodes;
   }
@@ -1,16 +1,23 @@
 package org.batfish.dataplane.ibdp;
 
 import com.google.auto.service.AutoService;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.SerializationUtils;
+import org.batfish.common.BatfishException;
 import org.batfish.common.plugin.DataPlanePlugin;
 import org.batfish.common.plugin.ITracerouteEngine;
 import org.batfish.common.plugin.Plugin;
@@ -34,6 +41,8 @@ public class IncrementalDataPlanePlugin extends DataPlanePlugin {
 
   private IncrementalBdpEngine _engine;
 
+  private IncrementalDataPlaneSettings _settings;
+
   public IncrementalDataPlanePlugin() {
     _flowTraces = new HashMap<>();
   }
@@ -49,17 +58,20 @@ public class IncrementalDataPlanePlugin extends DataPlanePlugin {
   public ComputeDataPlaneResult computeDataPlane(
       boolean differentialContext, Map<String, Configuration> configurations, Topology topology) {
     Set<BgpAdvertisement> externalAdverts = _batfish.loadExternalBgpAnnouncements(configurations);
-    ComputeDataPlaneResult answer =
-        _engine.computeDataPlane(differentialContext, configurations, topology, externalAdverts);
+    ComputeDataPlaneResult answer = null;
+    if (differentialContext && _settings.getReuseBaseDataPlane()) {
+      answer = computeDataPlaneFromBase(configurations, topology, externalAdverts);
+    }
+    if (answer == null) {
+      answer =
+          _engine.computeDataPlane(differentialContext, configurations, topology, externalAdverts);
+    }
+    IncrementalDataPlane dp = (IncrementalDataPlane) answer._dataPlane;
+    // counting the routes here also records the count in the data plane before it is serialized
+    long numVirtualRouters =
+        dp.getNodes().values().stream().mapToLong(n -> n.getVirtualRouters().size()).sum();
     double averageRoutes =
-        ((IncrementalDataPlane) answer._dataPlane)
-            .getNodes()
-            .values()
-            .stream()
-            .flatMap(n -> n.getVirtualRouters().values().stream())
-            .mapToInt(vr -> vr._mainRib.getRoutes().size())
-            .average()
-            .orElse(0.00d);
+        numVirtualRouters == 0 ? 0.00d : (double) dp.getNumMainRibRoutes() / numVirtualRouters;
     _logger.infof(
         "Generated data-plane for testrig:%s; iterations:%s, avg entries per node:%.2f\n",
         _batfish.getTestrigName(),
@@ -68,13 +80,74 @@ public class IncrementalDataPlanePlugin extends DataPlanePlugin {
     return answer;
   }
 
+  /**
+   * Compute the data plane of the delta snapshot by reusing the data plane of the base snapshot for
+   * the nodes unaffected by the differences between the two.
+   *
+   * @return the computed data plane, or {@code null} if no suitable base data plane is available
+   */
+  @Nullable
+  private ComputeDataPlaneResult computeDataPlaneFromBase(
+      Map<String, Configuration> configurations,
+      Topology topology,
+      Set<BgpAdvertisement> externalAdverts) {
+    IncrementalDataPlane baseDataPlane;
+    Set<BgpAdvertisement> baseExternalAdverts;
+    _batfish.pushBaseEnvironment();
+    try {
+      _batfish.checkDataPlane();
+      DataPlane dp = _batfish.loadDataPlane();
+      if (!(dp instanceof IncrementalDataPlane)) {
+        _logger.warn("Base data plane was not computed by ibdp, not reusing it\n");
+        return null;
+      }
+      baseDataPlane = (IncrementalDataPlane) dp;
+      baseExternalAdverts =
+          _batfish.loadExternalBgpAnnouncements(baseDataPlane.getConfigurations());
+    } catch (BatfishException e) {
+      _logger.warnf("Cannot reuse base data plane: %s\n", e.getMessage());
+      return null;
+    } finally {
+      _batfish.popEnvironment();
+    }
+    Set<String> changedNodes =
+        computeChangedNodes(baseDataPlane.getConfigurations(), configurations);
+    return _engine.computeDataPlaneIncrementally(
+        baseDataPlane,
+        changedNodes,
+        baseExternalAdverts,
+        configurations,
+        topology,
+        externalAdverts);
+  }
+
+  /**
+   * Compute the nodes that are present in only one of two networks, or whose configuration differs
+   * between them in any way. Configurations are compared by their serialized form, so this may
+   * conservatively report nodes whose configurations are equivalent.
+   */
+  @VisibleForTesting
+  static Set<String> computeChangedNodes(
+      Map<String, Configuration> baseConfigurations, Map<String, Configuration> configurations) {
+    Set<String> changedNodes =
+        new HashSet<>(
+            Sets.symmetricDifference(baseConfigurations.keySet(), configurations.keySet()));
+    Sets.intersection(baseConfigurations.keySet(), configurations.keySet())
+        .parallelStream()
+        .filter(
+            hostname ->
+                !Arrays.equals(
+                    SerializationUtils.serialize(baseConfigurations.get(hostname)),
+                    SerializationUtils.serialize(configurations.get(hostname))))
+        .collect(ImmutableSet.toImmutableSet())
+        .forEach(changedNodes::add);
+    return changedNodes;
+  }
+
   @Override
   protected void dataPlanePluginInitialize() {
-    _engine =
-        new IncrementalBdpEngine(
-            new IncrementalDataPlaneSettings(_batfish.getSettingsConfiguration()),
-            _batfish.getLogger(),
-            _batfish::newBatch);
+    _settings = new IncrementalDataPlaneSettings(_batfish.getSettingsConfiguration());
+    _engine = new IncrementalBdpEngine(_settings, _batfish.getLogger(), _batfish::newBatch);
   }
 
   @Override
@@ -131,7 +204,7 @@ public class IncrementalDataPlanePlugin extends DataPlanePlugin {
     _flowTraces.put(
         (IncrementalDataPlane) dataPlane,
         TracerouteEngineImpl.getInstance()
-            .processFlows(dataPlane, flows, dataPlane.getFibs(), ignoreAcls));
+            .processFlowBatch(dataPlane, flows, dataPlane.getFibs(), ignoreAcls));
   }
 
   private IncrementalDataPlane loadDataPlane() {
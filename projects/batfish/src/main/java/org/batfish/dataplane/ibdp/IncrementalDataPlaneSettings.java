@@ -20,6 +20,7 @@ public class IncrementalDataPlaneSettings {
   public static final String PROP_SCHEDULE = "schedule";
   public static final String PROP_LOG_ROUTES = "logiterationroutes";
   public static final String PROP_CHECK_BGP_REACHABILITY = "checkbgpsessionreachability";
+  public static final String PROP_REUSE_BASE_DATA_PLANE = "reusebasedataplane";
 
   /**
    * Return the underlying configuration (it will be mutable).
@@ -53,6 +54,7 @@ public class IncrementalDataPlaneSettings {
     _config.setProperty(PROP_SCHEDULE, NODE_COLORED.toString());
     _config.setProperty(PROP_LOG_ROUTES, true);
     _config.setProperty(PROP_CHECK_BGP_REACHABILITY, true);
+    _config.setProperty(PROP_REUSE_BASE_DATA_PLANE, false);
   }
 
   /** Return the dataplane computation {@link Schedule} */
@@ -65,6 +67,14 @@ public class IncrementalDataPlaneSettings {
     return _config.getBoolean(PROP_CHECK_BGP_REACHABILITY);
   }
 
+  /**
+   * Whether the data plane of the delta snapshot should be computed by reusing the data plane of
+   * the base snapshot for the portion of the network unaffected by the differences
+   */
+  public boolean getReuseBaseDataPlane() {
+    return _config.getBoolean(PROP_REUSE_BASE_DATA_PLANE);
+  }
+
   /**
    * Set the dataplane computation {@link Schedule}
    *
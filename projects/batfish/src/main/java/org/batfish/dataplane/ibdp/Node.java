@@ -31,6 +31,16 @@ public final class Node implements Serializable {
     _virtualRouters = b.build();
   }
 
+  /**
+   * Create a node backed by {@code configuration} that shares the (already computed) virtual
+   * routers of {@code node}. Only valid if {@code configuration} does not differ from the
+   * configuration of {@code node} in anything that affects routing.
+   */
+  Node(@Nonnull Configuration configuration, @Nonnull Node node) {
+    _c = configuration;
+    _virtualRouters = node._virtualRouters;
+  }
+
   /** @return The {@link Configuration} backing this Node */
   @Nonnull
   public Configuration getConfiguration() {
@@ -0,0 +1,105 @@
+package org.batfish.dataplane.ibdp;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.SerializationUtils;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.Interface;
+import org.batfish.datamodel.Vrf;
+
+/**
+ * Compares the parts of two {@link Configuration configurations} that the data plane engine reads
+ * when computing routes: routing processes, static and generated routes, routing policies and the
+ * lists they refer to, and the routing-related properties of interfaces.
+ *
+ * <p>Anything else (e.g., ACLs, NAT, zones) can only influence the data plane through the
+ * reachability checks of BGP sessions, which callers have to account for separately.
+ */
+final class RoutingConfigurations {
+
+  /**
+   * Check whether {@code c1} and {@code c2} are the same as far as the routes they compute are
+   * concerned. Components without a meaningful {@code equals} are compared by their serialized
+   * form, so this may conservatively report equivalent configurations as different.
+   */
+  static boolean sameRoutingConfiguration(Configuration c1, Configuration c2) {
+    if (c1.getConfigurationFormat() != c2.getConfigurationFormat()
+        || !c1.getRoutingPolicies().equals(c2.getRoutingPolicies())
+        || !sameSerializedForm(c1.getRouteFilterLists(), c2.getRouteFilterLists())
+        || !sameSerializedForm(c1.getRoute6FilterLists(), c2.getRoute6FilterLists())
+        || !sameSerializedForm(c1.getCommunityLists(), c2.getCommunityLists())
+        || !sameSerializedForm(c1.getAsPathAccessLists(), c2.getAsPathAccessLists())
+        || !sameSerializedForm(c1.getTrackingGroups(), c2.getTrackingGroups())
+        || !c1.getVrfs().keySet().equals(c2.getVrfs().keySet())
+        || !c1.getInterfaces().keySet().equals(c2.getInterfaces().keySet())) {
+      return false;
+    }
+    for (Vrf vrf1 : c1.getVrfs().values()) {
+      if (!sameRoutingVrf(vrf1, c2.getVrfs().get(vrf1.getName()))) {
+        return false;
+      }
+    }
+    for (Interface iface1 : c1.getInterfaces().values()) {
+      if (!sameRoutingInterface(iface1, c2.getInterfaces().get(iface1.getName()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean sameRoutingVrf(Vrf vrf1, Vrf vrf2) {
+    return vrf1.getInterfaces().keySet().equals(vrf2.getInterfaces().keySet())
+        && sameSerializedForm(vrf1.getStaticRoutes(), vrf2.getStaticRoutes())
+        && sameSerializedForm(vrf1.getGeneratedRoutes(), vrf2.getGeneratedRoutes())
+        && sameSerializedForm(vrf1.getGeneratedIpv6Routes(), vrf2.getGeneratedIpv6Routes())
+        && sameSerializedForm(vrf1.getBgpProcess(), vrf2.getBgpProcess())
+        && sameSerializedForm(vrf1.getOspfProcess(), vrf2.getOspfProcess())
+        && sameSerializedForm(vrf1.getRipProcess(), vrf2.getRipProcess())
+        && sameSerializedForm(vrf1.getIsisProcess(), vrf2.getIsisProcess())
+        && sameSerializedForm(vrf1.getEigrpProcesses(), vrf2.getEigrpProcesses());
+  }
+
+  private static boolean sameRoutingInterface(Interface iface1, Interface iface2) {
+    return iface1.getActive() == iface2.getActive()
+        && Objects.equals(iface1.getVrfName(), iface2.getVrfName())
+        && Objects.equals(iface1.getAllAddresses(), iface2.getAllAddresses())
+        && Objects.equals(iface1.getBandwidth(), iface2.getBandwidth())
+        && iface1.getInterfaceType() == iface2.getInterfaceType()
+        && iface1.getOspfEnabled() == iface2.getOspfEnabled()
+        && iface1.getOspfPassive() == iface2.getOspfPassive()
+        && iface1.getOspfPointToPoint() == iface2.getOspfPointToPoint()
+        && iface1.getOspfDeadInterval() == iface2.getOspfDeadInterval()
+        && iface1.getOspfHelloMultiplier() == iface2.getOspfHelloMultiplier()
+        && Objects.equals(iface1.getOspfCost(), iface2.getOspfCost())
+        && Objects.equals(iface1.getOspfAreaName(), iface2.getOspfAreaName())
+        && sameSerializedForm(iface1.getOspfArea(), iface2.getOspfArea())
+        && iface1.getRipEnabled() == iface2.getRipEnabled()
+        && iface1.getRipPassive() == iface2.getRipPassive()
+        && sameSerializedForm(iface1.getEigrp(), iface2.getEigrp())
+        && sameSerializedForm(iface1.getIsis(), iface2.getIsis());
+  }
+
+  /**
+   * Compare two objects by their serialized form. Must not be used on objects referring back to
+   * their owning {@link Configuration}, since that would compare the whole configuration.
+   */
+  private static boolean sameSerializedForm(@Nullable Object o1, @Nullable Object o2) {
+    if (o1 == o2) {
+      return true;
+    }
+    if (o1 == null || o2 == null) {
+      return false;
+    }
+    if (o1 instanceof Map && o2 instanceof Map && ((Map<?, ?>) o1).isEmpty()) {
+      return ((Map<?, ?>) o2).isEmpty();
+    }
+    return Arrays.equals(
+        SerializationUtils.serialize((Serializable) o1),
+        SerializationUtils.serialize((Serializable) o2));
+  }
+
+  private RoutingConfigurations() {}
+}
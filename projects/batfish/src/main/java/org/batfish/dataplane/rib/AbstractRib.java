@@ -9,6 +9,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 import org.batfish.datamodel.AbstractRoute;
 import org.batfish.datamodel.GenericRib;
@@ -108,11 +109,7 @@ public abstract class AbstractRib<R extends AbstractRoute> implements GenericRib
   }
 
   public final Set<R> getRoutes(Prefix p) {
-    // Collect routes that match the prefix
-    return getRoutes()
-        .stream()
-        .filter(r -> r.getNetwork().equals(p))
-        .collect(ImmutableSet.toImmutableSet());
+    return _tree.getRoutes(p);
   }
 
   /**
@@ -142,6 +139,11 @@ public abstract class AbstractRib<R extends AbstractRoute> implements GenericRib
     return _tree.getLongestPrefixMatch(address, maxPrefixLength);
   }
 
+  @Override
+  public void forEachLongestPrefixMatch(Ip address, Consumer<? super R> consumer) {
+    _tree.forEachLongestPrefixMatch(address, Prefix.MAX_PREFIX_LENGTH, consumer);
+  }
+
   /**
    * Add a new route to the RIB.
    *
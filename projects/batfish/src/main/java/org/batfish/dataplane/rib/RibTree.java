@@ -5,6 +5,7 @@ import com.google.common.collect.ImmutableSet;
 import java.io.Serializable;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 import org.batfish.datamodel.AbstractRoute;
 import org.batfish.datamodel.Ip;
@@ -22,12 +23,15 @@ import org.batfish.dataplane.rib.RouteAdvertisement.Reason;
  */
 class RibTree<R extends AbstractRoute> implements Serializable {
 
-  private static final long serialVersionUID = 1L;
+  private static final long serialVersionUID = 2L;
+
+  private final AbstractRib<R> _owner;
 
   private RibTreeNode<R> _root;
 
   RibTree(AbstractRib<R> owner) {
-    _root = new RibTreeNode<>(Prefix.ZERO, owner);
+    _owner = owner;
+    _root = new RibTreeNode<>(Ip.ZERO.asLong(), 0);
   }
 
   /**
@@ -41,7 +45,7 @@ class RibTree<R extends AbstractRoute> implements Serializable {
     Prefix prefix = route.getNetwork();
     int prefixLength = prefix.getPrefixLength();
     long bits = prefix.getStartIp().asLong();
-    return _root.removeRoute(route, bits, prefixLength, 0, reason);
+    return _root.removeRoute(_owner, route, bits, prefixLength, 0, reason);
   }
 
   /**
@@ -57,9 +61,44 @@ class RibTree<R extends AbstractRoute> implements Serializable {
     return _root.containsRoute(route, bits, prefixLength);
   }
 
+  /**
+   * Return the set of routes with the longest prefix match for a given IP address
+   *
+   * @param address IP address
+   * @param maxPrefixLength only return routes with prefix length less than or equal to given value
+   * @return a set of routes
+   */
   Set<R> getLongestPrefixMatch(Ip address, int maxPrefixLength) {
-    long addressBits = address.asLong();
-    return _root.getLongestPrefixMatch(address, addressBits, 0, maxPrefixLength);
+    RibTreeNode<R> node = _root.findLongestPrefixMatchNode(address.asLong(), maxPrefixLength);
+    return node == null ? ImmutableSet.of() : ImmutableSet.copyOf(node.getRoutes());
+  }
+
+  /**
+   * Apply {@code consumer} to each route with the longest prefix match for a given IP address.
+   * Unlike {@link #getLongestPrefixMatch(Ip, int)}, does not allocate a result set.
+   *
+   * @param address IP address
+   * @param maxPrefixLength only consider routes with prefix length less than or equal to given
+   *     value
+   * @param consumer the consumer to apply to each matching route
+   */
+  void forEachLongestPrefixMatch(Ip address, int maxPrefixLength, Consumer<? super R> consumer) {
+    RibTreeNode<R> node = _root.findLongestPrefixMatchNode(address.asLong(), maxPrefixLength);
+    if (node != null) {
+      node.forEachRoute(consumer);
+    }
+  }
+
+  /**
+   * Return the routes in this RIB with the given network
+   *
+   * @param prefix the network of the routes
+   * @return a {@link Set} of routes
+   */
+  Set<R> getRoutes(Prefix prefix) {
+    RibTreeNode<R> node =
+        _root.findRouteNode(prefix.getStartIp().asLong(), prefix.getPrefixLength(), 0);
+    return node == null ? ImmutableSet.of() : ImmutableSet.copyOf(node.getRoutes());
   }
 
   /**
@@ -85,7 +124,7 @@ class RibTree<R extends AbstractRoute> implements Serializable {
     Prefix prefix = route.getNetwork();
     int prefixLength = prefix.getPrefixLength();
     long bits = prefix.getStartIp().asLong();
-    return _root.mergeRoute(route, bits, prefixLength, 0);
+    return _root.mergeRoute(_owner, route, bits, prefixLength, 0);
   }
 
   @Override
@@ -99,7 +138,7 @@ class RibTree<R extends AbstractRoute> implements Serializable {
   }
 
   public RibDelta<R> clearRoutes(Prefix prefix) {
-    return _root.clearRoutes(prefix);
+    return _root.clearRoutes(_owner, prefix);
   }
 
   public Map<Prefix, IpWildcardSetIpSpace> getMatchingIps() {
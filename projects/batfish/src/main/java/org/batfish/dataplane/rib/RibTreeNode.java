@@ -4,12 +4,12 @@ import static org.batfish.dataplane.rib.RouteAdvertisement.Reason.REPLACE;
 
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.function.Consumer;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.batfish.datamodel.AbstractRoute;
@@ -24,25 +24,36 @@ import org.batfish.dataplane.rib.RouteAdvertisement.Reason;
  * RibTree is constructed from nodes of this type. A node has a prefix, a set of routes that match
  * the prefix (and it's length) and two children. The children's prefixes must always be more
  * specific (i.e., their prefix length is larger).
+ *
+ * <p>Nodes are only created where routes are stored or where two subtrees diverge (i.e., the tree
+ * is path-compressed). To keep the per-node footprint small, the node prefix is kept as primitive
+ * address bits and a prefix length rather than as a {@link Prefix}, and the owning {@link
+ * AbstractRib} is passed in by the {@link RibTree} instead of being stored in every node.
  */
 class RibTreeNode<R extends AbstractRoute> implements Serializable {
 
-  private static final long serialVersionUID = 1L;
+  private static final long serialVersionUID = 2L;
+
+  /** Network address of this node's prefix, represented as in {@link Ip#asLong()} */
+  private final long _bits;
 
   private RibTreeNode<R> _left;
 
-  private Prefix _prefix;
+  private final int _prefixLength;
 
   private RibTreeNode<R> _right;
 
   private final Set<R> _routes;
 
-  private AbstractRib<R> _owner;
-
-  RibTreeNode(Prefix prefix, @Nonnull AbstractRib<R> owner) {
+  RibTreeNode(long bits, int prefixLength) {
+    _bits = bits;
+    _prefixLength = prefixLength;
     _routes = new HashSet<>();
-    _prefix = prefix;
-    _owner = owner;
+  }
+
+  /** Return the network address bits of {@code bits} when masked to {@code prefixLength} */
+  private static long maskBits(long bits, int prefixLength) {
+    return bits & ~(0xFFFFFFFFL >>> prefixLength) & 0xFFFFFFFFL;
   }
 
   void collectRoutes(ImmutableCollection.Builder<R> routes) {
@@ -55,11 +66,33 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
     routes.addAll(_routes);
   }
 
+  /** Apply {@code consumer} to every route stored at this node (not its children). */
+  void forEachRoute(Consumer<? super R> consumer) {
+    _routes.forEach(consumer);
+  }
+
+  @Nonnull
+  Prefix getPrefix() {
+    return new Prefix(new Ip(_bits), _prefixLength);
+  }
+
+  /** Return the routes stored at this node (not its children). The set must not be modified. */
+  @Nonnull
+  Set<R> getRoutes() {
+    return _routes;
+  }
+
+  /** Check whether the prefix of this node contains the given address */
+  private boolean matches(long address) {
+    return ((address ^ _bits) >>> (Prefix.MAX_PREFIX_LENGTH - _prefixLength)) == 0;
+  }
+
   @Nullable
-  private RibTreeNode<R> findRouteNode(long bits, int prefixLength, int firstUnmatchedBitIndex) {
-    // If prefix lengths match, this is the node where such route would be stored.
-    if (prefixLength == _prefix.getPrefixLength()) {
-      return this;
+  RibTreeNode<R> findRouteNode(long bits, int prefixLength, int firstUnmatchedBitIndex) {
+    // If prefix lengths match, this is the node where such route would be stored, provided that
+    // the skipped-over bits match as well.
+    if (prefixLength == _prefixLength) {
+      return bits == _bits ? this : null;
     }
 
     boolean currentBit = Ip.getBitAtPosition(bits, firstUnmatchedBitIndex);
@@ -77,12 +110,10 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
      */
     if (currentBit) {
       return (_right != null)
-          ? _right.findRouteNode(bits, prefixLength, _right._prefix.getPrefixLength())
+          ? _right.findRouteNode(bits, prefixLength, _right._prefixLength)
           : null;
     } else {
-      return (_left != null)
-          ? _left.findRouteNode(bits, prefixLength, _left._prefix.getPrefixLength())
-          : null;
+      return (_left != null) ? _left.findRouteNode(bits, prefixLength, _left._prefixLength) : null;
     }
   }
 
@@ -90,7 +121,7 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
    * Check if the route exists in our subtree
    *
    * @param route route in question
-   * @param bits route's IP address represented as a BitSet
+   * @param bits route's IP address represented as a long
    * @param prefixLength route's prefix length
    * @return true if the route is in the subtree
    */
@@ -99,57 +130,36 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
     return node != null && node._routes.contains(route);
   }
 
-  private Set<R> getLongestPrefixMatch(Ip address) {
-    return _routes
-        .stream()
-        .filter(r -> r.getNetwork().containsIp(address))
-        .collect(ImmutableSet.toImmutableSet());
-  }
-
   /**
-   * Returns a set of routes with the longest prefix match for a given IP address
+   * Find the node holding the routes with the longest prefix match for a given IP address. Walks
+   * the tree iteratively and does not allocate.
    *
-   * @param address IP address
-   * @param bits IP address represented as a set of bits
-   * @param index the position of the bit up to which the match has already been found
-   *     (tail-recursion way of keeping track how deep we are)
-   * @param maxPrefixLength only return routes with prefix length less than or equal to given value
-   * @return a set of routes
+   * @param address IP address represented as a long
+   * @param maxPrefixLength only consider routes with prefix length less than or equal to given
+   *     value
+   * @return the deepest node with at least one route whose prefix contains {@code address}, or
+   *     {@code null} if there is no such node
    */
-  Set<R> getLongestPrefixMatch(Ip address, long bits, int index, int maxPrefixLength) {
-    // Get the list of routes stored in our node that contain the IP address
-    Set<R> longestPrefixMatches = getLongestPrefixMatch(address);
-    // If we reached the max prefix length (e.g., 32 for for IPv4) then return routes
-    // from the current node
-    if (index >= maxPrefixLength) {
-      return longestPrefixMatches;
-    }
-
-    // Examine the bit at the given index
-    boolean currentBit = Ip.getBitAtPosition(bits, index);
-    RibTreeNode<R> child;
-
-    // the current bit is 1, go right recursively
-    if (currentBit) {
-      child = _right;
-    } else {
-      child = _left;
-    }
-    if (child == null) {
-      return longestPrefixMatches;
-    }
-
-    // Represents any potentially longer route matches (than ones stored at this node)
-    Set<R> longerMatches =
-        child.getLongestPrefixMatch(
-            address, bits, child._prefix.getPrefixLength(), maxPrefixLength);
-
-    // If we found no better matches, return the ones from this node
-    if (longerMatches == null || longerMatches.isEmpty()) {
-      return longestPrefixMatches;
-    } else { // otherwise return longer matches
-      return longerMatches;
+  @Nullable
+  RibTreeNode<R> findLongestPrefixMatchNode(long address, int maxPrefixLength) {
+    RibTreeNode<R> longestMatch = null;
+    RibTreeNode<R> node = this;
+    /*
+     * Since the tree is path-compressed, a child may skip over bits that have not been compared
+     * with the address yet, so each node on the path needs to be checked against the address.
+     * Once a node does not match, no node in its subtree can match either.
+     */
+    while (node != null && node._prefixLength <= maxPrefixLength && node.matches(address)) {
+      if (!node._routes.isEmpty()) {
+        longestMatch = node;
+      }
+      if (node._prefixLength == Prefix.MAX_PREFIX_LENGTH) {
+        break;
+      }
+      // the bit right after the node's prefix determines which side of the tree to go down
+      node = Ip.getBitAtPosition(address, node._prefixLength) ? node._right : node._left;
     }
+    return longestMatch;
   }
 
   private void assignChild(RibTreeNode<R> parent, RibTreeNode<R> child, boolean branchRight) {
@@ -163,9 +173,10 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
   /**
    * Takes care of adding new nodes to the tree and maintaining correct pointers.
    *
+   * @param owner the RIB owning the tree
    * @param parent node that we are trying to merge a route into
    * @param route the route to merge
-   * @param routeBits the bitSet representation of the route's IP address
+   * @param routeBits the long representation of the route's IP address
    * @param prefixLength the route's prefix length
    * @param firstUnmatchedBitIndex the index of the first bit in the route's prefix that we haven't
    *     checked yet
@@ -174,6 +185,7 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
    */
   @Nullable
   private RibDelta<R> mergeHelper(
+      AbstractRib<R> owner,
       RibTreeNode<R> parent,
       R route,
       long routeBits,
@@ -192,18 +204,16 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
     // Node doesn't exist, so create one. By construction, it will be the best match
     // for the given route
     if (node == null) {
-      node = new RibTreeNode<>(route.getNetwork(), _owner);
+      node = new RibTreeNode<>(routeBits, prefixLength);
       node._routes.add(route);
       // don't forget to assign new node object to parent node
       assignChild(parent, node, rightBranch);
-      return new RibDelta.Builder<>(_owner).add(route).build();
+      return new RibDelta.Builder<>(owner).add(route).build();
     }
 
     // Node exists, get some helper data out of the current node we are examining
-    Prefix nodePrefix = node._prefix;
-    int nodePrefixLength = nodePrefix.getPrefixLength();
-    Ip nodeAddress = nodePrefix.getStartIp();
-    long nodeAddressBits = nodeAddress.asLong();
+    int nodePrefixLength = node._prefixLength;
+    long nodeAddressBits = node._bits;
     int nextUnmatchedBit;
     // Set up two "pointers" as we scan through the route's and the node's prefixes
     boolean currentAddressBit = false;
@@ -231,7 +241,7 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
      * Recursively merge the route into this node.
      */
     if (nextUnmatchedBit == nodePrefixLength) {
-      return node.mergeRoute(route, routeBits, prefixLength, nextUnmatchedBit);
+      return node.mergeRoute(owner, route, routeBits, prefixLength, nextUnmatchedBit);
     }
 
     /*
@@ -242,11 +252,11 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
     if (nextUnmatchedBit == prefixLength) {
       currentNodeAddressBit = Ip.getBitAtPosition(nodeAddressBits, nextUnmatchedBit);
       RibTreeNode<R> oldNode = node;
-      node = new RibTreeNode<>(route.getNetwork(), _owner);
+      node = new RibTreeNode<>(routeBits, prefixLength);
       node._routes.add(route);
       assignChild(parent, node, rightBranch);
       assignChild(node, oldNode, currentNodeAddressBit);
-      return new RibDelta.Builder<>(_owner).add(route).build();
+      return new RibDelta.Builder<>(owner).add(route).build();
     }
 
     /*
@@ -259,32 +269,36 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
      */
     RibTreeNode<R> oldNode = node;
 
-    // newNetwork has the max prefix match up to nextUnmatchedBit
-    Prefix newNetwork = new Prefix(route.getNetwork().getStartIp(), nextUnmatchedBit);
-    node = new RibTreeNode<>(newNetwork, _owner); // node is the node we are inserting in the middle
-    RibTreeNode<R> child = new RibTreeNode<>(route.getNetwork(), _owner);
+    // node is the node we are inserting in the middle, with the max prefix match up to
+    // nextUnmatchedBit
+    node = new RibTreeNode<>(maskBits(routeBits, nextUnmatchedBit), nextUnmatchedBit);
+    RibTreeNode<R> child = new RibTreeNode<>(routeBits, prefixLength);
     child._routes.add(route);
     assignChild(parent, node, rightBranch);
     // child and old node become siblings, children of the newly inserted node
     assignChild(node, child, currentAddressBit);
     assignChild(node, oldNode, !currentAddressBit);
-    return new RibDelta.Builder<>(_owner).add(route).build();
+    return new RibDelta.Builder<>(owner).add(route).build();
   }
 
   @Nullable
   RibDelta<R> mergeRoute(
-      R route, long routeBits, int routePrefixLength, int firstUnmatchedBitIndex) {
+      AbstractRib<R> owner,
+      R route,
+      long routeBits,
+      int routePrefixLength,
+      int firstUnmatchedBitIndex) {
     /*
      * We have reached the node where a route should be inserted, because:
      * 1) the prefix length of this node matches the prefix length of the route exactly, and
      * 2) going deeper can only gets us longer matches
      */
-    if (routePrefixLength == _prefix.getPrefixLength()) {
+    if (routePrefixLength == _prefixLength) {
 
       // No routes with this prefix, so just add it. No comparison necessary
       if (_routes.isEmpty()) {
         _routes.add(route);
-        return new RibDelta.Builder<>(_owner).add(route).build();
+        return new RibDelta.Builder<>(owner).add(route).build();
       }
 
       /*
@@ -294,7 +308,7 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
        * worse than all, or at the same preference level.
        */
       R oldRoute = _routes.iterator().next();
-      int preferenceComparison = _owner.comparePreference(route, oldRoute);
+      int preferenceComparison = owner.comparePreference(route, oldRoute);
       if (preferenceComparison < 0) { // less preferable, so route doesn't get added
         return null;
       }
@@ -305,7 +319,7 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
         }
         // Otherwise add the route
         if (_routes.add(route)) {
-          return new RibDelta.Builder<>(_owner).add(route).build();
+          return new RibDelta.Builder<>(owner).add(route).build();
         } else {
           return null;
         }
@@ -315,7 +329,7 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
        * Better than all pre-existing routes for this prefix, so
        * replace them with this one.
        */
-      RibDelta<R> delta = new Builder<>(_owner).remove(_routes, REPLACE).add(route).build();
+      RibDelta<R> delta = new Builder<>(owner).remove(_routes, REPLACE).add(route).build();
       _routes.clear();
       _routes.add(route);
       return delta;
@@ -326,28 +340,33 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
      */
     boolean currentBit = Ip.getBitAtPosition(routeBits, firstUnmatchedBitIndex);
     return mergeHelper(
-        this, route, routeBits, routePrefixLength, firstUnmatchedBitIndex, currentBit);
+        owner, this, route, routeBits, routePrefixLength, firstUnmatchedBitIndex, currentBit);
   }
 
   @Override
   public String toString() {
-    return _prefix.toString();
+    return getPrefix().toString();
   }
 
   @Nullable
   public RibDelta<R> removeRoute(
-      R route, long bits, int prefixLength, int firstUnmatchedBitIndex, Reason reason) {
+      AbstractRib<R> owner,
+      R route,
+      long bits,
+      int prefixLength,
+      int firstUnmatchedBitIndex,
+      Reason reason) {
     RibTreeNode<R> node = findRouteNode(bits, prefixLength, firstUnmatchedBitIndex);
     if (node == null) {
       // No effect, return null
       return null;
     }
-    Builder<R> b = new Builder<>(_owner);
+    Builder<R> b = new Builder<>(owner);
     if (node._routes.remove(route)) {
       b.remove(route, reason);
-      if (node._routes.isEmpty() && _owner._backupRoutes != null) {
+      if (node._routes.isEmpty() && owner._backupRoutes != null) {
         SortedSet<? extends R> backups =
-            _owner._backupRoutes.getOrDefault(route.getNetwork(), Collections.emptySortedSet());
+            owner._backupRoutes.getOrDefault(route.getNetwork(), Collections.emptySortedSet());
         if (!backups.isEmpty()) {
           node._routes.add(backups.first());
           b.add(backups.first());
@@ -384,13 +403,14 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
                 : _right.equals(((RibTreeNode<?>) obj)._right)));
   }
 
-  public RibDelta<R> clearRoutes(Prefix prefix) {
+  @Nullable
+  public RibDelta<R> clearRoutes(AbstractRib<R> owner, Prefix prefix) {
     long bits = prefix.getStartIp().asLong();
     RibTreeNode<R> node = findRouteNode(bits, prefix.getPrefixLength(), 0);
     if (node == null) {
       return null;
     }
-    RibDelta<R> delta = new Builder<>(_owner).remove(node._routes, REPLACE).build();
+    RibDelta<R> delta = new Builder<>(owner).remove(node._routes, REPLACE).build();
     node._routes.clear();
     return delta;
   }
@@ -410,14 +430,15 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
       if (_right != null) {
         _right.excludeRoutableIps(matchingIps);
       }
-      matchingIps.including(new IpWildcard(_prefix));
-      builder.put(_prefix, matchingIps.build());
+      Prefix prefix = getPrefix();
+      matchingIps.including(new IpWildcard(prefix));
+      builder.put(prefix, matchingIps.build());
     }
   }
 
   public void addRoutableIps(IpWildcardSetIpSpace.Builder builder) {
     if (!_routes.isEmpty()) {
-      builder.including(new IpWildcard(_prefix));
+      builder.including(new IpWildcard(getPrefix()));
     } else {
       if (_left != null) {
         _left.addRoutableIps(builder);
@@ -430,7 +451,7 @@ class RibTreeNode<R extends AbstractRoute> implements Serializable {
 
   public void excludeRoutableIps(IpWildcardSetIpSpace.Builder builder) {
     if (!_routes.isEmpty()) {
-      builder.excluding(new IpWildcard(_prefix));
+      builder.excluding(new IpWildcard(getPrefix()));
     } else {
       if (_left != null) {
         _left.excludeRoutableIps(builder);
@@ -0,0 +1,249 @@
+package org.batfish.grammar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.Nullable;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.batfish.common.BatfishException;
+
+/**
+ * Parses a large configuration file by splitting it into chunks at top-level stanza boundaries,
+ * parsing the chunks in parallel, and stitching their parse trees into the tree of the whole file.
+ *
+ * <p>Each chunk is parsed by its own combined parser, whose input is the chunk starting at the line
+ * number of its first line in the whole file, and whose tokens are then shifted to the character
+ * indices of the whole file. Tokens, error nodes and line-based error messages are therefore the
+ * same as with a single parser, and extractors walk the stitched tree as if the file had been
+ * parsed as a whole.
+ *
+ * <p>Splitting is only an optimization. Since a boundary that looks safe may fall inside e.g. a
+ * banner, or before a line that the grammar would attach to the previous stanza, every boundary is
+ * checked after parsing: both chunks must parse cleanly, the lexer must end the first chunk in its
+ * default mode, and the two stanzas around the boundary must parse as the same two stanzas on their
+ * own. If any check fails, {@link #parse()} returns {@code null} and the file must be parsed as a
+ * whole.
+ *
+ * @param <C> type of the root context of the grammar
+ */
+public abstract class StanzaChunkParser<C extends ParserRuleContext> {
+
+  /** A range of lines of the text, parsed by its own combined parser */
+  private final class Chunk {
+
+    private final int _end;
+
+    private final int _firstLine;
+
+    private BatfishCombinedParser<?, ?> _parser;
+
+    private final int _start;
+
+    private C _tree;
+
+    private Chunk(int start, int end, int firstLine) {
+      _start = start;
+      _end = end;
+      _firstLine = firstLine;
+    }
+
+    /** Parses this chunk, returning whether it parsed without errors */
+    private boolean parse() {
+      _parser = newParser(_text.substring(_start, _end));
+      _parser.setFirstLine(_firstLine);
+      try {
+        _tree = rootClass().cast(_parser.parse());
+      } catch (BatfishException e) {
+        // thrown on errors when e.g. throwOnParserError is set
+        return false;
+      }
+      Lexer lexer = _parser.getLexer();
+      if (!_parser.getErrors().isEmpty()
+          || lexer._mode != Lexer.DEFAULT_MODE
+          || !lexer._modeStack.isEmpty()) {
+        return false;
+      }
+      // Index the whole text, keeping the text of each token since it can no longer be looked up
+      for (Token token : _parser.getTokens().getTokens()) {
+        CommonToken commonToken = (CommonToken) token;
+        commonToken.setText(token.getText());
+        commonToken.setStartIndex(token.getStartIndex() + _start);
+        commonToken.setStopIndex(token.getStopIndex() + _start);
+      }
+      return true;
+    }
+  }
+
+  private final int _chunkLines;
+
+  private final boolean _parallel;
+
+  private final String _text;
+
+  /**
+   * @param text the text of the whole file
+   * @param chunkLines approximate number of lines per chunk
+   * @param parallel whether to parse the chunks in parallel
+   */
+  protected StanzaChunkParser(String text, int chunkLines, boolean parallel) {
+    _chunkLines = chunkLines;
+    _parallel = parallel;
+    _text = text;
+  }
+
+  /**
+   * Returns whether a top-level stanza may start at the line starting at index {@code start} of
+   * {@code text}. This is only a hint: boundaries are checked after parsing.
+   */
+  protected abstract boolean canStartStanza(String text, int start);
+
+  /** Returns a combined parser of the given input, configured like the parser of the whole file */
+  protected abstract BatfishCombinedParser<?, ?> newParser(String input);
+
+  /** Returns an empty root context, to which the children of the chunk trees are added */
+  protected abstract C newRoot();
+
+  /** Returns the class of the root context of the grammar */
+  protected abstract Class<C> rootClass();
+
+  /**
+   * Parses the text in chunks, and returns the stitched parse tree, or {@code null} if the text is
+   * too short to be split, or if the text must be parsed as a whole because a boundary was not
+   * safe.
+   */
+  @Nullable
+  public C parse() {
+    List<Chunk> chunks = split();
+    if (chunks.size() < 2) {
+      return null;
+    }
+    IntStream indices = IntStream.range(0, chunks.size());
+    if (_parallel) {
+      indices = indices.parallel();
+    }
+    boolean parsed = indices.allMatch(i -> chunks.get(i).parse());
+    if (!parsed) {
+      return null;
+    }
+    for (int i = 0; i + 1 < chunks.size(); i++) {
+      if (!isSafeBoundary(chunks.get(i), chunks.get(i + 1))) {
+        return null;
+      }
+    }
+    return stitch(chunks);
+  }
+
+  /** Splits the text into chunks of about {@code chunkLines} lines at candidate boundaries */
+  private List<Chunk> split() {
+    List<Chunk> chunks = new ArrayList<>();
+    if (_chunkLines <= 0) {
+      return chunks;
+    }
+    int chunkStart = 0;
+    int chunkFirstLine = 1;
+    int line = 1;
+    int linesInChunk = 0;
+    int lineStart = 0;
+    int length = _text.length();
+    while (lineStart < length) {
+      if (linesInChunk >= _chunkLines && canStartStanza(_text, lineStart)) {
+        chunks.add(new Chunk(chunkStart, lineStart, chunkFirstLine));
+        chunkStart = lineStart;
+        chunkFirstLine = line;
+        linesInChunk = 0;
+      }
+      int newline = _text.indexOf('\n', lineStart);
+      lineStart = newline == -1 ? length : newline + 1;
+      line++;
+      linesInChunk++;
+    }
+    if (chunks.isEmpty() || linesInChunk >= _chunkLines / 2) {
+      chunks.add(new Chunk(chunkStart, length, chunkFirstLine));
+    } else {
+      // merge a short tail into the last chunk
+      Chunk last = chunks.remove(chunks.size() - 1);
+      chunks.add(new Chunk(last._start, length, last._firstLine));
+    }
+    return chunks;
+  }
+
+  private static List<ParserRuleContext> getStanzas(ParserRuleContext tree) {
+    if (tree.children == null) {
+      return new ArrayList<>();
+    }
+    return tree.children
+        .stream()
+        .filter(ParserRuleContext.class::isInstance)
+        .map(ParserRuleContext.class::cast)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Returns whether the last stanza of {@code before} and the first stanza of {@code after} parse
+   * as the same two stanzas on their own, i.e. whether the first stanza does not extend past the
+   * boundary when parsed with its successor.
+   */
+  private boolean isSafeBoundary(Chunk before, Chunk after) {
+    List<ParserRuleContext> beforeStanzas = getStanzas(before._tree);
+    List<ParserRuleContext> afterStanzas = getStanzas(after._tree);
+    if (beforeStanzas.isEmpty() || afterStanzas.isEmpty()) {
+      return false;
+    }
+    ParserRuleContext last = beforeStanzas.get(beforeStanzas.size() - 1);
+    ParserRuleContext first = afterStanzas.get(0);
+    if (first.getStop() == null) {
+      return false;
+    }
+    Token lastStart = last.getStart();
+    int start = lastStart.getStartIndex() - lastStart.getCharPositionInLine();
+    int stop = first.getStop().getStopIndex();
+    int newline = _text.charAt(stop) == '\n' ? stop : _text.indexOf('\n', stop);
+    int end = newline == -1 ? _text.length() : newline + 1;
+    Chunk pair = new Chunk(start, end, lastStart.getLine());
+    if (!pair.parse()) {
+      return false;
+    }
+    List<ParserRuleContext> pairStanzas = getStanzas(pair._tree);
+    return pairStanzas.size() == 2
+        && sameExtent(pairStanzas.get(0), last)
+        && sameExtent(pairStanzas.get(1), first);
+  }
+
+  private static boolean sameExtent(ParserRuleContext a, ParserRuleContext b) {
+    return a.getStop() != null
+        && b.getStop() != null
+        && a.getStart().getStartIndex() == b.getStart().getStartIndex()
+        && a.getStop().getStopIndex() == b.getStop().getStopIndex();
+  }
+
+  /**
+   * Moves the children of the chunk trees to a new root, dropping the end of file of each chunk
+   * before the last.
+   */
+  private C stitch(List<Chunk> chunks) {
+    C root = newRoot();
+    for (int i = 0; i < chunks.size(); i++) {
+      C tree = chunks.get(i)._tree;
+      for (ParseTree child : tree.children) {
+        if (child instanceof TerminalNode
+            && !(child instanceof ErrorNode)
+            && ((TerminalNode) child).getSymbol().getType() == Token.EOF
+            && i + 1 < chunks.size()) {
+          continue;
+        }
+        child.setParent(root);
+        root.addAnyChild(child);
+      }
+    }
+    root.start = chunks.get(0)._tree.getStart();
+    root.stop = chunks.get(chunks.size() - 1)._tree.getStop();
+    return root;
+  }
+}
@@ -0,0 +1,103 @@
+package org.batfish.grammar;
+
+import javax.annotation.Nullable;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+/**
+ * Runs a single-pass extractor while a file is parsed, instead of on the parse tree of the whole
+ * file. Added as a parse listener, it walks each top-level stanza with the extractor as soon as the
+ * stanza is complete, and then detaches it from the root, so that only the parse tree of the stanza
+ * being parsed is kept in memory.
+ *
+ * <p>The extractor sees the same events in the same order as when walking the whole tree: entering
+ * the root, then each child of the root including terminals and the error nodes of unrecognized
+ * lines, then exiting the root. Since error recovery may replace a stanza being parsed with error
+ * nodes, children of the root are walked when a stanza is exited, after any such recovery.
+ *
+ * <p>An exception thrown by the extractor would otherwise unwind through the parser, so the first
+ * one is recorded, no further events are passed on, and {@link #throwIfFailed()} rethrows it once
+ * parsing is done.
+ *
+ * @param <C> type of the root context of the grammar
+ */
+public abstract class StanzaStreamingExtractor<C extends ParserRuleContext>
+    implements ParseTreeListener {
+
+  private final ParseTreeListener _extractor;
+
+  @Nullable private RuntimeException _failure;
+
+  private final ParseTreeWalker _walker;
+
+  protected StanzaStreamingExtractor(ParseTreeListener extractor) {
+    _extractor = extractor;
+    _walker = new ParseTreeWalker();
+  }
+
+  /** Clears the labels of {@code root} that refer to its detached children */
+  protected abstract void clearLabels(C root);
+
+  /** Returns the class of the root context of the grammar */
+  protected abstract Class<C> rootClass();
+
+  @Override
+  public void enterEveryRule(ParserRuleContext ctx) {
+    if (_failure != null || ctx.parent != null) {
+      return;
+    }
+    try {
+      _extractor.enterEveryRule(ctx);
+      ctx.enterRule(_extractor);
+    } catch (RuntimeException e) {
+      _failure = e;
+    }
+  }
+
+  @Override
+  public void exitEveryRule(ParserRuleContext ctx) {
+    if (_failure != null) {
+      return;
+    }
+    try {
+      if (ctx.parent == null) {
+        flush(ctx);
+        ctx.exitRule(_extractor);
+        _extractor.exitEveryRule(ctx);
+      } else if (ctx.parent.parent == null) {
+        flush(ctx.getParent());
+      }
+    } catch (RuntimeException e) {
+      _failure = e;
+    }
+  }
+
+  /** Walks the children of the root with the extractor, and detaches them */
+  private void flush(ParserRuleContext root) {
+    if (root.children == null) {
+      return;
+    }
+    for (ParseTree child : root.children) {
+      _walker.walk(_extractor, child);
+    }
+    root.children.clear();
+    clearLabels(rootClass().cast(root));
+  }
+
+  /** Rethrows the exception thrown by the extractor, if any */
+  public void throwIfFailed() {
+    if (_failure != null) {
+      throw _failure;
+    }
+  }
+
+  @Override
+  public void visitErrorNode(ErrorNode node) {}
+
+  @Override
+  public void visitTerminal(TerminalNode node) {}
+}
@@ -0,0 +1,45 @@
+package org.batfish.grammar.cisco;
+
+import org.batfish.config.Settings;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.grammar.BatfishCombinedParser;
+import org.batfish.grammar.StanzaChunkParser;
+import org.batfish.grammar.cisco.CiscoParser.Cisco_configurationContext;
+
+/**
+ * Parses a large Cisco configuration in chunks split before unindented lines, which start top-level
+ * stanzas unless they are e.g. part of a banner.
+ */
+public class CiscoStanzaChunkParser extends StanzaChunkParser<Cisco_configurationContext> {
+
+  private final ConfigurationFormat _format;
+
+  private final Settings _settings;
+
+  public CiscoStanzaChunkParser(String text, Settings settings, ConfigurationFormat format) {
+    super(text, settings.getParseChunkLines(), !settings.getSequential());
+    _format = format;
+    _settings = settings;
+  }
+
+  @Override
+  protected boolean canStartStanza(String text, int start) {
+    char c = text.charAt(start);
+    return 'a' <= c && c <= 'z';
+  }
+
+  @Override
+  protected BatfishCombinedParser<?, ?> newParser(String input) {
+    return new CiscoCombinedParser(input, _settings, _format);
+  }
+
+  @Override
+  protected Cisco_configurationContext newRoot() {
+    return new Cisco_configurationContext(null, -1);
+  }
+
+  @Override
+  protected Class<Cisco_configurationContext> rootClass() {
+    return Cisco_configurationContext.class;
+  }
+}
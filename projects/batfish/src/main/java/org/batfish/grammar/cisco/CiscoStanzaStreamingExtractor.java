@@ -0,0 +1,24 @@
+package org.batfish.grammar.cisco;
+
+import org.batfish.grammar.StanzaStreamingExtractor;
+import org.batfish.grammar.cisco.CiscoParser.Cisco_configurationContext;
+
+/** Runs a {@link CiscoControlPlaneExtractor} on each top-level stanza as soon as it is parsed. */
+public class CiscoStanzaStreamingExtractor
+    extends StanzaStreamingExtractor<Cisco_configurationContext> {
+
+  public CiscoStanzaStreamingExtractor(CiscoControlPlaneExtractor extractor) {
+    super(extractor);
+  }
+
+  @Override
+  protected void clearLabels(Cisco_configurationContext root) {
+    root.sl.clear();
+    root.stanza = null;
+  }
+
+  @Override
+  protected Class<Cisco_configurationContext> rootClass() {
+    return Cisco_configurationContext.class;
+  }
+}
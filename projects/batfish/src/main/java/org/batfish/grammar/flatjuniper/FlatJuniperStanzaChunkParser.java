@@ -0,0 +1,44 @@
+package org.batfish.grammar.flatjuniper;
+
+import javax.annotation.Nullable;
+import org.batfish.config.Settings;
+import org.batfish.grammar.BatfishCombinedParser;
+import org.batfish.grammar.StanzaChunkParser;
+import org.batfish.grammar.flatjuniper.FlatJuniperParser.Flat_juniper_configurationContext;
+import org.batfish.grammar.flattener.FlattenerLineMap;
+
+/** Parses a large flat Juniper configuration in chunks split before {@code set} lines. */
+public class FlatJuniperStanzaChunkParser
+    extends StanzaChunkParser<Flat_juniper_configurationContext> {
+
+  @Nullable private final FlattenerLineMap _lineMap;
+
+  private final Settings _settings;
+
+  public FlatJuniperStanzaChunkParser(
+      String text, Settings settings, @Nullable FlattenerLineMap lineMap) {
+    super(text, settings.getParseChunkLines(), !settings.getSequential());
+    _lineMap = lineMap;
+    _settings = settings;
+  }
+
+  @Override
+  protected boolean canStartStanza(String text, int start) {
+    return text.startsWith("set ", start);
+  }
+
+  @Override
+  protected BatfishCombinedParser<?, ?> newParser(String input) {
+    return new FlatJuniperCombinedParser(input, _settings, _lineMap);
+  }
+
+  @Override
+  protected Flat_juniper_configurationContext newRoot() {
+    return new Flat_juniper_configurationContext(null, -1);
+  }
+
+  @Override
+  protected Class<Flat_juniper_configurationContext> rootClass() {
+    return Flat_juniper_configurationContext.class;
+  }
+}
@@ -1,14 +1,21 @@
 package org.batfish.job;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import org.batfish.common.BatfishException;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.util.CommonUtil;
@@ -71,6 +78,36 @@ public class BatfishJobExecutor {
         .executeJobs(jobs, output, answerElement, haltOnProcessingError, description);
   }
 
+  /**
+   * Like {@link #runJobsInExecutor}, but streams the jobs through the executor instead of running
+   * all of them before any result is used: at most a few jobs per thread are submitted at a time,
+   * and the results are applied to {@code output} in the order of {@code jobs} as soon as they are
+   * available. Each applied result is then passed to {@code handOff}, whose returned task (if any)
+   * is run in the same executor, so that e.g. the output of a job can be serialized and released
+   * while other jobs are still running. A job and its hand-off task count together against the
+   * in-flight bound.
+   *
+   * @param handOff called in order on the calling thread with each result applied to {@code
+   *     output}; returns the task to run with that result, or {@code null} if there is none
+   */
+  public static <
+          JobT extends BatfishJob<JobResultT>,
+          AnswerElementT extends AnswerElement,
+          JobResultT extends BatfishJobResult<OutputT, AnswerElementT>,
+          OutputT>
+      void runJobsInPipeline(
+          Settings settings,
+          BatfishLogger logger,
+          List<JobT> jobs,
+          OutputT output,
+          AnswerElementT answerElement,
+          boolean haltOnProcessingError,
+          String description,
+          Function<JobResultT, Runnable> handOff) {
+    getBatfishJobExecutor(settings, logger)
+        .executePipeline(jobs, output, answerElement, haltOnProcessingError, description, handOff);
+  }
+
   static BatfishJobExecutor getBatfishJobExecutor(Settings settings, BatfishLogger logger) {
     return new BatfishJobExecutor(settings, logger);
   }
@@ -147,6 +184,98 @@ public class BatfishJobExecutor {
     }
   }
 
+  private <
+          JobT extends BatfishJob<JobResultT>,
+          AnswerElementT extends AnswerElement,
+          JobResultT extends BatfishJobResult<OutputT, AnswerElementT>,
+          OutputT>
+      void executePipeline(
+          List<JobT> jobs,
+          OutputT output,
+          AnswerElementT answerElement,
+          boolean haltOnProcessingError,
+          String description,
+          Function<JobResultT, Runnable> handOff) {
+    ExecutorService pool = createExecutorService();
+    Semaphore inFlight = new Semaphore(getMaxInFlightJobs());
+    Deque<Future<JobResultT>> pendingJobs = new ArrayDeque<>();
+    List<Future<?>> handOffs = new ArrayList<>();
+    Iterator<JobT> remainingJobs = jobs.iterator();
+
+    initializeJobsStats(jobs, description);
+    boolean processingError = false;
+    List<BatfishException> failureCauses = new ArrayList<>();
+    try {
+      while (remainingJobs.hasNext() || !pendingJobs.isEmpty()) {
+        if (pendingJobs.isEmpty()) {
+          // every permit is held by a hand-off task, wait for one to finish
+          inFlight.acquire();
+          pendingJobs.add(pool.submit(remainingJobs.next()));
+        }
+        while (remainingJobs.hasNext() && inFlight.tryAcquire()) {
+          pendingJobs.add(pool.submit(remainingJobs.next()));
+        }
+
+        JobResultT result;
+        try {
+          result = pendingJobs.remove().get();
+        } catch (ExecutionException e) {
+          throw new BatfishException(
+              String.format("Error executing job: %s", e.getCause().getMessage()), e);
+        }
+
+        markJobCompleted();
+        boolean jobResultError =
+            handleJobResult(result, output, answerElement, failureCauses, haltOnProcessingError);
+        if (jobResultError) {
+          processingError = true;
+        }
+        Runnable task = null;
+        if (!jobResultError || !haltOnProcessingError) {
+          task = handOff.apply(result);
+        }
+        if (task == null) {
+          inFlight.release();
+        } else {
+          Runnable handOffTask = task;
+          handOffs.add(
+              pool.submit(
+                  () -> {
+                    try {
+                      handOffTask.run();
+                    } finally {
+                      inFlight.release();
+                    }
+                  }));
+        }
+      }
+      for (Future<?> handOffTask : handOffs) {
+        try {
+          handOffTask.get();
+        } catch (ExecutionException e) {
+          throw new BatfishException(
+              String.format("Error handing off job result: %s", e.getCause().getMessage()), e);
+        }
+      }
+    } catch (InterruptedException e) {
+      throw new BatfishException("Job didn't finish", e);
+    } finally {
+      pool.shutdown();
+    }
+
+    if (processingError) {
+      handleProcessingError(jobs, failureCauses, haltOnProcessingError);
+    } else if (!_logger.isActive(BatfishLogger.LEVEL_INFO)) {
+      _logger.info("All jobs executed successfully\n");
+    }
+  }
+
+  /** Maximum number of jobs (and their hand-off tasks) in flight at once in a pipeline */
+  @VisibleForTesting
+  int getMaxInFlightJobs() {
+    return _settings.getSequential() ? 1 : 2 * _settings.getAvailableThreads();
+  }
+
   private ExecutorService createExecutorService() {
     if (_settings.getSequential()) {
       return Executors.newSingleThreadExecutor();
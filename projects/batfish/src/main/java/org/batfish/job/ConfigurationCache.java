@@ -0,0 +1,273 @@
+package org.batfish.job;
+
+import static org.batfish.common.plugin.PluginConsumer.DEFAULT_HEADER_LENGTH_BYTES;
+import static org.batfish.common.plugin.PluginConsumer.detectFormat;
+import static org.batfish.common.plugin.PluginConsumer.newObjectInputStream;
+import static org.batfish.common.plugin.PluginConsumer.newObjectOutputStream;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import javax.annotation.Nullable;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.batfish.common.BatfishException;
+import org.batfish.common.BatfishLogger;
+import org.batfish.common.ParseTreeSentences;
+import org.batfish.common.Version;
+import org.batfish.common.Warnings;
+import org.batfish.config.Settings;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.datamodel.answers.ConvertConfigurationAnswerElement;
+import org.batfish.datamodel.answers.ParseStatus;
+import org.batfish.representation.host.HostConfiguration;
+import org.batfish.representation.iptables.IptablesVendorConfiguration;
+import org.batfish.vendor.VendorConfiguration;
+
+/**
+ * An on-disk cache of the results of parsing and converting the configuration files of a network.
+ * Entries are keyed by a hash of everything a result depends on: the content of the input, the
+ * settings that affect processing, and the Batfish version. Snapshots of a network that share most
+ * of their files then only parse and convert the files that changed.
+ *
+ * <p>Entries are written atomically and never modified, so tasks processing snapshots of the same
+ * network concurrently need no coordination. Unreadable entries, e.g. written by an incompatible
+ * build, are treated as missing. Entries are never evicted; delete the directory to reclaim space.
+ *
+ * <p>Entries are encoded like other objects stored by Batfish: LZ4-compressed, and serialized as
+ * text if so configured.
+ */
+public final class ConfigurationCache {
+
+  /** The cached result of parsing a file, for results that are not failures */
+  static final class ParseEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Nullable private final ParseTreeSentences _parseTree;
+
+    @Nullable private final ParseStatus _status;
+
+    private final boolean _unrecognized;
+
+    @Nullable private final VendorConfiguration _vc;
+
+    private final Warnings _warnings;
+
+    ParseEntry(ParseVendorConfigurationResult result) {
+      _parseTree = result.getParseTree();
+      _status = result.getStatus();
+      _vc = result.getVendorConfiguration();
+      _unrecognized = _vc != null && _vc.getUnrecognized();
+      _warnings = result.getWarnings();
+    }
+
+    /**
+     * Returns the cached result for {@code filename}, whose warnings are added to {@code warnings}
+     */
+    ParseVendorConfigurationResult toResult(
+        long elapsedTime, BatfishLogger logger, String filename, Warnings warnings) {
+      warnings.getParseWarnings().addAll(_warnings.getParseWarnings());
+      warnings.getPedanticWarnings().addAll(_warnings.getPedanticWarnings());
+      warnings.getRedFlagWarnings().addAll(_warnings.getRedFlagWarnings());
+      warnings.getUnimplementedWarnings().addAll(_warnings.getUnimplementedWarnings());
+      if (_vc == null) {
+        return new ParseVendorConfigurationResult(
+            elapsedTime, logger.getHistory(), filename, warnings, _status);
+      }
+      // transient, so not restored by deserialization
+      _vc.setUnrecognized(_unrecognized);
+      return new ParseVendorConfigurationResult(
+          elapsedTime, logger.getHistory(), filename, _vc, warnings, _parseTree);
+    }
+  }
+
+  /** The cached result of converting a vendor configuration, for results that are not failures */
+  static final class ConvertEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ConvertConfigurationAnswerElement _answerElement;
+
+    private final Map<String, Configuration> _configurations;
+
+    private final Map<String, Warnings> _warningsByHost;
+
+    ConvertEntry(ConvertConfigurationResult result) {
+      _answerElement = result.getAnswerElement();
+      _configurations = result.getConfigurations();
+      _warningsByHost = result.getWarningsByHost();
+    }
+
+    ConvertConfigurationResult toResult(long elapsedTime, BatfishLogger logger, String name) {
+      return new ConvertConfigurationResult(
+          elapsedTime, logger.getHistory(), _warningsByHost, name, _configurations, _answerElement);
+    }
+  }
+
+  private static final String TMP_SUFFIX = ".tmp";
+
+  private final ClassLoader _classLoader;
+
+  private final Path _dir;
+
+  private final BatfishLogger _logger;
+
+  private final boolean _serializeToText;
+
+  private ConfigurationCache(
+      Path dir, ClassLoader classLoader, BatfishLogger logger, boolean serializeToText) {
+    _classLoader = classLoader;
+    _dir = dir;
+    _logger = logger;
+    _serializeToText = serializeToText;
+  }
+
+  /**
+   * Returns the cache of the given network, stored in a subdirectory of {@code cacheDir}. Classes
+   * of cached entries are resolved with {@code classLoader}, e.g. to load plugin-defined classes,
+   * and entries are stored as text if {@code serializeToText} is set.
+   */
+  public static ConfigurationCache forNetwork(
+      Path cacheDir,
+      String network,
+      ClassLoader classLoader,
+      BatfishLogger logger,
+      boolean serializeToText) {
+    Path dir = cacheDir.resolve(network);
+    try {
+      Files.createDirectories(dir);
+    } catch (IOException e) {
+      throw new BatfishException("Could not create configuration cache directory " + dir, e);
+    }
+    return new ConfigurationCache(dir, classLoader, logger, serializeToText);
+  }
+
+  /** Returns the key of the result of parsing the given file with the given settings. */
+  static String parseKey(
+      Settings settings, ConfigurationFormat format, String filename, String fileText) {
+    Hasher hasher = newHasher("parse", settings);
+    hasher.putBoolean(settings.getDisableUnrecognized());
+    hasher.putInt(settings.getMaxParserContextLines());
+    hasher.putInt(settings.getMaxParserContextTokens());
+    hasher.putInt(settings.getMaxParseTreePrintLength());
+    hasher.putBoolean(settings.getPrintParseTree());
+    hasher.putBoolean(settings.getPrintParseTreeLineNums());
+    hasher.putBoolean(settings.getThrowOnLexerError());
+    hasher.putBoolean(settings.getThrowOnParserError());
+    settings.ignoreFilesWithStrings().forEach(s -> hasher.putString(s, StandardCharsets.UTF_8));
+    hasher.putString(format.name(), StandardCharsets.UTF_8);
+    hasher.putString(filename, StandardCharsets.UTF_8);
+    hasher.putString(fileText, StandardCharsets.UTF_8);
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Returns the key of the result of converting the given config object with the given settings, or
+   * {@code null} if the result cannot be cached.
+   *
+   * <p>Serialized config objects are not canonical, e.g. hash sets do not keep their capacity, so
+   * vendor configurations are identified by the key of the parse result they come from instead,
+   * together with the changes made to them since, e.g. the iptables configuration attached to a
+   * host.
+   */
+  @Nullable
+  static String convertKey(Settings settings, Object configObject) {
+    if (!(configObject instanceof VendorConfiguration)) {
+      return null;
+    }
+    VendorConfiguration vc = (VendorConfiguration) configObject;
+    if (vc.getParseCacheKey() == null || vc.getOverlayConfiguration() != null) {
+      return null;
+    }
+    Hasher hasher = newHasher("convert", settings);
+    hasher.putString(vc.getParseCacheKey(), StandardCharsets.UTF_8);
+    // the hostname of a duplicate is changed after parsing
+    hasher.putString(vc.getHostname(), StandardCharsets.UTF_8);
+    if (vc instanceof HostConfiguration) {
+      IptablesVendorConfiguration iptables = ((HostConfiguration) vc).getIptablesVendorConfig();
+      hasher.putBoolean(iptables != null);
+      if (iptables != null) {
+        if (iptables.getParseCacheKey() == null) {
+          return null;
+        }
+        hasher.putString(iptables.getParseCacheKey(), StandardCharsets.UTF_8);
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  private static Hasher newHasher(String kind, Settings settings) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(kind, StandardCharsets.UTF_8);
+    hasher.putString(Version.getVersion(), StandardCharsets.UTF_8);
+    // which warnings are recorded, as in Batfish#buildWarnings
+    BatfishLogger logger = settings.getLogger();
+    hasher.putBoolean(
+        settings.getPedanticRecord() && logger.isActive(BatfishLogger.LEVEL_PEDANTIC));
+    hasher.putBoolean(settings.getRedFlagRecord() && logger.isActive(BatfishLogger.LEVEL_REDFLAG));
+    hasher.putBoolean(
+        settings.getUnimplementedRecord() && logger.isActive(BatfishLogger.LEVEL_UNIMPLEMENTED));
+    return hasher;
+  }
+
+  /** Returns the entry with the given key, or {@code null} if there is none or it is unreadable. */
+  @Nullable
+  <S extends Serializable> S load(String key, Class<S> entryClass) {
+    try (InputStream in = Files.newInputStream(_dir.resolve(key));
+        LZ4FrameInputStream lis = new LZ4FrameInputStream(in)) {
+      PushbackInputStream pbstream = new PushbackInputStream(lis, DEFAULT_HEADER_LENGTH_BYTES);
+      try (ObjectInputStream ois =
+          newObjectInputStream(pbstream, detectFormat(pbstream), _classLoader)) {
+        return entryClass.cast(ois.readObject());
+      }
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException | ClassNotFoundException | RuntimeException e) {
+      // partially written by a crashed process, or written by an incompatible build. Besides
+      // ClassCastException, entries stored as text fail with unchecked XStream exceptions.
+      _logger.debugf("Ignoring unreadable configuration cache entry %s: %s\n", key, e);
+      return null;
+    }
+  }
+
+  /** Stores the entry with the given key, replacing any existing one. */
+  void store(String key, Serializable entry) {
+    Path tmp = null;
+    try {
+      tmp = Files.createTempFile(_dir, key, TMP_SUFFIX);
+      try (OutputStream out = Files.newOutputStream(tmp);
+          LZ4FrameOutputStream los = new LZ4FrameOutputStream(out);
+          ObjectOutputStream oos = newObjectOutputStream(los, _serializeToText)) {
+        oos.writeObject(entry);
+      }
+      Files.move(
+          tmp,
+          _dir.resolve(key),
+          StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      if (tmp != null) {
+        try {
+          Files.deleteIfExists(tmp);
+        } catch (IOException e2) {
+          e.addSuppressed(e2);
+        }
+      }
+      throw new BatfishException("Could not store configuration cache entry " + key, e);
+    }
+  }
+}
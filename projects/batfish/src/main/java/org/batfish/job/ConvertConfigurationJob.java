@@ -2,11 +2,14 @@ package org.batfish.job;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
 import org.batfish.common.BatfishException;
 import org.batfish.common.Warnings;
 import org.batfish.config.Settings;
 import org.batfish.datamodel.Configuration;
 import org.batfish.datamodel.answers.ConvertConfigurationAnswerElement;
+import org.batfish.job.ConfigurationCache.ConvertEntry;
 import org.batfish.main.Batfish;
 import org.batfish.representation.aws.AwsConfiguration;
 import org.batfish.representation.host.HostConfiguration;
@@ -15,13 +18,36 @@ import org.batfish.vendor.VendorConfiguration;
 
 public class ConvertConfigurationJob extends BatfishJob<ConvertConfigurationResult> {
 
-  private Object _configObject;
+  @Nullable private final ConfigurationCache _cache;
+
+  private Supplier<?> _configObjectLoader;
 
   private String _name;
 
   public ConvertConfigurationJob(Settings settings, Object configObject, String name) {
+    this(settings, () -> configObject, name);
+  }
+
+  /**
+   * Creates a job converting the config object returned by {@code configObjectLoader}, which is
+   * only called when the job runs so that the object need not be held in memory until then.
+   */
+  public ConvertConfigurationJob(Settings settings, Supplier<?> configObjectLoader, String name) {
+    this(settings, configObjectLoader, name, null);
+  }
+
+  /**
+   * Creates a job that reuses the result of converting an identical config object stored in {@code
+   * cache}, if any, and otherwise stores its result there.
+   */
+  public ConvertConfigurationJob(
+      Settings settings,
+      Supplier<?> configObjectLoader,
+      String name,
+      @Nullable ConfigurationCache cache) {
     super(settings);
-    _configObject = configObject;
+    _cache = cache;
+    _configObjectLoader = configObjectLoader;
     _name = name;
   }
 
@@ -33,11 +59,21 @@ public class ConvertConfigurationJob extends BatfishJob<ConvertConfigurationResu
     Map<String, Configuration> configurations = new HashMap<>();
     Map<String, Warnings> warningsByHost = new HashMap<>();
     ConvertConfigurationAnswerElement answerElement = new ConvertConfigurationAnswerElement();
+    String cacheKey = null;
     try {
+      Object configObject = _configObjectLoader.get();
+      if (_cache != null) {
+        cacheKey = ConfigurationCache.convertKey(_settings, configObject);
+        ConvertEntry cached = cacheKey == null ? null : _cache.load(cacheKey, ConvertEntry.class);
+        if (cached != null) {
+          _logger.info(" ...CACHED\n");
+          return cached.toResult(System.currentTimeMillis() - startTime, _logger, _name);
+        }
+      }
       // We have only two options: AWS VPCs or router configs
-      if (VendorConfiguration.class.isInstance(_configObject)) {
+      if (VendorConfiguration.class.isInstance(configObject)) {
         Warnings warnings = Batfish.buildWarnings(_settings);
-        VendorConfiguration vendorConfiguration = ((VendorConfiguration) _configObject);
+        VendorConfiguration vendorConfiguration = ((VendorConfiguration) configObject);
         vendorConfiguration.setWarnings(warnings);
         vendorConfiguration.setAnswerElement(answerElement);
         Configuration configuration = vendorConfiguration.toVendorIndependentConfiguration();
@@ -75,7 +111,7 @@ public class ConvertConfigurationJob extends BatfishJob<ConvertConfigurationResu
         warningsByHost.put(configuration.getHostname(), warnings);
       } else {
         configurations =
-            ((AwsConfiguration) _configObject).toConfigurations(_settings, warningsByHost);
+            ((AwsConfiguration) configObject).toConfigurations(_settings, warningsByHost);
       }
       _logger.info(" ...OK\n");
     } catch (Exception e) {
@@ -87,7 +123,21 @@ public class ConvertConfigurationJob extends BatfishJob<ConvertConfigurationResu
       warningsByHost.forEach((hostname, warnings) -> Batfish.logWarnings(_logger, warnings));
     }
     elapsedTime = System.currentTimeMillis() - startTime;
-    return new ConvertConfigurationResult(
-        elapsedTime, _logger.getHistory(), warningsByHost, _name, configurations, answerElement);
+    ConvertConfigurationResult result =
+        new ConvertConfigurationResult(
+            elapsedTime,
+            _logger.getHistory(),
+            warningsByHost,
+            _name,
+            configurations,
+            answerElement);
+    if (_cache != null && cacheKey != null) {
+      try {
+        _cache.store(cacheKey, new ConvertEntry(result));
+      } catch (BatfishException e) {
+        _logger.warnf("Could not cache conversion result of '%s': %s\n", _name, e.getMessage());
+      }
+    }
+    return result;
   }
 }
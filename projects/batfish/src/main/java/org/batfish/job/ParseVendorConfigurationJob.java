@@ -3,6 +3,7 @@ package org.batfish.job;
 import java.nio.file.Paths;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.batfish.common.BatfishException;
 import org.batfish.common.ParseTreeSentences;
@@ -13,11 +14,16 @@ import org.batfish.datamodel.answers.ParseStatus;
 import org.batfish.grammar.BatfishCombinedParser;
 import org.batfish.grammar.ControlPlaneExtractor;
 import org.batfish.grammar.ParseTreePrettyPrinter;
+import org.batfish.grammar.StanzaChunkParser;
+import org.batfish.grammar.StanzaStreamingExtractor;
 import org.batfish.grammar.VendorConfigurationFormatDetector;
 import org.batfish.grammar.cisco.CiscoCombinedParser;
 import org.batfish.grammar.cisco.CiscoControlPlaneExtractor;
+import org.batfish.grammar.cisco.CiscoStanzaChunkParser;
+import org.batfish.grammar.cisco.CiscoStanzaStreamingExtractor;
 import org.batfish.grammar.flatjuniper.FlatJuniperCombinedParser;
 import org.batfish.grammar.flatjuniper.FlatJuniperControlPlaneExtractor;
+import org.batfish.grammar.flatjuniper.FlatJuniperStanzaChunkParser;
 import org.batfish.grammar.flattener.Flattener;
 import org.batfish.grammar.flattener.FlattenerLineMap;
 import org.batfish.grammar.flatvyos.FlatVyosCombinedParser;
@@ -28,6 +34,7 @@ import org.batfish.grammar.mrv.MrvCombinedParser;
 import org.batfish.grammar.mrv.MrvControlPlaneExtractor;
 import org.batfish.grammar.palo_alto.PaloAltoCombinedParser;
 import org.batfish.grammar.palo_alto.PaloAltoControlPlaneExtractor;
+import org.batfish.job.ConfigurationCache.ParseEntry;
 import org.batfish.main.Batfish;
 import org.batfish.main.ParserBatfishException;
 import org.batfish.representation.host.HostConfiguration;
@@ -65,6 +72,8 @@ public class ParseVendorConfigurationJob extends BatfishJob<ParseVendorConfigura
     }
   }
 
+  @Nullable private final ConfigurationCache _cache;
+
   /** The name of the parsed file, relative to the testrig base. */
   private String _filename;
 
@@ -82,7 +91,22 @@ public class ParseVendorConfigurationJob extends BatfishJob<ParseVendorConfigura
       String filename,
       Warnings warnings,
       ConfigurationFormat configurationFormat) {
+    this(settings, fileText, filename, warnings, configurationFormat, null);
+  }
+
+  /**
+   * Creates a job that reuses the result of parsing the same file with the same settings stored in
+   * {@code cache}, if any, and otherwise stores its result there.
+   */
+  public ParseVendorConfigurationJob(
+      Settings settings,
+      String fileText,
+      String filename,
+      Warnings warnings,
+      ConfigurationFormat configurationFormat,
+      @Nullable ConfigurationCache cache) {
     super(settings);
+    _cache = cache;
     _fileText = fileText;
     _filename = filename;
     _ptSentences = new ParseTreeSentences();
@@ -90,15 +114,60 @@ public class ParseVendorConfigurationJob extends BatfishJob<ParseVendorConfigura
     _format = configurationFormat;
   }
 
-  @SuppressWarnings("fallthrough")
   @Override
   public ParseVendorConfigurationResult call() throws Exception {
+    if (_cache == null) {
+      return parse();
+    }
+    long startTime = System.currentTimeMillis();
+    String key = ConfigurationCache.parseKey(_settings, _format, _filename, _fileText);
+    ParseEntry cached = _cache.load(key, ParseEntry.class);
+    if (cached != null) {
+      _logger.infof("Reusing cached parse result for: '%s'\n", _filename);
+      return cached.toResult(System.currentTimeMillis() - startTime, _logger, _filename, _warnings);
+    }
+    ParseVendorConfigurationResult result = parse();
+    if (result.getFailureCause() == null) {
+      VendorConfiguration vc = result.getVendorConfiguration();
+      if (vc != null) {
+        // lets conversion results be cached under a key derived from this one
+        vc.setParseCacheKey(key);
+      }
+      try {
+        _cache.store(key, new ParseEntry(result));
+      } catch (BatfishException e) {
+        _logger.warnf("Could not cache parse result of '%s': %s\n", _filename, e.getMessage());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Whether to parse large files in chunks. Parse trees are printed from a parse of the whole file,
+   * since the token modes of chunks are not tracked.
+   */
+  private boolean splitIntoChunks() {
+    return _settings.getParseChunkLines() > 0 && !_settings.getPrintParseTree();
+  }
+
+  /**
+   * Whether to extract while parsing, where supported. Parse trees are printed from the tree of the
+   * whole file, so it is kept when they are printed.
+   */
+  private boolean streamExtraction() {
+    return _settings.getStreamExtraction() && !_settings.getPrintParseTree();
+  }
+
+  @SuppressWarnings("fallthrough")
+  private ParseVendorConfigurationResult parse() throws Exception {
     long startTime = System.currentTimeMillis();
     long elapsedTime;
     VendorConfiguration vc = null;
     BatfishCombinedParser<?, ?> combinedParser = null;
     ParserRuleContext tree = null;
     ControlPlaneExtractor extractor = null;
+    StanzaChunkParser<?> chunkParser = null;
+    StanzaStreamingExtractor<?> streamingExtractor = null;
     ConfigurationFormat format = _format;
     FlattenerLineMap lineMap = null;
     _logger.infof("Processing: '%s'\n", _filename);
@@ -154,7 +223,15 @@ public class ParseVendorConfigurationJob extends BatfishJob<ParseVendorConfigura
         _logger.info("OK\n");
         CiscoCombinedParser ciscoParser = new CiscoCombinedParser(newFileText, _settings, format);
         combinedParser = ciscoParser;
-        extractor = new CiscoControlPlaneExtractor(newFileText, ciscoParser, format, _warnings);
+        CiscoControlPlaneExtractor ciscoExtractor =
+            new CiscoControlPlaneExtractor(newFileText, ciscoParser, format, _warnings);
+        extractor = ciscoExtractor;
+        if (splitIntoChunks()) {
+          chunkParser = new CiscoStanzaChunkParser(newFileText, _settings, format);
+        }
+        if (streamExtraction()) {
+          streamingExtractor = new CiscoStanzaStreamingExtractor(ciscoExtractor);
+        }
         break;
 
       case HOST:
@@ -238,6 +315,9 @@ public class ParseVendorConfigurationJob extends BatfishJob<ParseVendorConfigura
             new FlatJuniperCombinedParser(_fileText, _settings, lineMap);
         combinedParser = flatJuniperParser;
         extractor = new FlatJuniperControlPlaneExtractor(_fileText, flatJuniperParser, _warnings);
+        if (splitIntoChunks()) {
+          chunkParser = new FlatJuniperStanzaChunkParser(_fileText, _settings, lineMap);
+        }
         break;
 
       case IPTABLES:
@@ -335,14 +415,28 @@ public class ParseVendorConfigurationJob extends BatfishJob<ParseVendorConfigura
 
     try {
       _logger.info("\tParsing...");
-      tree = Batfish.parse(combinedParser, _logger, _settings);
+      tree = chunkParser == null ? null : chunkParser.parse();
+      if (tree == null) {
+        if (streamingExtractor != null) {
+          combinedParser.getParser().addParseListener(streamingExtractor);
+        }
+        tree = Batfish.parse(combinedParser, _logger, _settings);
+      } else {
+        // extract from the stitched tree
+        streamingExtractor = null;
+        _logger.info("OK\n");
+      }
       if (_settings.getPrintParseTree()) {
         _ptSentences =
             ParseTreePrettyPrinter.getParseTreeSentences(
                 tree, combinedParser, _settings.getPrintParseTreeLineNums());
       }
       _logger.info("\tPost-processing...");
-      extractor.processParseTree(tree);
+      if (streamingExtractor != null) {
+        streamingExtractor.throwIfFailed();
+      } else {
+        extractor.processParseTree(tree);
+      }
       if (!combinedParser.getErrors().isEmpty()) {
         elapsedTime = System.currentTimeMillis() - startTime;
         return new ParseVendorConfigurationResult(
@@ -4,6 +4,7 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import java.util.Map;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.batfish.common.BatfishException;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.BatfishLogger.BatfishLoggerHistory;
@@ -27,6 +28,10 @@ public class ParseVendorConfigurationResult
 
   private Warnings _warnings;
 
+  @Nullable private String _handedOffHostname;
+
+  @Nullable private String _handedOffModifiedName;
+
   private static Multimap<String, String> _duplicateHostnames = HashMultimap.create();
 
   public ParseVendorConfigurationResult(
@@ -88,17 +93,30 @@ public class ParseVendorConfigurationResult
     appendHistory(logger);
     if (_vc != null) {
       String hostname = _vc.getHostname();
-      if (vendorConfigurations.containsKey(hostname)) {
+      VendorConfiguration oldVc = vendorConfigurations.get(hostname);
+      if (oldVc != null) {
         /*
          * Modify the hostname of what is already in the vendorConfigurations map. Ideally, we'd add
          * a warning but the getWarnings object around here is null
          */
-        VendorConfiguration oldVc = vendorConfigurations.get(hostname);
         String modifiedOldName = getModifiedName(hostname, oldVc.getFilename());
         oldVc.setHostname(modifiedOldName);
         vendorConfigurations.remove(hostname);
         vendorConfigurations.put(modifiedOldName, oldVc);
         _duplicateHostnames.put(hostname, modifiedOldName);
+      } else if (vendorConfigurations.containsKey(hostname)) {
+        /*
+         * The configuration with this hostname was already handed off and replaced by null (see
+         * BatfishJobExecutor#runJobsInPipeline). Reserve its modified name the same way, and leave
+         * renaming the handed-off configuration to the caller.
+         */
+        String modifiedOldName =
+            getModifiedName(hostname, answerElement.getFileMap().get(hostname));
+        vendorConfigurations.remove(hostname);
+        vendorConfigurations.put(modifiedOldName, null);
+        _duplicateHostnames.put(hostname, modifiedOldName);
+        _handedOffHostname = hostname;
+        _handedOffModifiedName = modifiedOldName;
       }
       if (_duplicateHostnames.containsKey(hostname)) {
         String modifiedNewName = getModifiedName(hostname, _vc.getFilename());
@@ -137,6 +155,37 @@ public class ParseVendorConfigurationResult
     return _filename;
   }
 
+  /**
+   * The hostname this configuration shares with an already handed-off configuration, if applying
+   * this result found one, otherwise null. The handed-off configuration must be renamed to {@link
+   * #getHandedOffModifiedName()}.
+   */
+  @Nullable
+  public String getHandedOffHostname() {
+    return _handedOffHostname;
+  }
+
+  /** The name the handed-off configuration with a duplicate hostname must be renamed to */
+  @Nullable
+  public String getHandedOffModifiedName() {
+    return _handedOffModifiedName;
+  }
+
+  @Nullable
+  ParseTreeSentences getParseTree() {
+    return _parseTree;
+  }
+
+  /** The parse status if it is not determined by the vendor configuration, otherwise null */
+  @Nullable
+  ParseStatus getStatus() {
+    return _status;
+  }
+
+  Warnings getWarnings() {
+    return _warnings;
+  }
+
   @Override
   public BatfishLoggerHistory getHistory() {
     return _history;
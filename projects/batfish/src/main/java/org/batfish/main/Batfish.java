@@ -18,8 +18,12 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import io.opentracing.ActiveSpan;
+import io.opentracing.References;
+import io.opentracing.SpanContext;
 import io.opentracing.util.GlobalTracer;
 import java.io.File;
 import java.io.IOException;
@@ -48,8 +52,14 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -65,6 +75,7 @@ import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.apache.commons.configuration2.ImmutableConfiguration;
 import org.apache.commons.lang3.SerializationUtils;
+import org.batfish.bddreachability.BDDForwardingAnalysis;
 import org.batfish.bddreachability.BDDReachabilityAnalysis;
 import org.batfish.bddreachability.BDDReachabilityAnalysisFactory;
 import org.batfish.common.Answerer;
@@ -173,6 +184,7 @@ import org.batfish.grammar.juniper.JuniperFlattener;
 import org.batfish.grammar.vyos.VyosCombinedParser;
 import org.batfish.grammar.vyos.VyosFlattener;
 import org.batfish.job.BatfishJobExecutor;
+import org.batfish.job.ConfigurationCache;
 import org.batfish.job.ConvertConfigurationJob;
 import org.batfish.job.FlattenVendorConfigurationJob;
 import org.batfish.job.ParseEnvironmentBgpTableJob;
@@ -181,6 +193,7 @@ import org.batfish.job.ParseVendorConfigurationJob;
 import org.batfish.question.ReachFilterParameters;
 import org.batfish.question.ReachabilityParameters;
 import org.batfish.question.ResolvedReachabilityParameters;
+import org.batfish.question.SrcNattedConstraint;
 import org.batfish.question.reachfilter.DifferentialReachFilterResult;
 import org.batfish.referencelibrary.ReferenceLibrary;
 import org.batfish.representation.aws.AwsConfiguration;
@@ -231,8 +244,16 @@ import org.batfish.z3.expr.BasicRuleStatement;
 import org.batfish.z3.expr.BooleanExpr;
 import org.batfish.z3.expr.OrExpr;
 import org.batfish.z3.expr.RuleStatement;
+import org.batfish.z3.expr.StateExpr;
 import org.batfish.z3.expr.TrueExpr;
 import org.batfish.z3.state.AclLineMatch;
+import org.batfish.z3.state.NodeAccept;
+import org.batfish.z3.state.NodeDrop;
+import org.batfish.z3.state.NodeDropAclIn;
+import org.batfish.z3.state.NodeDropAclOut;
+import org.batfish.z3.state.NodeDropNoRoute;
+import org.batfish.z3.state.NodeDropNullRoute;
+import org.batfish.z3.state.NodeInterfaceNeighborUnreachable;
 import org.batfish.z3.state.NumberedQuery;
 import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
@@ -488,6 +509,9 @@ public class Batfish extends PluginConsumer implements IBatfish {
 
   private SortedMap<BgpTableFormat, BgpTablePlugin> _bgpTablePlugins;
 
+  private final Cache<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory>
+      _cachedBddReachabilityAnalysisFactories;
+
   private final Cache<NetworkSnapshot, SortedMap<String, Configuration>>
       _cachedCompressedConfigurations;
 
@@ -530,10 +554,13 @@ public class Batfish extends PluginConsumer implements IBatfish {
       Cache<NetworkSnapshot, DataPlane> cachedCompressedDataPlanes,
       Cache<NetworkSnapshot, DataPlane> cachedDataPlanes,
       Map<NetworkSnapshot, SortedMap<String, BgpAdvertisementsByVrf>> cachedEnvironmentBgpTables,
-      Map<NetworkSnapshot, SortedMap<String, RoutesByVrf>> cachedEnvironmentRoutingTables) {
+      Map<NetworkSnapshot, SortedMap<String, RoutesByVrf>> cachedEnvironmentRoutingTables,
+      Cache<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory>
+          cachedBddReachabilityAnalysisFactories) {
     super(settings.getSerializeToText());
     _settings = settings;
     _bgpTablePlugins = new TreeMap<>();
+    _cachedBddReachabilityAnalysisFactories = cachedBddReachabilityAnalysisFactories;
     _cachedCompressedConfigurations = cachedCompressedConfigurations;
     _cachedConfigurations = cachedConfigurations;
     _cachedCompressedDataPlanes = cachedCompressedDataPlanes;
@@ -551,10 +578,16 @@ public class Batfish extends PluginConsumer implements IBatfish {
     _dataPlanePlugins = new HashMap<>();
     _storage =
         new BatfishStorage(
-            _settings.getStorageBase().resolve(_settings.getContainer()), _logger, this::newBatch);
+            _settings.getStorageBase().resolve(_settings.getContainer()),
+            _logger,
+            this::newBatch,
+            _settings.getSegmentedStorage(),
+            getCurrentClassLoader(),
+            _settings.getSerializeToText());
   }
 
-  private Answer analyze() {
+  @VisibleForTesting
+  Answer analyze() {
     Answer answer = new Answer();
     AnswerSummary summary = new AnswerSummary();
     String analysisName = _settings.getAnalysisName();
@@ -571,63 +604,135 @@ public class Batfish extends PluginConsumer implements IBatfish {
       throw new BatfishException(
           "Analysis questions dir does not exist: '" + analysisQuestionsDir + "'");
     }
-    RunAnalysisAnswerElement ae = new RunAnalysisAnswerElement();
+    List<Path> analysisQuestionDirs;
     try (Stream<Path> questions = CommonUtil.list(analysisQuestionsDir)) {
-      questions.forEach(
-          analysisQuestionDir -> {
-            String questionName = analysisQuestionDir.getFileName().toString();
-            Path analysisQuestionPath = analysisQuestionDir.resolve(BfConsts.RELPATH_QUESTION_FILE);
-            _settings.setQuestionPath(analysisQuestionPath);
-            Answer currentAnswer;
-            try (ActiveSpan analysisQuestionSpan =
-                GlobalTracer.get().buildSpan("Getting answer to analysis question").startActive()) {
-              assert analysisQuestionSpan != null; // make span not show up as unused
-              analysisQuestionSpan.setTag("analysis-name", analysisName);
-              currentAnswer = answer();
-            }
-            // Ensuring that question was parsed successfully
-            if (currentAnswer.getQuestion() != null) {
-              try {
-                // TODO: This can be represented much cleanly and easily with a Json
-                _logger.infof(
-                    "Ran question:%s from analysis:%s in container:%s; work-id:%s, status:%s, "
-                        + "computed dataplane:%s, parameters:%s\n",
-                    questionName,
-                    analysisName,
-                    containerName,
-                    getTaskId(),
-                    currentAnswer.getSummary().getNumFailed() > 0 ? "failed" : "passed",
-                    currentAnswer.getQuestion().getDataPlane(),
-                    BatfishObjectMapper.writeString(
-                        currentAnswer.getQuestion().getInstance().getVariables()));
-              } catch (JsonProcessingException e) {
-                throw new BatfishException(
-                    String.format(
-                        "Error logging question %s in analysis %s", questionName, analysisName),
-                    e);
-              }
-            }
-            initAnalysisQuestionPath(analysisName, questionName);
-            try {
-              outputAnswer(currentAnswer);
-              outputAnswerMetadata(currentAnswer);
-              ae.getAnswers().put(questionName, currentAnswer);
-            } catch (Exception e) {
-              Answer errorAnswer = new Answer();
-              errorAnswer.addAnswerElement(
-                  new BatfishStackTrace(new BatfishException("Failed to output answer", e)));
-              ae.getAnswers().put(questionName, errorAnswer);
-            }
-            ae.getAnswers().put(questionName, currentAnswer);
-            _settings.setQuestionPath(null);
-            summary.combine(currentAnswer.getSummary());
-          });
+      analysisQuestionDirs = questions.collect(ImmutableList.toImmutableList());
+    }
+    @Nullable
+    SpanContext analyzeSpanContext =
+        GlobalTracer.get().activeSpan() == null ? null : GlobalTracer.get().activeSpan().context();
+    int threads =
+        Math.max(1, Math.min(_settings.getAnalysisThreads(), analysisQuestionDirs.size()));
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<Answer>> currentAnswers = new ArrayList<>();
+    RunAnalysisAnswerElement ae = new RunAnalysisAnswerElement();
+    SortedMap<String, Long> elapsedMillis = new ConcurrentSkipListMap<>();
+    try {
+      for (Path analysisQuestionDir : analysisQuestionDirs) {
+        currentAnswers.add(
+            pool.submit(
+                () -> {
+                  long startTime = System.currentTimeMillis();
+                  Answer currentAnswer =
+                      answerAnalysisQuestion(analysisName, analysisQuestionDir, analyzeSpanContext);
+                  elapsedMillis.put(
+                      analysisQuestionDir.getFileName().toString(),
+                      System.currentTimeMillis() - startTime);
+                  return currentAnswer;
+                }));
+      }
+      for (int i = 0; i < analysisQuestionDirs.size(); i++) {
+        String questionName = analysisQuestionDirs.get(i).getFileName().toString();
+        Answer currentAnswer;
+        try {
+          currentAnswer = currentAnswers.get(i).get();
+        } catch (InterruptedException e) {
+          throw new BatfishException(
+              String.format("Interrupted while answering question %s", questionName), e);
+        } catch (ExecutionException e) {
+          Throwables.throwIfUnchecked(e.getCause());
+          throw new BatfishException(
+              String.format(
+                  "Error answering question %s in analysis %s", questionName, analysisName),
+              e.getCause());
+        }
+        ae.getAnswers().put(questionName, currentAnswer);
+        summary.combine(currentAnswer.getSummary());
+      }
+    } finally {
+      pool.shutdownNow();
     }
+    ae.setElapsedMillis(new TreeMap<>(elapsedMillis));
     answer.addAnswerElement(ae);
     answer.setSummary(summary);
     return answer;
   }
 
+  /**
+   * Answers the question in {@code analysisQuestionDir} and stores its answer, using a {@link
+   * Batfish} of its own so that questions of the same analysis can be answered concurrently.
+   */
+  private Answer answerAnalysisQuestion(
+      String analysisName, Path analysisQuestionDir, @Nullable SpanContext analyzeSpanContext) {
+    String containerName = _settings.getContainer();
+    String questionName = analysisQuestionDir.getFileName().toString();
+    Batfish batfish = forQuestion(analysisQuestionDir.resolve(BfConsts.RELPATH_QUESTION_FILE));
+    Answer currentAnswer;
+    try (ActiveSpan analysisQuestionSpan =
+        GlobalTracer.get()
+            .buildSpan("Getting answer to analysis question")
+            .addReference(References.FOLLOWS_FROM, analyzeSpanContext)
+            .startActive()) {
+      assert analysisQuestionSpan != null; // make span not show up as unused
+      analysisQuestionSpan.setTag("analysis-name", analysisName);
+      currentAnswer = batfish.answer();
+    }
+    // Ensuring that question was parsed successfully
+    if (currentAnswer.getQuestion() != null) {
+      try {
+        // TODO: This can be represented much cleanly and easily with a Json
+        _logger.infof(
+            "Ran question:%s from analysis:%s in container:%s; work-id:%s, status:%s, "
+                + "computed dataplane:%s, parameters:%s\n",
+            questionName,
+            analysisName,
+            containerName,
+            getTaskId(),
+            currentAnswer.getSummary().getNumFailed() > 0 ? "failed" : "passed",
+            currentAnswer.getQuestion().getDataPlane(),
+            BatfishObjectMapper.writeString(
+                currentAnswer.getQuestion().getInstance().getVariables()));
+      } catch (JsonProcessingException e) {
+        throw new BatfishException(
+            String.format("Error logging question %s in analysis %s", questionName, analysisName),
+            e);
+      }
+    }
+    batfish.initAnalysisQuestionPath(analysisName, questionName);
+    try {
+      batfish.outputAnswer(currentAnswer);
+      batfish.outputAnswerMetadata(currentAnswer);
+    } catch (Exception e) {
+      _logger.errorf(
+          "Failed to output answer to question %s in analysis %s: %s\n",
+          questionName, analysisName, Throwables.getStackTraceAsString(e));
+    }
+    return currentAnswer;
+  }
+
+  /**
+   * Returns a {@link Batfish} answering the question at {@code questionPath} with its own copy of
+   * the settings of this one, and sharing its caches of configurations and data planes. It gets its
+   * own instances of the plugins of this one, without searching the class path again.
+   */
+  private Batfish forQuestion(Path questionPath) {
+    Settings settings = new Settings(_settings);
+    initTestrigSettings(settings);
+    settings.setQuestionPath(questionPath);
+    Batfish batfish =
+        new Batfish(
+            settings,
+            _cachedCompressedConfigurations,
+            _cachedConfigurations,
+            _cachedCompressedDataPlanes,
+            _cachedDataPlanes,
+            _cachedEnvironmentBgpTables,
+            _cachedEnvironmentRoutingTables,
+            _cachedBddReachabilityAnalysisFactories);
+    batfish.loadPlugins(this);
+    return batfish;
+  }
+
   public Answer answer() {
     Question question = null;
 
@@ -704,7 +809,7 @@ public class Batfish extends PluginConsumer implements IBatfish {
     return answer;
   }
 
-  private void computeAggregatedInterfaceBandwidth(
+  private static void computeAggregatedInterfaceBandwidth(
       Interface iface, Map<String, Interface> interfaces) {
     if (iface.getInterfaceType() != InterfaceType.AGGREGATED) {
       return;
@@ -1146,6 +1251,9 @@ public class Batfish extends PluginConsumer implements IBatfish {
         compressed ? _cachedCompressedDataPlanes : _cachedDataPlanes;
 
     cache.put(getNetworkSnapshot(), dataPlane);
+    if (!compressed) {
+      invalidateBddReachabilityAnalysisFactories(getNetworkSnapshot());
+    }
 
     _logger.resetTimer();
     newBatch("Writing data plane to disk", 0);
@@ -1359,6 +1467,64 @@ public class Batfish extends PluginConsumer implements IBatfish {
       Path serializedVendorConfigPath) {
     _logger.info("\n*** DESERIALIZING VENDOR CONFIGURATION STRUCTURES ***\n");
     _logger.resetTimer();
+    Map<String, GenericConfigObject> vendorConfigurations =
+        deserializeObjects(
+            listSerializedVendorConfigurations(serializedVendorConfigPath),
+            GenericConfigObject.class);
+    _logger.printElapsedTime();
+    return vendorConfigurations;
+  }
+
+  /**
+   * Deserializes and converts each vendor configuration in its own job, so that only the vendor
+   * configurations in flight are held in memory when pipelining, and so that conversion results can
+   * be reused from {@code cache}.
+   */
+  private Map<String, Configuration> deserializeAndConvertConfigurations(
+      Path serializedVendorConfigPath,
+      ConvertConfigurationAnswerElement answerElement,
+      @Nullable ConfigurationCache cache) {
+    _logger.info(
+        "\n*** DESERIALIZING AND CONVERTING VENDOR CONFIGURATIONS TO INDEPENDENT FORMAT ***\n");
+    _logger.resetTimer();
+    Map<String, Configuration> configurations = new TreeMap<>();
+    List<ConvertConfigurationJob> jobs = new ArrayList<>();
+    listSerializedVendorConfigurations(serializedVendorConfigPath)
+        .forEach(
+            (path, name) ->
+                jobs.add(
+                    new ConvertConfigurationJob(
+                        _settings,
+                        () -> deserializeObject(path, GenericConfigObject.class),
+                        name,
+                        cache)));
+    String description = "Deserialize and convert configurations to vendor-independent format";
+    if (_settings.getPipelineConfigurations()) {
+      BatfishJobExecutor.runJobsInPipeline(
+          _settings,
+          _logger,
+          jobs,
+          configurations,
+          answerElement,
+          _settings.getHaltOnConvertError(),
+          description,
+          result -> null);
+    } else {
+      BatfishJobExecutor.runJobsInExecutor(
+          _settings,
+          _logger,
+          jobs,
+          configurations,
+          answerElement,
+          _settings.getHaltOnConvertError(),
+          description);
+    }
+    _logger.printElapsedTime();
+    return configurations;
+  }
+
+  private static Map<Path, String> listSerializedVendorConfigurations(
+      Path serializedVendorConfigPath) {
     Map<Path, String> namesByPath = new TreeMap<>();
     try (DirectoryStream<Path> serializedConfigs =
         Files.newDirectoryStream(serializedVendorConfigPath)) {
@@ -1369,13 +1535,11 @@ public class Batfish extends PluginConsumer implements IBatfish {
     } catch (IOException e) {
       throw new BatfishException("Error reading vendor configs directory", e);
     }
-    Map<String, GenericConfigObject> vendorConfigurations =
-        deserializeObjects(namesByPath, GenericConfigObject.class);
-    _logger.printElapsedTime();
-    return vendorConfigurations;
+    return namesByPath;
   }
 
-  private void disableUnusableVlanInterfaces(Map<String, Configuration> configurations) {
+  private static void disableUnusableVlanInterfaces(
+      Map<String, Configuration> configurations, BatfishLogger logger) {
     for (Configuration c : configurations.values()) {
       String hostname = c.getHostname();
 
@@ -1414,7 +1578,7 @@ public class Batfish extends PluginConsumer implements IBatfish {
           vlans.add(new SubRange(vlanNumber, vlanNumber));
           // Any other Switch Port mode is unsupported
         } else if (iface.getSwitchportMode() != SwitchportMode.NONE) {
-          _logger.warnf(
+          logger.warnf(
               "WARNING: Unsupported switch port mode %s, assuming no VLANs allowed: \"%s:%s\"\n",
               iface.getSwitchportMode(), hostname, iface.getName());
         }
@@ -1434,7 +1598,7 @@ public class Batfish extends PluginConsumer implements IBatfish {
               && (vlanNumber <= normalVlanRange.getEnd())) {
             Interface iface = vlanInterfaces.get(vlanNumber);
             if ((iface != null) && iface.getAutoState()) {
-              _logger.warnf(
+              logger.warnf(
                   "WARNING: Disabling unusable vlan interface because no switch port is assigned "
                       + "to it: \"%s:%d\"\n",
                   hostname, vlanNumber);
@@ -1447,7 +1611,8 @@ public class Batfish extends PluginConsumer implements IBatfish {
     }
   }
 
-  private void disableUnusableVpnInterfaces(Map<String, Configuration> configurations) {
+  private static void disableUnusableVpnInterfaces(
+      Map<String, Configuration> configurations, BatfishLogger logger) {
     CommonUtil.initRemoteIpsecVpns(configurations);
     for (Configuration c : configurations.values()) {
       for (IpsecVpn vpn : c.getIpsecVpns().values()) {
@@ -1471,7 +1636,7 @@ public class Batfish extends PluginConsumer implements IBatfish {
           bindInterface.setActive(false);
           bindInterface.setBlacklisted(true);
           String bindInterfaceName = bindInterface.getName();
-          _logger.warnf(
+          logger.warnf(
               "WARNING: Disabling unusable vpn interface because we cannot determine remote "
                   + "endpoint: \"%s:%s\"\n",
               hostname, bindInterfaceName);
@@ -1722,15 +1887,35 @@ public class Batfish extends PluginConsumer implements IBatfish {
 
   public Map<String, Configuration> getConfigurations(
       Path serializedVendorConfigPath, ConvertConfigurationAnswerElement answerElement) {
-    Map<String, GenericConfigObject> vendorConfigurations =
-        deserializeVendorConfigurations(serializedVendorConfigPath);
-    Map<String, Configuration> configurations =
-        convertConfigurations(vendorConfigurations, answerElement);
+    Map<String, Configuration> configurations;
+    ConfigurationCache cache = getConfigurationCache();
+    if (_settings.getPipelineConfigurations() || cache != null) {
+      configurations =
+          deserializeAndConvertConfigurations(serializedVendorConfigPath, answerElement, cache);
+    } else {
+      Map<String, GenericConfigObject> vendorConfigurations =
+          deserializeVendorConfigurations(serializedVendorConfigPath);
+      configurations = convertConfigurations(vendorConfigurations, answerElement);
+    }
 
     postProcessConfigurations(configurations.values());
     return configurations;
   }
 
+  /** Returns the cache of parsing and conversion results of this network, if enabled */
+  @Nullable
+  private ConfigurationCache getConfigurationCache() {
+    Path cacheDir = _settings.getParseCacheDir();
+    return cacheDir == null
+        ? null
+        : ConfigurationCache.forNetwork(
+            cacheDir,
+            _settings.getContainer(),
+            getCurrentClassLoader(),
+            _logger,
+            _settings.getSerializeToText());
+  }
+
   @Override
   public String getContainerName() {
     return _settings.getContainer();
@@ -2384,52 +2569,142 @@ public class Batfish extends PluginConsumer implements IBatfish {
   }
 
   SortedMap<String, Configuration> loadCompressedConfigurations(NetworkSnapshot snapshot) {
-    // Do we already have configurations in the cache?
-    SortedMap<String, Configuration> configurations =
-        _cachedCompressedConfigurations.getIfPresent(snapshot);
-    if (configurations != null) {
-      return configurations;
+    return loadCached(
+        _cachedCompressedConfigurations,
+        snapshot,
+        () -> {
+          _logger.debugf("Loading configurations for %s, cache miss", snapshot);
+
+          // See if we have an up-to-date, environment-specific configurations on disk.
+          SortedMap<String, Configuration> configurations =
+              _storage.loadCompressedConfigurations(snapshot.getSnapshot().getTestrig());
+          if (configurations != null) {
+            return configurations;
+          }
+          computeCompressedDataPlane();
+          configurations = _cachedCompressedConfigurations.getIfPresent(snapshot);
+          if (configurations == null) {
+            throw new BatfishException("Could not compute compressed configs");
+          }
+          return configurations;
+        });
+  }
+
+  /**
+   * Returns the configurations for given snapshot, which including any environment-specific
+   * features.
+   *
+   * <p>The configurations are shared with all other tasks of this worker, so they must not be
+   * modified. Code that needs to modify them must work on a copy (see {@link
+   * CommonUtil#copyConfigurations}).
+   */
+  SortedMap<String, Configuration> loadConfigurations(NetworkSnapshot snapshot) {
+    return loadCached(
+        _cachedConfigurations,
+        snapshot,
+        () -> {
+          _logger.debugf("Loading configurations for %s, cache miss", snapshot);
+
+          // If allowed, load each node's configuration only when it is first accessed.
+          SortedMap<String, Configuration> configurations = loadConfigurationsLazily(snapshot);
+          if (configurations != null) {
+            _logger.debugf("Loading configurations for %s lazily", snapshot);
+            return configurations;
+          }
+
+          // Next, see if we have an up-to-date, environment-specific configurations on disk.
+          configurations = _storage.loadConfigurations(snapshot.getSnapshot().getTestrig());
+          if (configurations != null) {
+            _logger.debugf("Loaded configurations for %s off disk", snapshot);
+            applyEnvironment(configurations);
+            return configurations;
+          }
+
+          // Otherwise, we have to parse the configurations. Fall back to old, hacky code.
+          return parseConfigurationsAndApplyEnvironment();
+        });
+  }
+
+  /**
+   * Returns the value of {@code snapshot} in {@code cache}, loading it with {@code loader} if
+   * absent. Tasks that need a snapshot while it is being loaded wait for that single load rather
+   * than loading it again, while loads of other snapshots proceed in parallel. The cached value is
+   * shared by all tasks of this worker and must not be modified once loaded.
+   */
+  private static <K, V> V loadCached(Cache<K, V> cache, K key, Callable<V> loader) {
+    try {
+      return cache.get(key, loader);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new BatfishException("Error loading " + key, e.getCause());
     }
-    _logger.debugf("Loading configurations for %s, cache miss", snapshot);
+  }
 
-    // Next, see if we have an up-to-date, environment-specific configurations on disk.
-    configurations = _storage.loadCompressedConfigurations(snapshot.getSnapshot().getTestrig());
-    if (configurations != null) {
-      return configurations;
-    } else {
-      computeCompressedDataPlane();
-      configurations = _cachedCompressedConfigurations.getIfPresent(snapshot);
-      if (configurations == null) {
-        throw new BatfishException("Could not compute compressed configs");
+  /**
+   * Returns a {@link LazyConfigurationMap} of the configurations of the given snapshot, or {@code
+   * null} if lazy loading is disabled or not possible. Lazy loading requires up-to-date serialized
+   * configurations and no interface blacklist, since the environment is then applied to each node
+   * on its own (except for IPsec VPNs, which cause all nodes to be loaded).
+   */
+  @Nullable
+  private SortedMap<String, Configuration> loadConfigurationsLazily(NetworkSnapshot snapshot) {
+    if (!_settings.getLazyConfigurations() || !getInterfaceBlacklist().isEmpty()) {
+      return null;
+    }
+    SortedMap<String, Supplier<Configuration>> loaders =
+        _storage.loadConfigurationLoaders(snapshot.getSnapshot().getTestrig());
+    if (loaders == null) {
+      return null;
+    }
+
+    // Only the node blacklist can make the environment invalid, and that only needs hostnames.
+    ValidateEnvironmentAnswerElement veae = new ValidateEnvironmentAnswerElement();
+    SortedSet<String> blacklistNodes = getNodeBlacklist();
+    for (String hostname : blacklistNodes) {
+      if (!loaders.containsKey(hostname)) {
+        veae.setValid(false);
+        veae.getUndefinedNodeBlacklistNodes().add(hostname);
       }
-      return configurations;
     }
+    serializeObject(
+        veae, _testrigSettings.getEnvironmentSettings().getValidateEnvironmentAnswerPath());
+
+    // The map may outlive this task in the worker's caches, so it must not capture this Batfish.
+    BatfishLogger logger = new BatfishLogger(_settings.getLogLevel(), _settings.getTimestamp());
+    return new LazyConfigurationMap(
+        loaders,
+        c -> applyNodeEnvironment(c, blacklistNodes.contains(c.getHostname()), logger),
+        c -> !c.getIpsecVpns().isEmpty(),
+        configurations -> applyIpsecVpnEnvironment(configurations, logger));
   }
 
   /**
-   * Returns the configurations for given snapshot, which including any environment-specific
-   * features.
+   * Applies the environment to a single lazily loaded node, in the same order as {@link
+   * #applyEnvironment}. Nodes with IPsec VPNs need all nodes for their VPN interfaces, so they are
+   * post-processed by {@link #applyIpsecVpnEnvironment} instead.
    */
-  SortedMap<String, Configuration> loadConfigurations(NetworkSnapshot snapshot) {
-    // Do we already have configurations in the cache?
-    SortedMap<String, Configuration> configurations = _cachedConfigurations.getIfPresent(snapshot);
-    if (configurations != null) {
-      return configurations;
-    }
-    _logger.debugf("Loading configurations for %s, cache miss", snapshot);
-
-    // Next, see if we have an up-to-date, environment-specific configurations on disk.
-    configurations = _storage.loadConfigurations(snapshot.getSnapshot().getTestrig());
-    if (configurations != null) {
-      _logger.debugf("Loaded configurations for %s off disk", snapshot);
-      applyEnvironment(configurations);
-    } else {
-      // Otherwise, we have to parse the configurations. Fall back to old, hacky code.
-      configurations = parseConfigurationsAndApplyEnvironment();
+  private static void applyNodeEnvironment(
+      Configuration c, boolean blacklisted, BatfishLogger logger) {
+    if (blacklisted) {
+      blacklistNode(c);
+    }
+    Map<String, Configuration> node = ImmutableMap.of(c.getHostname(), c);
+    disableUnusableVlanInterfaces(node, logger);
+    if (c.getIpsecVpns().isEmpty()) {
+      disableUnusableVpnInterfaces(node, logger);
+      postProcessForEnvironment(node);
     }
+  }
 
-    _cachedConfigurations.put(snapshot, configurations);
-    return configurations;
+  /**
+   * Finishes applying the environment once all lazily loaded nodes are loaded, by disabling
+   * unusable VPN interfaces and then post-processing the nodes with IPsec VPNs.
+   */
+  private static void applyIpsecVpnEnvironment(
+      SortedMap<String, Configuration> configurations, BatfishLogger logger) {
+    disableUnusableVpnInterfaces(configurations, logger);
+    postProcessForEnvironment(
+        Maps.filterValues(configurations, c -> !c.getIpsecVpns().isEmpty()));
   }
 
   @Nonnull
@@ -2472,6 +2747,10 @@ public class Batfish extends PluginConsumer implements IBatfish {
     return loadDataPlane(false);
   }
 
+  /**
+   * Returns the (compressed) data plane of the current snapshot. Like the configurations, the data
+   * plane is shared with all other tasks of this worker and must not be modified.
+   */
   DataPlane loadDataPlane(boolean compressed) {
     Cache<NetworkSnapshot, DataPlane> cache =
         compressed ? _cachedCompressedDataPlanes : _cachedDataPlanes;
@@ -2482,22 +2761,23 @@ public class Batfish extends PluginConsumer implements IBatfish {
             : _testrigSettings.getEnvironmentSettings().getDataPlanePath();
 
     NetworkSnapshot snapshot = getNetworkSnapshot();
-    DataPlane dp = cache.getIfPresent(snapshot);
-    if (dp == null) {
-      /*
-       * Data plane should exist after loading answer element, as it triggers
-       * repair if necessary. However, it might not be cached if it was not
-       * repaired, so we still might need to load it from disk.
-       */
-      loadDataPlaneAnswerElement(compressed);
-      dp = cache.getIfPresent(_testrigSettings);
-      if (dp == null) {
-        newBatch("Loading data plane from disk", 0);
-        dp = deserializeObject(path, DataPlane.class);
-        cache.put(snapshot, dp);
-      }
-    }
-    return dp;
+    return loadCached(
+        cache,
+        snapshot,
+        () -> {
+          /*
+           * Data plane should exist after loading answer element, as it triggers
+           * repair if necessary. However, it might not be cached if it was not
+           * repaired, so we still might need to load it from disk.
+           */
+          loadDataPlaneAnswerElement(compressed);
+          DataPlane dp = cache.getIfPresent(snapshot);
+          if (dp == null) {
+            newBatch("Loading data plane from disk", 0);
+            dp = deserializeObject(path, DataPlane.class);
+          }
+          return dp;
+        });
   }
 
   private DataPlaneAnswerElement loadDataPlaneAnswerElement(boolean compressed) {
@@ -2932,7 +3212,24 @@ public class Batfish extends PluginConsumer implements IBatfish {
     _logger.info("\n*** PARSING VENDOR CONFIGURATION FILES ***\n");
     _logger.resetTimer();
     SortedMap<String, VendorConfiguration> vendorConfigurations = new TreeMap<>();
+    List<ParseVendorConfigurationJob> jobs =
+        parseVendorConfigurationJobs(configurationData, configurationFormat);
+    BatfishJobExecutor.runJobsInExecutor(
+        _settings,
+        _logger,
+        jobs,
+        vendorConfigurations,
+        answerElement,
+        _settings.getHaltOnParseError(),
+        "Parse configurations");
+    _logger.printElapsedTime();
+    return vendorConfigurations;
+  }
+
+  private List<ParseVendorConfigurationJob> parseVendorConfigurationJobs(
+      Map<Path, String> configurationData, ConfigurationFormat configurationFormat) {
     List<ParseVendorConfigurationJob> jobs = new ArrayList<>();
+    ConfigurationCache cache = getConfigurationCache();
     for (Entry<Path, String> vendorFile : configurationData.entrySet()) {
       Path currentFile = vendorFile.getKey();
       String fileText = vendorFile.getValue();
@@ -2942,19 +3239,10 @@ public class Batfish extends PluginConsumer implements IBatfish {
           _settings.getActiveTestrigSettings().getTestRigPath().relativize(currentFile).toString();
       ParseVendorConfigurationJob job =
           new ParseVendorConfigurationJob(
-              _settings, fileText, filename, warnings, configurationFormat);
+              _settings, fileText, filename, warnings, configurationFormat, cache);
       jobs.add(job);
     }
-    BatfishJobExecutor.runJobsInExecutor(
-        _settings,
-        _logger,
-        jobs,
-        vendorConfigurations,
-        answerElement,
-        _settings.getHaltOnParseError(),
-        "Parse configurations");
-    _logger.printElapsedTime();
-    return vendorConfigurations;
+    return jobs;
   }
 
   @Override
@@ -3119,7 +3407,7 @@ public class Batfish extends PluginConsumer implements IBatfish {
     _testrigSettingsStack.remove(lastIndex);
   }
 
-  private void populateChannelGroupMembers(
+  private static void populateChannelGroupMembers(
       Map<String, Interface> interfaces, String ifaceName, Interface iface) {
     String portChannelName = iface.getChannelGroup();
     if (portChannelName == null) {
@@ -3151,7 +3439,7 @@ public class Batfish extends PluginConsumer implements IBatfish {
     }
   }
 
-  private void postProcessAggregatedInterfaces(Map<String, Configuration> configurations) {
+  private static void postProcessAggregatedInterfaces(Map<String, Configuration> configurations) {
     configurations
         .values()
         .forEach(
@@ -3161,7 +3449,7 @@ public class Batfish extends PluginConsumer implements IBatfish {
                     .forEach(v -> postProcessAggregatedInterfacesHelper(v.getInterfaces())));
   }
 
-  private void postProcessAggregatedInterfacesHelper(Map<String, Interface> interfaces) {
+  private static void postProcessAggregatedInterfacesHelper(Map<String, Interface> interfaces) {
     /* Populate aggregated interfaces with members referring to them. */
     interfaces.forEach(
         (ifaceName, iface) -> populateChannelGroupMembers(interfaces, ifaceName, iface));
@@ -3204,12 +3492,12 @@ public class Batfish extends PluginConsumer implements IBatfish {
     }
   }
 
-  private void postProcessForEnvironment(Map<String, Configuration> configurations) {
+  private static void postProcessForEnvironment(Map<String, Configuration> configurations) {
     postProcessAggregatedInterfaces(configurations);
     postProcessOspfCosts(configurations);
   }
 
-  private void postProcessOspfCosts(Map<String, Configuration> configurations) {
+  private static void postProcessOspfCosts(Map<String, Configuration> configurations) {
     configurations
         .values()
         .forEach(
@@ -3350,6 +3638,13 @@ public class Batfish extends PluginConsumer implements IBatfish {
     nodeIface.setBlacklisted(true);
   }
 
+  private static void blacklistNode(Configuration node) {
+    for (Interface iface : node.getInterfaces().values()) {
+      iface.setActive(false);
+      iface.setBlacklisted(true);
+    }
+  }
+
   private void processInterfaceBlacklist(
       Map<String, Configuration> configurations, ValidateEnvironmentAnswerElement veae) {
     Set<NodeInterfacePair> blacklistInterfaces = getInterfaceBlacklist();
@@ -3364,10 +3659,7 @@ public class Batfish extends PluginConsumer implements IBatfish {
     for (String hostname : blacklistNodes) {
       Configuration node = configurations.get(hostname);
       if (node != null) {
-        for (Interface iface : node.getInterfaces().values()) {
-          iface.setActive(false);
-          iface.setBlacklisted(true);
-        }
+        blacklistNode(node);
       } else {
         veae.setValid(false);
         veae.getUndefinedNodeBlacklistNodes().add(hostname);
@@ -3711,8 +4003,8 @@ public class Batfish extends PluginConsumer implements IBatfish {
     // We do not process the edge blacklist here. Instead, we rely on these edges being explicitly
     // deleted from the Topology (aka list of edges) that is used along with configurations in
     // answering questions.
-    disableUnusableVlanInterfaces(configurations);
-    disableUnusableVpnInterfaces(configurations);
+    disableUnusableVlanInterfaces(configurations, _logger);
+    disableUnusableVpnInterfaces(configurations, _logger);
   }
 
   /**
@@ -4118,6 +4410,104 @@ public class Batfish extends PluginConsumer implements IBatfish {
       SortedMap<String, VendorConfiguration> overlayHostConfigurations) {
     Map<Path, String> configurationData =
         readConfigurationFiles(testRigPath, BfConsts.RELPATH_CONFIGURATIONS_DIR);
+    if (_settings.getPipelineConfigurations()) {
+      parseAndSerializeNetworkConfigs(
+          configurationData, outputPath, answerElement, overlayHostConfigurations);
+    } else {
+      parseThenSerializeNetworkConfigs(
+          configurationData, outputPath, answerElement, overlayHostConfigurations);
+    }
+
+    // warn about unused overlays
+    overlayHostConfigurations.forEach(
+        (name, overlay) ->
+            answerElement.getParseStatus().put(overlay.getFilename(), ParseStatus.ORPHANED));
+  }
+
+  /**
+   * Parses the network configurations and serializes each one as soon as it is parsed, so that only
+   * the configurations in flight are held in memory.
+   */
+  private void parseAndSerializeNetworkConfigs(
+      Map<Path, String> configurationData,
+      Path outputPath,
+      ParseVendorConfigurationAnswerElement answerElement,
+      SortedMap<String, VendorConfiguration> overlayHostConfigurations) {
+    _logger.info("\n*** PARSING AND SERIALIZING VENDOR CONFIGURATION FILES ***\n");
+    _logger.resetTimer();
+    CommonUtil.createDirectories(outputPath);
+    // Handed-off configurations are replaced by null, which still reserves their hostnames.
+    SortedMap<String, VendorConfiguration> vendorConfigurations = new TreeMap<>();
+    // Hostnames of handed-off configurations later found to be duplicates, to their new names
+    Map<String, String> handedOffRenames = new TreeMap<>();
+    List<ParseVendorConfigurationJob> jobs =
+        parseVendorConfigurationJobs(configurationData, ConfigurationFormat.UNKNOWN);
+    try (ActiveSpan parseNetworkConfigsSpan =
+        GlobalTracer.get().buildSpan("Parse and serialize network configs").startActive()) {
+      assert parseNetworkConfigsSpan != null; // avoid unused warning
+      BatfishJobExecutor.runJobsInPipeline(
+          _settings,
+          _logger,
+          jobs,
+          vendorConfigurations,
+          answerElement,
+          _settings.getHaltOnParseError(),
+          "Parse and serialize configurations",
+          result -> {
+            VendorConfiguration vc = result.getVendorConfiguration();
+            if (vc == null) {
+              return null;
+            }
+            if (result.getHandedOffHostname() != null) {
+              handedOffRenames.put(
+                  result.getHandedOffHostname(), result.getHandedOffModifiedName());
+            }
+            String name = vc.getHostname();
+            vendorConfigurations.put(name, null);
+            Path currentOutputPath =
+                prepareNetworkConfigSerialization(
+                    name, vc, outputPath, answerElement, overlayHostConfigurations);
+            if (currentOutputPath == null) {
+              return null;
+            }
+            return () -> serializeObject(vc, currentOutputPath);
+          });
+    }
+    // Rename the first configurations with duplicate hostnames, like parseVendorConfigurations does
+    handedOffRenames.forEach(
+        (name, modifiedName) -> {
+          Path oldOutputPath = outputPath.resolve(name);
+          if (!Files.exists(oldOutputPath)) {
+            // it could not be serialized under its original name either
+            return;
+          }
+          VendorConfiguration vc = deserializeObject(oldOutputPath, VendorConfiguration.class);
+          CommonUtil.deleteIfExists(oldOutputPath);
+          VendorConfiguration overlayConfig = vc.getOverlayConfiguration();
+          if (overlayConfig != null) {
+            // the overlay is for the original hostname, which no configuration keeps
+            vc.setOverlayConfiguration(null);
+            overlayHostConfigurations.put(name, overlayConfig);
+          }
+          vc.setHostname(modifiedName);
+          Path currentOutputPath =
+              prepareNetworkConfigSerialization(
+                  modifiedName, vc, outputPath, answerElement, overlayHostConfigurations);
+          if (currentOutputPath != null) {
+            serializeObject(vc, currentOutputPath);
+          }
+        });
+    _logger.infof(
+        "Testrig:%s in container:%s has total number of network configs:%d",
+        getTestrigName(), getContainerName(), vendorConfigurations.size());
+    _logger.printElapsedTime();
+  }
+
+  private void parseThenSerializeNetworkConfigs(
+      Map<Path, String> configurationData,
+      Path outputPath,
+      ParseVendorConfigurationAnswerElement answerElement,
+      SortedMap<String, VendorConfiguration> overlayHostConfigurations) {
     Map<String, VendorConfiguration> vendorConfigurations;
     try (ActiveSpan parseNetworkConfigsSpan =
         GlobalTracer.get().buildSpan("Parse network configs").startActive()) {
@@ -4137,37 +4527,48 @@ public class Batfish extends PluginConsumer implements IBatfish {
     Map<Path, VendorConfiguration> output = new TreeMap<>();
     vendorConfigurations.forEach(
         (name, vc) -> {
-          if (name.contains(File.separator)) {
-            // iptables will get a hostname like configs/iptables-save if they
-            // are not set up correctly using host files
-            _logger.errorf("Cannot serialize configuration with hostname %s\n", name);
-            answerElement.addRedFlagWarning(
-                name,
-                new Warning(
-                    "Cannot serialize network config. Bad hostname " + name.replace("\\", "/"),
-                    "MISCELLANEOUS"));
-          } else {
-            // apply overlay if it exists
-            VendorConfiguration overlayConfig = overlayHostConfigurations.get(name);
-            if (overlayConfig != null) {
-              vc.setOverlayConfiguration(overlayConfig);
-              overlayHostConfigurations.remove(name);
-            }
-
-            Path currentOutputPath = outputPath.resolve(name);
+          Path currentOutputPath =
+              prepareNetworkConfigSerialization(
+                  name, vc, outputPath, answerElement, overlayHostConfigurations);
+          if (currentOutputPath != null) {
             output.put(currentOutputPath, vc);
           }
         });
-
-    // warn about unused overlays
-    overlayHostConfigurations.forEach(
-        (name, overlay) ->
-            answerElement.getParseStatus().put(overlay.getFilename(), ParseStatus.ORPHANED));
-
     serializeObjects(output);
     _logger.printElapsedTime();
   }
 
+  /**
+   * Applies the overlay of the network configuration with the given name, if any, and returns the
+   * path it should be serialized to, or {@code null} if it cannot be serialized.
+   */
+  @Nullable
+  private Path prepareNetworkConfigSerialization(
+      String name,
+      VendorConfiguration vc,
+      Path outputPath,
+      ParseVendorConfigurationAnswerElement answerElement,
+      SortedMap<String, VendorConfiguration> overlayHostConfigurations) {
+    if (name.contains(File.separator)) {
+      // iptables will get a hostname like configs/iptables-save if they
+      // are not set up correctly using host files
+      _logger.errorf("Cannot serialize configuration with hostname %s\n", name);
+      answerElement.addRedFlagWarning(
+          name,
+          new Warning(
+              "Cannot serialize network config. Bad hostname " + name.replace("\\", "/"),
+              "MISCELLANEOUS"));
+      return null;
+    }
+    // apply overlay if it exists
+    VendorConfiguration overlayConfig = overlayHostConfigurations.get(name);
+    if (overlayConfig != null) {
+      vc.setOverlayConfiguration(overlayConfig);
+      overlayHostConfigurations.remove(name);
+    }
+    return outputPath.resolve(name);
+  }
+
   public <S extends Serializable> void serializeObjects(Map<Path, S> objectsByPath) {
     if (objectsByPath.isEmpty()) {
       return;
@@ -4244,9 +4645,6 @@ public class Batfish extends PluginConsumer implements IBatfish {
   private AnswerElement singleReachability(
       ReachabilityParameters reachabilityParameters,
       ReachabilityQuerySynthesizer.Builder<?, ?> builder) {
-    Settings settings = getSettings();
-    String tag = getFlowTag(_testrigSettings);
-
     ResolvedReachabilityParameters parameters;
     try {
       parameters =
@@ -4254,8 +4652,16 @@ public class Batfish extends PluginConsumer implements IBatfish {
     } catch (InvalidReachabilityParametersException e) {
       return e.getInvalidParametersAnswer();
     }
+    return singleReachability(parameters, builder);
+  }
+
+  private AnswerElement singleReachability(
+      ResolvedReachabilityParameters parameters,
+      ReachabilityQuerySynthesizer.Builder<?, ?> builder) {
+    Settings settings = getSettings();
+    String tag = getFlowTag(_testrigSettings);
 
-    Set<ForwardingAction> actions = reachabilityParameters.getActions();
+    Set<ForwardingAction> actions = parameters.getActions();
 
     Map<String, Configuration> configurations = parameters.getConfigurations();
     DataPlane dataPlane = parameters.getDataPlane();
@@ -4270,7 +4676,7 @@ public class Batfish extends PluginConsumer implements IBatfish {
             forbiddenTransitNodes,
             requiredTransitNodes,
             parameters.getSourceIpAssignment(),
-            reachabilityParameters.getSpecialize());
+            parameters.getSpecialize());
 
     Map<IngressLocation, BooleanExpr> srcIpConstraints =
         dataPlaneSynthesizer.getInput().getSrcIpConstraints();
@@ -4522,8 +4928,112 @@ public class Batfish extends PluginConsumer implements IBatfish {
 
   @Override
   public AnswerElement standard(ReachabilityParameters reachabilityParameters) {
-    return singleReachability(
-        reachabilityParameters, StandardReachabilityQuerySynthesizer.builder());
+    if (!_settings.getBddReachability()) {
+      return singleReachability(
+          reachabilityParameters, StandardReachabilityQuerySynthesizer.builder());
+    }
+
+    ResolvedReachabilityParameters parameters;
+    try {
+      parameters =
+          resolveReachabilityParameters(this, reachabilityParameters, getNetworkSnapshot());
+    } catch (InvalidReachabilityParametersException e) {
+      return e.getInvalidParametersAnswer();
+    }
+    Optional<Set<Flow>> flows = bddStandardReachability(parameters);
+    if (!flows.isPresent()) {
+      return singleReachability(parameters, StandardReachabilityQuerySynthesizer.builder());
+    }
+    getDataPlanePlugin().processFlows(flows.get(), loadDataPlane(), false);
+    return getHistory();
+  }
+
+  /**
+   * Answers the standard reachability question of {@code parameters} with forward {@link
+   * BDDReachabilityAnalysis BDD reachability} from its source locations, which only visits the
+   * states those locations reach. Returns at most one flow per source location. Unlike NoD, it
+   * does not prefer specific header values.
+   *
+   * <p>Returns {@link Optional#empty()} if the question constrains what the BDD reachability graph
+   * does not model: transit nodes, source NAT, compressed data planes, or some of its actions.
+   */
+  private Optional<Set<Flow>> bddStandardReachability(ResolvedReachabilityParameters parameters) {
+    Optional<Set<StateExpr>> targets = bddReachabilityTargets(parameters);
+    if (!targets.isPresent()
+        || !parameters.getForbiddenTransitNodes().isEmpty()
+        || !parameters.getRequiredTransitNodes().isEmpty()
+        || parameters.getSrcNatted() != SrcNattedConstraint.UNCONSTRAINED
+        || parameters.getUseCompression()) {
+      return Optional.empty();
+    }
+
+    BDDReachabilityAnalysisFactory analysisFactory = getBddReachabilityAnalysisFactory();
+    BDDPacket pkt = analysisFactory.getBDDPacket();
+    synchronized (pkt) {
+      BDD headerSpaceBDD =
+          new HeaderSpaceToBDD(pkt, ImmutableMap.of()).toBDD(parameters.getHeaderSpace());
+      Map<IngressLocation, BDD> reachBDDs =
+          analysisFactory
+              .bddReachabilityAnalysis(parameters.getSourceIpAssignment(), headerSpaceBDD)
+              .getIngressLocationForwardReachableBDDs(targets.get(), true);
+      String tag = getFlowTag(_testrigSettings);
+      Set<Flow> flows =
+          reachBDDs
+              .entrySet()
+              .stream()
+              .map(entry -> toFlow(pkt, entry.getValue(), entry.getKey(), tag))
+              .collect(ImmutableSet.toImmutableSet());
+      reweighBddReachabilityAnalysisFactory(getNetworkSnapshot(), analysisFactory);
+      return Optional.of(flows);
+    }
+  }
+
+  /**
+   * Returns the states of the {@link BDDReachabilityAnalysis BDD reachability} graph where flows
+   * with the actions of {@code parameters} end at its final nodes, or {@link Optional#empty()} if
+   * the graph does not model some of the actions.
+   */
+  private static Optional<Set<StateExpr>> bddReachabilityTargets(
+      ResolvedReachabilityParameters parameters) {
+    ImmutableSet.Builder<StateExpr> targets = ImmutableSet.builder();
+    for (String node : parameters.getFinalNodes()) {
+      for (ForwardingAction action : parameters.getActions()) {
+        switch (action) {
+          case ACCEPT:
+            targets.add(new NodeAccept(node));
+            break;
+          case DROP:
+            targets.add(new NodeDrop(node));
+            break;
+          case DROP_ACL:
+            targets.add(new NodeDropAclIn(node), new NodeDropAclOut(node));
+            break;
+          case DROP_ACL_IN:
+            targets.add(new NodeDropAclIn(node));
+            break;
+          case DROP_ACL_OUT:
+            targets.add(new NodeDropAclOut(node));
+            break;
+          case DROP_NO_ROUTE:
+            targets.add(new NodeDropNoRoute(node));
+            break;
+          case DROP_NULL_ROUTE:
+            targets.add(new NodeDropNullRoute(node));
+            break;
+          case NEIGHBOR_UNREACHABLE_OR_EXITS_NETWORK:
+            parameters
+                .getConfigurations()
+                .get(node)
+                .getInterfaces()
+                .keySet()
+                .forEach(iface -> targets.add(new NodeInterfaceNeighborUnreachable(node, iface)));
+            break;
+          default:
+            return Optional.empty();
+        }
+      }
+    }
+    return Optional.of(targets.build());
   }
 
   private Synthesizer synthesizeAcls(String hostname, Configuration config, String aclName) {
@@ -4570,16 +5080,94 @@ public class Batfish extends PluginConsumer implements IBatfish {
 
   @Override
   public Set<Flow> bddMultipathConsistency() {
-    BDDReachabilityAnalysis bddReachabilityAnalysis = getBddReachabilityAnalysis(new BDDPacket());
-    return bddReachabilityAnalysis.multipathInconsistencies(getFlowTag());
+    BDDReachabilityAnalysisFactory analysisFactory = getBddReachabilityAnalysisFactory();
+    synchronized (analysisFactory.getBDDPacket()) {
+      Set<Flow> flows =
+          getBddReachabilityAnalysis(analysisFactory).multipathInconsistencies(getFlowTag());
+      reweighBddReachabilityAnalysisFactory(getNetworkSnapshot(), analysisFactory);
+      return flows;
+    }
   }
 
+  /**
+   * Returns the {@link BDDReachabilityAnalysisFactory} of the current snapshot, over its own {@link
+   * BDDPacket}.
+   *
+   * <p>Factories are cached per snapshot and built once, so questions asked about the same snapshot
+   * only compute their own roots and fixpoint. Cached factories may be shared by concurrent tasks,
+   * so their BDDs must only be used while synchronized on their packet.
+   */
   @Nonnull
-  private BDDReachabilityAnalysis getBddReachabilityAnalysis(BDDPacket pkt) {
+  private BDDReachabilityAnalysisFactory getBddReachabilityAnalysisFactory() {
+    return loadCached(
+        _cachedBddReachabilityAnalysisFactories,
+        BddReachabilityAnalysisKey.of(getNetworkSnapshot()),
+        () -> buildBddReachabilityAnalysisFactory(new BDDPacket()));
+  }
+
+  /**
+   * Returns the {@link BDDReachabilityAnalysisFactory} of the current snapshot over the packet of
+   * {@code packetFactory}, the factory of {@code packetSnapshot} over its own packet. It is cached
+   * beside the factory of the current snapshot over its own packet.
+   */
+  @Nonnull
+  private BDDReachabilityAnalysisFactory getBddReachabilityAnalysisFactory(
+      NetworkSnapshot packetSnapshot, BDDReachabilityAnalysisFactory packetFactory) {
+    BDDPacket pkt = packetFactory.getBDDPacket();
+    BddReachabilityAnalysisKey key =
+        BddReachabilityAnalysisKey.overPacketOf(getNetworkSnapshot(), packetSnapshot);
+    BDDReachabilityAnalysisFactory analysisFactory =
+        loadCached(
+            _cachedBddReachabilityAnalysisFactories,
+            key,
+            () -> buildBddReachabilityAnalysisFactory(pkt));
+    if (analysisFactory.getBDDPacket() != pkt) {
+      // packetFactory was rebuilt since analysisFactory was cached, e.g. after being evicted
+      analysisFactory = buildBddReachabilityAnalysisFactory(pkt);
+      _cachedBddReachabilityAnalysisFactories.put(key, analysisFactory);
+    }
+    return analysisFactory;
+  }
+
+  @Nonnull
+  private BDDReachabilityAnalysisFactory buildBddReachabilityAnalysisFactory(BDDPacket pkt) {
     Map<String, Configuration> configurations = loadConfigurations();
     DataPlane dataPlane = loadDataPlane();
-    ForwardingAnalysis forwardingAnalysis = dataPlane.getForwardingAnalysis();
-    SpecifierContextImpl specifierContext = new SpecifierContextImpl(this, configurations);
+    ForwardingAnalysis forwardingAnalysis =
+        new BDDForwardingAnalysis(
+            pkt,
+            dataPlane.getConfigurations(),
+            dataPlane.getRibs(),
+            dataPlane.getFibs(),
+            dataPlane.getTopology());
+    return new BDDReachabilityAnalysisFactory(pkt, configurations, forwardingAnalysis);
+  }
+
+  /**
+   * Re-weighs {@code factory}, the cached factory of {@code snapshot} over its own packet, whose
+   * node table may have grown since the factory was cached, e.g. by queries or by factories of
+   * other snapshots over the same packet. Must be called while synchronized on the packet.
+   */
+  private void reweighBddReachabilityAnalysisFactory(
+      NetworkSnapshot snapshot, BDDReachabilityAnalysisFactory factory) {
+    // replacing an entry with itself weighs it again, and evicts entries if the cache got too heavy
+    _cachedBddReachabilityAnalysisFactories
+        .asMap()
+        .replace(BddReachabilityAnalysisKey.of(snapshot), factory, factory);
+  }
+
+  /** Drops the cached factories that analyze {@code snapshot} or are over its packet. */
+  private void invalidateBddReachabilityAnalysisFactories(NetworkSnapshot snapshot) {
+    _cachedBddReachabilityAnalysisFactories
+        .asMap()
+        .keySet()
+        .removeIf(key -> key.dependsOn(snapshot));
+  }
+
+  @Nonnull
+  private BDDReachabilityAnalysis getBddReachabilityAnalysis(
+      BDDReachabilityAnalysisFactory analysisFactory) {
+    SpecifierContextImpl specifierContext = new SpecifierContextImpl(this, loadConfigurations());
     Set<Location> locations =
         new UnionLocationSpecifier(
                 AllInterfacesLocationSpecifier.INSTANCE,
@@ -4587,9 +5175,6 @@ public class Batfish extends PluginConsumer implements IBatfish {
             .resolve(specifierContext);
     IpSpaceAssignment sourceIpAssignment =
         InferFromLocationIpSpaceSpecifier.INSTANCE.resolve(locations, specifierContext);
-
-    BDDReachabilityAnalysisFactory analysisFactory =
-        new BDDReachabilityAnalysisFactory(pkt, configurations, forwardingAnalysis);
     return analysisFactory.bddReachabilityAnalysis(sourceIpAssignment);
   }
 
@@ -4599,20 +5184,37 @@ public class Batfish extends PluginConsumer implements IBatfish {
    */
   @Override
   public Set<Flow> bddReducedReachability() {
-    BDDPacket pkt = new BDDPacket();
-
     pushBaseEnvironment();
-    BDDReachabilityAnalysis baseReachabilityAnalysis = getBddReachabilityAnalysis(pkt);
-    Map<IngressLocation, BDD> baseAcceptBDDs =
-        baseReachabilityAnalysis.getIngressLocationAcceptBDDs();
+    NetworkSnapshot baseSnapshot = getNetworkSnapshot();
+    BDDReachabilityAnalysisFactory baseAnalysisFactory = getBddReachabilityAnalysisFactory();
     popEnvironment();
 
-    pushDeltaEnvironment();
-    BDDReachabilityAnalysis deltaReachabilityAnalysis = getBddReachabilityAnalysis(pkt);
-    Map<IngressLocation, BDD> deltaAcceptBDDs =
-        deltaReachabilityAnalysis.getIngressLocationAcceptBDDs();
-    popEnvironment();
+    // the BDDs of both snapshots must be over the same packet
+    BDDPacket pkt = baseAnalysisFactory.getBDDPacket();
+    synchronized (pkt) {
+      pushBaseEnvironment();
+      Map<IngressLocation, BDD> baseAcceptBDDs =
+          getBddReachabilityAnalysis(baseAnalysisFactory).getIngressLocationAcceptBDDs();
+      popEnvironment();
+
+      pushDeltaEnvironment();
+      Map<IngressLocation, BDD> deltaAcceptBDDs =
+          getBddReachabilityAnalysis(
+                  getBddReachabilityAnalysisFactory(baseSnapshot, baseAnalysisFactory))
+              .getIngressLocationAcceptBDDs();
+      popEnvironment();
 
+      Set<Flow> flows = reducedReachabilityFlows(pkt, baseAcceptBDDs, deltaAcceptBDDs);
+      // the packet is charged to the base factory, also for the BDDs of the delta factory
+      reweighBddReachabilityAnalysisFactory(baseSnapshot, baseAnalysisFactory);
+      return flows;
+    }
+  }
+
+  private Set<Flow> reducedReachabilityFlows(
+      BDDPacket pkt,
+      Map<IngressLocation, BDD> baseAcceptBDDs,
+      Map<IngressLocation, BDD> deltaAcceptBDDs) {
     Set<IngressLocation> commonSources =
         Sets.intersection(baseAcceptBDDs.keySet(), deltaAcceptBDDs.keySet());
     ImmutableSet.Builder<Flow> flows = ImmutableSet.builder();
@@ -4621,31 +5223,36 @@ public class Batfish extends PluginConsumer implements IBatfish {
       if (reduced.isZero()) {
         continue;
       }
-      Flow.Builder flow =
-          pkt.getFlow(reduced)
-              .orElseGet(
-                  () -> {
-                    throw new BatfishException("Error getting flow from BDD");
-                  });
-
-      // set flow parameters
-      flow.setTag(getDifferentialFlowTag());
-      flow.setIngressNode(source.getNode());
-      switch (source.getType()) {
-        case VRF:
-          flow.setIngressVrf(source.getVrf());
-          break;
-        case INTERFACE_LINK:
-          flow.setIngressInterface(source.getInterface());
-          break;
-        default:
-          throw new BatfishException("Unexpected IngressLocationType: " + source.getType());
-      }
-      flows.add(flow.build());
+      flows.add(toFlow(pkt, reduced, source, getDifferentialFlowTag()));
     }
     return flows.build();
   }
 
+  /** Returns a flow with a header in {@code headerSpace}, sent from {@code source}. */
+  private static Flow toFlow(BDDPacket pkt, BDD headerSpace, IngressLocation source, String tag) {
+    Flow.Builder flow =
+        pkt.getFlow(headerSpace)
+            .orElseGet(
+                () -> {
+                  throw new BatfishException("Error getting flow from BDD");
+                });
+
+    // set flow parameters
+    flow.setTag(tag);
+    flow.setIngressNode(source.getNode());
+    switch (source.getType()) {
+      case VRF:
+        flow.setIngressVrf(source.getVrf());
+        break;
+      case INTERFACE_LINK:
+        flow.setIngressInterface(source.getInterface());
+        break;
+      default:
+        throw new BatfishException("Unexpected IngressLocationType: " + source.getType());
+    }
+    return flow.build();
+  }
+
   @Nonnull
   private Synthesizer synthesizeDataPlane(ResolvedReachabilityParameters parameters) {
     Map<String, Configuration> configs = parameters.getConfigurations();
@@ -4754,6 +5361,7 @@ public class Batfish extends PluginConsumer implements IBatfish {
   @Override
   public void writeDataPlane(DataPlane dp, DataPlaneAnswerElement ae) {
     _cachedDataPlanes.put(getNetworkSnapshot(), dp);
+    invalidateBddReachabilityAnalysisFactories(getNetworkSnapshot());
     serializeObject(dp, _testrigSettings.getEnvironmentSettings().getDataPlanePath());
     serializeObject(ae, _testrigSettings.getEnvironmentSettings().getDataPlaneAnswerPath());
   }
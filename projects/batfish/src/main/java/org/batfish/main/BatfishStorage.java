@@ -2,9 +2,12 @@ package org.batfish.main;
 
 import static org.batfish.common.plugin.PluginConsumer.DEFAULT_HEADER_LENGTH_BYTES;
 import static org.batfish.common.plugin.PluginConsumer.detectFormat;
+import static org.batfish.common.plugin.PluginConsumer.newObjectInputStream;
+import static org.batfish.common.plugin.PluginConsumer.newObjectOutputStream;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.io.Closer;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -23,6 +26,8 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 import javax.annotation.Nonnull;
@@ -44,18 +49,65 @@ import org.batfish.datamodel.answers.ConvertConfigurationAnswerElement;
 
 /** A utility class that abstracts the underlying file system storage used by {@link Batfish}. */
 final class BatfishStorage {
+  /**
+   * Name of the file holding all configurations of a directory when they are stored as a {@link
+   * SegmentedObjectFile}. Cannot collide with a hostname, since hostnames do not start with a dot.
+   */
+  static final String SEGMENTED_CONFIGS_FILE = ".segments";
+
   private final BatfishLogger _logger;
   private final Path _containerDir;
   private final BiFunction<String, Integer, AtomicInteger> _newBatch;
+  private final boolean _segmented;
+  private final ClassLoader _classLoader;
+  private final boolean _serializeToText;
 
   /** Create a new {@link BatfishStorage} instance that uses the given root path as a container. */
   public BatfishStorage(
       Path containerDir,
       BatfishLogger logger,
       BiFunction<String, Integer, AtomicInteger> newBatch) {
+    this(containerDir, logger, newBatch, false);
+  }
+
+  /**
+   * Create a new {@link BatfishStorage} instance that uses the given root path as a container,
+   * resolving classes with the current thread's context class loader.
+   */
+  public BatfishStorage(
+      Path containerDir,
+      BatfishLogger logger,
+      BiFunction<String, Integer, AtomicInteger> newBatch,
+      boolean segmented) {
+    this(
+        containerDir,
+        logger,
+        newBatch,
+        segmented,
+        Thread.currentThread().getContextClassLoader(),
+        false);
+  }
+
+  /**
+   * Create a new {@link BatfishStorage} instance that uses the given root path as a container. If
+   * {@code segmented} is set, configurations are stored in a single {@link SegmentedObjectFile}
+   * rather than one file per node. Both layouts can always be loaded. Classes are resolved with
+   * {@code classLoader}, e.g. to load plugin-defined classes, and objects are stored as text if
+   * {@code serializeToText} is set.
+   */
+  public BatfishStorage(
+      Path containerDir,
+      BatfishLogger logger,
+      BiFunction<String, Integer, AtomicInteger> newBatch,
+      boolean segmented,
+      ClassLoader classLoader,
+      boolean serializeToText) {
     _containerDir = containerDir;
     _logger = logger;
     _newBatch = newBatch;
+    _segmented = segmented;
+    _classLoader = classLoader;
+    _serializeToText = serializeToText;
   }
 
   /**
@@ -96,6 +148,18 @@ final class BatfishStorage {
     }
 
     _logger.info("\n*** DESERIALIZING VENDOR-INDEPENDENT CONFIGURATION STRUCTURES ***\n");
+    Path segmentedConfigs = indepDir.resolve(SEGMENTED_CONFIGS_FILE);
+    if (isSegmentedFile(segmentedConfigs)) {
+      try {
+        return deserializeSegments(
+            SegmentedObjectFile.open(segmentedConfigs, _classLoader), Configuration.class);
+      } catch (BatfishException e) {
+        _logger.warnf(
+            "Failed to deserialize segmented configurations from %s: %s",
+            segmentedConfigs, Throwables.getStackTraceAsString(e));
+        return null;
+      }
+    }
     Map<Path, String> namesByPath = new TreeMap<>();
     try (DirectoryStream<Path> stream = Files.newDirectoryStream(indepDir)) {
       for (Path serializedConfig : stream) {
@@ -113,6 +177,48 @@ final class BatfishStorage {
     }
   }
 
+  /**
+   * Returns a loader for each of the configurations of the given testrig, keyed by hostname. Each
+   * loader deserializes only its own node's configuration, and does so every time it is invoked. If
+   * no compatible serialized copy of the configurations is present, returns {@code null}.
+   */
+  @Nullable
+  public SortedMap<String, Supplier<Configuration>> loadConfigurationLoaders(String testrig) {
+    Path indepDir = getTestrigDir(testrig).resolve(BfConsts.RELPATH_VENDOR_INDEPENDENT_CONFIG_DIR);
+    if (!Files.exists(indepDir) || !cachedConfigsAreCompatible(testrig)) {
+      return null;
+    }
+
+    Path segmentedConfigs = indepDir.resolve(SEGMENTED_CONFIGS_FILE);
+    if (isSegmentedFile(segmentedConfigs)) {
+      SegmentedObjectFile file = SegmentedObjectFile.open(segmentedConfigs, _classLoader);
+      return file.getNames()
+          .stream()
+          .collect(
+              ImmutableSortedMap.toImmutableSortedMap(
+                  String::compareTo,
+                  Function.identity(),
+                  name -> () -> file.read(name, Configuration.class)));
+    }
+
+    // The loaders may outlive this storage in the worker's caches, so they capture only what they
+    // need to deserialize.
+    ClassLoader classLoader = _classLoader;
+    ImmutableSortedMap.Builder<String, Supplier<Configuration>> loaders =
+        ImmutableSortedMap.naturalOrder();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(indepDir)) {
+      for (Path serializedConfig : stream) {
+        loaders.put(
+            serializedConfig.getFileName().toString(),
+            () -> deserializeObject(serializedConfig, Configuration.class, classLoader));
+      }
+    } catch (IOException e) {
+      throw new BatfishException(
+          "Error reading vendor-independent configs directory: '" + indepDir + "'", e);
+    }
+    return loaders.build();
+  }
+
   @Nullable
   public ConvertConfigurationAnswerElement loadConvertConfigurationAnswerElement(String testrig) {
     Path ccaePath = getTestrigDir(testrig).resolve(BfConsts.RELPATH_CONVERT_ANSWER_PATH);
@@ -238,6 +344,13 @@ final class BatfishStorage {
           String.format("Unable to create output directory '%s'", outputDir));
     }
 
+    if (_segmented) {
+      SegmentedObjectFile.write(
+          outputDir.resolve(SEGMENTED_CONFIGS_FILE), configurations, _serializeToText);
+      progressCount.addAndGet(configurations.size());
+      return;
+    }
+
     configurations
         .entrySet()
         .parallelStream()
@@ -355,27 +468,34 @@ final class BatfishStorage {
    * Returns a single object of the given class deserialized from the given file. Uses the {@link
    * BatfishStorage} default file encoding including serialization format and compression.
    */
-  private static <S extends Serializable> S deserializeObject(Path inputFile, Class<S> outputClass)
+  private <S extends Serializable> S deserializeObject(Path inputFile, Class<S> outputClass)
       throws BatfishException {
+    return deserializeObject(inputFile, outputClass, _classLoader);
+  }
+
+  private static <S extends Serializable> S deserializeObject(
+      Path inputFile, Class<S> outputClass, ClassLoader classLoader) throws BatfishException {
     try (Closer closer = Closer.create()) {
       FileInputStream fis = closer.register(new FileInputStream(inputFile.toFile()));
       PushbackInputStream pbstream = new PushbackInputStream(fis, DEFAULT_HEADER_LENGTH_BYTES);
       Format f = detectFormat(pbstream);
-      ObjectInputStream ois;
+      PushbackInputStream pbUncompressed;
       if (f == Format.GZIP) {
         GZIPInputStream gis =
             closer.register(new GZIPInputStream(pbstream, 8192 /* enlarge buffer */));
-        ois = new ObjectInputStream(gis);
+        pbUncompressed = new PushbackInputStream(gis, DEFAULT_HEADER_LENGTH_BYTES);
       } else if (f == Format.LZ4) {
         LZ4FrameInputStream lis = closer.register(new LZ4FrameInputStream(pbstream));
-        ois = new ObjectInputStream(lis);
+        pbUncompressed = new PushbackInputStream(lis, DEFAULT_HEADER_LENGTH_BYTES);
       } else if (f == Format.JAVA_SERIALIZED) {
-        ois = new ObjectInputStream(pbstream);
+        pbUncompressed = pbstream;
       } else {
         throw new BatfishException(
             String.format("Could not detect format of the file %s", inputFile));
       }
-      closer.register(ois);
+      ObjectInputStream ois =
+          closer.register(
+              newObjectInputStream(pbUncompressed, detectFormat(pbUncompressed), classLoader));
       return outputClass.cast(ois.readObject());
     } catch (IOException | ClassNotFoundException | ClassCastException e) {
       throw new BatfishException(
@@ -411,15 +531,48 @@ final class BatfishStorage {
                     })));
   }
 
+  private <S extends Serializable> SortedMap<String, S> deserializeSegments(
+      SegmentedObjectFile file, Class<S> outputClass) {
+    AtomicInteger completed =
+        _newBatch.apply(
+            String.format(
+                "Deserializing objects of type '%s' from segments", outputClass.getName()),
+            file.getNames().size());
+    return new TreeMap<>(
+        file.getNames()
+            .parallelStream()
+            .collect(
+                Collectors.toMap(
+                    Function.identity(),
+                    name -> {
+                      S output = file.read(name, outputClass);
+                      completed.incrementAndGet();
+                      return output;
+                    })));
+  }
+
+  /** Returns true if {@code file} exists and is a {@link SegmentedObjectFile}. */
+  private static boolean isSegmentedFile(Path file) {
+    if (!Files.exists(file)) {
+      return false;
+    }
+    try (PushbackInputStream pbstream =
+        new PushbackInputStream(Files.newInputStream(file), DEFAULT_HEADER_LENGTH_BYTES)) {
+      return detectFormat(pbstream) == Format.SEGMENTED;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
   /**
    * Writes a single object of the given class to the given file. Uses the {@link BatfishStorage}
    * default file encoding including serialization format and compression.
    */
-  private static void serializeObject(Serializable object, Path outputFile) {
+  private void serializeObject(Serializable object, Path outputFile) {
     try {
       try (OutputStream out = Files.newOutputStream(outputFile);
           LZ4FrameOutputStream gos = new LZ4FrameOutputStream(out);
-          ObjectOutputStream oos = new ObjectOutputStream(gos)) {
+          ObjectOutputStream oos = newObjectOutputStream(gos, _serializeToText)) {
         oos.writeObject(object);
       }
     } catch (IOException e) {
@@ -0,0 +1,82 @@
+package org.batfish.main;
+
+import com.google.common.base.MoreObjects;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import org.batfish.bddreachability.BDDReachabilityAnalysisFactory;
+import org.batfish.common.NetworkSnapshot;
+import org.batfish.symbolic.bdd.BDDPacket;
+
+/**
+ * Identifies a cached {@link BDDReachabilityAnalysisFactory}: the snapshot it analyzes, and the
+ * snapshot whose own factory created the {@link BDDPacket} its BDDs are over. Factories over the
+ * packet of another snapshot let BDDs of the two snapshots be compared, e.g. for differential
+ * questions, without replacing the factory of either snapshot.
+ */
+public final class BddReachabilityAnalysisKey {
+
+  /** Returns the key of the factory of {@code snapshot} over its own packet. */
+  public static BddReachabilityAnalysisKey of(@Nonnull NetworkSnapshot snapshot) {
+    return new BddReachabilityAnalysisKey(snapshot, snapshot);
+  }
+
+  /**
+   * Returns the key of the factory of {@code snapshot} over the packet of the own factory of {@code
+   * packetSnapshot}.
+   */
+  public static BddReachabilityAnalysisKey overPacketOf(
+      @Nonnull NetworkSnapshot snapshot, @Nonnull NetworkSnapshot packetSnapshot) {
+    return new BddReachabilityAnalysisKey(snapshot, packetSnapshot);
+  }
+
+  private final NetworkSnapshot _packetSnapshot;
+
+  private final NetworkSnapshot _snapshot;
+
+  private BddReachabilityAnalysisKey(NetworkSnapshot snapshot, NetworkSnapshot packetSnapshot) {
+    _packetSnapshot = packetSnapshot;
+    _snapshot = snapshot;
+  }
+
+  public NetworkSnapshot getPacketSnapshot() {
+    return _packetSnapshot;
+  }
+
+  public NetworkSnapshot getSnapshot() {
+    return _snapshot;
+  }
+
+  /** Returns whether the factory analyzes {@code snapshot} or is over its packet */
+  public boolean dependsOn(NetworkSnapshot snapshot) {
+    return _snapshot.equals(snapshot) || _packetSnapshot.equals(snapshot);
+  }
+
+  /** Returns whether the factory is over the packet of the snapshot it analyzes. */
+  public boolean isOverOwnPacket() {
+    return _snapshot.equals(_packetSnapshot);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    } else if (!(o instanceof BddReachabilityAnalysisKey)) {
+      return false;
+    }
+    BddReachabilityAnalysisKey other = (BddReachabilityAnalysisKey) o;
+    return _snapshot.equals(other._snapshot) && _packetSnapshot.equals(other._packetSnapshot);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(_snapshot, _packetSnapshot);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(BddReachabilityAnalysisKey.class)
+        .add("snapshot", _snapshot)
+        .add("packetSnapshot", _packetSnapshot)
+        .toString();
+  }
+}
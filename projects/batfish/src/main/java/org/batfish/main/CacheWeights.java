@@ -0,0 +1,99 @@
+package org.batfish.main;
+
+import java.util.Map;
+import org.batfish.bddreachability.BDDReachabilityAnalysisFactory;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.DataPlane;
+import org.batfish.symbolic.bdd.BDDPacket;
+
+/**
+ * Rough estimates of the heap retained by cached snapshot artifacts, in kilobytes. Used to weigh
+ * entries of the worker's memory-budgeted caches.
+ *
+ * <p>The constants are derived from the object layout of the weighed artifacts on a 64-bit JVM with
+ * compressed references, not measured on particular snapshots. They only need to be right to within
+ * a small factor: each cache is bounded by a share of the heap, so a constant that is off by a
+ * factor of two moves the point at which that cache evicts by the same factor.
+ */
+final class CacheWeights {
+
+  /**
+   * Number of BDD nodes per kilobyte of a {@link BDDPacket}'s node table. A {@link
+   * net.sf.javabdd.JFactory} node is 5 ints (20 bytes), and {@link BDDPacket} sizes each of the
+   * factory's half dozen operator caches at 1/64 of the node table, with entries of about 32 bytes,
+   * adding about 3 bytes per node. That gives about 44 nodes per kilobyte, rounded down for the
+   * {@link net.sf.javabdd.BDD} objects referring into the table.
+   */
+  static final int BDD_NODES_PER_KB = 40;
+
+  /**
+   * Estimated size of a single node's {@link Configuration}. Dominated by its interfaces, at about
+   * 1 KB each for the interface object, its addresses and its many (mostly empty) collections, for
+   * a device with a few dozen interfaces; plus its ACLs, routing policies, VRFs and routing
+   * processes.
+   */
+  static final int CONFIGURATION_KB = 64;
+
+  /**
+   * Estimated per-node size of a {@link DataPlane}, excluding routes. Each virtual router holds
+   * about 15 RIBs, each with a tree root, a hash map of arrival times and a few empty sets, at
+   * roughly 600 bytes per RIB, plus its FIB, prefix tracer and route queues.
+   */
+  static final int DATA_PLANE_NODE_KB = 16;
+
+  /**
+   * Number of routes per kilobyte of a {@link DataPlane}. A route object with its {@link
+   * org.batfish.datamodel.Prefix} and next hop {@link org.batfish.datamodel.Ip} takes about 120
+   * bytes. It is held by both its protocol RIB and the main RIB, each costing about 60 bytes of
+   * hash set and cached route set entries, and its FIB entry takes about 150 bytes more: about 400
+   * bytes, or 2 to 3 routes per kilobyte, rounded down.
+   */
+  static final int ROUTES_PER_KB = 2;
+
+  private CacheWeights() {}
+
+  /**
+   * Weigh a map of configurations by its number of nodes. Does not access the configurations
+   * themselves, so it is safe to use on a {@link LazyConfigurationMap}.
+   */
+  static int weighConfigurations(Map<String, Configuration> configurations) {
+    return saturatedWeight((long) configurations.size() * CONFIGURATION_KB);
+  }
+
+  /**
+   * Weigh a data plane by its number of nodes and (main RIB) routes. Uses the route count recorded
+   * by the data plane rather than walking its RIBs.
+   */
+  static int weighDataPlane(DataPlane dataPlane) {
+    return saturatedWeight(
+        (long) dataPlane.getConfigurations().size() * DATA_PLANE_NODE_KB
+            + dataPlane.getNumMainRibRoutes() / ROUTES_PER_KB);
+  }
+
+  /**
+   * Weigh the BDDs over a packet, e.g. those of a cached BDD reachability analysis, by the size of
+   * the packet's node table.
+   */
+  static int weighBddPacket(BDDPacket pkt) {
+    return saturatedWeight((long) pkt.getFactory().getNodeTableSize() / BDD_NODES_PER_KB);
+  }
+
+  /**
+   * Weigh a cached BDD reachability analysis factory by the BDDs over its packet. Factories over
+   * the packet of another snapshot share that snapshot's own factory's packet, which is charged to
+   * the own factory only, so that each packet is charged once.
+   */
+  static int weighBddReachabilityAnalysisFactory(
+      BddReachabilityAnalysisKey key, BDDReachabilityAnalysisFactory factory) {
+    return key.isOverOwnPacket() ? weighBddPacket(factory.getBDDPacket()) : 1;
+  }
+
+  /** Compute the maximum total weight of a cache given its share of the heap budget. */
+  static long maxWeight(long maxHeapBytes, int heapPercent, double share) {
+    return Math.max(1L, (long) (maxHeapBytes / 1024 * (heapPercent / 100.0) * share));
+  }
+
+  private static int saturatedWeight(long weight) {
+    return (int) Math.max(1L, Math.min(Integer.MAX_VALUE, weight));
+  }
+}
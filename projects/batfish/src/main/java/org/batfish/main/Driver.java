@@ -1,9 +1,15 @@
 package org.batfish.main;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
 import com.uber.jaeger.Configuration.ReporterConfiguration;
 import com.uber.jaeger.Configuration.SamplerConfiguration;
 import com.uber.jaeger.samplers.ConstSampler;
@@ -19,6 +25,8 @@ import java.lang.ProcessBuilder.Redirect;
 import java.lang.management.ManagementFactory;
 import java.lang.management.RuntimeMXBean;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collections;
@@ -26,12 +34,14 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
@@ -44,6 +54,7 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.SystemUtils;
+import org.batfish.bddreachability.BDDReachabilityAnalysisFactory;
 import org.batfish.common.BatfishException;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.BfConsts;
@@ -76,6 +87,7 @@ import sun.misc.SignalHandler;
 public class Driver {
 
   public enum RunMode {
+    WARMUP,
     WATCHDOG,
     WORKER,
     WORKSERVICE,
@@ -105,10 +117,13 @@ public class Driver {
     }
   }
 
-  private static boolean _idle = true;
+  private static int _numRunningTasks = 0;
 
   private static Date _lastPollFromCoordinator = new Date();
 
+  /** The name this worker registered with the coordinator under, or null if not registered */
+  @Nullable private static String _workerName = null;
+
   private static String[] _mainArgs = null;
 
   private static BatfishLogger _mainLogger = null;
@@ -117,10 +132,12 @@ public class Driver {
 
   private static ConcurrentMap<String, Task> _taskLog;
 
-  private static final Cache<NetworkSnapshot, DataPlane> CACHED_COMPRESSED_DATA_PLANES =
-      buildDataPlaneCache();
+  private static volatile Cache<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory>
+      _cachedBddReachabilityAnalysisFactories;
+
+  private static volatile Cache<NetworkSnapshot, DataPlane> _cachedCompressedDataPlanes;
 
-  private static final Cache<NetworkSnapshot, DataPlane> CACHED_DATA_PLANES = buildDataPlaneCache();
+  private static volatile Cache<NetworkSnapshot, DataPlane> _cachedDataPlanes;
 
   private static final Map<NetworkSnapshot, SortedMap<String, BgpAdvertisementsByVrf>>
       CACHED_ENVIRONMENT_BGP_TABLES = buildEnvironmentBgpTablesCache();
@@ -128,14 +145,28 @@ public class Driver {
   private static final Map<NetworkSnapshot, SortedMap<String, RoutesByVrf>>
       CACHED_ENVIRONMENT_ROUTING_TABLES = buildEnvironmentRoutingTablesCache();
 
-  private static final Cache<NetworkSnapshot, SortedMap<String, Configuration>> CACHED_TESTRIGS =
-      buildTestrigCache();
+  private static volatile Cache<NetworkSnapshot, SortedMap<String, Configuration>> _cachedTestrigs;
 
-  private static final Cache<NetworkSnapshot, SortedMap<String, Configuration>>
-      CACHED_COMPRESSED_TESTRIGS = buildTestrigCache();
+  private static volatile Cache<NetworkSnapshot, SortedMap<String, Configuration>>
+      _cachedCompressedTestrigs;
+
+  static {
+    initCaches(Settings.DEFAULT_CACHE_HEAP_PERCENT);
+  }
 
   private static final int COORDINATOR_CHECK_INTERVAL_MS = 1 * 60 * 1000; // 1 min
 
+  /**
+   * Attempts to report a finished task. A lost report only delays the task until the coordinator's
+   * next periodic check (every 10 secs by default), so retries need only outlast brief failures,
+   * such as a dropped connection or a rejected request. Failed attempts return quickly, so three
+   * attempts a second apart take about 2 secs; retrying for longer would mostly race the periodic
+   * check. Retries happen after the task slot is released, so they do not delay other tasks.
+   */
+  private static final int COORDINATOR_NOTIFY_ATTEMPTS = 3;
+
+  private static final int COORDINATOR_NOTIFY_RETRY_INTERVAL_MS = 1 * 1000; // 1 sec
+
   private static final int COORDINATOR_POLL_TIMEOUT_MS = 30 * 1000; // 30 secs
 
   private static final int COORDINATOR_REGISTRATION_RETRY_INTERVAL_MS = 1 * 1000; // 1 sec
@@ -144,19 +175,82 @@ public class Driver {
 
   static Logger httpServerLogger = Logger.getLogger(HttpServer.class.getName());
 
-  private static final int MAX_CACHED_DATA_PLANES = 2;
+  /** Shares of the cache heap budget for each kind of cache */
+  private static final double CACHE_SHARE_BDD_REACHABILITY_ANALYSIS_FACTORIES = 0.15;
+
+  private static final double CACHE_SHARE_COMPRESSED_DATA_PLANES = 0.1;
+
+  private static final double CACHE_SHARE_COMPRESSED_TESTRIGS = 0.1;
+
+  private static final double CACHE_SHARE_DATA_PLANES = 0.4;
+
+  private static final double CACHE_SHARE_TESTRIGS = 0.25;
 
   private static final int MAX_CACHED_ENVIRONMENT_BGP_TABLES = 4;
 
   private static final int MAX_CACHED_ENVIRONMENT_ROUTING_TABLES = 4;
 
-  private static final int MAX_CACHED_TESTRIGS = 5;
-
   static Logger networkListenerLogger =
       Logger.getLogger("org.glassfish.grizzly.http.server.NetworkListener");
 
-  private static Cache<NetworkSnapshot, DataPlane> buildDataPlaneCache() {
-    return CacheBuilder.newBuilder().maximumSize(MAX_CACHED_DATA_PLANES).weakValues().build();
+  private static Cache<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory>
+      buildBddReachabilityAnalysisFactoryCache(int heapPercent, double share) {
+    return buildBddReachabilityAnalysisFactoryCache(
+        CacheWeights.maxWeight(Runtime.getRuntime().maxMemory(), heapPercent, share));
+  }
+
+  /**
+   * Builds a cache of BDD reachability analysis factories weighing at most {@code maxWeight} in
+   * total. Each packet is charged to the factory over its own packet (see {@link
+   * CacheWeights#weighBddReachabilityAnalysisFactory}). Since packets grow as they are used, users
+   * of a factory re-weigh it by replacing it with itself. When a factory over its own packet is
+   * removed, the factories over its packet are removed too, so that they do not keep the packet
+   * alive without being charged for it.
+   *
+   * <p>Uses a single segment, so that the whole budget is available to each factory; Guava splits
+   * the maximum weight among segments, and a cache holds few factories.
+   */
+  @VisibleForTesting
+  static Cache<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory>
+      buildBddReachabilityAnalysisFactoryCache(long maxWeight) {
+    AtomicReference<Cache<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory>> cache =
+        new AtomicReference<>();
+    cache.set(
+        CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumWeight(maxWeight)
+            .weigher(
+                (BddReachabilityAnalysisKey k, BDDReachabilityAnalysisFactory v) ->
+                    CacheWeights.weighBddReachabilityAnalysisFactory(k, v))
+            .removalListener(
+                (RemovalNotification<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory>
+                        notification) -> {
+                  BddReachabilityAnalysisKey key = notification.getKey();
+                  if (key != null
+                      && key.isOverOwnPacket()
+                      && notification.getCause() != RemovalCause.REPLACED) {
+                    cache
+                        .get()
+                        .asMap()
+                        .keySet()
+                        .removeIf(
+                            k ->
+                                !k.isOverOwnPacket()
+                                    && k.getPacketSnapshot().equals(key.getSnapshot()));
+                  }
+                })
+            .recordStats()
+            .build());
+    return cache.get();
+  }
+
+  private static Cache<NetworkSnapshot, DataPlane> buildDataPlaneCache(
+      int heapPercent, double share) {
+    return CacheBuilder.newBuilder()
+        .maximumWeight(CacheWeights.maxWeight(Runtime.getRuntime().maxMemory(), heapPercent, share))
+        .weigher((NetworkSnapshot k, DataPlane v) -> CacheWeights.weighDataPlane(v))
+        .recordStats()
+        .build();
   }
 
   private static Map<NetworkSnapshot, SortedMap<String, BgpAdvertisementsByVrf>>
@@ -169,22 +263,76 @@ public class Driver {
     return Collections.synchronizedMap(new LRUMap<>(MAX_CACHED_ENVIRONMENT_ROUTING_TABLES));
   }
 
-  private static Cache<NetworkSnapshot, SortedMap<String, Configuration>> buildTestrigCache() {
-    return CacheBuilder.newBuilder().maximumSize(MAX_CACHED_TESTRIGS).build();
+  private static Cache<NetworkSnapshot, SortedMap<String, Configuration>> buildTestrigCache(
+      int heapPercent, double share) {
+    return CacheBuilder.newBuilder()
+        .maximumWeight(CacheWeights.maxWeight(Runtime.getRuntime().maxMemory(), heapPercent, share))
+        .weigher(
+            (NetworkSnapshot k, SortedMap<String, Configuration> v) ->
+                CacheWeights.weighConfigurations(v))
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * (Re)build the snapshot caches so that together they use at most {@code heapPercent} percent of
+   * the maximum heap. Entries evicted from these caches are reloaded from storage on demand. The
+   * cache fields are volatile so that request threads see the caches rebuilt from settings.
+   */
+  private static synchronized void initCaches(int heapPercent) {
+    _cachedBddReachabilityAnalysisFactories =
+        buildBddReachabilityAnalysisFactoryCache(
+            heapPercent, CACHE_SHARE_BDD_REACHABILITY_ANALYSIS_FACTORIES);
+    _cachedCompressedDataPlanes =
+        buildDataPlaneCache(heapPercent, CACHE_SHARE_COMPRESSED_DATA_PLANES);
+    _cachedDataPlanes = buildDataPlaneCache(heapPercent, CACHE_SHARE_DATA_PLANES);
+    _cachedTestrigs = buildTestrigCache(heapPercent, CACHE_SHARE_TESTRIGS);
+    _cachedCompressedTestrigs = buildTestrigCache(heapPercent, CACHE_SHARE_COMPRESSED_TESTRIGS);
   }
 
-  private static synchronized boolean claimIdle() {
-    if (_idle) {
-      _idle = false;
+  /** Returns hit/miss/eviction statistics of each snapshot cache, keyed by cache name. */
+  public static synchronized SortedMap<String, CacheStats> getCacheStats() {
+    return ImmutableSortedMap.of(
+        "bddReachabilityAnalysisFactories",
+        _cachedBddReachabilityAnalysisFactories.stats(),
+        "compressedDataPlanes",
+        _cachedCompressedDataPlanes.stats(),
+        "compressedTestrigs",
+        _cachedCompressedTestrigs.stats(),
+        "dataPlanes",
+        _cachedDataPlanes.stats(),
+        "testrigs",
+        _cachedTestrigs.stats());
+  }
+
+  /** Returns the snapshots with configurations or a data plane in the caches of this worker. */
+  public static synchronized Set<NetworkSnapshot> getCachedSnapshots() {
+    return ImmutableSet.<NetworkSnapshot>builder()
+        .addAll(_cachedCompressedDataPlanes.asMap().keySet())
+        .addAll(_cachedCompressedTestrigs.asMap().keySet())
+        .addAll(_cachedDataPlanes.asMap().keySet())
+        .addAll(_cachedTestrigs.asMap().keySet())
+        .build();
+  }
+
+  private static synchronized boolean claimTaskSlot() {
+    if (getAvailableTaskSlots() > 0) {
+      _numRunningTasks++;
       return true;
     }
 
     return false;
   }
 
+  /** Returns the number of additional tasks this worker can run concurrently right now. */
+  public static synchronized int getAvailableTaskSlots() {
+    return Math.max(0, _mainSettings.getMaxConcurrentTasks() - _numRunningTasks);
+  }
+
+  /** Returns whether this worker can accept another task. */
   public static synchronized boolean getIdle() {
     _lastPollFromCoordinator = new Date();
-    return _idle;
+    return getAvailableTaskSlots() > 0;
   }
 
   public static BatfishLogger getMainLogger() {
@@ -306,6 +454,7 @@ public class Driver {
     _mainArgs = args;
     try {
       _mainSettings = new Settings(args);
+      initCaches(_mainSettings.getCacheHeapPercent());
       networkListenerLogger.setLevel(Level.WARNING);
       httpServerLogger.setLevel(Level.WARNING);
     } catch (Exception e) {
@@ -320,6 +469,9 @@ public class Driver {
     System.setOut(_mainLogger.getPrintStream());
     _mainSettings.setLogger(_mainLogger);
     switch (_mainSettings.getRunMode()) {
+      case WARMUP:
+        mainRunWarmup();
+        break;
       case WATCHDOG:
         mainRunWatchdog();
         break;
@@ -336,6 +488,40 @@ public class Driver {
     }
   }
 
+  /** Loads the lexer and parser DFAs saved by a previous warmup, if any */
+  private static void loadParserDfas() {
+    Path dfaCache = _mainSettings.getParserDfaCache();
+    if (dfaCache == null || !Files.exists(dfaCache)) {
+      return;
+    }
+    try {
+      int states = ParserWarmup.load(_mainSettings, dfaCache);
+      _mainLogger.infof("Loaded %d parser DFA states from: '%s'\n", states, dfaCache);
+    } catch (IOException | RuntimeException e) {
+      // parsing still works, just slower at first
+      _mainLogger.warnf(
+          "Could not load parser DFAs from: '%s': %s\n",
+          dfaCache, Throwables.getStackTraceAsString(e));
+    }
+  }
+
+  private static void mainRunWarmup() {
+    Path dfaCache = _mainSettings.getParserDfaCache();
+    Path warmupDir = _mainSettings.getParserWarmupDir();
+    if (dfaCache == null || warmupDir == null) {
+      _mainLogger.errorf(
+          "Warmup requires -%s and -%s\n",
+          Settings.ARG_PARSER_DFA_CACHE, Settings.ARG_PARSER_WARMUP_DIR);
+      System.exit(1);
+    }
+    try {
+      ParserWarmup.warmUp(_mainSettings, warmupDir, dfaCache);
+    } catch (IOException | RuntimeException e) {
+      _mainLogger.error(Throwables.getStackTraceAsString(e));
+      System.exit(1);
+    }
+  }
+
   private static void mainRunWatchdog() {
     while (true) {
       RuntimeMXBean runtimeMxBean = ManagementFactory.getRuntimeMXBean();
@@ -405,6 +591,7 @@ public class Driver {
 
   private static void mainRunWorker() {
     if (_mainSettings.canExecute()) {
+      loadParserDfas();
       _mainSettings.setLogger(_mainLogger);
       Batfish.initTestrigSettings(_mainSettings);
       if (runBatfish(_mainSettings) != null) {
@@ -414,6 +601,8 @@ public class Driver {
   }
 
   private static void mainRunWorkService() {
+    // before registering, so that tasks are not parsed slowly meanwhile
+    loadParserDfas();
     if (_mainSettings.getTracingEnable() && !GlobalTracer.isRegistered()) {
       initTracer();
     }
@@ -490,8 +679,8 @@ public class Driver {
     }
   }
 
-  private static synchronized void makeIdle() {
-    _idle = true;
+  private static synchronized void releaseTaskSlot() {
+    _numRunningTasks--;
   }
 
   public static synchronized AtomicInteger newBatch(
@@ -508,12 +697,59 @@ public class Driver {
   }
 
   private static boolean registerWithCoordinator(String poolRegUrl, int listenPort) {
+    String workerName = _mainSettings.getServiceHost() + ":" + listenPort;
     Map<String, String> params = new HashMap<>();
-    params.put(CoordConsts.SVC_KEY_ADD_WORKER, _mainSettings.getServiceHost() + ":" + listenPort);
+    params.put(CoordConsts.SVC_KEY_ADD_WORKER, workerName);
     params.put(CoordConsts.SVC_KEY_VERSION, Version.getVersion());
 
     Object response = talkToCoordinator(poolRegUrl, params, _mainLogger);
-    return response != null;
+    if (response == null) {
+      return false;
+    }
+    _workerName = workerName;
+    return true;
+  }
+
+  /**
+   * Tells the coordinator that the task with id {@code taskId} changed state, so that it need not
+   * wait for its next periodic check of the task. Failed attempts are retried a few times, since
+   * the periodic check is only a slow fallback; after that, failures are only logged.
+   */
+  private static void notifyCoordinator(String taskId) {
+    if (_workerName == null) {
+      return;
+    }
+    String protocol = _mainSettings.getSslDisable() ? "http" : "https";
+    String updateTaskUrl =
+        String.format(
+            "%s://%s:%s%s/%s",
+            protocol,
+            _mainSettings.getCoordinatorHost(),
+            _mainSettings.getCoordinatorPoolPort(),
+            CoordConsts.SVC_CFG_POOL_MGR,
+            CoordConsts.SVC_RSC_POOL_UPDATE_TASK);
+    Map<String, String> params = new HashMap<>();
+    params.put(CoordConsts.SVC_KEY_WORKER, _workerName);
+    params.put(CoordConsts.SVC_KEY_WORKID, taskId);
+    try {
+      for (int attempt = 1; attempt <= COORDINATOR_NOTIFY_ATTEMPTS; attempt++) {
+        if (talkToCoordinator(updateTaskUrl, params, _mainLogger) != null) {
+          return;
+        }
+        if (attempt < COORDINATOR_NOTIFY_ATTEMPTS) {
+          Thread.sleep(COORDINATOR_NOTIFY_RETRY_INTERVAL_MS);
+        }
+      }
+      _mainLogger.errorf(
+          "Could not notify coordinator of task %s after %d attempts\n",
+          taskId, COORDINATOR_NOTIFY_ATTEMPTS);
+    } catch (BatfishException e) {
+      _mainLogger.errorf(
+          "Could not notify coordinator of task %s: %s\n",
+          taskId, Throwables.getStackTraceAsString(e));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
   }
 
   private static void registerWithCoordinatorPersistent(int listenPort)
@@ -547,12 +783,13 @@ public class Driver {
       final Batfish batfish =
           new Batfish(
               settings,
-              CACHED_COMPRESSED_TESTRIGS,
-              CACHED_TESTRIGS,
-              CACHED_COMPRESSED_DATA_PLANES,
-              CACHED_DATA_PLANES,
+              _cachedCompressedTestrigs,
+              _cachedTestrigs,
+              _cachedCompressedDataPlanes,
+              _cachedDataPlanes,
               CACHED_ENVIRONMENT_BGP_TABLES,
-              CACHED_ENVIRONMENT_ROUTING_TABLES);
+              CACHED_ENVIRONMENT_ROUTING_TABLES,
+              _cachedBddReachabilityAnalysisFactories);
 
       @Nullable
       SpanContext runBatfishSpanContext =
@@ -674,11 +911,11 @@ public class Driver {
       return Arrays.asList(BfConsts.SVC_FAILURE_KEY, "Non-executable command");
     }
 
-    if (!claimIdle()) {
+    if (!claimTaskSlot()) {
       return Arrays.asList(BfConsts.SVC_FAILURE_KEY, "Not idle");
     }
 
-    // try/catch so that the worker becomes idle again in case of problem submitting thread.
+    // try/catch so that the task slot is released in case of problem submitting thread.
     try {
 
       final BatfishLogger jobLogger =
@@ -700,7 +937,7 @@ public class Driver {
               ? null
               : GlobalTracer.get().activeSpan().context();
 
-      // run batfish on a new thread and set idle to true when done
+      // run batfish on a new thread and release the task slot when done
       Thread thread =
           new Thread(
               () -> {
@@ -720,7 +957,8 @@ public class Driver {
                   }
                   task.setTerminated(new Date());
                   jobLogger.close();
-                  makeIdle();
+                  releaseTaskSlot();
+                  notifyCoordinator(taskId);
                 }
               });
 
@@ -729,7 +967,7 @@ public class Driver {
       return Arrays.asList(BfConsts.SVC_SUCCESS_KEY, "running now");
     } catch (Exception e) {
       _mainLogger.error("Exception while running task: " + e.getMessage());
-      makeIdle();
+      releaseTaskSlot();
       return Arrays.asList(BfConsts.SVC_FAILURE_KEY, e.getMessage());
     }
   }
@@ -0,0 +1,119 @@
+package org.batfish.main;
+
+import com.google.common.collect.ForwardingSortedMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.batfish.datamodel.Configuration;
+
+/**
+ * A {@link SortedMap} of hostname to {@link Configuration} that only loads a node's configuration
+ * when it is looked up with {@link #get}. Looking up the set of nodes ({@link #keySet}, {@link
+ * #containsKey}, {@link #size}) does not load any configuration.
+ *
+ * <p>Any other access (e.g. iterating over {@link #values} or modifying the map) first loads all
+ * remaining configurations in parallel, and from then on the map behaves like a regular {@link
+ * TreeMap}.
+ *
+ * <p>Each configuration is passed to {@code prepareNode} once, right after it is loaded. Processing
+ * that needs to see all nodes at once is done by {@code prepareAll} when all configurations are
+ * loaded; a node for which {@code needsAllNodes} holds triggers loading everything when it is
+ * looked up, so that it is never returned before {@code prepareAll} has run.
+ *
+ * <p>The {@link #keySet} returned before all configurations are loaded is unmodifiable.
+ */
+final class LazyConfigurationMap extends ForwardingSortedMap<String, Configuration> {
+
+  private final SortedMap<String, Supplier<Configuration>> _loaders;
+
+  private final Consumer<Configuration> _prepareNode;
+
+  private final Predicate<Configuration> _needsAllNodes;
+
+  private final Consumer<SortedMap<String, Configuration>> _prepareAll;
+
+  private final Map<String, Configuration> _loaded;
+
+  private volatile @Nullable SortedMap<String, Configuration> _materialized;
+
+  LazyConfigurationMap(
+      SortedMap<String, Supplier<Configuration>> loaders,
+      Consumer<Configuration> prepareNode,
+      Predicate<Configuration> needsAllNodes,
+      Consumer<SortedMap<String, Configuration>> prepareAll) {
+    _loaders = loaders;
+    _prepareNode = prepareNode;
+    _needsAllNodes = needsAllNodes;
+    _prepareAll = prepareAll;
+    _loaded = new ConcurrentHashMap<>();
+  }
+
+  @Override
+  protected synchronized SortedMap<String, Configuration> delegate() {
+    SortedMap<String, Configuration> materialized = _materialized;
+    if (materialized == null) {
+      _loaders
+          .keySet()
+          .parallelStream()
+          .forEach(hostname -> _loaded.computeIfAbsent(hostname, this::load));
+      materialized = new TreeMap<>(_loaded);
+      _prepareAll.accept(materialized);
+      _materialized = materialized;
+    }
+    return materialized;
+  }
+
+  @Override
+  public boolean containsKey(@Nullable Object key) {
+    SortedMap<String, Configuration> materialized = _materialized;
+    return materialized != null ? materialized.containsKey(key) : _loaders.containsKey(key);
+  }
+
+  @Override
+  public @Nullable Configuration get(@Nullable Object key) {
+    SortedMap<String, Configuration> materialized = _materialized;
+    if (materialized != null) {
+      return materialized.get(key);
+    }
+    if (!(key instanceof String) || !_loaders.containsKey(key)) {
+      return null;
+    }
+    Configuration c = _loaded.computeIfAbsent((String) key, this::load);
+    return _needsAllNodes.test(c) ? delegate().get(key) : c;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    SortedMap<String, Configuration> materialized = _materialized;
+    return materialized != null ? materialized.isEmpty() : _loaders.isEmpty();
+  }
+
+  @Override
+  public Set<String> keySet() {
+    SortedMap<String, Configuration> materialized = _materialized;
+    return materialized != null ? materialized.keySet() : _loaders.keySet();
+  }
+
+  @Override
+  public int size() {
+    SortedMap<String, Configuration> materialized = _materialized;
+    return materialized != null ? materialized.size() : _loaders.size();
+  }
+
+  /** Returns the number of configurations deserialized so far. */
+  int getNumLoaded() {
+    return _loaded.size();
+  }
+
+  private Configuration load(String hostname) {
+    Configuration c = _loaders.get(hostname).get();
+    _prepareNode.accept(c);
+    return c;
+  }
+}
@@ -0,0 +1,119 @@
+package org.batfish.main;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.antlr.v4.runtime.Recognizer;
+import org.batfish.common.BatfishLogger;
+import org.batfish.common.util.CommonUtil;
+import org.batfish.config.Settings;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.grammar.BatfishCombinedParser;
+import org.batfish.grammar.DfaCache;
+import org.batfish.grammar.cisco.CiscoCombinedParser;
+import org.batfish.grammar.flatjuniper.FlatJuniperCombinedParser;
+import org.batfish.grammar.flatvyos.FlatVyosCombinedParser;
+import org.batfish.grammar.iptables.IptablesCombinedParser;
+import org.batfish.grammar.juniper.JuniperCombinedParser;
+import org.batfish.grammar.mrv.MrvCombinedParser;
+import org.batfish.grammar.palo_alto.PaloAltoCombinedParser;
+import org.batfish.grammar.vyos.VyosCombinedParser;
+import org.batfish.job.ParseVendorConfigurationJob;
+import org.batfish.job.ParseVendorConfigurationResult;
+
+/**
+ * Builds the lexer and parser DFAs of the configuration grammars ahead of time, by parsing
+ * representative configuration files, and saves them with {@link DfaCache} so that workers load
+ * them at startup instead of parsing their first files slowly.
+ */
+final class ParserWarmup {
+
+  private ParserWarmup() {}
+
+  /**
+   * Returns a lexer and a parser of each configuration grammar, through which its DFAs are found
+   */
+  @VisibleForTesting
+  static List<Recognizer<?, ?>> getRecognizers(Settings settings) {
+    List<BatfishCombinedParser<?, ?>> parsers =
+        ImmutableList.of(
+            new CiscoCombinedParser("", settings, ConfigurationFormat.CISCO_IOS),
+            new FlatJuniperCombinedParser("", settings, null),
+            new FlatVyosCombinedParser("", settings),
+            new IptablesCombinedParser("", settings),
+            new JuniperCombinedParser("", settings),
+            new MrvCombinedParser("", settings),
+            new PaloAltoCombinedParser("", settings, null),
+            new VyosCombinedParser("", settings));
+    return parsers
+        .stream()
+        .flatMap(p -> Stream.<Recognizer<?, ?>>of(p.getLexer(), p.getParser()))
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /** Loads the DFAs saved in {@code dfaCache}, returning the number of DFA states loaded */
+  static int load(Settings settings, Path dfaCache) throws IOException {
+    return DfaCache.load(getRecognizers(settings), dfaCache, settings.getLogger());
+  }
+
+  /**
+   * Parses the configuration files under {@code warmupDir}, and saves the DFAs built meanwhile to
+   * {@code dfaCache}, together with any already saved there.
+   */
+  static void warmUp(Settings settings, Path warmupDir, Path dfaCache) throws IOException {
+    BatfishLogger logger = settings.getLogger();
+    if (!DfaCache.isEnabled()) {
+      logger.warn("Parser DFAs cannot be saved with this version of the ANTLR runtime\n");
+      return;
+    }
+    if (Files.exists(dfaCache)) {
+      try {
+        logger.infof("Loaded %d DFA states from: '%s'\n", load(settings, dfaCache), dfaCache);
+      } catch (IOException | RuntimeException e) {
+        // the DFAs are rebuilt from the warmup files, and the file replaced
+        logger.warnf("Could not load DFAs from: '%s': %s\n", dfaCache, e);
+      }
+    }
+    List<Path> files;
+    try (Stream<Path> paths = Files.walk(warmupDir)) {
+      files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+    Stream<Path> fileStream = settings.getSequential() ? files.stream() : files.parallelStream();
+    long parsed = fileStream.filter(file -> parse(settings, file)).count();
+    logger.infof("Parsed %d of %d warmup files\n", parsed, files.size());
+    DfaCache.save(getRecognizers(settings), dfaCache);
+    logger.infof("Saved DFAs to: '%s'\n", dfaCache);
+  }
+
+  /** Parses {@code file}, returning whether it was parsed */
+  private static boolean parse(Settings settings, Path file) {
+    ParseVendorConfigurationResult result;
+    try {
+      result =
+          new ParseVendorConfigurationJob(
+                  settings,
+                  CommonUtil.readFile(file),
+                  file.toString(),
+                  Batfish.buildWarnings(settings),
+                  ConfigurationFormat.UNKNOWN)
+              .call();
+    } catch (Exception e) {
+      settings.getLogger().warnf("Could not parse warmup file '%s': %s\n", file, e.getMessage());
+      return false;
+    }
+    if (result.getFailureCause() != null) {
+      settings
+          .getLogger()
+          .warnf(
+              "Could not parse warmup file '%s': %s\n",
+              file, result.getFailureCause().getMessage());
+      return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,190 @@
+package org.batfish.main;
+
+import static org.batfish.common.plugin.PluginConsumer.DEFAULT_HEADER_LENGTH_BYTES;
+import static org.batfish.common.plugin.PluginConsumer.SEGMENTED_MAGIC_BYTES;
+import static org.batfish.common.plugin.PluginConsumer.detectFormat;
+import static org.batfish.common.plugin.PluginConsumer.newObjectInputStream;
+import static org.batfish.common.plugin.PluginConsumer.newObjectOutputStream;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.google.common.collect.ImmutableSortedMap;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.Serializable;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import javax.annotation.Nullable;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.batfish.common.BatfishException;
+
+/**
+ * A file holding many independently addressable serialized objects (segments), e.g. one {@link
+ * org.batfish.datamodel.Configuration} per node.
+ *
+ * <p>Layout: {@link org.batfish.common.plugin.PluginConsumer#SEGMENTED_MAGIC_BYTES}, the length of
+ * the index, the index (number of segments, then name, offset, and length of each segment), and
+ * finally the segments themselves. Each segment is an LZ4-compressed object, serialized in the same
+ * format as the files of {@link BatfishStorage}. Opening the file only reads the index; a segment
+ * is memory-mapped and deserialized only when it is {@link #read read}, so readers touching a few
+ * segments page in only those.
+ */
+final class SegmentedObjectFile {
+
+  private static final class Segment {
+    private final long _offset;
+    private final int _length;
+
+    private Segment(long offset, int length) {
+      _offset = offset;
+      _length = length;
+    }
+  }
+
+  private final ClassLoader _classLoader;
+
+  private final Path _file;
+
+  // name --> location of the segment in _file
+  private final ImmutableSortedMap<String, Segment> _index;
+
+  private SegmentedObjectFile(
+      Path file, ImmutableSortedMap<String, Segment> index, ClassLoader classLoader) {
+    _classLoader = classLoader;
+    _file = file;
+    _index = index;
+  }
+
+  /**
+   * Open the given segmented file, reading only its index. Classes of the objects read are resolved
+   * with {@code classLoader}.
+   */
+  static SegmentedObjectFile open(Path file, ClassLoader classLoader) {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      byte[] magic = new byte[SEGMENTED_MAGIC_BYTES.length];
+      in.readFully(magic);
+      if (!Arrays.equals(magic, SEGMENTED_MAGIC_BYTES)) {
+        throw new BatfishException(String.format("Not a segmented object file: %s", file));
+      }
+      int indexLength = in.readInt();
+      // Segment offsets are relative to the end of the index.
+      long dataStart = magic.length + Integer.BYTES + indexLength;
+      int numSegments = in.readInt();
+      ImmutableSortedMap.Builder<String, Segment> index = ImmutableSortedMap.naturalOrder();
+      for (int i = 0; i < numSegments; i++) {
+        String name = in.readUTF();
+        long offset = in.readLong();
+        int length = in.readInt();
+        index.put(name, new Segment(dataStart + offset, length));
+      }
+      return new SegmentedObjectFile(file, index.build(), classLoader);
+    } catch (IOException e) {
+      throw new BatfishException(String.format("Failed to read segment index of %s", file), e);
+    }
+  }
+
+  /**
+   * Write each of the given objects into its own segment of a new file at {@code file}, as text if
+   * {@code serializeToText} is set.
+   */
+  static void write(
+      Path file, Map<String, ? extends Serializable> objects, boolean serializeToText) {
+    // Serialize up front (in parallel) so that the index can be written first.
+    SortedMap<String, byte[]> segments =
+        objects
+            .entrySet()
+            .parallelStream()
+            .collect(
+                ImmutableSortedMap.toImmutableSortedMap(
+                    String::compareTo,
+                    Entry::getKey,
+                    e -> serialize(e.getValue(), serializeToText)));
+    ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+    try (DataOutputStream index = new DataOutputStream(indexBytes)) {
+      index.writeInt(segments.size());
+      long offset = 0;
+      for (Entry<String, byte[]> segment : segments.entrySet()) {
+        index.writeUTF(segment.getKey());
+        index.writeLong(offset);
+        index.writeInt(segment.getValue().length);
+        offset += segment.getValue().length;
+      }
+    } catch (IOException e) {
+      throw new BatfishException(String.format("Failed to write segment index of %s", file), e);
+    }
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.write(SEGMENTED_MAGIC_BYTES);
+      out.writeInt(indexBytes.size());
+      indexBytes.writeTo(out);
+      for (byte[] segment : segments.values()) {
+        out.write(segment);
+      }
+    } catch (IOException e) {
+      throw new BatfishException(String.format("Failed to write segmented file %s", file), e);
+    }
+  }
+
+  /** Returns the names of all segments in this file. */
+  SortedSet<String> getNames() {
+    return _index.keySet();
+  }
+
+  /**
+   * Deserialize the segment with the given name, or return {@code null} if there is no such
+   * segment.
+   */
+  @Nullable
+  <S extends Serializable> S read(String name, Class<S> outputClass) {
+    Segment segment = _index.get(name);
+    if (segment == null) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(_file, StandardOpenOption.READ)) {
+      // The mapping remains valid after the channel is closed.
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, segment._offset, segment._length);
+      try (InputStream lis = new LZ4FrameInputStream(new ByteBufferBackedInputStream(buffer));
+          PushbackInputStream pbstream = new PushbackInputStream(lis, DEFAULT_HEADER_LENGTH_BYTES);
+          ObjectInputStream ois =
+              newObjectInputStream(pbstream, detectFormat(pbstream), _classLoader)) {
+        return outputClass.cast(ois.readObject());
+      }
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      throw new BatfishException(
+          String.format(
+              "Failed to deserialize object of type %s from segment '%s' of file %s",
+              outputClass.getCanonicalName(), name, _file),
+          e);
+    }
+  }
+
+  private static byte[] serialize(Serializable object, boolean serializeToText) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream lzos = new LZ4FrameOutputStream(bytes);
+        ObjectOutputStream oos = newObjectOutputStream(lzos, serializeToText)) {
+      oos.writeObject(object);
+    } catch (IOException e) {
+      throw new BatfishException("Failed to serialize segment", e);
+    }
+    return bytes.toByteArray();
+  }
+}
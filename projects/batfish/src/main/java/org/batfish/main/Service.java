@@ -1,10 +1,12 @@
 package org.batfish.main;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.CacheStats;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map.Entry;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
@@ -13,9 +15,11 @@ import javax.ws.rs.core.MediaType;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.BfConsts;
 import org.batfish.common.BfConsts.TaskStatus;
+import org.batfish.common.NetworkSnapshot;
 import org.batfish.common.Task;
 import org.batfish.common.util.BatfishObjectMapper;
 import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 
 @Path(BfConsts.SVC_BASE_RSC)
@@ -41,12 +45,43 @@ public class Service {
       return new JSONArray(
           Arrays.asList(
               BfConsts.SVC_SUCCESS_KEY,
-              (new JSONObject().put("idle", Driver.getIdle())).toString()));
+              (new JSONObject()
+                      .put("idle", Driver.getIdle())
+                      .put("availableSlots", Driver.getAvailableTaskSlots())
+                      .put("cachedSnapshots", getCachedSnapshotsJson())
+                      .put("cacheStats", getCacheStatsJson()))
+                  .toString()));
     } catch (Exception e) {
       return new JSONArray(Arrays.asList(BfConsts.SVC_FAILURE_KEY, e.getMessage()));
     }
   }
 
+  private static JSONArray getCachedSnapshotsJson() throws JSONException {
+    JSONArray cachedSnapshots = new JSONArray();
+    for (NetworkSnapshot snapshot : Driver.getCachedSnapshots()) {
+      cachedSnapshots.put(
+          new JSONObject()
+              .put("network", snapshot.getNetwork())
+              .put("testrig", snapshot.getSnapshot().getTestrig())
+              .put("environment", snapshot.getSnapshot().getEnvironment()));
+    }
+    return cachedSnapshots;
+  }
+
+  private static JSONObject getCacheStatsJson() throws JSONException {
+    JSONObject cacheStats = new JSONObject();
+    for (Entry<String, CacheStats> entry : Driver.getCacheStats().entrySet()) {
+      CacheStats stats = entry.getValue();
+      cacheStats.put(
+          entry.getKey(),
+          new JSONObject()
+              .put("hits", stats.hitCount())
+              .put("misses", stats.missCount())
+              .put("evictions", stats.evictionCount()));
+    }
+    return cacheStats;
+  }
+
   @GET
   @Path(BfConsts.SVC_GET_TASKSTATUS_RSC)
   @Produces(MediaType.APPLICATION_JSON)
@@ -0,0 +1,147 @@
+package org.batfish.bddreachability;
+
+import static org.batfish.common.util.CommonUtil.toImmutableMap;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+import com.google.common.collect.ImmutableSortedSet;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Map.Entry;
+import net.sf.javabdd.BDD;
+import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.Edge;
+import org.batfish.datamodel.ForwardingAnalysis;
+import org.batfish.datamodel.Interface;
+import org.batfish.datamodel.IpSpace;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.StaticRoute;
+import org.batfish.main.Batfish;
+import org.batfish.main.BatfishTestUtils;
+import org.batfish.symbolic.bdd.BDDPacket;
+import org.batfish.symbolic.bdd.IpSpaceToBDD;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests of {@link BDDForwardingAnalysis}. */
+public final class BDDForwardingAnalysisTest {
+
+  private static final Prefix NULL_ROUTED_PREFIX = Prefix.parse("3.0.0.0/8");
+
+  private static final Prefix UNREACHABLE_PREFIX = Prefix.parse("4.0.0.0/8");
+
+  @Rule public TemporaryFolder _folder = new TemporaryFolder();
+
+  private BDDForwardingAnalysis _bddForwardingAnalysis;
+
+  private ForwardingAnalysis _forwardingAnalysis;
+
+  private IpSpaceToBDD _toBDD;
+
+  @Before
+  public void setup() throws IOException {
+    TestNetwork net = new TestNetwork();
+    net._srcNode
+        .getDefaultVrf()
+        .setStaticRoutes(
+            ImmutableSortedSet.<StaticRoute>naturalOrder()
+                .addAll(net._srcNode.getDefaultVrf().getStaticRoutes())
+                .add(
+                    StaticRoute.builder()
+                        .setNetwork(NULL_ROUTED_PREFIX)
+                        .setNextHopInterface(Interface.NULL_INTERFACE_NAME)
+                        .build())
+                .add(
+                    StaticRoute.builder()
+                        .setNetwork(UNREACHABLE_PREFIX)
+                        .setNextHopInterface(net._link1Src.getName())
+                        .build())
+                .build());
+    Batfish batfish = BatfishTestUtils.getBatfish(net._configs, _folder);
+    batfish.computeDataPlane(false);
+    DataPlane dataPlane = batfish.loadDataPlane();
+    BDDPacket pkt = new BDDPacket();
+    _toBDD = new IpSpaceToBDD(pkt.getFactory(), pkt.getDstIp());
+    _forwardingAnalysis = dataPlane.getForwardingAnalysis();
+    _bddForwardingAnalysis =
+        new BDDForwardingAnalysis(
+            pkt,
+            dataPlane.getConfigurations(),
+            dataPlane.getRibs(),
+            dataPlane.getFibs(),
+            dataPlane.getTopology());
+  }
+
+  private <K> Map<K, BDD> toBDDs(Map<K, IpSpace> ipSpaces) {
+    return toImmutableMap(ipSpaces, Entry::getKey, entry -> entry.getValue().accept(_toBDD));
+  }
+
+  private <K1, K2> Map<K1, Map<K2, BDD>> toBDDs2(Map<K1, Map<K2, IpSpace>> ipSpaces) {
+    return toImmutableMap(ipSpaces, Entry::getKey, entry -> toBDDs(entry.getValue()));
+  }
+
+  private <K1, K2, K3> Map<K1, Map<K2, Map<K3, BDD>>> toBDDs3(
+      Map<K1, Map<K2, Map<K3, IpSpace>>> ipSpaces) {
+    return toImmutableMap(ipSpaces, Entry::getKey, entry -> toBDDs2(entry.getValue()));
+  }
+
+  @Test
+  public void testSameAsForwardingAnalysisImpl() {
+    Map<String, Map<String, Map<String, BDD>>> neighborUnreachable =
+        toBDDs3(_forwardingAnalysis.getNeighborUnreachable());
+    Map<String, Map<String, BDD>> nullRoutedIps = toBDDs2(_forwardingAnalysis.getNullRoutedIps());
+
+    assertThat(
+        _bddForwardingAnalysis.getArpReplyBDDs(),
+        equalTo(toBDDs2(_forwardingAnalysis.getArpReplies())));
+    assertThat(
+        _bddForwardingAnalysis.getArpTrueEdgeBDDs(),
+        equalTo(toBDDs(_forwardingAnalysis.getArpTrueEdge())));
+    assertThat(_bddForwardingAnalysis.getNeighborUnreachableBDDs(), equalTo(neighborUnreachable));
+    assertThat(_bddForwardingAnalysis.getNullRoutedBDDs(), equalTo(nullRoutedIps));
+    assertThat(
+        _bddForwardingAnalysis.getRoutableBDDs(),
+        equalTo(toBDDs2(_forwardingAnalysis.getRoutableIps())));
+
+    // the added routes are covered
+    BDD zero = _toBDD.getBDDInteger().getFactory().zero();
+    assertThat(
+        neighborUnreachable
+            .values()
+            .stream()
+            .flatMap(byVrf -> byVrf.values().stream())
+            .flatMap(byIface -> byIface.values().stream())
+            .reduce(zero, BDD::or)
+            .and(_toBDD.toBDD(UNREACHABLE_PREFIX)),
+        not(equalTo(zero)));
+    assertThat(
+        nullRoutedIps
+            .values()
+            .stream()
+            .flatMap(byVrf -> byVrf.values().stream())
+            .reduce(zero, BDD::or),
+        equalTo(_toBDD.toBDD(NULL_ROUTED_PREFIX)));
+  }
+
+  @Test
+  public void testIpSpaces() {
+    Map<Edge, BDD> arpTrueEdge = toBDDs(_bddForwardingAnalysis.getArpTrueEdge());
+
+    assertThat(
+        toBDDs2(_bddForwardingAnalysis.getArpReplies()),
+        equalTo(_bddForwardingAnalysis.getArpReplyBDDs()));
+    assertThat(arpTrueEdge, equalTo(_bddForwardingAnalysis.getArpTrueEdgeBDDs()));
+    assertThat(
+        toBDDs3(_bddForwardingAnalysis.getNeighborUnreachable()),
+        equalTo(_bddForwardingAnalysis.getNeighborUnreachableBDDs()));
+    assertThat(
+        toBDDs2(_bddForwardingAnalysis.getNullRoutedIps()),
+        equalTo(_bddForwardingAnalysis.getNullRoutedBDDs()));
+    assertThat(
+        toBDDs2(_bddForwardingAnalysis.getRoutableIps()),
+        equalTo(_bddForwardingAnalysis.getRoutableBDDs()));
+  }
+}
@@ -10,16 +10,20 @@ import static org.batfish.datamodel.Configuration.DEFAULT_VRF_NAME;
 import static org.batfish.datamodel.matchers.FlowMatchers.hasDstIp;
 import static org.batfish.symbolic.bdd.BDDMatchers.intersects;
 import static org.batfish.symbolic.bdd.BDDMatchers.isOne;
+import static org.batfish.symbolic.bdd.BDDMatchers.isZero;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import net.sf.javabdd.BDD;
@@ -32,11 +36,13 @@ import org.batfish.main.Batfish;
 import org.batfish.main.BatfishTestUtils;
 import org.batfish.specifier.InterfaceLocation;
 import org.batfish.specifier.IpSpaceAssignment;
+import org.batfish.specifier.Location;
 import org.batfish.symbolic.bdd.BDDAcl;
 import org.batfish.symbolic.bdd.BDDInteger;
 import org.batfish.symbolic.bdd.BDDOps;
 import org.batfish.symbolic.bdd.BDDPacket;
 import org.batfish.symbolic.bdd.IpSpaceToBDD;
+import org.batfish.z3.IngressLocation;
 import org.batfish.z3.expr.StateExpr;
 import org.batfish.z3.state.Accept;
 import org.batfish.z3.state.Drop;
@@ -415,4 +421,143 @@ public final class BDDReachabilityAnalysisTest {
     Flow flow = graph.multipathInconsistencyToFlow(inconsistency, FLOW_TAG);
     assertThat(flow, hasDstIp(_dstIface2Ip));
   }
+
+  @Test
+  public void testComputeSccOrder() {
+    StateExpr postInVrf = new PostInVrf("n", DEFAULT_VRF_NAME);
+    StateExpr preOutVrf = new PreOutVrf("n", DEFAULT_VRF_NAME);
+    StateExpr nodeAccept = new NodeAccept("n");
+    BDD one = PKT.getFactory().one();
+    Map<StateExpr, Map<StateExpr, Edge>> edges =
+        ImmutableMap.of(
+            postInVrf,
+            ImmutableMap.of(preOutVrf, new Edge(postInVrf, preOutVrf, one)),
+            preOutVrf,
+            ImmutableMap.of(
+                postInVrf,
+                new Edge(preOutVrf, postInVrf, one),
+                nodeAccept,
+                new Edge(preOutVrf, nodeAccept, one)),
+            nodeAccept,
+            ImmutableMap.of(Accept.INSTANCE, new Edge(nodeAccept, Accept.INSTANCE, one)));
+
+    Map<StateExpr, Integer> sccOrder = BDDReachabilityAnalysis.computeSccOrder(edges);
+
+    assertThat(sccOrder.get(postInVrf), equalTo(sccOrder.get(preOutVrf)));
+    assertThat(sccOrder.get(Accept.INSTANCE), lessThan(sccOrder.get(nodeAccept)));
+    assertThat(sccOrder.get(nodeAccept), lessThan(sccOrder.get(preOutVrf)));
+  }
+
+  @Test
+  public void testReverseReachableStates_cycle() {
+    OriginateVrf originateVrf = new OriginateVrf("n", DEFAULT_VRF_NAME);
+    StateExpr postInVrf = new PostInVrf("n", DEFAULT_VRF_NAME);
+    StateExpr preOutVrf = new PreOutVrf("n", DEFAULT_VRF_NAME);
+    StateExpr nodeAccept = new NodeAccept("n");
+    BDD one = PKT.getFactory().one();
+    BDD dst1 = dstIpBDD(new Ip("1.1.1.1"));
+    BDD dst2 = dstIpBDD(new Ip("2.2.2.2"));
+    Map<StateExpr, Map<StateExpr, Edge>> edges =
+        ImmutableMap.of(
+            postInVrf,
+            ImmutableMap.of(
+                preOutVrf,
+                new Edge(postInVrf, preOutVrf, one),
+                nodeAccept,
+                new Edge(postInVrf, nodeAccept, dst1)),
+            preOutVrf,
+            ImmutableMap.of(
+                postInVrf,
+                new Edge(preOutVrf, postInVrf, one),
+                nodeAccept,
+                new Edge(preOutVrf, nodeAccept, dst2)),
+            nodeAccept,
+            ImmutableMap.of(Accept.INSTANCE, new Edge(nodeAccept, Accept.INSTANCE, one)));
+
+    BDDReachabilityAnalysis analysis =
+        new BDDReachabilityAnalysis(PKT, ImmutableMap.of(originateVrf, one), edges);
+
+    assertThat(
+        analysis.getIngressLocationAcceptBDDs(),
+        equalTo(ImmutableMap.of(IngressLocation.vrf("n", DEFAULT_VRF_NAME), dst1.or(dst2))));
+  }
+
+  /** Sources on both nodes, sending to {@code dstIp}. */
+  private BDDReachabilityAnalysis twoSourceAnalysis(Ip dstIp) {
+    IpSpaceAssignment assignment =
+        IpSpaceAssignment.builder()
+            .assign(
+                ImmutableSet.<Location>of(
+                    new InterfaceLocation(_srcName, _net._link1Src.getName()),
+                    new InterfaceLocation(_dstName, _link1DstName)),
+                UniverseIpSpace.INSTANCE)
+            .build();
+    return _graphFactory.bddReachabilityAnalysis(assignment, dstIp.toIpSpace());
+  }
+
+  @Test
+  public void testForwardReachability_matchesBackward() {
+    BDDReachabilityAnalysis analysis = twoSourceAnalysis(LINK_1_NETWORK.getStartIp());
+
+    Map<IngressLocation, BDD> forward =
+        analysis.getIngressLocationForwardReachableBDDs(ImmutableSet.of(Accept.INSTANCE), false);
+
+    assertThat(forward.keySet(), hasSize(2));
+    assertThat(forward, equalTo(analysis.getIngressLocationAcceptBDDs()));
+  }
+
+  /** Headers are source NATed on their way to dstIface2, but those originally sent are returned. */
+  @Test
+  public void testForwardReachability_sourceNat() {
+    BDDReachabilityAnalysis analysis = twoSourceAnalysis(_dstIface2Ip);
+
+    Map<IngressLocation, BDD> forward =
+        analysis.getIngressLocationForwardReachableBDDs(ImmutableSet.of(Accept.INSTANCE), false);
+
+    assertThat(forward, equalTo(analysis.getIngressLocationAcceptBDDs()));
+    assertThat(
+        forward.get(IngressLocation.vrf(_srcName, DEFAULT_VRF_NAME)),
+        intersects(srcIpBDD(SOURCE_NAT_ACL_IP)));
+  }
+
+  @Test
+  public void testForwardReachability_stopAtFirstHit() {
+    BDDReachabilityAnalysis analysis = twoSourceAnalysis(LINK_1_NETWORK.getStartIp());
+
+    Map<IngressLocation, BDD> full =
+        analysis.getIngressLocationForwardReachableBDDs(ImmutableSet.of(Accept.INSTANCE), false);
+    Map<IngressLocation, BDD> partial =
+        analysis.getIngressLocationForwardReachableBDDs(ImmutableSet.of(Accept.INSTANCE), true);
+
+    // the same locations, each with some of its headers
+    assertThat(partial.keySet(), equalTo(full.keySet()));
+    partial.forEach(
+        (loc, bdd) -> {
+          assertThat(bdd, not(isZero()));
+          assertThat(bdd.imp(full.get(loc)), isOne());
+        });
+  }
+
+  @Test
+  public void testForwardReachability_unreachable() {
+    BDDReachabilityAnalysis analysis = twoSourceAnalysis(LINK_1_NETWORK.getStartIp());
+
+    assertThat(
+        analysis.getIngressLocationForwardReachableBDDs(
+            ImmutableSet.of(NeighborUnreachable.INSTANCE), true),
+        equalTo(ImmutableMap.of()));
+  }
+
+  /** The source variable is allocated once per factory, not once per analysis. */
+  @Test
+  public void testForwardReachability_sourceVarAllocatedOnce() {
+    twoSourceAnalysis(LINK_1_NETWORK.getStartIp())
+        .getIngressLocationForwardReachableBDDs(ImmutableSet.of(Accept.INSTANCE), false);
+    int varNum = PKT.getFactory().varNum();
+
+    twoSourceAnalysis(_dstIface2Ip)
+        .getIngressLocationForwardReachableBDDs(ImmutableSet.of(Drop.INSTANCE), true);
+
+    assertThat(PKT.getFactory().varNum(), equalTo(varNum));
+  }
 }
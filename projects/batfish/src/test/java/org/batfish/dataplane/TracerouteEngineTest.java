@@ -1,13 +1,21 @@
 package org.batfish.dataplane;
 
 import static java.util.Collections.singletonList;
+import static org.batfish.common.util.CommonUtil.computeIpNodeOwners;
+import static org.batfish.common.util.CommonUtil.initBgpTopology;
 import static org.batfish.datamodel.FlowDisposition.ACCEPTED;
 import static org.batfish.datamodel.FlowDisposition.NO_ROUTE;
+import static org.batfish.datamodel.acl.AclLineMatchExprs.match;
+import static org.batfish.datamodel.acl.AclLineMatchExprs.permittedByAcl;
 import static org.batfish.datamodel.matchers.FlowTraceMatchers.hasDisposition;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -16,31 +24,55 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Lists;
+import com.google.common.graph.ValueGraph;
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
 import org.batfish.common.BatfishException;
+import org.batfish.common.plugin.ITracerouteEngine;
+import org.batfish.datamodel.BgpActivePeerConfig;
+import org.batfish.datamodel.BgpPeerConfigId;
+import org.batfish.datamodel.BgpProcess;
+import org.batfish.datamodel.BgpSessionProperties;
 import org.batfish.datamodel.Configuration;
 import org.batfish.datamodel.ConfigurationFormat;
 import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.Edge;
+import org.batfish.datamodel.EmptyIpSpace;
 import org.batfish.datamodel.Fib;
 import org.batfish.datamodel.Flow;
 import org.batfish.datamodel.FlowDisposition;
 import org.batfish.datamodel.FlowHistory;
 import org.batfish.datamodel.FlowHistory.FlowHistoryInfo;
 import org.batfish.datamodel.FlowTrace;
+import org.batfish.datamodel.FlowTraceDag;
+import org.batfish.datamodel.FlowTraceHop;
+import org.batfish.datamodel.HeaderSpace;
 import org.batfish.datamodel.Interface;
 import org.batfish.datamodel.InterfaceAddress;
 import org.batfish.datamodel.Ip;
 import org.batfish.datamodel.IpAccessList;
 import org.batfish.datamodel.IpAccessListLine;
+import org.batfish.datamodel.IpProtocol;
+import org.batfish.datamodel.IpSpaceReference;
 import org.batfish.datamodel.LineAction;
 import org.batfish.datamodel.MockFib;
 import org.batfish.datamodel.NetworkFactory;
+import org.batfish.datamodel.Prefix;
 import org.batfish.datamodel.SourceNat;
+import org.batfish.datamodel.StaticRoute;
+import org.batfish.datamodel.SubRange;
 import org.batfish.datamodel.Vrf;
+import org.batfish.datamodel.acl.CompiledIpAccessLists;
 import org.batfish.datamodel.acl.TrueExpr;
+import org.batfish.datamodel.routing_policy.RoutingPolicy;
+import org.batfish.datamodel.routing_policy.statement.Statements;
 import org.batfish.main.Batfish;
 import org.batfish.main.BatfishTestUtils;
 import org.junit.Rule;
@@ -50,6 +82,9 @@ import org.junit.rules.TemporaryFolder;
 
 /** Tests for {@link TracerouteEngineImpl} */
 public class TracerouteEngineTest {
+  private static final CompiledIpAccessLists NO_ACLS =
+      CompiledIpAccessLists.compile(ImmutableMap.of(), ImmutableMap.of());
+
   @Rule public ExpectedException _thrown = ExpectedException.none();
 
   @Rule public TemporaryFolder _tempFolder = new TemporaryFolder();
@@ -77,8 +112,7 @@ public class TracerouteEngineTest {
     nat.setPoolIpFirst(new Ip("4.5.6.7"));
 
     Flow transformed =
-        TracerouteEngineImplContext.applySourceNat(
-            flow, null, ImmutableMap.of(), ImmutableMap.of(), singletonList(nat));
+        TracerouteEngineImplContext.applySourceNat(flow, null, NO_ACLS, singletonList(nat));
     assertThat(transformed.getSrcIp(), equalTo(new Ip("4.5.6.7")));
   }
 
@@ -91,8 +125,7 @@ public class TracerouteEngineTest {
     nat.setPoolIpFirst(new Ip("4.5.6.7"));
 
     Flow transformed =
-        TracerouteEngineImplContext.applySourceNat(
-            flow, null, ImmutableMap.of(), ImmutableMap.of(), singletonList(nat));
+        TracerouteEngineImplContext.applySourceNat(flow, null, NO_ACLS, singletonList(nat));
     assertThat(transformed, is(flow));
   }
 
@@ -110,7 +143,7 @@ public class TracerouteEngineTest {
 
     Flow transformed =
         TracerouteEngineImplContext.applySourceNat(
-            flow, null, ImmutableMap.of(), ImmutableMap.of(), Lists.newArrayList(nat, secondNat));
+            flow, null, NO_ACLS, Lists.newArrayList(nat, secondNat));
     assertThat(transformed.getSrcIp(), equalTo(new Ip("4.5.6.7")));
   }
 
@@ -128,7 +161,7 @@ public class TracerouteEngineTest {
 
     Flow transformed =
         TracerouteEngineImplContext.applySourceNat(
-            flow, null, ImmutableMap.of(), ImmutableMap.of(), Lists.newArrayList(nat, secondNat));
+            flow, null, NO_ACLS, Lists.newArrayList(nat, secondNat));
     assertThat(transformed.getSrcIp(), equalTo(new Ip("4.5.6.8")));
   }
 
@@ -141,8 +174,7 @@ public class TracerouteEngineTest {
 
     _thrown.expect(BatfishException.class);
     _thrown.expectMessage("missing NAT address or pool");
-    TracerouteEngineImplContext.applySourceNat(
-        flow, null, ImmutableMap.of(), ImmutableMap.of(), singletonList(nat));
+    TracerouteEngineImplContext.applySourceNat(flow, null, NO_ACLS, singletonList(nat));
   }
 
   /*
@@ -394,6 +426,562 @@ public class TracerouteEngineTest {
     assertThat(trace.getDisposition(), equalTo(FlowDisposition.DENIED_OUT));
   }
 
+  /**
+   * The incoming filter of c2 refers to an ACL and an IpSpace that c1 also defines, differently.
+   * The filter must be evaluated with the definitions of the receiving node c2.
+   */
+  @Test
+  public void testIncomingFilterUsesReceivingNodeDefinitions() throws IOException {
+    NetworkFactory nf = new NetworkFactory();
+    Configuration.Builder cb =
+        nf.configurationBuilder().setConfigurationFormat(ConfigurationFormat.CISCO_IOS);
+    Vrf.Builder vb = nf.vrfBuilder().setName(Configuration.DEFAULT_VRF_NAME);
+    Interface.Builder ib = nf.interfaceBuilder().setActive(true);
+    IpAccessList.Builder ab = nf.aclBuilder().setName("inner");
+
+    // c1 denies everything in "inner", and "space" is empty
+    Configuration c1 = cb.build();
+    Vrf v1 = vb.setOwner(c1).build();
+    ab.setOwner(c1).setLines(ImmutableList.of()).build();
+    c1.getIpSpaces().put("space", EmptyIpSpace.INSTANCE);
+    ib.setOwner(c1).setVrf(v1).setAddress(new InterfaceAddress("1.0.0.1/24")).build();
+
+    // c2 permits sources in "space" in "inner", and "space" contains c1's address
+    Configuration c2 = cb.build();
+    Vrf v2 = vb.setOwner(c2).build();
+    ab.setOwner(c2)
+        .setLines(
+            ImmutableList.of(
+                IpAccessListLine.acceptingHeaderSpace(
+                    HeaderSpace.builder().setSrcIps(new IpSpaceReference("space")).build())))
+        .build();
+    c2.getIpSpaces().put("space", Prefix.parse("1.0.0.0/24").toIpSpace());
+    IpAccessList incomingFilter =
+        nf.aclBuilder()
+            .setOwner(c2)
+            .setName("incoming")
+            .setLines(
+                ImmutableList.of(
+                    IpAccessListLine.accepting()
+                        .setMatchCondition(permittedByAcl("inner"))
+                        .build()))
+            .build();
+    ib.setOwner(c2)
+        .setVrf(v2)
+        .setIncomingFilter(incomingFilter)
+        .setAddress(new InterfaceAddress("1.0.0.2/24"))
+        .build();
+
+    SortedMap<String, Configuration> configurations =
+        ImmutableSortedMap.of(c1.getHostname(), c1, c2.getHostname(), c2);
+    Batfish b = BatfishTestUtils.getBatfish(configurations, _tempFolder);
+    b.computeDataPlane(false);
+    Flow flow =
+        Flow.builder()
+            .setIngressNode(c1.getHostname())
+            .setTag(Flow.BASE_FLOW_TAG)
+            .setSrcIp(new Ip("1.0.0.1"))
+            .setDstIp(new Ip("1.0.0.2"))
+            .build();
+    b.processFlows(ImmutableSet.of(flow), false);
+    FlowHistory history = b.getHistory();
+    FlowHistoryInfo info = history.getTraces().get(flow.toString());
+    FlowTrace trace = info.getPaths().get(Flow.BASE_FLOW_TAG).iterator().next();
+
+    // With the definitions of c1, the flow would be denied by the incoming filter
+    assertThat(trace.getDisposition(), equalTo(ACCEPTED));
+
+    // Same for flow trace DAGs
+    DataPlane dp = b.loadDataPlane();
+    FlowTraceDag dag =
+        TracerouteEngineImpl.getInstance()
+            .computeFlowTraceDags(dp, ImmutableSet.of(flow), dp.getFibs(), false)
+            .get(flow);
+    assertThat(dag.getFlowTraces(), contains(hasDisposition(ACCEPTED)));
+  }
+
+  /*
+   * src forwards to s1 and s2, which both forward to mid, which forwards to t1 and t2, which both
+   * forward to dst. So traces through s1 and s2 share what follows mid.
+   */
+  /** Describes each trace by its disposition and the nodes receiving each of its hops */
+  private static List<String> describeTraces(Set<FlowTrace> flowTraces) {
+    return flowTraces
+        .stream()
+        .map(
+            trace ->
+                trace.getDisposition().name()
+                    + " "
+                    + trace
+                        .getHops()
+                        .stream()
+                        .map(hop -> hop.getEdge().getNode2())
+                        .collect(ImmutableList.toImmutableList()))
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  @Test
+  public void testFlowTraceDags() throws IOException {
+    NetworkFactory nf = new NetworkFactory();
+    Configuration.Builder cb =
+        nf.configurationBuilder().setConfigurationFormat(ConfigurationFormat.CISCO_IOS);
+    Vrf.Builder vb = nf.vrfBuilder().setName(Configuration.DEFAULT_VRF_NAME);
+    Interface.Builder ib = nf.interfaceBuilder().setActive(true);
+    StaticRoute.Builder srb = StaticRoute.builder().setAdministrativeCost(1);
+    Prefix accepted = Prefix.parse("10.9.0.0/16");
+    Prefix looping = Prefix.parse("10.8.0.0/16");
+    Prefix nullRouted = Prefix.parse("10.7.0.0/16");
+    Map<String, Configuration> configs = new TreeMap<>();
+    BiFunction<String, List<StaticRoute>, Vrf> node =
+        (name, staticRoutes) -> {
+          Configuration c = cb.setHostname(name).build();
+          configs.put(name, c);
+          Vrf vrf = vb.setOwner(c).build();
+          vrf.setStaticRoutes(ImmutableSortedSet.copyOf(staticRoutes));
+          ib.setOwner(c).setVrf(vrf);
+          return vrf;
+        };
+
+    node.apply(
+        "src",
+        ImmutableList.of(
+            srb.setNetwork(accepted).setNextHopIp(new Ip("10.0.1.1")).build(),
+            srb.setNetwork(accepted).setNextHopIp(new Ip("10.0.2.1")).build(),
+            srb.setNetwork(looping).setNextHopIp(new Ip("10.0.1.1")).build(),
+            srb.setNetwork(looping).setNextHopIp(new Ip("10.0.2.1")).build(),
+            srb.setNetwork(nullRouted).setNextHopIp(new Ip("10.0.1.1")).build(),
+            srb.setNetwork(nullRouted).setNextHopIp(new Ip("10.0.2.1")).build()));
+    ib.setAddress(new InterfaceAddress("10.0.1.0/31")).build();
+    ib.setAddress(new InterfaceAddress("10.0.2.0/31")).build();
+    for (int spine = 1; spine <= 2; spine++) {
+      Ip nextHop = new Ip("10.0." + (spine + 2) + ".1");
+      node.apply(
+          "s" + spine,
+          ImmutableList.of(
+              srb.setNetwork(accepted).setNextHopIp(nextHop).build(),
+              srb.setNetwork(looping).setNextHopIp(nextHop).build(),
+              srb.setNetwork(nullRouted).setNextHopIp(nextHop).build()));
+      ib.setAddress(new InterfaceAddress("10.0." + spine + ".1/31")).build();
+      ib.setAddress(new InterfaceAddress("10.0." + (spine + 2) + ".0/31")).build();
+    }
+    node.apply(
+        "mid",
+        ImmutableList.of(
+            srb.setNetwork(accepted).setNextHopIp(new Ip("10.0.5.1")).build(),
+            srb.setNetwork(accepted).setNextHopIp(new Ip("10.0.6.1")).build(),
+            srb.setNetwork(looping).setNextHopIp(new Ip("10.0.3.0")).build(),
+            srb.setNetwork(nullRouted)
+                .setNextHopIp(null)
+                .setNextHopInterface(Interface.NULL_INTERFACE_NAME)
+                .build()));
+    srb.setNextHopInterface(null);
+    ib.setAddress(new InterfaceAddress("10.0.3.1/31")).build();
+    ib.setAddress(new InterfaceAddress("10.0.4.1/31")).build();
+    ib.setAddress(new InterfaceAddress("10.0.5.0/31")).build();
+    ib.setAddress(new InterfaceAddress("10.0.6.0/31")).build();
+    for (int tier = 1; tier <= 2; tier++) {
+      node.apply(
+          "t" + tier,
+          ImmutableList.of(
+              srb.setNetwork(accepted).setNextHopIp(new Ip("10.0." + (tier + 6) + ".1")).build()));
+      ib.setAddress(new InterfaceAddress("10.0." + (tier + 4) + ".1/31")).build();
+      ib.setAddress(new InterfaceAddress("10.0." + (tier + 6) + ".0/31")).build();
+    }
+    node.apply("dst", ImmutableList.of());
+    ib.setAddress(new InterfaceAddress("10.0.7.1/31")).build();
+    ib.setAddress(new InterfaceAddress("10.0.8.1/31"))
+        .setIncomingFilter(makeAcl("deny", LineAction.DENY))
+        .build();
+    ib.setIncomingFilter(null).setAddress(new InterfaceAddress("10.9.9.9/16")).build();
+
+    Batfish batfish = BatfishTestUtils.getBatfish(new TreeMap<>(configs), _tempFolder);
+    batfish.computeDataPlane(false);
+    DataPlane dp = batfish.loadDataPlane();
+    Flow.Builder fb = Flow.builder().setIngressNode("src").setTag("tag");
+    Set<Flow> flows =
+        ImmutableSet.of(
+            fb.setDstIp(new Ip("10.9.9.9")).build(),
+            fb.setDstIp(new Ip("10.8.8.8")).build(),
+            fb.setDstIp(new Ip("10.7.7.7")).build(),
+            fb.setDstIp(new Ip("10.6.6.6")).build());
+
+    SortedMap<Flow, Set<FlowTrace>> flowTraces =
+        TracerouteEngineImpl.getInstance().processFlows(dp, flows, dp.getFibs(), false);
+    SortedMap<Flow, FlowTraceDag> flowTraceDags =
+        TracerouteEngineImpl.getInstance().computeFlowTraceDags(dp, flows, dp.getFibs(), false);
+
+    for (Flow flow : flows) {
+      FlowTraceDag dag = flowTraceDags.get(flow);
+      assertThat(dag.getFlowTraces(), contains(flowTraces.get(flow).toArray()));
+      assertThat(dag.countFlowTraces(), equalTo((long) dag.getFlowTraces().size()));
+    }
+    // the same traces as when every path was enumerated on its own
+    assertThat(
+        describeTraces(flowTraces.get(fb.setDstIp(new Ip("10.9.9.9")).build())),
+        containsInAnyOrder(
+            "ACCEPTED [s1, mid, t1, dst]",
+            "DENIED_IN [s1, mid, t2, dst]",
+            "ACCEPTED [s2, mid, t1, dst]",
+            "DENIED_IN [s2, mid, t2, dst]"));
+    assertThat(
+        describeTraces(flowTraces.get(fb.setDstIp(new Ip("10.8.8.8")).build())),
+        containsInAnyOrder("LOOP [s1, mid, s1, mid]", "LOOP [s2, mid, s1, mid, s1]"));
+    assertThat(
+        describeTraces(flowTraces.get(fb.setDstIp(new Ip("10.7.7.7")).build())),
+        containsInAnyOrder(
+            "NULL_ROUTED [s1, mid, " + Configuration.NODE_NONE_NAME + "]",
+            "NULL_ROUTED [s2, mid, " + Configuration.NODE_NONE_NAME + "]"));
+    assertThat(
+        describeTraces(flowTraces.get(fb.setDstIp(new Ip("10.6.6.6")).build())),
+        contains("NO_ROUTE []"));
+    FlowTraceDag acceptedDag = flowTraceDags.get(fb.setDstIp(new Ip("10.9.9.9")).build());
+    assertThat(acceptedDag.countFlowTraces(), equalTo(4L));
+    // the traces through s1 and s2 share what follows their reception at t1 from mid
+    List<FlowTraceDag.Node> fromMidToT1 =
+        acceptedDag
+            .getRoots()
+            .stream()
+            .map(root -> root.getSuccessors().get(0).getSuccessors().get(0))
+            .collect(ImmutableList.toImmutableList());
+    assertThat(fromMidToT1, hasSize(2));
+    assertThat(
+        fromMidToT1.get(0).getSuccessors(), sameInstance(fromMidToT1.get(1).getSuccessors()));
+  }
+
+  /*
+   * c1 forwards to c2 through an interface whose outgoing filter only permits a destination port,
+   * and which applies source NAT to some source IPs. Flows differing only in the other fields have
+   * the same traces, up to their transformed flows.
+   */
+  @Test
+  public void testProcessFlowBatch() throws IOException {
+    NetworkFactory nf = new NetworkFactory();
+    Configuration.Builder cb =
+        nf.configurationBuilder().setConfigurationFormat(ConfigurationFormat.CISCO_IOS);
+    Vrf.Builder vb = nf.vrfBuilder().setName(Configuration.DEFAULT_VRF_NAME);
+    Interface.Builder ib = nf.interfaceBuilder().setActive(true);
+
+    Configuration c1 = cb.build();
+    Vrf v1 = vb.setOwner(c1).build();
+    IpAccessList outgoingFilter =
+        nf.aclBuilder()
+            .setOwner(c1)
+            .setName("outgoingAcl")
+            .setLines(
+                ImmutableList.of(
+                    IpAccessListLine.accepting()
+                        .setMatchCondition(
+                            match(
+                                HeaderSpace.builder()
+                                    .setDstPorts(ImmutableSet.of(new SubRange(80, 80)))
+                                    .build()))
+                        .build()))
+            .build();
+    SourceNat nat = new SourceNat();
+    nat.setAcl(
+        nf.aclBuilder()
+            .setOwner(c1)
+            .setName("natAcl")
+            .setLines(
+                ImmutableList.of(
+                    IpAccessListLine.accepting()
+                        .setMatchCondition(
+                            match(
+                                HeaderSpace.builder()
+                                    .setSrcIps(Prefix.parse("10.0.0.0/8").toIpSpace())
+                                    .build()))
+                        .build()))
+            .build());
+    nat.setPoolIpFirst(new Ip("5.5.5.5"));
+    ib.setOwner(c1)
+        .setVrf(v1)
+        .setOutgoingFilter(outgoingFilter)
+        .setSourceNats(ImmutableList.of(nat))
+        .setAddress(new InterfaceAddress("1.0.0.0/31"))
+        .build();
+
+    Configuration c2 = cb.build();
+    Vrf v2 = vb.setOwner(c2).build();
+    ib.setOwner(c2)
+        .setVrf(v2)
+        .setOutgoingFilter(null)
+        .setSourceNats(ImmutableList.of())
+        .setAddress(new InterfaceAddress("1.0.0.1/31"))
+        .build();
+
+    SortedMap<String, Configuration> configurations =
+        ImmutableSortedMap.of(c1.getHostname(), c1, c2.getHostname(), c2);
+    Batfish batfish = BatfishTestUtils.getBatfish(configurations, _tempFolder);
+    batfish.computeDataPlane(false);
+    DataPlane dp = batfish.loadDataPlane();
+    Flow.Builder fb =
+        Flow.builder()
+            .setIngressNode(c1.getHostname())
+            .setDstIp(new Ip("1.0.0.1"))
+            .setIpProtocol(IpProtocol.TCP);
+    ImmutableSet.Builder<Flow> flows = ImmutableSet.builder();
+    for (String srcIp : ImmutableList.of("10.1.1.1", "10.2.2.2", "20.0.0.1")) {
+      for (int dstPort : new int[] {22, 80}) {
+        for (int srcPort : new int[] {1000, 2000}) {
+          for (String tag : ImmutableList.of("tag1", "tag2")) {
+            flows.add(
+                fb.setSrcIp(new Ip(srcIp))
+                    .setDstPort(dstPort)
+                    .setSrcPort(srcPort)
+                    .setTag(tag)
+                    .build());
+          }
+        }
+      }
+    }
+    Set<Flow> allFlows = flows.build();
+
+    // classes by source IP and destination port
+    FlowClassifier classifier = new FlowClassifier(configurations.values());
+    assertThat(allFlows.stream().map(classifier::classOf).distinct().count(), equalTo(6L));
+
+    SortedMap<Flow, Set<FlowTrace>> flowTraces =
+        TracerouteEngineImpl.getInstance().processFlows(dp, allFlows, dp.getFibs(), false);
+    SortedMap<Flow, Set<FlowTrace>> batchFlowTraces =
+        TracerouteEngineImpl.getInstance().processFlowBatch(dp, allFlows, dp.getFibs(), false);
+
+    assertThat(batchFlowTraces, equalTo(flowTraces));
+    for (Flow flow : allFlows) {
+      assertThat(
+          batchFlowTraces.get(flow),
+          contains(
+              hasDisposition(flow.getDstPort() == 80 ? ACCEPTED : FlowDisposition.DENIED_OUT)));
+    }
+  }
+
+  /*
+   * r1, r2, r3 and r4 form a line, with static routes between their loopbacks. r1, r2 and r3 have
+   * iBGP sessions between each pair of loopbacks, but r3 drops packets from the loopback of r1. r4
+   * has single-hop eBGP sessions with r3 on their link, and with r2 between their loopbacks, which
+   * are two hops apart.
+   */
+  private static SortedMap<String, Configuration> bgpLineNetwork() {
+    NetworkFactory nf = new NetworkFactory();
+    Configuration.Builder cb =
+        nf.configurationBuilder().setConfigurationFormat(ConfigurationFormat.CISCO_IOS);
+    Vrf.Builder vb = nf.vrfBuilder().setName(Configuration.DEFAULT_VRF_NAME);
+    Interface.Builder ib = nf.interfaceBuilder().setActive(true);
+    RoutingPolicy.Builder pb =
+        nf.routingPolicyBuilder()
+            .setName("accept")
+            .setStatements(ImmutableList.of(Statements.ExitAccept.toStaticStatement()));
+    BgpActivePeerConfig.Builder nb = nf.bgpNeighborBuilder().setExportPolicy("accept");
+    SortedMap<String, Configuration> configs = new TreeMap<>();
+    for (int i = 1; i <= 4; i++) {
+      Configuration c = cb.setHostname("r" + i).build();
+      configs.put(c.getHostname(), c);
+      pb.setOwner(c).build();
+      Vrf vrf = vb.setOwner(c).build();
+      ib.setOwner(c).setVrf(vrf);
+      Ip loopback = new Ip(i + "." + i + "." + i + "." + i);
+      ib.setAddress(new InterfaceAddress(loopback, Prefix.MAX_PREFIX_LENGTH)).build();
+      if (i > 1) {
+        // r3 drops packets from the loopback of r1
+        ib.setIncomingFilter(
+                i != 3
+                    ? null
+                    : nf.aclBuilder()
+                        .setOwner(c)
+                        .setLines(
+                            ImmutableList.of(
+                                IpAccessListLine.rejecting()
+                                    .setMatchCondition(
+                                        match(
+                                            HeaderSpace.builder()
+                                                .setSrcIps(new Ip("1.1.1.1").toIpSpace())
+                                                .build()))
+                                    .build(),
+                                IpAccessListLine.ACCEPT_ALL))
+                        .build())
+            .setAddress(new InterfaceAddress("10.0." + (i - 1) + ".1/31"))
+            .build();
+        ib.setIncomingFilter(null);
+      }
+      if (i < 4) {
+        ib.setAddress(new InterfaceAddress("10.0." + i + ".0/31")).build();
+      }
+      ImmutableSortedSet.Builder<StaticRoute> staticRoutes = ImmutableSortedSet.naturalOrder();
+      for (int j = 1; j <= 4; j++) {
+        if (j != i) {
+          staticRoutes.add(
+              StaticRoute.builder()
+                  .setNetwork(Prefix.parse(j + "." + j + "." + j + "." + j + "/32"))
+                  .setNextHopIp(new Ip(j < i ? "10.0." + (i - 1) + ".0" : "10.0." + i + ".1"))
+                  .setAdministrativeCost(1)
+                  .build());
+        }
+      }
+      vrf.setStaticRoutes(staticRoutes.build());
+      BgpProcess proc = nf.bgpProcessBuilder().setVrf(vrf).setRouterId(loopback).build();
+      nb.setBgpProcess(proc).setLocalIp(loopback).setLocalAs(i == 4 ? 4L : 1L);
+      if (i < 4) {
+        for (int j = 1; j <= 3; j++) {
+          if (j != i) {
+            nb.setPeerAddress(new Ip(j + "." + j + "." + j + "." + j)).setRemoteAs(1L).build();
+          }
+        }
+      }
+      if (i == 2) {
+        nb.setPeerAddress(new Ip("4.4.4.4")).setRemoteAs(4L).build();
+      } else if (i == 3) {
+        nb.setLocalIp(new Ip("10.0.3.0"))
+            .setPeerAddress(new Ip("10.0.3.1"))
+            .setRemoteAs(4L)
+            .build();
+      } else if (i == 4) {
+        nb.setPeerAddress(new Ip("2.2.2.2")).setRemoteAs(1L).build();
+        nb.setLocalIp(new Ip("10.0.3.1")).setPeerAddress(new Ip("10.0.3.0")).build();
+      }
+    }
+    return configs;
+  }
+
+  /** Returns the edges of each accepted trace of {@code flowTraces} */
+  private static Set<List<Edge>> acceptedEdges(Set<FlowTrace> flowTraces) {
+    return flowTraces
+        .stream()
+        .filter(trace -> trace.getDisposition() == ACCEPTED)
+        .map(
+            trace ->
+                trace
+                    .getHops()
+                    .stream()
+                    .map(FlowTraceHop::getEdge)
+                    .collect(ImmutableList.toImmutableList()))
+        .collect(ImmutableSet.toImmutableSet());
+  }
+
+  @Test
+  public void testComputeAcceptedFlowTraces() throws IOException {
+    Batfish batfish = BatfishTestUtils.getBatfish(bgpLineNetwork(), _tempFolder);
+    batfish.computeDataPlane(false);
+    DataPlane dp = batfish.loadDataPlane();
+    Flow.Builder fb =
+        Flow.builder()
+            .setTag("tag")
+            .setIpProtocol(IpProtocol.TCP)
+            .setDstPort(179)
+            .setSrcPort(49152);
+    ImmutableSet.Builder<Flow> flows = ImmutableSet.builder();
+    for (int i = 1; i <= 4; i++) {
+      for (int j = 1; j <= 4; j++) {
+        flows.add(
+            fb.setIngressNode("r" + i)
+                .setSrcIp(new Ip(i + "." + i + "." + i + "." + i))
+                .setDstIp(new Ip(j + "." + j + "." + j + "." + j))
+                .build());
+      }
+    }
+    Set<Flow> allFlows = flows.build();
+
+    SortedMap<Flow, Set<FlowTrace>> flowTraces =
+        TracerouteEngineImpl.getInstance().processFlows(dp, allFlows, dp.getFibs(), false);
+    SortedMap<Flow, Set<FlowTrace>> acceptedFlowTraces =
+        TracerouteEngineImpl.getInstance()
+            .computeAcceptedFlowTraces(dp, allFlows, dp.getFibs(), false);
+
+    assertThat(acceptedFlowTraces.keySet(), equalTo(allFlows));
+    for (Flow flow : allFlows) {
+      assertThat(
+          acceptedEdges(acceptedFlowTraces.get(flow)),
+          equalTo(acceptedEdges(flowTraces.get(flow))));
+    }
+    // r3 drops flows from the loopback of r1, so they never reach r4
+    assertThat(
+        acceptedFlowTraces.get(
+            fb.setIngressNode("r1")
+                .setSrcIp(new Ip("1.1.1.1"))
+                .setDstIp(new Ip("4.4.4.4"))
+                .build()),
+        empty());
+  }
+
+  @Test
+  public void testBgpSessionsMatchPerSessionTraceroutes() throws IOException {
+    Batfish batfish = BatfishTestUtils.getBatfish(bgpLineNetwork(), _tempFolder);
+    batfish.computeDataPlane(false);
+    DataPlane dp = batfish.loadDataPlane();
+    Map<String, Configuration> configurations = dp.getConfigurations();
+    ITracerouteEngine engine = TracerouteEngineImpl.getInstance();
+    // traces each flow on its own, as the session check did before walking once per source
+    ITracerouteEngine perSessionEngine =
+        new ITracerouteEngine() {
+          @Override
+          public SortedMap<Flow, Set<FlowTrace>> computeAcceptedFlowTraces(
+              DataPlane dataPlane,
+              Set<Flow> flows,
+              Map<String, Map<String, Fib>> fibs,
+              boolean ignoreAcls) {
+            SortedMap<Flow, Set<FlowTrace>> acceptedTraces = new TreeMap<>();
+            for (Flow flow : flows) {
+              acceptedTraces.put(
+                  flow,
+                  engine
+                      .processFlows(dataPlane, ImmutableSet.of(flow), fibs, ignoreAcls)
+                      .get(flow)
+                      .stream()
+                      .filter(trace -> trace.getDisposition() == ACCEPTED)
+                      .collect(ImmutableSet.toImmutableSet()));
+            }
+            return acceptedTraces;
+          }
+
+          @Override
+          public SortedMap<Flow, FlowTraceDag> computeFlowTraceDags(
+              DataPlane dataPlane,
+              Set<Flow> flows,
+              Map<String, Map<String, Fib>> fibs,
+              boolean ignoreAcls) {
+            return engine.computeFlowTraceDags(dataPlane, flows, fibs, ignoreAcls);
+          }
+
+          @Override
+          public SortedMap<Flow, Set<FlowTrace>> processFlowBatch(
+              DataPlane dataPlane,
+              Set<Flow> flows,
+              Map<String, Map<String, Fib>> fibs,
+              boolean ignoreAcls) {
+            return engine.processFlowBatch(dataPlane, flows, fibs, ignoreAcls);
+          }
+
+          @Override
+          public SortedMap<Flow, Set<FlowTrace>> processFlows(
+              DataPlane dataPlane,
+              Set<Flow> flows,
+              Map<String, Map<String, Fib>> fibs,
+              boolean ignoreAcls) {
+            return engine.processFlows(dataPlane, flows, fibs, ignoreAcls);
+          }
+        };
+
+    ValueGraph<BgpPeerConfigId, BgpSessionProperties> perSessionTopology =
+        initBgpTopology(
+            configurations,
+            computeIpNodeOwners(configurations, false),
+            false,
+            true,
+            perSessionEngine,
+            dp);
+    ValueGraph<BgpPeerConfigId, BgpSessionProperties> bgpTopology =
+        initBgpTopology(
+            configurations, computeIpNodeOwners(configurations, false), false, true, engine, dp);
+
+    assertThat(bgpTopology.edges(), equalTo(perSessionTopology.edges()));
+    // r1 and r3 cannot connect, nor can r2 and r4 with single-hop eBGP
+    assertThat(
+        bgpTopology
+            .edges()
+            .stream()
+            .map(e -> e.nodeU().getHostname() + "->" + e.nodeV().getHostname())
+            .collect(ImmutableSet.toImmutableSet()),
+        containsInAnyOrder("r1->r2", "r2->r1", "r2->r3", "r3->r2", "r3->r4", "r4->r3"));
+  }
+
   /** When ingress node is non-existent, don't crash with null-pointer. */
   @Test(expected = BatfishException.class)
   public void testTracerouteOutsideNetwork() throws IOException {
@@ -2,6 +2,8 @@ package org.batfish.dataplane.ibdp;
 
 import static org.batfish.datamodel.Configuration.DEFAULT_VRF_NAME;
 import static org.batfish.datamodel.matchers.AbstractRouteMatchers.hasPrefix;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasItem;
@@ -9,14 +11,17 @@ import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.in;
 import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Maps;
 import com.google.common.graph.ValueGraph;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -32,9 +37,11 @@ import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import org.apache.commons.lang3.SerializationUtils;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.plugin.DataPlanePlugin;
 import org.batfish.common.plugin.DataPlanePlugin.ComputeDataPlaneResult;
+import org.batfish.common.util.CommonUtil;
 import org.batfish.datamodel.AbstractRoute;
 import org.batfish.datamodel.AsPath;
 import org.batfish.datamodel.BgpActivePeerConfig;
@@ -51,6 +58,8 @@ import org.batfish.datamodel.GeneratedRoute.Builder;
 import org.batfish.datamodel.Interface;
 import org.batfish.datamodel.InterfaceAddress;
 import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.IpAccessList;
+import org.batfish.datamodel.IpAccessListLine;
 import org.batfish.datamodel.MultipathEquivalentAsPathMatchMode;
 import org.batfish.datamodel.NetworkFactory;
 import org.batfish.datamodel.OriginType;
@@ -61,8 +70,15 @@ import org.batfish.datamodel.StaticRoute;
 import org.batfish.datamodel.Topology;
 import org.batfish.datamodel.Vrf;
 import org.batfish.datamodel.collections.RoutesByVrf;
+import org.batfish.datamodel.ospf.OspfArea;
+import org.batfish.datamodel.ospf.OspfProcess;
 import org.batfish.datamodel.routing_policy.RoutingPolicy;
+import org.batfish.datamodel.routing_policy.expr.LiteralOrigin;
+import org.batfish.datamodel.routing_policy.expr.MatchProtocol;
+import org.batfish.datamodel.routing_policy.statement.If;
 import org.batfish.datamodel.routing_policy.statement.SetDefaultPolicy;
+import org.batfish.datamodel.routing_policy.statement.SetOrigin;
+import org.batfish.datamodel.routing_policy.statement.Statements;
 import org.batfish.dataplane.rib.BgpBestPathRib;
 import org.batfish.dataplane.rib.BgpMultipathRib;
 import org.batfish.main.Batfish;
@@ -620,6 +636,35 @@ public class IncrementalDataPlanePluginTest {
     assertFalse(r2bPrefixes.contains(r1Loopback0Prefix));
   }
 
+  @Test
+  public void testNumMainRibRoutes() throws IOException {
+    String testrigName = "ibgp-reject-own-as";
+    List<String> configurationNames = ImmutableList.of("r1", "r2a", "r2b");
+
+    Batfish batfish =
+        BatfishTestUtils.getBatfishFromTestrigText(
+            TestrigText.builder()
+                .setConfigurationText(TESTRIGS_PREFIX + testrigName, configurationNames)
+                .build(),
+            _folder);
+    batfish.getSettings().setDataplaneEngineName(IncrementalDataPlanePlugin.PLUGIN_NAME);
+    DataPlanePlugin dataPlanePlugin = batfish.getDataPlanePlugin();
+    DataPlane dp = dataPlanePlugin.computeDataPlane(false)._dataPlane;
+    long numRoutes =
+        dataPlanePlugin
+            .getRoutes(dp)
+            .values()
+            .stream()
+            .flatMap(vrfRoutes -> vrfRoutes.values().stream())
+            .mapToLong(Set::size)
+            .sum();
+
+    assertThat(numRoutes, greaterThan(0L));
+    assertThat(dp.getNumMainRibRoutes(), equalTo(numRoutes));
+    // the count is kept across serialization
+    assertThat(SerializationUtils.clone(dp).getNumMainRibRoutes(), equalTo(numRoutes));
+  }
+
   @Test
   public void testIbgpRejectSameNeighborID() throws IOException {
     String testrigName = "ibgp-reject-routerid-match";
@@ -734,6 +779,345 @@ public class IncrementalDataPlanePluginTest {
     dp._dataPlane.getFibs();
   }
 
+  /**
+   * Generate two disconnected pairs of nodes, (a1, a2) and (b1, b2). If {@code withExtraRoute} is
+   * set, b1 has an additional static route.
+   */
+  private static SortedMap<String, Configuration> generateDisconnectedPairs(
+      boolean withExtraRoute) {
+    NetworkFactory nf = new NetworkFactory();
+    Configuration.Builder cb =
+        nf.configurationBuilder().setConfigurationFormat(ConfigurationFormat.CISCO_IOS);
+    ImmutableSortedMap.Builder<String, Configuration> configs = ImmutableSortedMap.naturalOrder();
+    for (String[] nodeAndAddress :
+        new String[][] {
+          {"a1", "10.0.0.1/24"}, {"a2", "10.0.0.2/24"}, {"b1", "10.1.0.1/24"}, {"b2", "10.1.0.2/24"}
+        }) {
+      Configuration c = cb.setHostname(nodeAndAddress[0]).build();
+      Vrf vrf = nf.vrfBuilder().setOwner(c).setName(DEFAULT_VRF_NAME).build();
+      nf.interfaceBuilder()
+          .setOwner(c)
+          .setVrf(vrf)
+          .setAddress(new InterfaceAddress(nodeAndAddress[1]))
+          .setActive(true)
+          .build();
+      configs.put(c.getHostname(), c);
+    }
+    SortedMap<String, Configuration> result = configs.build();
+    StaticRoute aRoute =
+        StaticRoute.builder()
+            .setNetwork(Prefix.parse("192.168.0.0/16"))
+            .setNextHopIp(new Ip("10.0.0.2"))
+            .setAdministrativeCost(1)
+            .build();
+    result.get("a1").getDefaultVrf().getStaticRoutes().add(aRoute);
+    if (withExtraRoute) {
+      StaticRoute bRoute =
+          StaticRoute.builder()
+              .setNetwork(Prefix.parse("172.16.0.0/16"))
+              .setNextHopIp(new Ip("10.1.0.2"))
+              .setAdministrativeCost(1)
+              .build();
+      result.get("b1").getDefaultVrf().getStaticRoutes().add(bRoute);
+    }
+    return result;
+  }
+
+  private static IncrementalBdpEngine newEngine() {
+    return new IncrementalBdpEngine(
+        new IncrementalDataPlaneSettings(),
+        new BatfishLogger(BatfishLogger.LEVELSTR_DEBUG, false),
+        (a, b) -> new AtomicInteger());
+  }
+
+  @Test
+  public void testComputeAffectedNodes() {
+    SortedMap<String, Configuration> baseConfigs = generateDisconnectedPairs(false);
+    IncrementalDataPlane baseDp =
+        (IncrementalDataPlane)
+            newEngine()
+                .computeDataPlane(
+                    false,
+                    baseConfigs,
+                    CommonUtil.synthesizeTopology(baseConfigs),
+                    Collections.emptySet())
+                ._dataPlane;
+    SortedMap<String, Configuration> configs = generateDisconnectedPairs(true);
+
+    assertThat(
+        IncrementalBdpEngine.computeAffectedNodes(
+            ImmutableSet.of("b1"),
+            Collections.emptySet(),
+            Collections.emptySet(),
+            baseDp,
+            configs,
+            CommonUtil.synthesizeTopology(configs),
+            CommonUtil.computeIpNodeOwners(configs, true)),
+        equalTo(ImmutableSet.of("b1")));
+  }
+
+  @Test
+  public void testComputeChangedNodes() {
+    SortedMap<String, Configuration> baseConfigs = generateDisconnectedPairs(false);
+
+    assertThat(
+        IncrementalDataPlanePlugin.computeChangedNodes(
+            baseConfigs, generateDisconnectedPairs(false)),
+        empty());
+    assertThat(
+        IncrementalDataPlanePlugin.computeChangedNodes(
+            baseConfigs, generateDisconnectedPairs(true)),
+        contains("b1"));
+    assertThat(
+        IncrementalDataPlanePlugin.computeChangedNodes(
+            baseConfigs,
+            ImmutableSortedMap.copyOf(Maps.filterKeys(baseConfigs, h -> !h.equals("a2")))),
+        contains("a2"));
+  }
+
+  @Test
+  public void testComputeDataPlaneIncrementally() {
+    SortedMap<String, Configuration> baseConfigs = generateDisconnectedPairs(false);
+    IncrementalDataPlane baseDp =
+        (IncrementalDataPlane)
+            newEngine()
+                .computeDataPlane(
+                    false,
+                    baseConfigs,
+                    CommonUtil.synthesizeTopology(baseConfigs),
+                    Collections.emptySet())
+                ._dataPlane;
+    SortedMap<String, Configuration> configs = generateDisconnectedPairs(true);
+    Topology topology = CommonUtil.synthesizeTopology(configs);
+
+    IncrementalDataPlane incrementalDp =
+        (IncrementalDataPlane)
+            newEngine()
+                .computeDataPlaneIncrementally(
+                    baseDp,
+                    ImmutableSet.of("b1"),
+                    Collections.emptySet(),
+                    configs,
+                    topology,
+                    Collections.emptySet())
+                ._dataPlane;
+    IncrementalDataPlane fullDp =
+        (IncrementalDataPlane)
+            newEngine()
+                .computeDataPlane(false, configs, topology, Collections.emptySet())
+                ._dataPlane;
+
+    // Unaffected nodes are reused as-is
+    assertThat(incrementalDp.getNodes().get("a1"), sameInstance(baseDp.getNodes().get("a1")));
+    assertThat(incrementalDp.getNodes().get("a2"), sameInstance(baseDp.getNodes().get("a2")));
+    // And the result is the same as computing from scratch
+    assertThat(
+        IncrementalBdpEngine.getRoutes(incrementalDp),
+        equalTo(IncrementalBdpEngine.getRoutes(fullDp)));
+    assertThat(
+        IncrementalBdpEngine.getRoutes(incrementalDp).get("b1").get(DEFAULT_VRF_NAME),
+        hasItem(hasPrefix(Prefix.parse("172.16.0.0/16"))));
+  }
+
+  /** A change to apply to the network generated by {@link #generateOspfChain(ChainChange)}. */
+  private enum ChainChange {
+    NONE,
+    /** Add an ACL to the non-BGP router r2 */
+    R2_ACL,
+    /** Add an ACL to the BGP peer e */
+    PEER_ACL,
+    /** Change the OSPF cost of a link between r2 and r3 */
+    OSPF_COST,
+    /** Add a static route to the stub s */
+    STUB_STATIC_ROUTE
+  }
+
+  /**
+   * Generate a chain of OSPF routers r1 - r2 - r3. The stub s is attached to r1 and only uses
+   * static routes, and the peer e is attached to r3 and peers with it over eBGP.
+   */
+  private static SortedMap<String, Configuration> generateOspfChain(ChainChange change) {
+    NetworkFactory nf = new NetworkFactory();
+    Configuration.Builder cb =
+        nf.configurationBuilder().setConfigurationFormat(ConfigurationFormat.CISCO_IOS);
+    Vrf.Builder vb = nf.vrfBuilder().setName(DEFAULT_VRF_NAME);
+    Interface.Builder ib = nf.interfaceBuilder().setActive(true).setOspfCost(1);
+    OspfArea.Builder oab = nf.ospfAreaBuilder().setNumber(0L);
+
+    Map<String, Configuration> nodes = new TreeMap<>();
+    Map<String, Vrf> vrfs = new TreeMap<>();
+    Map<String, OspfArea> areas = new TreeMap<>();
+    for (String hostname : new String[] {"r1", "r2", "r3", "s", "e"}) {
+      Configuration c = cb.setHostname(hostname).build();
+      nodes.put(hostname, c);
+      Vrf vrf = vb.setOwner(c).build();
+      vrfs.put(hostname, vrf);
+      if (hostname.startsWith("r")) {
+        OspfProcess proc = nf.ospfProcessBuilder().setVrf(vrf).build();
+        OspfArea area = oab.setOspfProcess(proc).build();
+        areas.put(hostname, area);
+        ib.setOwner(c)
+            .setVrf(vrf)
+            .setOspfArea(area)
+            .setOspfEnabled(true)
+            .setOspfPassive(true)
+            .setAddress(new InterfaceAddress("1.1.1." + hostname.charAt(1) + "/32"))
+            .build();
+      }
+    }
+    ib.setOspfPassive(false);
+    ib.setOwner(nodes.get("r1")).setVrf(vrfs.get("r1")).setOspfArea(areas.get("r1"));
+    ib.setAddress(new InterfaceAddress("10.0.12.1/24")).build();
+    ib.setOwner(nodes.get("r2")).setVrf(vrfs.get("r2")).setOspfArea(areas.get("r2"));
+    ib.setAddress(new InterfaceAddress("10.0.12.2/24")).build();
+    Interface r2ToR3 = ib.setAddress(new InterfaceAddress("10.0.23.2/24")).build();
+    ib.setOwner(nodes.get("r3")).setVrf(vrfs.get("r3")).setOspfArea(areas.get("r3"));
+    ib.setAddress(new InterfaceAddress("10.0.23.3/24")).build();
+    if (change == ChainChange.OSPF_COST) {
+      r2ToR3.setOspfCost(5);
+    }
+
+    // Links without OSPF
+    ib.setOspfEnabled(false).setOspfArea(null);
+    ib.setOwner(nodes.get("r1")).setVrf(vrfs.get("r1"));
+    ib.setAddress(new InterfaceAddress("10.0.1.1/24")).build();
+    ib.setOwner(nodes.get("s")).setVrf(vrfs.get("s"));
+    ib.setAddress(new InterfaceAddress("10.0.1.2/24")).build();
+    ib.setOwner(nodes.get("r3")).setVrf(vrfs.get("r3"));
+    ib.setAddress(new InterfaceAddress("10.0.3.3/24")).build();
+    ib.setOwner(nodes.get("e")).setVrf(vrfs.get("e"));
+    ib.setAddress(new InterfaceAddress("10.0.3.4/24")).build();
+    ib.setAddress(new InterfaceAddress("2.2.2.2/32")).build();
+
+    StaticRoute.Builder srb =
+        StaticRoute.builder().setNextHopIp(new Ip("10.0.1.1")).setAdministrativeCost(1);
+    vrfs.get("s").getStaticRoutes().add(srb.setNetwork(Prefix.ZERO).build());
+    if (change == ChainChange.STUB_STATIC_ROUTE) {
+      vrfs.get("s").getStaticRoutes().add(srb.setNetwork(Prefix.parse("172.16.0.0/16")).build());
+    }
+
+    // Export connected routes over BGP
+    RoutingPolicy.Builder rpb =
+        nf.routingPolicyBuilder()
+            .setName("connected")
+            .setStatements(
+                ImmutableList.of(
+                    new If(
+                        new MatchProtocol(RoutingProtocol.CONNECTED),
+                        ImmutableList.of(
+                            new SetOrigin(new LiteralOrigin(OriginType.IGP, null)),
+                            Statements.ExitAccept.toStaticStatement()),
+                        ImmutableList.of(Statements.ExitReject.toStaticStatement()))));
+    rpb.setOwner(nodes.get("r3")).build();
+    rpb.setOwner(nodes.get("e")).build();
+    BgpActivePeerConfig.Builder nb = nf.bgpNeighborBuilder().setExportPolicy("connected");
+    BgpProcess.Builder pb = nf.bgpProcessBuilder();
+    nb.setBgpProcess(pb.setVrf(vrfs.get("r3")).setRouterId(new Ip("10.0.3.3")).build())
+        .setLocalIp(new Ip("10.0.3.3"))
+        .setLocalAs(1L)
+        .setPeerAddress(new Ip("10.0.3.4"))
+        .setRemoteAs(2L)
+        .build();
+    nb.setBgpProcess(pb.setVrf(vrfs.get("e")).setRouterId(new Ip("10.0.3.4")).build())
+        .setLocalIp(new Ip("10.0.3.4"))
+        .setLocalAs(2L)
+        .setPeerAddress(new Ip("10.0.3.3"))
+        .setRemoteAs(1L)
+        .build();
+
+    IpAccessList.Builder aclb =
+        nf.aclBuilder().setName("acl").setLines(ImmutableList.of(IpAccessListLine.ACCEPT_ALL));
+    if (change == ChainChange.R2_ACL) {
+      aclb.setOwner(nodes.get("r2")).build();
+    } else if (change == ChainChange.PEER_ACL) {
+      aclb.setOwner(nodes.get("e")).build();
+    }
+    return ImmutableSortedMap.copyOf(nodes);
+  }
+
+  /**
+   * Compute the data plane of the chain network with {@code change} applied incrementally from the
+   * unchanged network, check that it is the same as computing it from scratch, and return the nodes
+   * whose routes were recomputed.
+   */
+  private static Set<String> computeOspfChainIncrementally(ChainChange change) {
+    SortedMap<String, Configuration> baseConfigs = generateOspfChain(ChainChange.NONE);
+    IncrementalDataPlane baseDp =
+        (IncrementalDataPlane)
+            newEngine()
+                .computeDataPlane(
+                    false,
+                    baseConfigs,
+                    CommonUtil.synthesizeTopology(baseConfigs),
+                    Collections.emptySet())
+                ._dataPlane;
+    SortedMap<String, Configuration> configs = generateOspfChain(change);
+    Topology topology = CommonUtil.synthesizeTopology(configs);
+    Set<String> changedNodes = IncrementalDataPlanePlugin.computeChangedNodes(baseConfigs, configs);
+
+    IncrementalDataPlane incrementalDp =
+        (IncrementalDataPlane)
+            newEngine()
+                .computeDataPlaneIncrementally(
+                    baseDp,
+                    changedNodes,
+                    Collections.emptySet(),
+                    configs,
+                    topology,
+                    Collections.emptySet())
+                ._dataPlane;
+    IncrementalDataPlane fullDp =
+        (IncrementalDataPlane)
+            newEngine()
+                .computeDataPlane(false, configs, topology, Collections.emptySet())
+                ._dataPlane;
+
+    assertThat(
+        IncrementalBdpEngine.getRoutes(incrementalDp),
+        equalTo(IncrementalBdpEngine.getRoutes(fullDp)));
+    assertThat(incrementalDp.getBgpTopology().edges(), equalTo(fullDp.getBgpTopology().edges()));
+    // Changed nodes are backed by the new configurations, even if their routes were reused
+    changedNodes.forEach(
+        hostname ->
+            assertThat(
+                incrementalDp.getConfigurations().get(hostname),
+                sameInstance(configs.get(hostname))));
+    return IncrementalBdpEngine.computeAffectedNodes(
+        changedNodes,
+        Collections.emptySet(),
+        Collections.emptySet(),
+        baseDp,
+        configs,
+        topology,
+        CommonUtil.computeIpNodeOwners(configs, true));
+  }
+
+  @Test
+  public void testComputeDataPlaneIncrementallyAclChange() {
+    // An ACL that is not on the path of any BGP session does not affect any routes
+    assertThat(computeOspfChainIncrementally(ChainChange.R2_ACL), empty());
+    // An ACL on a BGP peer may affect its sessions, and in turn anything they exchange routes with
+    assertThat(
+        computeOspfChainIncrementally(ChainChange.PEER_ACL),
+        equalTo(ImmutableSet.of("r1", "r2", "r3", "e")));
+  }
+
+  @Test
+  public void testComputeDataPlaneIncrementallyOspfChange() {
+    // The stub is not affected by a change in the OSPF domain
+    assertThat(
+        computeOspfChainIncrementally(ChainChange.OSPF_COST),
+        equalTo(ImmutableSet.of("r1", "r2", "r3", "e")));
+  }
+
+  @Test
+  public void testComputeDataPlaneIncrementallyStubChange() {
+    // Nothing exchanges routes with the stub
+    assertThat(
+        computeOspfChainIncrementally(ChainChange.STUB_STATIC_ROUTE),
+        equalTo(ImmutableSet.of("s")));
+  }
+
   @Test
   public void testBgpNeighborReachability() throws IOException {
     // Only connect one neighbor (n2) to core router
@@ -188,6 +188,48 @@ public class AbstractRibTest {
     assertThat(match, contains(routes.get(0)));
   }
 
+  /**
+   * Ensure that {@link AbstractRib#longestPrefixMatch(Ip, int)} does not return routes longer than
+   * the constraint, even if they are stored directly below a matching route in the tree
+   */
+  @Test
+  public void testLongestPrefixMatchConstrainedSkipsLongerRoutes() {
+    StaticRoute shortRoute = new StaticRoute(Prefix.parse("10.0.0.0/8"), Ip.ZERO, null, 0, 0L, 0);
+    StaticRoute longRoute = new StaticRoute(Prefix.parse("10.1.1.0/28"), Ip.ZERO, null, 0, 0L, 0);
+    _rib.mergeRouteGetDelta(shortRoute);
+    _rib.mergeRouteGetDelta(longRoute);
+
+    assertThat(_rib.longestPrefixMatch(new Ip("10.1.1.1"), 24), contains(shortRoute));
+    assertThat(_rib.longestPrefixMatch(new Ip("10.1.1.1"), 28), contains(longRoute));
+  }
+
+  /**
+   * Ensure that {@link AbstractRib#forEachLongestPrefixMatch(Ip, java.util.function.Consumer)}
+   * visits the same routes as returned by {@link AbstractRib#longestPrefixMatch(Ip)}
+   */
+  @Test
+  public void testForEachLongestPrefixMatch() {
+    setupOverlappingRoutes();
+
+    for (String ip : new String[] {"10.1.1.1", "10.1.1.2", "10.128.0.1", "11.1.1.1"}) {
+      List<StaticRoute> visited = new ArrayList<>();
+      _rib.forEachLongestPrefixMatch(new Ip(ip), visited::add);
+      assertThat(visited, containsInAnyOrder(_rib.longestPrefixMatch(new Ip(ip)).toArray()));
+    }
+  }
+
+  /** Ensure that {@link AbstractRib#getRoutes(Prefix)} only returns routes with exact network */
+  @Test
+  public void testGetRoutesForPrefix() {
+    List<StaticRoute> routes = setupOverlappingRoutes();
+
+    assertThat(_rib.getRoutes(Prefix.parse("10.0.0.0/9")), contains(routes.get(1)));
+    assertThat(_rib.getRoutes(Prefix.parse("10.1.1.1/32")), contains(routes.get(3)));
+    // Same length as an existing route, but a different network
+    assertThat(_rib.getRoutes(Prefix.parse("11.0.0.0/9")), is(emptyIterableOf(StaticRoute.class)));
+    assertThat(_rib.getRoutes(Prefix.parse("10.1.0.0/16")), is(emptyIterableOf(StaticRoute.class)));
+  }
+
   /** Ensure that a RIB is equal to itself */
   @Test
   public void testSelfHasSameRoutes() {
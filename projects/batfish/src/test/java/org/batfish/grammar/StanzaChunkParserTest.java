@@ -0,0 +1,198 @@
+package org.batfish.grammar;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.batfish.config.Settings;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.grammar.cisco.CiscoCombinedParser;
+import org.batfish.grammar.cisco.CiscoParser.Cisco_configurationContext;
+import org.batfish.grammar.cisco.CiscoStanzaChunkParser;
+import org.batfish.grammar.flatjuniper.FlatJuniperCombinedParser;
+import org.batfish.grammar.flatjuniper.FlatJuniperParser.Flat_juniper_configurationContext;
+import org.batfish.grammar.flatjuniper.FlatJuniperStanzaChunkParser;
+import org.junit.Test;
+
+/** Tests of {@link StanzaChunkParser}. */
+public class StanzaChunkParserTest {
+
+  private static final String CISCO_TEXT =
+      String.join(
+          "\n",
+          "!",
+          "hostname chunked",
+          "!",
+          "interface Loopback0",
+          " ip address 1.1.1.1 255.255.255.255",
+          "!",
+          "interface GigabitEthernet0/0",
+          " description uplink",
+          " ip address 10.0.0.1 255.255.255.254",
+          " ip access-group ACL_IN in",
+          "!",
+          "ip prefix-list PL seq 5 permit 10.0.0.0/8 le 24",
+          "ip prefix-list PL seq 10 permit 172.16.0.0/12 le 24",
+          "ip prefix-list PL seq 15 deny 0.0.0.0/0 le 32",
+          "!",
+          "ip access-list extended ACL_IN",
+          " permit tcp any host 10.0.0.1 eq 22",
+          " deny ip any any",
+          "!",
+          "route-map RM permit 10",
+          " match ip address prefix-list PL",
+          " set local-preference 200",
+          "!",
+          "router bgp 65000",
+          " neighbor 10.0.0.0 remote-as 65001",
+          " neighbor 10.0.0.0 route-map RM in",
+          "!",
+          "end",
+          "");
+
+  private static Settings settings(int chunkLines) {
+    Settings settings = new Settings();
+    settings.setParseChunkLines(chunkLines);
+    return settings;
+  }
+
+  /** Returns a description of each token in the tree, in order */
+  private static List<String> tokens(ParseTree tree) {
+    List<String> tokens = new ArrayList<>();
+    collectTokens(tree, tokens);
+    return tokens;
+  }
+
+  private static void collectTokens(ParseTree tree, List<String> tokens) {
+    if (tree instanceof TerminalNode) {
+      Token t = ((TerminalNode) tree).getSymbol();
+      tokens.add(
+          String.format(
+              "%d %d:%d [%d,%d] %s",
+              t.getType(),
+              t.getLine(),
+              t.getCharPositionInLine(),
+              t.getStartIndex(),
+              t.getStopIndex(),
+              t.getText()));
+      return;
+    }
+    for (int i = 0; i < tree.getChildCount(); i++) {
+      collectTokens(tree.getChild(i), tokens);
+    }
+  }
+
+  /** Asserts that the chunked tree has the same structure and tokens as the whole tree */
+  private static void assertSameTree(
+      ParserRuleContext chunked, ParserRuleContext whole, BatfishCombinedParser<?, ?> parser) {
+    assertThat(chunked, notNullValue());
+    List<String> ruleNames = Arrays.asList(parser.getParser().getRuleNames());
+    assertThat(chunked.toStringTree(ruleNames), equalTo(whole.toStringTree(ruleNames)));
+    assertThat(tokens(chunked), equalTo(tokens(whole)));
+  }
+
+  @Test
+  public void testCiscoChunks() {
+    Settings settings = settings(3);
+    CiscoCombinedParser parser =
+        new CiscoCombinedParser(CISCO_TEXT, settings, ConfigurationFormat.CISCO_IOS);
+    Cisco_configurationContext whole = parser.parse();
+    Cisco_configurationContext chunked =
+        new CiscoStanzaChunkParser(CISCO_TEXT, settings, ConfigurationFormat.CISCO_IOS).parse();
+
+    assertSameTree(chunked, whole, parser);
+  }
+
+  @Test
+  public void testCiscoChunksWithUnrecognizedLine() {
+    String text = CISCO_TEXT.replace(" set local-preference 200\n", " frobnicate widgets 200\n");
+    Settings settings = settings(3);
+    CiscoCombinedParser parser =
+        new CiscoCombinedParser(text, settings, ConfigurationFormat.CISCO_IOS);
+    Cisco_configurationContext whole = parser.parse();
+    Cisco_configurationContext chunked =
+        new CiscoStanzaChunkParser(text, settings, ConfigurationFormat.CISCO_IOS).parse();
+
+    // the unrecognized line is looked up by its line number in the whole file
+    assertSameTree(chunked, whole, parser);
+  }
+
+  @Test
+  public void testCiscoShortTextNotSplit() {
+    assertThat(
+        new CiscoStanzaChunkParser(CISCO_TEXT, settings(1000), ConfigurationFormat.CISCO_IOS)
+            .parse(),
+        nullValue());
+  }
+
+  @Test
+  public void testCiscoBannerNotSplit() {
+    String text =
+        String.join(
+            "\n",
+            "hostname banner",
+            "banner motd ^C",
+            "welcome",
+            "authorized users only",
+            "^C",
+            "interface Loopback0",
+            " ip address 1.1.1.1 255.255.255.255",
+            "");
+
+    // lines of the banner look like stanza starts, but splitting there leaves the banner open
+    assertThat(
+        new CiscoStanzaChunkParser(text, settings(1), ConfigurationFormat.CISCO_IOS).parse(),
+        nullValue());
+  }
+
+  @Test
+  public void testCiscoUnindentedChildNotSplit() {
+    String text =
+        String.join(
+            "\n",
+            "hostname unindented",
+            "route-map RM permit 10",
+            "set local-preference 200",
+            "route-map RM permit 20",
+            "set local-preference 100",
+            "");
+
+    // the set lines belong to the route-map stanzas even though they are not indented
+    assertThat(
+        new CiscoStanzaChunkParser(text, settings(1), ConfigurationFormat.CISCO_IOS).parse(),
+        nullValue());
+  }
+
+  @Test
+  public void testFlatJuniperChunks() {
+    String text =
+        String.join(
+            "\n",
+            "####BATFISH FLATTENED JUNIPER CONFIG####",
+            "set system host-name chunked",
+            "set interfaces ge-0/0/0 unit 0 family inet address 10.0.0.1/31",
+            "set interfaces ge-0/0/1 unit 0 description \"multi word\"",
+            "set policy-options prefix-list PL 10.0.0.0/8",
+            "set policy-options prefix-list PL 172.16.0.0/12",
+            "set policy-options policy-statement P term T from prefix-list PL",
+            "set policy-options policy-statement P term T then accept",
+            "deactivate interfaces ge-0/0/1",
+            "set routing-options autonomous-system 65000",
+            "");
+    Settings settings = settings(2);
+    FlatJuniperCombinedParser parser = new FlatJuniperCombinedParser(text, settings, null);
+    Flat_juniper_configurationContext whole = parser.parse();
+    Flat_juniper_configurationContext chunked =
+        new FlatJuniperStanzaChunkParser(text, settings, null).parse();
+
+    assertSameTree(chunked, whole, parser);
+  }
+}
@@ -0,0 +1,126 @@
+package org.batfish.grammar;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import org.batfish.common.BatfishException;
+import org.batfish.common.Warnings;
+import org.batfish.common.util.BatfishObjectMapper;
+import org.batfish.config.Settings;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.datamodel.answers.ConvertConfigurationAnswerElement;
+import org.batfish.grammar.cisco.CiscoCombinedParser;
+import org.batfish.grammar.cisco.CiscoControlPlaneExtractor;
+import org.batfish.grammar.cisco.CiscoParser.Cisco_configurationContext;
+import org.batfish.grammar.cisco.CiscoParser.S_interfaceContext;
+import org.batfish.grammar.cisco.CiscoStanzaStreamingExtractor;
+import org.batfish.vendor.VendorConfiguration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/** Tests of {@link StanzaStreamingExtractor}. */
+public class StanzaStreamingExtractorTest {
+
+  private static final String CISCO_TEXT =
+      String.join(
+          "\n",
+          "!",
+          "hostname streamed",
+          "!",
+          "interface Loopback0",
+          " ip address 1.1.1.1 255.255.255.255",
+          " unrecognized interface line",
+          "!",
+          "interface GigabitEthernet0/0",
+          " ip address 10.0.0.1 255.255.255.254",
+          " ip access-group ACL_IN in",
+          "!",
+          "unrecognized top-level line",
+          "!",
+          "ip access-list extended ACL_IN",
+          " permit tcp any host 10.0.0.1 eq 22",
+          " deny ip any any",
+          "!",
+          "router bgp 65000",
+          " neighbor 10.0.0.0 remote-as 65001",
+          "!",
+          "end",
+          "");
+
+  @Rule public ExpectedException _thrown = ExpectedException.none();
+
+  private static Settings settings() {
+    Settings settings = new Settings();
+    settings.setDisableUnrecognized(false);
+    settings.setThrowOnParserError(false);
+    settings.setThrowOnLexerError(false);
+    return settings;
+  }
+
+  /** Returns the converted configuration and the warnings of extraction, as JSON */
+  private static String convert(CiscoControlPlaneExtractor extractor, Warnings warnings)
+      throws IOException {
+    VendorConfiguration vc = extractor.getVendorConfiguration();
+    vc.setFilename("configs/streamed");
+    vc.setWarnings(warnings);
+    vc.setAnswerElement(new ConvertConfigurationAnswerElement());
+    return BatfishObjectMapper.writePrettyString(vc.toVendorIndependentConfiguration())
+        + BatfishObjectMapper.writePrettyString(warnings);
+  }
+
+  @Test
+  public void testCiscoSameAsTree() throws IOException {
+    Settings settings = settings();
+    ConfigurationFormat format = ConfigurationFormat.CISCO_IOS;
+
+    CiscoCombinedParser treeParser = new CiscoCombinedParser(CISCO_TEXT, settings, format);
+    Warnings treeWarnings = new Warnings(true, true, true);
+    CiscoControlPlaneExtractor treeExtractor =
+        new CiscoControlPlaneExtractor(CISCO_TEXT, treeParser, format, treeWarnings);
+    treeExtractor.processParseTree(treeParser.parse());
+
+    CiscoCombinedParser streamParser = new CiscoCombinedParser(CISCO_TEXT, settings, format);
+    Warnings streamWarnings = new Warnings(true, true, true);
+    CiscoControlPlaneExtractor streamExtractor =
+        new CiscoControlPlaneExtractor(CISCO_TEXT, streamParser, format, streamWarnings);
+    CiscoStanzaStreamingExtractor streaming = new CiscoStanzaStreamingExtractor(streamExtractor);
+    streamParser.getParser().addParseListener(streaming);
+    Cisco_configurationContext root = streamParser.parse();
+    streaming.throwIfFailed();
+
+    // both unrecognized lines are reported
+    assertThat(streamWarnings.getParseWarnings(), hasSize(2));
+    assertThat(
+        convert(streamExtractor, streamWarnings), equalTo(convert(treeExtractor, treeWarnings)));
+    // no stanza is kept once extracted
+    assertThat(root.children, empty());
+    assertThat(root.sl, empty());
+  }
+
+  @Test
+  public void testExtractorFailure() {
+    Settings settings = settings();
+    ConfigurationFormat format = ConfigurationFormat.CISCO_IOS;
+    CiscoCombinedParser parser = new CiscoCombinedParser(CISCO_TEXT, settings, format);
+    CiscoControlPlaneExtractor extractor =
+        new CiscoControlPlaneExtractor(CISCO_TEXT, parser, format, new Warnings()) {
+          @Override
+          public void enterS_interface(S_interfaceContext ctx) {
+            throw new BatfishException("extractor failure");
+          }
+        };
+    CiscoStanzaStreamingExtractor streaming = new CiscoStanzaStreamingExtractor(extractor);
+    parser.getParser().addParseListener(streaming);
+
+    // parsing completes despite the failure
+    parser.parse();
+
+    _thrown.expect(BatfishException.class);
+    _thrown.expectMessage("extractor failure");
+    streaming.throwIfFailed();
+  }
+}
@@ -1,6 +1,8 @@
 package org.batfish.job;
 
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -8,6 +10,8 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.batfish.common.BatfishException;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.BatfishLogger.BatfishLoggerHistory;
@@ -49,6 +53,82 @@ public class BatfishJobExecutorTest {
     assertEquals(output, Sets.newHashSet("result1", "result2"));
   }
 
+  @Test
+  public void testRunJobsInPipeline() {
+    Settings settings = new Settings();
+
+    List<BfTestJob> jobs = new ArrayList<>();
+    List<String> expectedOrder = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      jobs.add(new BfTestJob(settings, "result" + i));
+      expectedOrder.add("result" + i);
+    }
+
+    Set<String> output = new HashSet<>();
+    BfTestAnswerElement ae = new BfTestAnswerElement();
+    List<String> handedOff = new ArrayList<>();
+    Set<String> handOffTasksRun = ConcurrentHashMap.newKeySet();
+    BatfishJobExecutor.runJobsInPipeline(
+        settings,
+        _logger,
+        jobs,
+        output,
+        ae,
+        false,
+        TEST_EXECUTOR_DESC,
+        result -> {
+          handedOff.add(result._result);
+          return () -> handOffTasksRun.add(result._result);
+        });
+
+    // results are applied and handed off in the order of the jobs, and all hand-off tasks run
+    assertEquals(output, new HashSet<>(expectedOrder));
+    assertEquals(expectedOrder, handedOff);
+    assertEquals(new HashSet<>(expectedOrder), handOffTasksRun);
+  }
+
+  @Test
+  public void testRunJobsInPipelineBoundsInFlightJobs() {
+    Settings settings = new Settings(new String[] {"-jobs", "2"});
+    int maxInFlight =
+        BatfishJobExecutor.getBatfishJobExecutor(settings, _logger).getMaxInFlightJobs();
+
+    // jobs started but whose hand-off task has not finished yet
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxObservedInFlight = new AtomicInteger();
+    List<BfTestJob> jobs = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      jobs.add(
+          new BfTestJob(settings, "result" + i) {
+            @Override
+            public BfTestResult call() {
+              maxObservedInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+              return super.call();
+            }
+          });
+    }
+
+    BatfishJobExecutor.runJobsInPipeline(
+        settings,
+        _logger,
+        jobs,
+        new HashSet<>(),
+        new BfTestAnswerElement(),
+        false,
+        TEST_EXECUTOR_DESC,
+        result ->
+            () -> {
+              try {
+                Thread.sleep(5);
+              } catch (InterruptedException e) {
+                throw new BatfishException("Interrupted", e);
+              }
+              inFlight.decrementAndGet();
+            });
+
+    assertThat(maxObservedInFlight.get(), lessThanOrEqualTo(maxInFlight));
+  }
+
   @Test
   public void testHandleJobResultSuccess() {
     Settings settings = new Settings();
@@ -0,0 +1,132 @@
+package org.batfish.job;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.batfish.common.BatfishLogger;
+import org.batfish.common.Warning;
+import org.batfish.common.Warnings;
+import org.batfish.config.Settings;
+import org.batfish.job.ConfigurationCache.ParseEntry;
+import org.batfish.representation.host.HostConfiguration;
+import org.batfish.representation.iptables.IptablesVendorConfiguration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests for {@link ConfigurationCache}. */
+public class ConfigurationCacheTest {
+
+  /** A class loader recording the names of the classes it loads */
+  private static final class RecordingClassLoader extends ClassLoader {
+    private final Set<String> _loaded = ConcurrentHashMap.newKeySet();
+
+    private RecordingClassLoader() {
+      super(ConfigurationCacheTest.class.getClassLoader());
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      _loaded.add(name);
+      return super.loadClass(name, resolve);
+    }
+  }
+
+  @Rule public TemporaryFolder _folder = new TemporaryFolder();
+
+  private Path _cacheDir;
+
+  private RecordingClassLoader _classLoader;
+
+  private BatfishLogger _logger;
+
+  @Before
+  public void setup() throws IOException {
+    _cacheDir = _folder.newFolder().toPath();
+    _classLoader = new RecordingClassLoader();
+    _logger = new BatfishLogger(BatfishLogger.LEVELSTR_DEBUG, false);
+  }
+
+  @Test
+  public void testConvertKeyIptables() {
+    Settings settings = new Settings();
+    settings.setLogger(_logger);
+    HostConfiguration host = new HostConfiguration();
+    host.setHostname("host");
+    host.setParseCacheKey("hostKey");
+    String withoutIptables = ConfigurationCache.convertKey(settings, host);
+
+    IptablesVendorConfiguration iptables = new IptablesVendorConfiguration();
+    host.setIptablesVendorConfig(iptables);
+    // not cacheable, since the iptables configuration cannot be identified
+    assertThat(ConfigurationCache.convertKey(settings, host), nullValue());
+
+    iptables.setParseCacheKey("iptablesKey1");
+    String withIptables1 = ConfigurationCache.convertKey(settings, host);
+    iptables.setParseCacheKey("iptablesKey2");
+    String withIptables2 = ConfigurationCache.convertKey(settings, host);
+
+    assertThat(withoutIptables, notNullValue());
+    assertThat(withIptables1, notNullValue());
+    assertThat(withIptables1, not(equalTo(withoutIptables)));
+    // only the iptables file changed
+    assertThat(withIptables2, not(equalTo(withIptables1)));
+  }
+
+  @Test
+  public void testLoadWithClassLoader() {
+    ConfigurationCache cache =
+        ConfigurationCache.forNetwork(_cacheDir, "network", _classLoader, _logger, false);
+    cache.store("key", new Warnings());
+
+    assertThat(cache.load("key", Warnings.class), notNullValue());
+    assertThat(_classLoader._loaded, hasItem(Warnings.class.getName()));
+  }
+
+  @Test
+  public void testLoadMissing() {
+    ConfigurationCache cache =
+        ConfigurationCache.forNetwork(_cacheDir, "network", _classLoader, _logger, false);
+
+    assertThat(cache.load("key", Warnings.class), nullValue());
+    assertThat(_logger.getHistory().toString(BatfishLogger.LEVEL_DEBUG), equalTo(""));
+  }
+
+  @Test
+  public void testLoadText() {
+    ConfigurationCache textCache =
+        ConfigurationCache.forNetwork(_cacheDir, "network", _classLoader, _logger, true);
+    Warnings warnings = new Warnings();
+    warnings.getRedFlagWarnings().add(new Warning("text", "type"));
+    textCache.store("key", warnings);
+
+    // the format is detected when loading
+    ConfigurationCache cache =
+        ConfigurationCache.forNetwork(_cacheDir, "network", _classLoader, _logger, false);
+    Warnings loaded = cache.load("key", Warnings.class);
+    assertThat(loaded, notNullValue());
+    assertThat(loaded.getRedFlagWarnings(), equalTo(warnings.getRedFlagWarnings()));
+  }
+
+  @Test
+  public void testLoadUnreadable() {
+    ConfigurationCache cache =
+        ConfigurationCache.forNetwork(_cacheDir, "network", _classLoader, _logger, false);
+    cache.store("key", new Warnings());
+
+    assertThat(cache.load("key", ParseEntry.class), nullValue());
+    assertThat(
+        _logger.getHistory().toString(BatfishLogger.LEVEL_DEBUG),
+        containsString("Ignoring unreadable configuration cache entry key"));
+  }
+}
@@ -12,6 +12,7 @@ import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.Version;
 import org.batfish.datamodel.Configuration;
@@ -50,6 +51,43 @@ public class BatfishStorageTest {
     assertThat(deserialized.keySet(), equalTo(Sets.newHashSet("node1")));
   }
 
+  @Test
+  public void roundTripSegmentedConfigurationsSucceeds() {
+    BatfishStorage storage =
+        new BatfishStorage(_containerDir, _logger, (m, n) -> new AtomicInteger(), true);
+    Map<String, Configuration> configs = new HashMap<>();
+    configs.put("node1", new Configuration("node1", ConfigurationFormat.CISCO_IOS));
+    configs.put("node2", new Configuration("node2", ConfigurationFormat.CISCO_IOS));
+
+    storage.storeConfigurations(configs, new ConvertConfigurationAnswerElement(), "sometr");
+    Map<String, Configuration> deserialized = storage.loadConfigurations("sometr");
+    assertThat(deserialized, not(nullValue()));
+    assertThat(deserialized.keySet(), equalTo(Sets.newHashSet("node1", "node2")));
+
+    // readable regardless of the format used for storing
+    assertThat(_storage.loadConfigurations("sometr").keySet(), equalTo(deserialized.keySet()));
+  }
+
+  @Test
+  public void loadConfigurationLoaders() {
+    for (boolean segmented : new boolean[] {false, true}) {
+      BatfishStorage storage =
+          new BatfishStorage(_containerDir, _logger, (m, n) -> new AtomicInteger(), segmented);
+      Map<String, Configuration> configs = new HashMap<>();
+      configs.put("node1", new Configuration("node1", ConfigurationFormat.CISCO_IOS));
+      configs.put("node2", new Configuration("node2", ConfigurationFormat.JUNIPER));
+      storage.storeConfigurations(configs, new ConvertConfigurationAnswerElement(), "sometr");
+
+      Map<String, Supplier<Configuration>> loaders = storage.loadConfigurationLoaders("sometr");
+      assertThat(loaders, not(nullValue()));
+      assertThat(loaders.keySet(), equalTo(Sets.newHashSet("node1", "node2")));
+      assertThat(
+          loaders.get("node2").get().getConfigurationFormat(),
+          equalTo(ConfigurationFormat.JUNIPER));
+    }
+    assertThat(_storage.loadConfigurationLoaders("nonexistent"), nullValue());
+  }
+
   @Test
   public void loadMissingConfigurationsReturnsNull() {
     assertThat(_storage.loadConfigurations("nonexistent"), nullValue());
@@ -2,9 +2,13 @@ package org.batfish.main;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.notNullValue;
@@ -32,10 +36,12 @@ import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import org.batfish.common.BatfishException;
+import org.batfish.common.BfConsts;
 import org.batfish.common.topology.Layer1Edge;
 import org.batfish.common.topology.Layer1Node;
 import org.batfish.common.topology.Layer1Topology;
 import org.batfish.common.util.CommonUtil;
+import org.batfish.config.Settings;
 import org.batfish.datamodel.Configuration;
 import org.batfish.datamodel.ConfigurationFormat;
 import org.batfish.datamodel.Edge;
@@ -45,6 +51,7 @@ import org.batfish.datamodel.answers.Answer;
 import org.batfish.datamodel.answers.AnswerStatus;
 import org.batfish.datamodel.answers.ParseStatus;
 import org.batfish.datamodel.answers.ParseVendorConfigurationAnswerElement;
+import org.batfish.datamodel.answers.RunAnalysisAnswerElement;
 import org.batfish.representation.host.HostConfiguration;
 import org.batfish.vendor.VendorConfiguration;
 import org.junit.Rule;
@@ -94,6 +101,43 @@ public class BatfishTest {
         containsString("Could not parse question"));
   }
 
+  @Test
+  public void testAnalyzeConcurrently() throws IOException {
+    Configuration c = new Configuration("c", ConfigurationFormat.CISCO_IOS);
+    Batfish batfish = BatfishTestUtils.getBatfish(ImmutableSortedMap.of("c", c), _folder);
+    Settings settings = batfish.getSettings();
+    settings.setAnalysisName("analysis");
+    settings.setAnalysisThreads(2);
+    Path analysisQuestionsDir =
+        settings
+            .getStorageBase()
+            .resolve(settings.getContainer())
+            .resolve(BfConsts.RELPATH_ANALYSES_DIR)
+            .resolve("analysis")
+            .resolve(BfConsts.RELPATH_QUESTIONS_DIR);
+    List<String> questionNames = ImmutableList.of("q1", "q2", "q3");
+    for (String questionName : questionNames) {
+      Path questionDir = analysisQuestionsDir.resolve(questionName);
+      questionDir.toFile().mkdirs();
+      // unparsable questions are answered without loading the snapshot
+      Files.write(
+          questionDir.resolve(BfConsts.RELPATH_QUESTION_FILE),
+          "{}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    Answer answer = batfish.analyze();
+
+    assertThat(answer.getAnswerElements(), hasSize(1));
+    RunAnalysisAnswerElement ae = (RunAnalysisAnswerElement) answer.getAnswerElements().get(0);
+    assertThat(ae.getAnswers().keySet(), contains(questionNames.toArray()));
+    assertThat(ae.getElapsedMillis().keySet(), contains(questionNames.toArray()));
+    for (Answer questionAnswer : ae.getAnswers().values()) {
+      assertThat(questionAnswer.getStatus(), equalTo(AnswerStatus.FAILURE));
+    }
+    // the settings of the analysis are left untouched by its questions
+    assertThat(settings.getQuestionPath(), nullValue());
+  }
+
   @Test
   public void testOverlayIptables() throws IOException {
     SortedMap<String, String> configurationsText = new TreeMap<>();
@@ -347,6 +391,68 @@ public class BatfishTest {
     assertThat(expected, equalTo(actual));
   }
 
+  @Test
+  public void testParseCacheDir() throws IOException {
+    Path cacheDir = _folder.newFolder().toPath();
+    String interfaceText = "interface Loopback0\n ip address 1.1.1.1 255.255.255.255\n!\n";
+    String changedText = "interface Loopback1\n ip address 2.2.2.2 255.255.255.255\n!\n";
+    Batfish batfish =
+        BatfishTestUtils.getBatfishFromTestrigText(
+            TestrigText.builder()
+                .setConfigurationText(
+                    ImmutableSortedMap.of(
+                        "a.cfg", "hostname cached1\n" + interfaceText,
+                        "b.cfg", "hostname cached2\n" + interfaceText))
+                .build(),
+            _folder);
+    batfish.getSettings().setParseCacheDir(cacheDir);
+    batfish.loadConfigurations();
+    Path networkCacheDir = cacheDir.resolve(batfish.getContainerName());
+
+    // one parse and one conversion result per file
+    assertThat(networkCacheDir.toFile().list(), arrayWithSize(4));
+
+    Batfish changed =
+        BatfishTestUtils.getBatfishFromTestrigText(
+            TestrigText.builder()
+                .setConfigurationText(
+                    ImmutableSortedMap.of(
+                        "a.cfg", "hostname cached1\n" + interfaceText,
+                        "b.cfg", "hostname cached2\n" + changedText))
+                .build(),
+            _folder);
+    changed.getSettings().setParseCacheDir(cacheDir);
+    Map<String, Configuration> configs = changed.loadConfigurations();
+
+    // only the changed file adds results
+    assertThat(networkCacheDir.toFile().list(), arrayWithSize(6));
+    assertThat(configs.keySet(), containsInAnyOrder("cached1", "cached2"));
+    assertThat(configs.get("cached1").getInterfaces().keySet(), contains("Loopback0"));
+    assertThat(configs.get("cached2").getInterfaces().keySet(), contains("Loopback1"));
+  }
+
+  @Test
+  public void testPipelineConfigurations() throws IOException {
+    String interfaceText = "interface Loopback0\n ip address 1.1.1.1 255.255.255.255\n!\n";
+    SortedMap<String, String> configMap =
+        ImmutableSortedMap.of(
+            "a.cfg",
+            "hostname pipelined1\n" + interfaceText,
+            "b.cfg",
+            "hostname pipelined2\n" + interfaceText,
+            "c.cfg",
+            "hostname pipelined1\ninterface Loopback1\n ip address 2.2.2.2 255.255.255.255\n!\n");
+    Batfish batfish =
+        BatfishTestUtils.getBatfishFromTestrigText(
+            TestrigText.builder().setConfigurationText(configMap).build(), _folder);
+    batfish.getSettings().setPipelineConfigurations(true);
+    Map<String, Configuration> configs = batfish.loadConfigurations();
+
+    // As without pipelining, neither of the files with a duplicate hostname keeps it
+    assertThat(configs.keySet(), not(hasItem("pipelined1")));
+    assertThat(configs.keySet(), hasItem("pipelined2"));
+  }
+
   @Test
   public void testUnusableVrrpHandledCorrectly() throws Exception {
     String configurationText =
@@ -3,6 +3,8 @@ package org.batfish.main;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
@@ -13,6 +15,8 @@ import java.util.TreeMap;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.apache.commons.collections4.map.LRUMap;
+import org.batfish.bddreachability.BDDForwardingAnalysis;
+import org.batfish.bddreachability.BDDReachabilityAnalysisFactory;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.BfConsts;
 import org.batfish.common.NetworkSnapshot;
@@ -24,9 +28,11 @@ import org.batfish.datamodel.Configuration;
 import org.batfish.datamodel.ConfigurationFormat;
 import org.batfish.datamodel.DataPlane;
 import org.batfish.datamodel.Interface;
+import org.batfish.datamodel.Topology;
 import org.batfish.datamodel.collections.BgpAdvertisementsByVrf;
 import org.batfish.datamodel.collections.RoutesByVrf;
 import org.batfish.dataplane.ibdp.IncrementalDataPlanePlugin;
+import org.batfish.symbolic.bdd.BDDPacket;
 import org.junit.rules.TemporaryFolder;
 
 public class BatfishTestUtils {
@@ -43,6 +49,11 @@ public class BatfishTestUtils {
     return Collections.synchronizedMap(new LRUMap<>(4));
   }
 
+  private static Cache<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory>
+      makeBddReachabilityAnalysisFactoryCache() {
+    return CacheBuilder.newBuilder().maximumSize(2).build();
+  }
+
   private static Cache<NetworkSnapshot, DataPlane> makeDataPlaneCache() {
     return CacheBuilder.newBuilder().maximumSize(2).build();
   }
@@ -76,7 +87,8 @@ public class BatfishTestUtils {
             makeDataPlaneCache(),
             makeDataPlaneCache(),
             makeEnvBgpCache(),
-            makeEnvRouteCache());
+            makeEnvRouteCache(),
+            makeBddReachabilityAnalysisFactoryCache());
     if (!configurations.isEmpty()) {
       Batfish.serializeAsJson(
           settings.getBaseTestrigSettings().getEnvironmentSettings().getSerializedTopologyPath(),
@@ -90,6 +102,9 @@ public class BatfishTestUtils {
   private static Batfish initBatfish(
       @Nonnull SortedMap<String, Configuration> baseConfigs,
       @Nonnull SortedMap<String, Configuration> deltaConfigs,
+      @Nonnull
+          Cache<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory>
+              bddReachabilityAnalysisFactories,
       @Nonnull TemporaryFolder tempFolder)
       throws IOException {
     Settings settings = new Settings(new String[] {});
@@ -125,7 +140,8 @@ public class BatfishTestUtils {
             makeDataPlaneCache(),
             makeDataPlaneCache(),
             makeEnvBgpCache(),
-            makeEnvRouteCache());
+            makeEnvRouteCache(),
+            bddReachabilityAnalysisFactories);
     batfish.getSettings().setDiffQuestion(true);
     if (!baseConfigs.isEmpty()) {
       Batfish.serializeAsJson(
@@ -211,7 +227,8 @@ public class BatfishTestUtils {
             makeDataPlaneCache(),
             makeDataPlaneCache(),
             makeEnvBgpCache(),
-            makeEnvRouteCache());
+            makeEnvRouteCache(),
+            makeBddReachabilityAnalysisFactoryCache());
     registerDataPlanePlugins(batfish);
     return batfish;
   }
@@ -261,7 +278,44 @@ public class BatfishTestUtils {
       @Nonnull SortedMap<String, Configuration> deltaConfigs,
       @Nonnull TemporaryFolder tempFolder)
       throws IOException {
-    return initBatfish(baseConfigs, deltaConfigs, tempFolder);
+    return initBatfish(
+        baseConfigs, deltaConfigs, makeBddReachabilityAnalysisFactoryCache(), tempFolder);
+  }
+
+  /**
+   * Get a new Batfish instance with given base and delta configurations that caches its BDD
+   * reachability analysis factories in {@code bddReachabilityAnalysisFactories}, tempFolder should
+   * be present for non-empty configurations
+   *
+   * @param baseConfigs Map of all Configuration Name -&gt; Configuration Object
+   * @param deltaConfigs Map of all Configuration Name -&gt; Configuration Object
+   * @param bddReachabilityAnalysisFactories Cache of BDD reachability analysis factories
+   * @param tempFolder Temporary folder to be used to files required for Batfish
+   * @return New Batfish instance
+   */
+  public static Batfish getBatfish(
+      @Nonnull SortedMap<String, Configuration> baseConfigs,
+      @Nonnull SortedMap<String, Configuration> deltaConfigs,
+      @Nonnull
+          Cache<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory>
+              bddReachabilityAnalysisFactories,
+      @Nonnull TemporaryFolder tempFolder)
+      throws IOException {
+    return initBatfish(baseConfigs, deltaConfigs, bddReachabilityAnalysisFactories, tempFolder);
+  }
+
+  /** Returns a {@link BDDReachabilityAnalysisFactory} of an empty network over {@code pkt}. */
+  public static BDDReachabilityAnalysisFactory getEmptyBddReachabilityAnalysisFactory(
+      BDDPacket pkt) {
+    return new BDDReachabilityAnalysisFactory(
+        pkt,
+        ImmutableMap.of(),
+        new BDDForwardingAnalysis(
+            pkt,
+            ImmutableMap.of(),
+            ImmutableSortedMap.of(),
+            ImmutableMap.of(),
+            new Topology(ImmutableSortedSet.of())));
   }
 
   public static Batfish getBatfishForTextConfigs(
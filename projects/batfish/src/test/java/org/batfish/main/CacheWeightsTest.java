@@ -0,0 +1,80 @@
+package org.batfish.main;
+
+import static org.batfish.main.BatfishTestUtils.getEmptyBddReachabilityAnalysisFactory;
+import static org.batfish.main.CacheWeights.BDD_NODES_PER_KB;
+import static org.batfish.main.CacheWeights.CONFIGURATION_KB;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableSortedMap;
+import java.util.SortedMap;
+import java.util.function.Supplier;
+import org.batfish.bddreachability.BDDReachabilityAnalysisFactory;
+import org.batfish.common.NetworkSnapshot;
+import org.batfish.common.Snapshot;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.symbolic.bdd.BDDPacket;
+import org.junit.Test;
+
+/** Tests of {@link CacheWeights}. */
+public class CacheWeightsTest {
+
+  @Test
+  public void testMaxWeight() {
+    // 1 GiB heap, half of it for caches, a quarter of that for this cache: 128 MiB in KB
+    assertThat(CacheWeights.maxWeight(1L << 30, 50, 0.25), equalTo(128L * 1024));
+    // never zero, so that a cache can always hold something
+    assertThat(CacheWeights.maxWeight(0L, 50, 0.25), equalTo(1L));
+  }
+
+  @Test
+  public void testWeighBddPacket() {
+    BDDPacket pkt = new BDDPacket();
+    assertThat(
+        CacheWeights.weighBddPacket(pkt),
+        equalTo(pkt.getFactory().getNodeTableSize() / BDD_NODES_PER_KB));
+  }
+
+  @Test
+  public void testWeighBddReachabilityAnalysisFactory() {
+    NetworkSnapshot base = new NetworkSnapshot("network", new Snapshot("base", "env"));
+    NetworkSnapshot delta = new NetworkSnapshot("network", new Snapshot("delta", "env"));
+    BDDPacket pkt = new BDDPacket();
+    BDDReachabilityAnalysisFactory factory = getEmptyBddReachabilityAnalysisFactory(pkt);
+
+    assertThat(
+        CacheWeights.weighBddReachabilityAnalysisFactory(
+            BddReachabilityAnalysisKey.of(base), factory),
+        equalTo(CacheWeights.weighBddPacket(pkt)));
+    // the packet is charged to the factory of base
+    assertThat(
+        CacheWeights.weighBddReachabilityAnalysisFactory(
+            BddReachabilityAnalysisKey.overPacketOf(delta, base), factory),
+        equalTo(1));
+  }
+
+  @Test
+  public void testWeighConfigurationsDoesNotLoad() {
+    Supplier<Configuration> loader =
+        () -> {
+          throw new AssertionError("configuration should not be loaded");
+        };
+    SortedMap<String, Supplier<Configuration>> loaders =
+        ImmutableSortedMap.of("a", loader, "b", loader);
+    LazyConfigurationMap configurations =
+        new LazyConfigurationMap(loaders, c -> {}, c -> false, m -> {});
+
+    assertThat(CacheWeights.weighConfigurations(configurations), equalTo(2 * CONFIGURATION_KB));
+    assertThat(configurations.getNumLoaded(), equalTo(0));
+  }
+
+  @Test
+  public void testWeighConfigurations() {
+    assertThat(
+        CacheWeights.weighConfigurations(
+            ImmutableSortedMap.of("a", new Configuration("a", ConfigurationFormat.CISCO_IOS))),
+        equalTo(CONFIGURATION_KB));
+    assertThat(CacheWeights.weighConfigurations(ImmutableSortedMap.of()), equalTo(1));
+  }
+}
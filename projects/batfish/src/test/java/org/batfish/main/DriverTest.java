@@ -0,0 +1,98 @@
+package org.batfish.main;
+
+import static org.batfish.main.BatfishTestUtils.getEmptyBddReachabilityAnalysisFactory;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.cache.Cache;
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.javabdd.BDD;
+import org.batfish.bddreachability.BDDReachabilityAnalysisFactory;
+import org.batfish.common.NetworkSnapshot;
+import org.batfish.common.Snapshot;
+import org.batfish.symbolic.bdd.BDDPacket;
+import org.junit.Test;
+
+/** Tests of {@link Driver}. */
+public class DriverTest {
+
+  private static final NetworkSnapshot BASE =
+      new NetworkSnapshot("network", new Snapshot("base", "env"));
+
+  private static final NetworkSnapshot DELTA1 =
+      new NetworkSnapshot("network", new Snapshot("delta1", "env"));
+
+  private static final NetworkSnapshot DELTA2 =
+      new NetworkSnapshot("network", new Snapshot("delta2", "env"));
+
+  @Test
+  public void testBddReachabilityAnalysisFactoryCacheChargesPacketOnce() {
+    BDDPacket pkt = new BDDPacket();
+    BDDReachabilityAnalysisFactory base = getEmptyBddReachabilityAnalysisFactory(pkt);
+    Cache<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory> cache =
+        Driver.buildBddReachabilityAnalysisFactoryCache(CacheWeights.weighBddPacket(pkt) + 2);
+
+    cache.put(BddReachabilityAnalysisKey.of(BASE), base);
+    cache.put(
+        BddReachabilityAnalysisKey.overPacketOf(DELTA1, BASE),
+        getEmptyBddReachabilityAnalysisFactory(pkt));
+    cache.put(
+        BddReachabilityAnalysisKey.overPacketOf(DELTA2, BASE),
+        getEmptyBddReachabilityAnalysisFactory(pkt));
+
+    // if each factory were charged for the packet, any two of them would exceed the budget
+    assertThat(cache.size(), equalTo(3L));
+  }
+
+  @Test
+  public void testBddReachabilityAnalysisFactoryCacheReweighEvicts() {
+    BDDPacket pkt = new BDDPacket();
+    BDDReachabilityAnalysisFactory base = getEmptyBddReachabilityAnalysisFactory(pkt);
+    BddReachabilityAnalysisKey baseKey = BddReachabilityAnalysisKey.of(BASE);
+    BddReachabilityAnalysisKey deltaKey = BddReachabilityAnalysisKey.overPacketOf(DELTA1, BASE);
+    Cache<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory> cache =
+        Driver.buildBddReachabilityAnalysisFactoryCache(CacheWeights.weighBddPacket(pkt) + 1);
+    cache.put(baseKey, base);
+    cache.put(deltaKey, getEmptyBddReachabilityAnalysisFactory(pkt));
+
+    // grow the node table of the packet, as queries do
+    int nodeTableSize = pkt.getFactory().getNodeTableSize();
+    List<BDD> bdds = new ArrayList<>();
+    for (int i = 0; pkt.getFactory().getNodeTableSize() == nodeTableSize; i++) {
+      bdds.add(pkt.getDstIp().value(i));
+    }
+
+    // the weight computed when the factory was cached is stale
+    assertThat(cache.getIfPresent(baseKey), sameInstance(base));
+
+    cache.asMap().replace(baseKey, base, base);
+
+    // the packet no longer fits, and the factory over it goes with the factory charged for it
+    assertThat(cache.getIfPresent(baseKey), nullValue());
+    assertThat(cache.getIfPresent(deltaKey), nullValue());
+  }
+
+  @Test
+  public void testBddReachabilityAnalysisFactoryCacheRemovesFactoriesOverRemovedPacket() {
+    BDDPacket basePkt = new BDDPacket();
+    BDDPacket deltaPkt = new BDDPacket();
+    BddReachabilityAnalysisKey baseKey = BddReachabilityAnalysisKey.of(BASE);
+    BddReachabilityAnalysisKey deltaOverBaseKey =
+        BddReachabilityAnalysisKey.overPacketOf(DELTA1, BASE);
+    BddReachabilityAnalysisKey deltaKey = BddReachabilityAnalysisKey.of(DELTA1);
+    BDDReachabilityAnalysisFactory delta = getEmptyBddReachabilityAnalysisFactory(deltaPkt);
+    Cache<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory> cache =
+        Driver.buildBddReachabilityAnalysisFactoryCache(Long.MAX_VALUE);
+    cache.put(baseKey, getEmptyBddReachabilityAnalysisFactory(basePkt));
+    cache.put(deltaOverBaseKey, getEmptyBddReachabilityAnalysisFactory(basePkt));
+    cache.put(deltaKey, delta);
+
+    cache.invalidate(baseKey);
+
+    assertThat(cache.getIfPresent(deltaOverBaseKey), nullValue());
+    assertThat(cache.getIfPresent(deltaKey), sameInstance(delta));
+  }
+}
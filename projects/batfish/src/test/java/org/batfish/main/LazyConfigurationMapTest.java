@@ -0,0 +1,101 @@
+package org.batfish.main;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableSortedMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LazyConfigurationMapTest {
+
+  private SortedMap<String, Supplier<Configuration>> _loaders;
+
+  private AtomicInteger _numLoads;
+
+  private Set<String> _prepared;
+
+  private AtomicInteger _numPrepareAll;
+
+  @Before
+  public void setup() {
+    _numLoads = new AtomicInteger();
+    _prepared = new HashSet<>();
+    _numPrepareAll = new AtomicInteger();
+    ImmutableSortedMap.Builder<String, Supplier<Configuration>> loaders =
+        ImmutableSortedMap.naturalOrder();
+    for (String hostname : new String[] {"a", "b", "c"}) {
+      loaders.put(
+          hostname,
+          () -> {
+            _numLoads.incrementAndGet();
+            return new Configuration(hostname, ConfigurationFormat.CISCO_IOS);
+          });
+    }
+    _loaders = loaders.build();
+  }
+
+  private LazyConfigurationMap lazyMap(String needsAllNodes) {
+    return new LazyConfigurationMap(
+        _loaders,
+        c -> {
+          synchronized (_prepared) {
+            _prepared.add(c.getHostname());
+          }
+        },
+        c -> c.getHostname().equals(needsAllNodes),
+        configs -> _numPrepareAll.incrementAndGet());
+  }
+
+  @Test
+  public void testGetLoadsOnlyRequestedNode() {
+    LazyConfigurationMap configs = lazyMap("none");
+
+    assertThat(configs.keySet(), contains("a", "b", "c"));
+    assertThat(configs.size(), equalTo(3));
+    assertThat(configs.containsKey("b"), equalTo(true));
+    assertThat(_numLoads.get(), equalTo(0));
+
+    Configuration b = configs.get("b");
+    assertThat(b.getHostname(), equalTo("b"));
+    assertThat(configs.get("b"), equalTo(b));
+    assertThat(configs.get("d"), nullValue());
+    assertThat(_numLoads.get(), equalTo(1));
+    assertThat(_prepared, contains("b"));
+    assertThat(_numPrepareAll.get(), equalTo(0));
+  }
+
+  @Test
+  public void testOtherAccessLoadsAll() {
+    LazyConfigurationMap configs = lazyMap("none");
+    Configuration b = configs.get("b");
+
+    assertThat(configs.values().size(), equalTo(3));
+    // already-loaded configurations are reused
+    assertThat(configs.get("b") == b, equalTo(true));
+    assertThat(_numLoads.get(), equalTo(3));
+    assertThat(configs.getNumLoaded(), equalTo(3));
+    assertThat(_numPrepareAll.get(), equalTo(1));
+  }
+
+  @Test
+  public void testNeedsAllNodes() {
+    LazyConfigurationMap configs = lazyMap("c");
+
+    configs.get("a");
+    assertThat(_numPrepareAll.get(), equalTo(0));
+
+    assertThat(configs.get("c").getHostname(), equalTo("c"));
+    assertThat(_numLoads.get(), equalTo(3));
+    assertThat(_numPrepareAll.get(), equalTo(1));
+  }
+}
@@ -0,0 +1,293 @@
+package org.batfish.main;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.batfish.common.BatfishLogger;
+import org.batfish.config.Settings;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.grammar.BatfishCombinedParser;
+import org.batfish.grammar.DfaCache;
+import org.batfish.grammar.cisco.CiscoCombinedParser;
+import org.batfish.grammar.cisco.CiscoParser;
+import org.batfish.grammar.flatjuniper.FlatJuniperCombinedParser;
+import org.batfish.grammar.flatvyos.FlatVyosCombinedParser;
+import org.batfish.grammar.iptables.IptablesCombinedParser;
+import org.batfish.grammar.juniper.JuniperCombinedParser;
+import org.batfish.grammar.mrv.MrvCombinedParser;
+import org.batfish.grammar.palo_alto.PaloAltoCombinedParser;
+import org.batfish.grammar.vyos.VyosCombinedParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests of {@link ParserWarmup}. */
+public class ParserWarmupTest {
+
+  private static final String CISCO_TEXT =
+      String.join(
+          "\n",
+          "hostname warmup",
+          "!",
+          "interface GigabitEthernet0/0",
+          " description uplink",
+          " ip address 10.0.0.1 255.255.255.254",
+          " ip access-group ACL_IN in",
+          "!",
+          "ip access-list extended ACL_IN",
+          " permit tcp any host 10.0.0.1 eq 22",
+          " deny ip any any",
+          "!",
+          "ip prefix-list PL seq 5 permit 10.0.0.0/8 le 24",
+          "route-map RM permit 10",
+          " match ip address prefix-list PL",
+          "!",
+          "router bgp 65000",
+          " neighbor 10.0.0.0 remote-as 65001",
+          " neighbor 10.0.0.0 route-map RM in",
+          "!",
+          "");
+
+  @Rule public TemporaryFolder _folder = new TemporaryFolder();
+
+  /** Returns a parser of a sample of each grammar whose DFAs workers load, in the same order */
+  private static List<BatfishCombinedParser<?, ?>> sampleParsers(Settings settings) {
+    return ImmutableList.of(
+        new CiscoCombinedParser(CISCO_TEXT, settings, ConfigurationFormat.CISCO_IOS),
+        new FlatJuniperCombinedParser(
+            String.join(
+                "\n",
+                "#",
+                "set system host-name r1",
+                "set routing-options static route 1.0.0.0/8 next-hop 10.0.0.1",
+                ""),
+            settings,
+            null),
+        new FlatVyosCombinedParser(
+            String.join(
+                "\n",
+                "set system host-name r1",
+                "set interfaces ethernet eth0 address 10.0.0.1/24",
+                ""),
+            settings),
+        new IptablesCombinedParser(
+            String.join(
+                "\n",
+                "*mangle",
+                ":PREROUTING DROP [0:0]",
+                "-A PREROUTING -p udp --dport 53 -j ACCEPT",
+                "COMMIT",
+                ""),
+            settings),
+        new JuniperCombinedParser(
+            String.join("\n", "#", "system {", "    host-name r1;", "}", ""), settings),
+        new MrvCombinedParser(
+            String.join(
+                "\n",
+                "System.ConfigVersion.1 TYPE INTEGER VALUE \"1\"",
+                "System.SystemName.1 TYPE STRING VALUE \"r1\"",
+                ""),
+            settings),
+        new PaloAltoCombinedParser(
+            String.join(
+                "\n",
+                "set deviceconfig system hostname r1",
+                "set network interface ethernet ethernet1/1 layer3 ip 1.1.1.1/24",
+                ""),
+            settings,
+            null),
+        new VyosCombinedParser(
+            String.join(
+                "\n",
+                "system {",
+                "    config-management {",
+                "        commit-revisions 20",
+                "    }",
+                "}",
+                ""),
+            settings));
+  }
+
+  private static List<Recognizer<?, ?>> recognizers(List<BatfishCombinedParser<?, ?>> parsers) {
+    return parsers
+        .stream()
+        .flatMap(p -> Stream.<Recognizer<?, ?>>of(p.getLexer(), p.getParser()))
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  private static List<String> parseTrees(List<BatfishCombinedParser<?, ?>> parsers) {
+    return parsers
+        .stream()
+        .map(p -> p.parse().toStringTree(p.getParser()))
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  private static Settings settings() {
+    Settings settings = new Settings();
+    settings.setLogger(new BatfishLogger(BatfishLogger.LEVELSTR_OUTPUT, false));
+    return settings;
+  }
+
+  private static void clearDfas(BatfishCombinedParser<?, ?> parser) {
+    parser.getLexer().getInterpreter().clearDFA();
+    parser.getParser().getInterpreter().clearDFA();
+  }
+
+  /** Returns the number of states of the lexer and parser DFAs of the grammar of a parser */
+  private static int countStates(BatfishCombinedParser<?, ?> parser) {
+    LexerATNSimulator lexer = parser.getLexer().getInterpreter();
+    ParserATNSimulator p = parser.getParser().getInterpreter();
+    return Arrays.stream(lexer.decisionToDFA).mapToInt(d -> d.states.size()).sum()
+        + Arrays.stream(p.decisionToDFA).mapToInt(d -> d.states.size()).sum();
+  }
+
+  @Test
+  public void testWarmUpAndLoad() throws IOException {
+    Settings settings = settings();
+    Path warmupDir = _folder.newFolder().toPath();
+    Files.write(warmupDir.resolve("warmup.cfg"), CISCO_TEXT.getBytes(StandardCharsets.UTF_8));
+    Path dfaCache = _folder.getRoot().toPath().resolve("dfas");
+
+    CiscoCombinedParser cold =
+        new CiscoCombinedParser(CISCO_TEXT, settings, ConfigurationFormat.CISCO_IOS);
+    clearDfas(cold);
+    String coldTree = cold.parse().toStringTree(cold.getParser());
+    ParserWarmup.warmUp(settings, warmupDir, dfaCache);
+    int states = countStates(cold);
+
+    clearDfas(cold);
+    assertThat(states, greaterThan(0));
+    assertThat(ParserWarmup.load(settings, dfaCache), equalTo(states));
+    CiscoCombinedParser warm =
+        new CiscoCombinedParser(CISCO_TEXT, settings, ConfigurationFormat.CISCO_IOS);
+    String warmTree = warm.parse().toStringTree(warm.getParser());
+
+    // the loaded DFAs make every prediction of the first parse, with the same result
+    assertThat(countStates(warm), equalTo(states));
+    assertThat(warmTree, equalTo(coldTree));
+    // DFAs that are no longer empty are not replaced
+    assertThat(ParserWarmup.load(settings, dfaCache), equalTo(0));
+  }
+
+  /**
+   * Rewrites the DFA cache {@code file}, truncating the saved DFAs of the recognizer of class {@code
+   * key} as if the file had been written by a runtime with different internals
+   */
+  private static void truncateDfas(Path file, String key) throws IOException {
+    List<String> keys = new ArrayList<>();
+    List<String> hashes = new ArrayList<>();
+    List<byte[]> bodies = new ArrayList<>();
+    int version;
+    try (InputStream in = Files.newInputStream(file);
+        DataInputStream dis = new DataInputStream(new LZ4FrameInputStream(in))) {
+      version = dis.readInt();
+      int numRecognizers = dis.readInt();
+      for (int i = 0; i < numRecognizers; i++) {
+        keys.add(dis.readUTF());
+        hashes.add(dis.readUTF());
+        byte[] body = new byte[dis.readInt()];
+        dis.readFully(body);
+        bodies.add(keys.get(i).equals(key) ? Arrays.copyOf(body, body.length / 2) : body);
+      }
+    }
+    try (OutputStream out = Files.newOutputStream(file);
+        DataOutputStream dos = new DataOutputStream(new LZ4FrameOutputStream(out))) {
+      dos.writeInt(version);
+      dos.writeInt(keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+        dos.writeUTF(keys.get(i));
+        dos.writeUTF(hashes.get(i));
+        dos.writeInt(bodies.get(i).length);
+        dos.write(bodies.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testSampleParsersCoverLoadedGrammars() {
+    Settings settings = settings();
+    List<String> loaded =
+        ParserWarmup.getRecognizers(settings)
+            .stream()
+            .map(r -> r.getClass().getName())
+            .collect(Collectors.toList());
+    List<String> sampled =
+        recognizers(sampleParsers(settings))
+            .stream()
+            .map(r -> r.getClass().getName())
+            .collect(Collectors.toList());
+
+    assertThat(sampled, equalTo(loaded));
+  }
+
+  @Test
+  public void testLoadMatchesColdParseOfEachGrammar() throws IOException {
+    Settings settings = settings();
+    Path dfaCache = _folder.getRoot().toPath().resolve("dfas");
+
+    List<BatfishCombinedParser<?, ?>> cold = sampleParsers(settings);
+    cold.forEach(ParserWarmupTest::clearDfas);
+    List<String> coldTrees = parseTrees(cold);
+    List<Integer> coldStates =
+        cold.stream().map(ParserWarmupTest::countStates).collect(Collectors.toList());
+    DfaCache.save(recognizers(cold), dfaCache);
+    cold.forEach(ParserWarmupTest::clearDfas);
+
+    assertThat(ParserWarmup.load(settings, dfaCache), greaterThan(0));
+    List<BatfishCombinedParser<?, ?>> warm = sampleParsers(settings);
+    // the DFAs of every grammar are loaded
+    for (int i = 0; i < warm.size(); i++) {
+      assertThat(countStates(warm.get(i)), equalTo(coldStates.get(i)));
+    }
+    // every grammar parses its sample to the same tree from the loaded DFAs as from empty ones
+    assertThat(parseTrees(warm), equalTo(coldTrees));
+    for (int i = 0; i < warm.size(); i++) {
+      assertThat(countStates(warm.get(i)), equalTo(coldStates.get(i)));
+    }
+  }
+
+  @Test
+  public void testLoadUnreadableDfas() throws IOException {
+    Settings settings = settings();
+    Path dfaCache = _folder.getRoot().toPath().resolve("dfas");
+
+    List<BatfishCombinedParser<?, ?>> cold = sampleParsers(settings);
+    cold.forEach(ParserWarmupTest::clearDfas);
+    List<String> coldTrees = parseTrees(cold);
+    DfaCache.save(recognizers(cold), dfaCache);
+    cold.forEach(ParserWarmupTest::clearDfas);
+    truncateDfas(dfaCache, CiscoParser.class.getName());
+
+    assertThat(ParserWarmup.load(settings, dfaCache), greaterThan(0));
+    List<BatfishCombinedParser<?, ?>> warm = sampleParsers(settings);
+    CiscoCombinedParser cisco = (CiscoCombinedParser) warm.get(0);
+
+    // the Cisco parser DFAs are left empty, and built while parsing as without the cache
+    assertThat(
+        Arrays.stream(cisco.getParser().getInterpreter().decisionToDFA)
+            .mapToInt(d -> d.states.size())
+            .sum(),
+        equalTo(0));
+    assertThat(parseTrees(warm), equalTo(coldTrees));
+  }
+}
@@ -0,0 +1,93 @@
+package org.batfish.main;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.batfish.common.plugin.PluginConsumer;
+import org.batfish.common.plugin.PluginConsumer.Format;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentedObjectFileTest {
+  /** A class loader recording the names of the classes it loads */
+  private static final class RecordingClassLoader extends ClassLoader {
+    private final Set<String> _loaded = ConcurrentHashMap.newKeySet();
+
+    private RecordingClassLoader() {
+      super(SegmentedObjectFileTest.class.getClassLoader());
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      _loaded.add(name);
+      return super.loadClass(name, resolve);
+    }
+  }
+
+  @Rule public TemporaryFolder _folder = new TemporaryFolder();
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    Path file = _folder.newFile().toPath();
+    SegmentedObjectFile.write(
+        file,
+        ImmutableMap.of(
+            "node2",
+            new Configuration("node2", ConfigurationFormat.JUNIPER),
+            "node1",
+            new Configuration("node1", ConfigurationFormat.CISCO_IOS)),
+        false);
+
+    SegmentedObjectFile segments =
+        SegmentedObjectFile.open(file, Thread.currentThread().getContextClassLoader());
+
+    assertThat(segments.getNames(), contains("node1", "node2"));
+    assertThat(
+        segments.read("node2", Configuration.class).getConfigurationFormat(),
+        equalTo(ConfigurationFormat.JUNIPER));
+    assertThat(segments.read("node1", Configuration.class).getHostname(), equalTo("node1"));
+    assertThat(segments.read("node3", Configuration.class), nullValue());
+  }
+
+  @Test
+  public void testDetectFormat() throws IOException {
+    Path file = _folder.newFile().toPath();
+    SegmentedObjectFile.write(file, ImmutableMap.of(), false);
+
+    try (PushbackInputStream stream =
+        new PushbackInputStream(
+            Files.newInputStream(file), PluginConsumer.DEFAULT_HEADER_LENGTH_BYTES)) {
+      assertThat(PluginConsumer.detectFormat(stream), equalTo(Format.SEGMENTED));
+    }
+  }
+
+  @Test
+  public void testReadWithClassLoader() throws IOException {
+    for (boolean serializeToText : new boolean[] {false, true}) {
+      Path file = _folder.newFile().toPath();
+      SegmentedObjectFile.write(
+          file,
+          ImmutableMap.of("node1", new Configuration("node1", ConfigurationFormat.CISCO_IOS)),
+          serializeToText);
+      RecordingClassLoader classLoader = new RecordingClassLoader();
+
+      SegmentedObjectFile segments = SegmentedObjectFile.open(file, classLoader);
+
+      assertThat(segments.read("node1", Configuration.class).getHostname(), equalTo("node1"));
+      assertThat(classLoader._loaded, hasItem(Configuration.class.getName()));
+    }
+  }
+}
@@ -8,15 +8,23 @@ import static org.batfish.main.BatfishTestUtils.getBatfish;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
 import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.regex.Pattern;
+import org.batfish.bddreachability.BDDReachabilityAnalysisFactory;
 import org.batfish.datamodel.Configuration;
 import org.batfish.datamodel.Configuration.Builder;
 import org.batfish.datamodel.Flow;
@@ -31,6 +39,7 @@ import org.batfish.datamodel.StaticRoute;
 import org.batfish.datamodel.Vrf;
 import org.batfish.datamodel.answers.AnswerElement;
 import org.batfish.main.Batfish;
+import org.batfish.main.BddReachabilityAnalysisKey;
 import org.batfish.question.ReachabilityParameters;
 import org.batfish.specifier.IntersectionLocationSpecifier;
 import org.batfish.specifier.NameRegexInterfaceLocationSpecifier;
@@ -91,9 +100,17 @@ public class ReducedReachabilityTest {
   }
 
   private Batfish initBatfish() throws IOException {
+    return initBatfish(CacheBuilder.newBuilder().maximumSize(2).build());
+  }
+
+  private Batfish initBatfish(
+      Cache<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory>
+          bddReachabilityAnalysisFactories)
+      throws IOException {
     SortedMap<String, Configuration> baseConfigs = generateConfigs(false);
     SortedMap<String, Configuration> deltaConfigs = generateConfigs(true);
-    Batfish batfish = getBatfish(baseConfigs, deltaConfigs, _folder);
+    Batfish batfish =
+        getBatfish(baseConfigs, deltaConfigs, bddReachabilityAnalysisFactories, _folder);
 
     batfish.pushBaseEnvironment();
     batfish.computeDataPlane(true);
@@ -146,4 +163,48 @@ public class ReducedReachabilityTest {
     assertThat(flows, hasSize(1));
     assertThat(flows, contains(allOf(hasSrcIp(NODE1_LOOPBACK_IP), hasDstIp(NODE2_ALTERNATE_IP))));
   }
+
+  /** Asking again reuses the cached reachability graphs of both snapshots. */
+  @Test
+  public void testBDDReducedReachabilityCached() throws IOException {
+    Cache<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory> factories =
+        CacheBuilder.newBuilder().recordStats().build();
+    Batfish batfish = initBatfish(factories);
+    Set<Flow> flows = batfish.bddReducedReachability();
+    // one factory per snapshot, each built once
+    assertThat(factories.stats().missCount(), equalTo(2L));
+    Map<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory> cached =
+        ImmutableMap.copyOf(factories.asMap());
+    assertThat(cached.entrySet(), hasSize(2));
+
+    assertThat(batfish.bddReducedReachability(), equalTo(flows));
+    assertThat(batfish.bddMultipathConsistency(), empty());
+    assertThat(batfish.bddReducedReachability(), equalTo(flows));
+
+    assertThat(factories.stats().missCount(), equalTo(2L));
+    assertThat(factories.stats().hitCount(), equalTo(5L));
+    cached.forEach(
+        (key, factory) -> assertThat(factories.getIfPresent(key), sameInstance(factory)));
+  }
+
+  /** The factory of delta over its own packet is kept beside the one over the packet of base. */
+  @Test
+  public void testBDDReducedReachabilityKeepsDeltaFactory() throws IOException {
+    Cache<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory> factories =
+        CacheBuilder.newBuilder().recordStats().build();
+    Batfish batfish = initBatfish(factories);
+    batfish.pushDeltaEnvironment();
+    assertThat(batfish.bddMultipathConsistency(), empty());
+    batfish.popEnvironment();
+    Map<BddReachabilityAnalysisKey, BDDReachabilityAnalysisFactory> deltaOnly =
+        ImmutableMap.copyOf(factories.asMap());
+    assertThat(deltaOnly.entrySet(), hasSize(1));
+
+    batfish.bddReducedReachability();
+
+    // base, delta, and delta over the packet of base
+    assertThat(factories.asMap().entrySet(), hasSize(3));
+    deltaOnly.forEach(
+        (key, factory) -> assertThat(factories.getIfPresent(key), sameInstance(factory)));
+  }
 }
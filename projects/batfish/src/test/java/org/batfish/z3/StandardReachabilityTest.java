@@ -0,0 +1,200 @@
+package org.batfish.z3;
+
+import static org.batfish.datamodel.ConfigurationFormat.CISCO_IOS;
+import static org.batfish.datamodel.FlowDisposition.ACCEPTED;
+import static org.batfish.datamodel.FlowDisposition.DENIED_IN;
+import static org.batfish.datamodel.FlowDisposition.NO_ROUTE;
+import static org.batfish.main.BatfishTestUtils.getBatfish;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.regex.Pattern;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.FlowDisposition;
+import org.batfish.datamodel.FlowHistory;
+import org.batfish.datamodel.FlowTrace;
+import org.batfish.datamodel.ForwardingAction;
+import org.batfish.datamodel.HeaderSpace;
+import org.batfish.datamodel.InterfaceAddress;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.IpAccessList;
+import org.batfish.datamodel.IpAccessListLine;
+import org.batfish.datamodel.IpProtocol;
+import org.batfish.datamodel.NetworkFactory;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.StaticRoute;
+import org.batfish.datamodel.SubRange;
+import org.batfish.datamodel.Vrf;
+import org.batfish.datamodel.answers.AnswerElement;
+import org.batfish.main.Batfish;
+import org.batfish.question.ReachabilityParameters;
+import org.batfish.specifier.IntersectionLocationSpecifier;
+import org.batfish.specifier.NameRegexInterfaceLocationSpecifier;
+import org.batfish.specifier.NameRegexNodeSpecifier;
+import org.batfish.specifier.NodeNameRegexInterfaceLocationSpecifier;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that standard reachability questions answered with forward BDD reachability find the same
+ * flows as with NoD.
+ */
+public class StandardReachabilityTest {
+  private static final String LOOPBACK = "Loopback0";
+  private static final String NODE1 = "node1";
+  private static final String NODE2 = "node2";
+  private static final Ip NODE2_ALTERNATE_IP = new Ip("2.2.2.2");
+  private static final Ip NOWHERE_IP = new Ip("3.3.3.3");
+  private static final String PHYSICAL = "FastEthernet0/0";
+
+  @Rule public TemporaryFolder _folder = new TemporaryFolder();
+
+  /*
+   * node1 routes 2.2.2.2 to node2, which drops TCP packets to port 22 coming in from node1. Neither
+   * node has a route to 3.3.3.3.
+   */
+  private static SortedMap<String, Configuration> generateConfigs() {
+    NetworkFactory nf = new NetworkFactory();
+    Configuration.Builder cb = nf.configurationBuilder().setConfigurationFormat(CISCO_IOS);
+    Vrf.Builder vb = nf.vrfBuilder().setName(Configuration.DEFAULT_VRF_NAME);
+    org.batfish.datamodel.Interface.Builder ib = nf.interfaceBuilder().setActive(true);
+
+    Configuration node1 = cb.setHostname(NODE1).build();
+    Vrf v1 = vb.setOwner(node1).build();
+    ib.setOwner(node1).setVrf(v1);
+    ib.setName(LOOPBACK).setAddresses(new InterfaceAddress("1.1.1.1/32")).build();
+    ib.setName(PHYSICAL).setAddresses(new InterfaceAddress("1.1.1.2/31")).build();
+    v1.setStaticRoutes(
+        ImmutableSortedSet.of(
+            StaticRoute.builder()
+                .setNetwork(Prefix.parse("2.2.2.2/32"))
+                .setNextHopInterface(PHYSICAL)
+                .build()));
+
+    Configuration node2 = cb.setHostname(NODE2).build();
+    Vrf v2 = vb.setOwner(node2).build();
+    IpAccessList denySsh =
+        nf.aclBuilder()
+            .setOwner(node2)
+            .setLines(
+                ImmutableList.of(
+                    IpAccessListLine.rejectingHeaderSpace(
+                        HeaderSpace.builder()
+                            .setIpProtocols(ImmutableList.of(IpProtocol.TCP))
+                            .setDstPorts(ImmutableList.of(new SubRange(22, 22)))
+                            .build()),
+                    IpAccessListLine.ACCEPT_ALL))
+            .build();
+    ib.setOwner(node2).setVrf(v2);
+    ib.setName(PHYSICAL)
+        .setAddresses(new InterfaceAddress("1.1.1.3/31"), new InterfaceAddress("2.2.2.2/32"))
+        .setIncomingFilter(denySsh)
+        .build();
+    v2.setStaticRoutes(
+        ImmutableSortedSet.of(
+            StaticRoute.builder()
+                .setNetwork(Prefix.parse("1.1.1.1/32"))
+                .setNextHopInterface(PHYSICAL)
+                .build()));
+
+    return ImmutableSortedMap.of(NODE1, node1, NODE2, node2);
+  }
+
+  private AnswerElement answer(ReachabilityParameters parameters, boolean bddReachability)
+      throws IOException {
+    Batfish batfish = getBatfish(generateConfigs(), _folder);
+    batfish.getSettings().setBddReachability(bddReachability);
+    batfish.computeDataPlane(false);
+    return batfish.standard(parameters);
+  }
+
+  /** ingress node --> dispositions of the traces of its flows in {@code answer} */
+  private static Map<String, Set<FlowDisposition>> dispositions(AnswerElement answer) {
+    assertThat(answer, instanceOf(FlowHistory.class));
+    return ((FlowHistory) answer)
+        .getTraces()
+        .values()
+        .stream()
+        .collect(
+            ImmutableMap.toImmutableMap(
+                info -> info.getFlow().getIngressNode(),
+                info ->
+                    info.getPaths()
+                        .values()
+                        .stream()
+                        .flatMap(Set::stream)
+                        .map(FlowTrace::getDisposition)
+                        .collect(ImmutableSet.toImmutableSet())));
+  }
+
+  /** Asserts the flows found with BDDs and with NoD have {@code expected} dispositions. */
+  private void assertDispositions(
+      ReachabilityParameters parameters, Map<String, Set<FlowDisposition>> expected)
+      throws IOException {
+    assertThat(dispositions(answer(parameters, true)), equalTo(expected));
+    assertThat(dispositions(answer(parameters, false)), equalTo(expected));
+  }
+
+  private static ReachabilityParameters.Builder fromNode1Loopback() {
+    return ReachabilityParameters.builder()
+        .setFinalNodesSpecifier(new NameRegexNodeSpecifier(Pattern.compile(".*")))
+        .setSourceLocationSpecifier(
+            new IntersectionLocationSpecifier(
+                new NodeNameRegexInterfaceLocationSpecifier(Pattern.compile(NODE1)),
+                new NameRegexInterfaceLocationSpecifier(Pattern.compile(LOOPBACK))));
+  }
+
+  @Test
+  public void testAccepted() throws IOException {
+    assertDispositions(
+        fromNode1Loopback()
+            .setActions(ImmutableSortedSet.of(ForwardingAction.ACCEPT))
+            .setFinalNodesSpecifier(new NameRegexNodeSpecifier(Pattern.compile(NODE2)))
+            .setHeaderSpace(HeaderSpace.builder().setDstIps(NODE2_ALTERNATE_IP.toIpSpace()).build())
+            .build(),
+        ImmutableMap.of(NODE1, ImmutableSet.of(ACCEPTED)));
+  }
+
+  @Test
+  public void testDroppedByAcl() throws IOException {
+    assertDispositions(
+        fromNode1Loopback()
+            .setActions(ImmutableSortedSet.of(ForwardingAction.DROP))
+            .setHeaderSpace(HeaderSpace.builder().setDstIps(NODE2_ALTERNATE_IP.toIpSpace()).build())
+            .build(),
+        ImmutableMap.of(NODE1, ImmutableSet.of(DENIED_IN)));
+  }
+
+  /** Every node is a source by default. */
+  @Test
+  public void testDroppedNoRoute() throws IOException {
+    assertDispositions(
+        ReachabilityParameters.builder()
+            .setActions(ImmutableSortedSet.of(ForwardingAction.DROP))
+            .setFinalNodesSpecifier(new NameRegexNodeSpecifier(Pattern.compile(".*")))
+            .setHeaderSpace(HeaderSpace.builder().setDstIps(NOWHERE_IP.toIpSpace()).build())
+            .build(),
+        ImmutableMap.of(NODE1, ImmutableSet.of(NO_ROUTE), NODE2, ImmutableSet.of(NO_ROUTE)));
+  }
+
+  @Test
+  public void testUnreachable() throws IOException {
+    assertDispositions(
+        fromNode1Loopback()
+            .setActions(ImmutableSortedSet.of(ForwardingAction.ACCEPT))
+            .setHeaderSpace(HeaderSpace.builder().setDstIps(NOWHERE_IP.toIpSpace()).build())
+            .build(),
+        ImmutableMap.of());
+  }
+}
@@ -0,0 +1,105 @@
+package org.batfish.benchmarks;
+
+import com.google.common.collect.ImmutableSortedMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SortedMap;
+import java.util.stream.Stream;
+import org.batfish.common.BatfishException;
+import org.batfish.common.BatfishLogger;
+import org.batfish.common.BfConsts;
+import org.batfish.common.util.CommonUtil;
+import org.batfish.config.Settings;
+import org.batfish.main.Batfish;
+import org.batfish.main.BatfishTestUtils;
+import org.batfish.main.TestrigText;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The networks benchmarks run on: either a {@link SyntheticNetwork} or one of the example networks
+ * in the {@code networks/} directory of the repository.
+ */
+final class BenchmarkNetworks {
+
+  /** Value of the {@code network} benchmark parameter selecting a {@link SyntheticNetwork} */
+  static final String SYNTHETIC = "synthetic";
+
+  /**
+   * System property pointing to the {@code networks/} directory; if unset, it is looked up in the
+   * working directory and its ancestors.
+   */
+  private static final String NETWORKS_DIR_PROPERTY = "batfish.networks";
+
+  private BenchmarkNetworks() {}
+
+  /**
+   * Returns a map of filename to text of the configurations of the given network. The sizing
+   * parameters are ignored for networks other than {@link #SYNTHETIC}.
+   */
+  static SortedMap<String, String> configurationText(
+      String network, int numNodes, int bgpMeshSize, int aclLength) {
+    if (network.equals(SYNTHETIC)) {
+      return SyntheticNetwork.generate(numNodes, bgpMeshSize, aclLength);
+    }
+    Path configsDir = networksDir().resolve(network).resolve(BfConsts.RELPATH_CONFIGURATIONS_DIR);
+    if (!Files.isDirectory(configsDir)) {
+      throw new BatfishException(String.format("No configurations found at %s", configsDir));
+    }
+    try (Stream<Path> files = Files.list(configsDir)) {
+      return files
+          .filter(Files::isRegularFile)
+          .collect(
+              ImmutableSortedMap.toImmutableSortedMap(
+                  String::compareTo, f -> f.getFileName().toString(), CommonUtil::readFile));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns a {@link Batfish} instance for a snapshot with the given configurations, stored in
+   * {@code folder}.
+   */
+  static Batfish batfish(SortedMap<String, String> configurationText, TemporaryFolder folder)
+      throws IOException {
+    Batfish batfish =
+        BatfishTestUtils.getBatfishFromTestrigText(
+            TestrigText.builder().setConfigurationText(configurationText).build(), folder);
+    // Parse and convert like a worker does, instead of failing on the first error.
+    batfish.getSettings().setHaltOnConvertError(false);
+    batfish.getSettings().setHaltOnParseError(false);
+    batfish.getSettings().setThrowOnLexerError(false);
+    batfish.getSettings().setThrowOnParserError(false);
+    batfish.getSettings().setVerboseParse(false);
+    batfish.getSettings().getLogger().setLogLevel(BatfishLogger.LEVELSTR_WARN);
+    return batfish;
+  }
+
+  /** Returns settings suitable for running parsing and conversion jobs directly. */
+  static Settings jobSettings() {
+    Settings settings =
+        new Settings(new String[] {"-" + BfConsts.ARG_LOG_LEVEL, BatfishLogger.LEVELSTR_WARN});
+    settings.setLogger(new BatfishLogger(BatfishLogger.LEVELSTR_WARN, false));
+    return settings;
+  }
+
+  private static Path networksDir() {
+    String property = System.getProperty(NETWORKS_DIR_PROPERTY);
+    if (property != null) {
+      return Paths.get(property);
+    }
+    for (Path dir = Paths.get("").toAbsolutePath(); dir != null; dir = dir.getParent()) {
+      Path candidate = dir.resolve("networks");
+      if (Files.isDirectory(candidate)) {
+        return candidate;
+      }
+    }
+    throw new BatfishException(
+        String.format(
+            "Could not find the networks directory; set it with -D%s=<path>",
+            NETWORKS_DIR_PROPERTY));
+  }
+}
@@ -0,0 +1,77 @@
+package org.batfish.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import org.batfish.config.Settings;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.job.ConvertConfigurationJob;
+import org.batfish.job.ParseVendorConfigurationJob;
+import org.batfish.main.Batfish;
+import org.batfish.vendor.VendorConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Conversion of parsed vendor configurations to vendor-independent {@link
+ * org.batfish.datamodel.Configuration}s, one file at a time on a single thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ConversionBenchmark extends NetworkParameters {
+
+  private SortedMap<String, String> _configurationText;
+
+  private Settings _settings;
+
+  private List<VendorConfiguration> _vendorConfigurations;
+
+  @Setup
+  public void setup() {
+    _configurationText = configurationText();
+    _settings = BenchmarkNetworks.jobSettings();
+  }
+
+  /**
+   * Conversion may modify vendor configurations, so each invocation converts freshly parsed ones.
+   */
+  @Setup(Level.Invocation)
+  public void parse() throws Exception {
+    _vendorConfigurations = new ArrayList<>();
+    for (Entry<String, String> file : _configurationText.entrySet()) {
+      VendorConfiguration vc =
+          new ParseVendorConfigurationJob(
+                  _settings,
+                  file.getValue(),
+                  file.getKey(),
+                  Batfish.buildWarnings(_settings),
+                  ConfigurationFormat.UNKNOWN)
+              .call()
+              .getVendorConfiguration();
+      if (vc != null) {
+        _vendorConfigurations.add(vc);
+      }
+    }
+  }
+
+  @Benchmark
+  public void convert(Blackhole blackhole) {
+    for (VendorConfiguration vc : _vendorConfigurations) {
+      blackhole.consume(
+          new ConvertConfigurationJob(_settings, vc, vc.getFilename()).call().getConfigurations());
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package org.batfish.benchmarks;
+
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.SerializationUtils;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.Topology;
+import org.batfish.dataplane.ibdp.IncrementalDataPlanePlugin;
+import org.batfish.main.Batfish;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Data plane computation (by {@link org.batfish.dataplane.ibdp.IncrementalBdpEngine}) from already
+ * loaded configurations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DataPlaneBenchmark extends NetworkParameters {
+
+  private Batfish _batfish;
+
+  private SortedMap<String, Configuration> _configurations;
+
+  private TemporaryFolder _folder;
+
+  private IncrementalDataPlanePlugin _plugin;
+
+  private byte[] _serializedConfigurations;
+
+  private Topology _topology;
+
+  @Setup
+  public void setup() throws IOException {
+    _folder = new TemporaryFolder();
+    _folder.create();
+    _batfish = BenchmarkNetworks.batfish(configurationText(), _folder);
+    _serializedConfigurations =
+        SerializationUtils.serialize(new TreeMap<>(_batfish.loadConfigurations()));
+    _topology = _batfish.getEnvironmentTopology();
+  }
+
+  /**
+   * Computing the data plane modifies the configurations, and the engine keeps state (such as the
+   * schedule it switched to on oscillation) across computations, so each invocation starts from a
+   * fresh copy of the configurations and a fresh plugin.
+   */
+  @Setup(Level.Invocation)
+  public void setupInvocation() {
+    _configurations = SerializationUtils.deserialize(_serializedConfigurations);
+    _plugin = new IncrementalDataPlanePlugin();
+    _plugin.initialize(_batfish);
+  }
+
+  @TearDown
+  public void tearDown() {
+    _folder.delete();
+  }
+
+  @Benchmark
+  public DataPlane computeDataPlane() {
+    return _plugin.computeDataPlane(false, _configurations, _topology)._dataPlane;
+  }
+}
@@ -0,0 +1,35 @@
+package org.batfish.benchmarks;
+
+import java.util.SortedMap;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark parameters selecting the network to run on. Override them on the command line, e.g.
+ * {@code -p numNodes=64,256 -p bgpMeshSize=8} or {@code -p network=example}.
+ */
+@State(Scope.Benchmark)
+public abstract class NetworkParameters {
+
+  /** {@value BenchmarkNetworks#SYNTHETIC} or the name of a directory in {@code networks/} */
+  @Param(BenchmarkNetworks.SYNTHETIC)
+  public String network;
+
+  /** Number of nodes of the synthetic network */
+  @Param("16")
+  public int numNodes;
+
+  /** Number of nodes per iBGP full mesh of the synthetic network */
+  @Param("4")
+  public int bgpMeshSize;
+
+  /** Number of lines of each interface ACL of the synthetic network */
+  @Param("10")
+  public int aclLength;
+
+  /** Returns a map of filename to text of the configurations of the selected network. */
+  protected SortedMap<String, String> configurationText() {
+    return BenchmarkNetworks.configurationText(network, numNodes, bgpMeshSize, aclLength);
+  }
+}
@@ -0,0 +1,56 @@
+package org.batfish.benchmarks;
+
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import org.batfish.config.Settings;
+import org.batfish.datamodel.ConfigurationFormat;
+import org.batfish.job.ParseVendorConfigurationJob;
+import org.batfish.job.ParseVendorConfigurationResult;
+import org.batfish.main.Batfish;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing and extraction of vendor configurations (e.g. by {@link
+ * org.batfish.grammar.cisco.CiscoControlPlaneExtractor}), one file at a time on a single thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ParsingBenchmark extends NetworkParameters {
+
+  private SortedMap<String, String> _configurationText;
+
+  private Settings _settings;
+
+  @Setup
+  public void setup() {
+    _configurationText = configurationText();
+    _settings = BenchmarkNetworks.jobSettings();
+  }
+
+  @Benchmark
+  public void parse(Blackhole blackhole) throws Exception {
+    for (Entry<String, String> file : _configurationText.entrySet()) {
+      ParseVendorConfigurationResult result =
+          new ParseVendorConfigurationJob(
+                  _settings,
+                  file.getValue(),
+                  file.getKey(),
+                  Batfish.buildWarnings(_settings),
+                  ConfigurationFormat.UNKNOWN)
+              .call();
+      blackhole.consume(result.getVendorConfiguration());
+    }
+  }
+}
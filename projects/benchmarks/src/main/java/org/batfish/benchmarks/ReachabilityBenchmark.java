@@ -0,0 +1,93 @@
+package org.batfish.benchmarks;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import net.sf.javabdd.BDD;
+import org.batfish.bddreachability.BDDForwardingAnalysis;
+import org.batfish.bddreachability.BDDReachabilityAnalysis;
+import org.batfish.bddreachability.BDDReachabilityAnalysisFactory;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.UniverseIpSpace;
+import org.batfish.main.Batfish;
+import org.batfish.specifier.InterfaceLocation;
+import org.batfish.specifier.IpSpaceAssignment;
+import org.batfish.specifier.Location;
+import org.batfish.symbolic.bdd.BDDPacket;
+import org.batfish.z3.IngressLocation;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the BDD reachability graph with {@link BDDReachabilityAnalysisFactory} and computing the
+ * packets accepted from every interface of the network.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ReachabilityBenchmark extends NetworkParameters {
+
+  private SortedMap<String, Configuration> _configurations;
+
+  private DataPlane _dataPlane;
+
+  private TemporaryFolder _folder;
+
+  private IpSpaceAssignment _sources;
+
+  @Setup
+  public void setup() throws IOException {
+    _folder = new TemporaryFolder();
+    _folder.create();
+    Batfish batfish = BenchmarkNetworks.batfish(configurationText(), _folder);
+    _configurations = batfish.loadConfigurations();
+    _dataPlane = batfish.getDataPlanePlugin().computeDataPlane(false)._dataPlane;
+    Set<Location> locations =
+        _configurations
+            .values()
+            .stream()
+            .flatMap(
+                c ->
+                    c.getInterfaces()
+                        .keySet()
+                        .stream()
+                        .map(iface -> new InterfaceLocation(c.getHostname(), iface)))
+            .collect(ImmutableSet.toImmutableSet());
+    _sources = IpSpaceAssignment.builder().assign(locations, UniverseIpSpace.INSTANCE).build();
+  }
+
+  @TearDown
+  public void tearDown() {
+    _folder.delete();
+  }
+
+  @Benchmark
+  public Map<IngressLocation, BDD> acceptedPackets() {
+    BDDPacket packet = new BDDPacket();
+    BDDForwardingAnalysis forwardingAnalysis =
+        new BDDForwardingAnalysis(
+            packet,
+            _dataPlane.getConfigurations(),
+            _dataPlane.getRibs(),
+            _dataPlane.getFibs(),
+            _dataPlane.getTopology());
+    BDDReachabilityAnalysis analysis =
+        new BDDReachabilityAnalysisFactory(packet, _configurations, forwardingAnalysis)
+            .bddReachabilityAnalysis(_sources);
+    return analysis.getIngressLocationAcceptBDDs();
+  }
+}
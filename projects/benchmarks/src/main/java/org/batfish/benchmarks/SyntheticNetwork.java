@@ -0,0 +1,135 @@
+package org.batfish.benchmarks;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.ImmutableSortedMap;
+import java.util.SortedMap;
+import org.batfish.datamodel.Ip;
+
+/**
+ * Generates Cisco IOS configurations of a synthetic network whose size and complexity can be scaled
+ * independently.
+ *
+ * <p>The {@code numNodes} nodes are connected in a line by point-to-point links and run OSPF on all
+ * interfaces. Consecutive groups of {@code bgpMeshSize} nodes share an AS and form an iBGP full
+ * mesh between their loopbacks; adjacent nodes in different groups are eBGP peers. Each node
+ * advertises its loopback into BGP, and every link interface has an inbound ACL with {@code
+ * aclLength} lines.
+ */
+public final class SyntheticNetwork {
+
+  private static final long LINK_BASE = new Ip("10.0.0.0").asLong();
+
+  private static final long LOOPBACK_BASE = new Ip("192.168.0.0").asLong();
+
+  private static final long ACL_DST_BASE = new Ip("172.16.0.0").asLong();
+
+  private static final int FIRST_AS = 65000;
+
+  private SyntheticNetwork() {}
+
+  /** Returns the hostname of the node at the given index. */
+  public static String hostname(int node) {
+    return String.format("node%d", node);
+  }
+
+  /** Returns the loopback address of the node at the given index. */
+  public static Ip loopback(int node) {
+    return new Ip(LOOPBACK_BASE + node);
+  }
+
+  /** Returns a map of filename to configuration text of each node of the network. */
+  public static SortedMap<String, String> generate(int numNodes, int bgpMeshSize, int aclLength) {
+    checkArgument(numNodes >= 1, "numNodes must be positive");
+    checkArgument(bgpMeshSize >= 1, "bgpMeshSize must be positive");
+    checkArgument(aclLength >= 0, "aclLength must not be negative");
+    ImmutableSortedMap.Builder<String, String> configs = ImmutableSortedMap.naturalOrder();
+    for (int node = 0; node < numNodes; node++) {
+      configs.put(hostname(node) + ".cfg", generateNode(node, numNodes, bgpMeshSize, aclLength));
+    }
+    return configs.build();
+  }
+
+  private static String generateNode(int node, int numNodes, int bgpMeshSize, int aclLength) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("!\n").append("hostname ").append(hostname(node)).append("\n!\n");
+    sb.append("interface Loopback0\n")
+        .append(" ip address ")
+        .append(loopback(node))
+        .append(" 255.255.255.255\n!\n");
+
+    /*
+     * Link i connects node i to node i+1 and uses the ith /31. Groups are connected by a single
+     * link, so that BGP has a unique best path between groups and the data plane always converges.
+     */
+    boolean hasNext = node + 1 < numNodes;
+    boolean hasPrevious = node > 0;
+    if (hasNext) {
+      appendLinkInterface(sb, "GigabitEthernet0/0", new Ip(LINK_BASE + 2L * node), aclLength > 0);
+    }
+    if (hasPrevious) {
+      appendLinkInterface(
+          sb, "GigabitEthernet0/1", new Ip(LINK_BASE + 2L * (node - 1) + 1), aclLength > 0);
+    }
+
+    sb.append("router ospf 1\n")
+        .append(" router-id ")
+        .append(loopback(node))
+        .append("\n network 0.0.0.0 255.255.255.255 area 0\n!\n");
+
+    int as = asOf(node, bgpMeshSize);
+    sb.append("router bgp ").append(as).append('\n');
+    sb.append(" bgp router-id ").append(loopback(node)).append('\n');
+    int groupStart = node - node % bgpMeshSize;
+    for (int peer = groupStart; peer < Math.min(groupStart + bgpMeshSize, numNodes); peer++) {
+      if (peer != node) {
+        sb.append(" neighbor ").append(loopback(peer)).append(" remote-as ").append(as);
+        sb.append('\n');
+        sb.append(" neighbor ").append(loopback(peer)).append(" update-source Loopback0\n");
+        sb.append(" neighbor ").append(loopback(peer)).append(" next-hop-self\n");
+      }
+    }
+    if (hasNext && asOf(node + 1, bgpMeshSize) != as) {
+      sb.append(" neighbor ")
+          .append(new Ip(LINK_BASE + 2L * node + 1))
+          .append(" remote-as ")
+          .append(asOf(node + 1, bgpMeshSize))
+          .append('\n');
+    }
+    if (hasPrevious && asOf(node - 1, bgpMeshSize) != as) {
+      sb.append(" neighbor ")
+          .append(new Ip(LINK_BASE + 2L * (node - 1)))
+          .append(" remote-as ")
+          .append(asOf(node - 1, bgpMeshSize))
+          .append('\n');
+    }
+    sb.append(" network ").append(loopback(node)).append(" mask 255.255.255.255\n!\n");
+
+    if (aclLength > 0) {
+      sb.append("ip access-list extended ACL_IN\n");
+      for (int line = 0; line < aclLength - 1; line++) {
+        sb.append(" deny tcp any host ")
+            .append(new Ip(ACL_DST_BASE + line))
+            .append(" eq ")
+            .append(1024 + line % 60000)
+            .append('\n');
+      }
+      sb.append(" permit ip any any\n!\n");
+    }
+    sb.append("end\n");
+    return sb.toString();
+  }
+
+  private static void appendLinkInterface(StringBuilder sb, String name, Ip address, boolean acl) {
+    sb.append("interface ").append(name).append('\n');
+    sb.append(" ip address ").append(address).append(" 255.255.255.254\n");
+    if (acl) {
+      sb.append(" ip access-group ACL_IN in\n");
+    }
+    sb.append("!\n");
+  }
+
+  private static int asOf(int node, int bgpMeshSize) {
+    return FIRST_AS + node / bgpMeshSize;
+  }
+}
@@ -0,0 +1,110 @@
+package org.batfish.benchmarks;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.Flow;
+import org.batfish.datamodel.FlowTrace;
+import org.batfish.datamodel.Interface;
+import org.batfish.datamodel.InterfaceAddress;
+import org.batfish.datamodel.Ip;
+import org.batfish.datamodel.IpProtocol;
+import org.batfish.dataplane.TracerouteEngineImpl;
+import org.batfish.main.Batfish;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Traceroute (by {@link org.batfish.dataplane.TracerouteEngineImplContext}) of a TCP flow from
+ * every node to an address of every other node.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TracerouteBenchmark extends NetworkParameters {
+
+  private static final String FLOW_TAG = "BENCHMARK";
+
+  private DataPlane _dataPlane;
+
+  private TemporaryFolder _folder;
+
+  private Set<Flow> _flows;
+
+  @Setup
+  public void setup() throws IOException {
+    _folder = new TemporaryFolder();
+    _folder.create();
+    Batfish batfish = BenchmarkNetworks.batfish(configurationText(), _folder);
+    SortedMap<String, Configuration> configurations = batfish.loadConfigurations();
+    _dataPlane = batfish.getDataPlanePlugin().computeDataPlane(false)._dataPlane;
+
+    // One address of each node, if it has any
+    Map<String, Ip> nodeIps =
+        configurations
+            .values()
+            .stream()
+            .filter(c -> anyIp(c) != null)
+            .collect(Collectors.toMap(Configuration::getHostname, TracerouteBenchmark::anyIp));
+    ImmutableSet.Builder<Flow> flows = ImmutableSet.builder();
+    for (Entry<String, Ip> src : nodeIps.entrySet()) {
+      for (Entry<String, Ip> dst : nodeIps.entrySet()) {
+        if (!src.getKey().equals(dst.getKey())) {
+          flows.add(
+              Flow.builder()
+                  .setIngressNode(src.getKey())
+                  .setIngressVrf(Configuration.DEFAULT_VRF_NAME)
+                  .setSrcIp(src.getValue())
+                  .setDstIp(dst.getValue())
+                  .setIpProtocol(IpProtocol.TCP)
+                  .setSrcPort(49152)
+                  .setDstPort(80)
+                  .setTag(FLOW_TAG)
+                  .build());
+        }
+      }
+    }
+    _flows = flows.build();
+  }
+
+  @TearDown
+  public void tearDown() {
+    _folder.delete();
+  }
+
+  @Benchmark
+  public SortedMap<Flow, Set<FlowTrace>> traceroute() {
+    return TracerouteEngineImpl.getInstance()
+        .processFlows(_dataPlane, _flows, _dataPlane.getFibs(), false);
+  }
+
+  private static Ip anyIp(Configuration c) {
+    return c.getInterfaces()
+        .values()
+        .stream()
+        .map(Interface::getAddress)
+        .filter(Objects::nonNull)
+        .map(InterfaceAddress::getIp)
+        .sorted()
+        .findFirst()
+        .orElse(null);
+  }
+}
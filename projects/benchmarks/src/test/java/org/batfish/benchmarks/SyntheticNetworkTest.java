@@ -0,0 +1,62 @@
+package org.batfish.benchmarks;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasKey;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.stream.Collectors;
+import org.batfish.datamodel.AbstractRoute;
+import org.batfish.datamodel.Configuration;
+import org.batfish.datamodel.DataPlane;
+import org.batfish.datamodel.Prefix;
+import org.batfish.datamodel.RoutingProtocol;
+import org.batfish.main.Batfish;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests of {@link SyntheticNetwork}. */
+public class SyntheticNetworkTest {
+
+  @Rule public TemporaryFolder _folder = new TemporaryFolder();
+
+  @Test
+  public void testGenerate() throws IOException {
+    Batfish batfish = BenchmarkNetworks.batfish(SyntheticNetwork.generate(8, 4, 5), _folder);
+    SortedMap<String, Configuration> configurations = batfish.loadConfigurations();
+
+    assertThat(configurations.keySet(), hasItem(SyntheticNetwork.hostname(7)));
+    assertThat(configurations.size(), equalTo(8));
+    Configuration node0 = configurations.get(SyntheticNetwork.hostname(0));
+    Configuration node3 = configurations.get(SyntheticNetwork.hostname(3));
+    // 3 iBGP peers in the same group, plus an eBGP peer in the next group for the last node
+    assertThat(node0.getDefaultVrf().getBgpProcess().getActiveNeighbors().size(), equalTo(3));
+    assertThat(node3.getDefaultVrf().getBgpProcess().getActiveNeighbors().size(), equalTo(4));
+    assertThat(node0.getIpAccessLists(), hasKey("ACL_IN"));
+    assertThat(node0.getIpAccessLists().get("ACL_IN").getLines().size(), equalTo(5));
+
+    DataPlane dp = batfish.getDataPlanePlugin().computeDataPlane(false)._dataPlane;
+    Set<AbstractRoute> routes =
+        dp.getRibs()
+            .get(SyntheticNetwork.hostname(3))
+            .get(Configuration.DEFAULT_VRF_NAME)
+            .getRoutes();
+    // All loopbacks are reachable, and that of the eBGP peer is learned over BGP
+    for (int node = 0; node < 8; node++) {
+      assertThat(
+          routes.stream().map(AbstractRoute::getNetwork).collect(Collectors.toSet()),
+          hasItem(new Prefix(SyntheticNetwork.loopback(node), Prefix.MAX_PREFIX_LENGTH)));
+    }
+    assertThat(
+        routes
+            .stream()
+            .filter(r -> r.getProtocol() == RoutingProtocol.BGP)
+            .map(AbstractRoute::getNetwork)
+            .collect(Collectors.toSet()),
+        hasItem(new Prefix(SyntheticNetwork.loopback(4), Prefix.MAX_PREFIX_LENGTH)));
+  }
+}
@@ -1,11 +1,16 @@
 package org.batfish.coordinator;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
@@ -17,9 +22,12 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.BfConsts;
+import org.batfish.common.NetworkSnapshot;
+import org.batfish.common.Snapshot;
 import org.batfish.common.util.CommonUtil;
 import org.batfish.coordinator.config.Settings;
 import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 
 public class PoolMgr {
@@ -31,6 +39,12 @@ public class PoolMgr {
     }
   }
 
+  /** The number of assignments of work on a snapshot to a worker that had it cached */
+  private long _affinityHits;
+
+  /** The number of assignments of work on a snapshot to a worker that did not have it cached */
+  private long _affinityMisses;
+
   private final BatfishLogger _logger;
 
   private final Settings _settings;
@@ -77,17 +91,60 @@ public class PoolMgr {
     return copy;
   }
 
+  /**
+   * Returns how often work on a snapshot was assigned to a worker that had it cached ({@code hits})
+   * or not ({@code misses}).
+   */
+  public synchronized Map<String, Long> getAffinityStats() {
+    return ImmutableMap.of("hits", _affinityHits, "misses", _affinityMisses);
+  }
+
+  /**
+   * Returns an idle worker to assign work on {@code snapshot} to, or null if no worker is idle.
+   * Workers that have the snapshot cached are preferred, since others would have to load it from
+   * storage first; then workers with more available slots.
+   */
   @Nullable
-  public synchronized String getWorkerForAssignment() {
+  public synchronized String getWorkerForAssignment(@Nullable NetworkSnapshot snapshot) {
 
-    for (Entry<String, WorkerStatus> workerEntry : _workerPool.entrySet()) {
-      if (workerEntry.getValue().getStatus() == WorkerStatus.StatusCode.IDLE) {
-        updateWorkerStatus(workerEntry.getKey(), WorkerStatus.StatusCode.TRYINGTOASSIGN);
-        return workerEntry.getKey();
+    String worker = pickWorker(_workerPool, snapshot);
+    if (worker == null) {
+      return null;
+    }
+    if (snapshot != null) {
+      if (_workerPool.get(worker).getCachedSnapshots().contains(snapshot)) {
+        _affinityHits++;
+      } else {
+        _affinityMisses++;
       }
     }
+    updateWorkerStatus(worker, WorkerStatus.StatusCode.TRYINGTOASSIGN);
+    return worker;
+  }
+
+  @VisibleForTesting
+  @Nullable
+  static String pickWorker(
+      Map<String, WorkerStatus> workerPool, @Nullable NetworkSnapshot snapshot) {
+    return workerPool
+        .entrySet()
+        .stream()
+        .filter(entry -> entry.getValue().getStatus() == WorkerStatus.StatusCode.IDLE)
+        .max(
+            Comparator.comparing(
+                    (Entry<String, WorkerStatus> entry) ->
+                        entry.getValue().getCachedSnapshots().contains(snapshot))
+                .thenComparing(entry -> entry.getValue().getAvailableSlots()))
+        .map(Entry::getKey)
+        .orElse(null);
+  }
 
-    return null;
+  /** Returns whether some worker can be assigned work right now. */
+  public synchronized boolean hasIdleWorker() {
+    return _workerPool
+        .values()
+        .stream()
+        .anyMatch(status -> status.getStatus() == WorkerStatus.StatusCode.IDLE);
   }
 
   @Nullable
@@ -95,9 +152,30 @@ public class PoolMgr {
     return _workerPool.get(worker);
   }
 
-  public void markAssignmentResult(String worker, boolean assignmentSuccessful) {
-    updateWorkerStatus(
-        worker, assignmentSuccessful ? WorkerStatus.StatusCode.BUSY : WorkerStatus.StatusCode.IDLE);
+  /**
+   * Record the result of assigning a task on {@code snapshot} to {@code worker}. A worker with task
+   * slots left stays available for assignment until its status is next refreshed, and is assumed to
+   * hold {@code snapshot} from then on.
+   */
+  public synchronized void markAssignmentResult(
+      String worker, boolean assignmentSuccessful, @Nullable NetworkSnapshot snapshot) {
+    WorkerStatus status = _workerPool.get(worker);
+    if (status == null) {
+      return;
+    }
+    int availableSlots = status.getAvailableSlots();
+    Set<NetworkSnapshot> cachedSnapshots = status.getCachedSnapshots();
+    if (assignmentSuccessful) {
+      availableSlots = Math.max(0, availableSlots - 1);
+      if (snapshot != null) {
+        cachedSnapshots =
+            ImmutableSet.<NetworkSnapshot>builder().addAll(cachedSnapshots).add(snapshot).build();
+      }
+    }
+    status.updateStatus(
+        availableSlots > 0 ? WorkerStatus.StatusCode.IDLE : WorkerStatus.StatusCode.BUSY,
+        availableSlots,
+        cachedSnapshots);
   }
 
   public void refreshWorkerStatus() {
@@ -161,12 +239,26 @@ public class PoolMgr {
         }
 
         boolean status = jObj.getBoolean("idle");
+        // workers that run one task at a time do not report their slots
+        int availableSlots =
+            jObj.has("availableSlots") ? jObj.getInt("availableSlots") : (status ? 1 : 0);
+        Set<NetworkSnapshot> cachedSnapshots =
+            jObj.has("cachedSnapshots")
+                ? readCachedSnapshots(jObj.getJSONArray("cachedSnapshots"))
+                : ImmutableSet.of();
 
         // update the status, except leave the ones with TRYINGTOASSIGN
         // alone
         if (getWorkerStatus(worker).getStatus() != WorkerStatus.StatusCode.TRYINGTOASSIGN) {
           updateWorkerStatus(
-              worker, status ? WorkerStatus.StatusCode.IDLE : WorkerStatus.StatusCode.BUSY);
+              worker,
+              status ? WorkerStatus.StatusCode.IDLE : WorkerStatus.StatusCode.BUSY,
+              availableSlots,
+              cachedSnapshots);
+          // an idle worker can take work right away
+          if (status && availableSlots > 0 && Main.getWorkMgr() != null) {
+            Main.getWorkMgr().triggerAssignWork();
+          }
         }
       }
     } catch (ProcessingException e) {
@@ -183,6 +275,18 @@ public class PoolMgr {
     }
   }
 
+  private static Set<NetworkSnapshot> readCachedSnapshots(JSONArray array) throws JSONException {
+    ImmutableSet.Builder<NetworkSnapshot> cachedSnapshots = ImmutableSet.builder();
+    for (int i = 0; i < array.length(); i++) {
+      JSONObject snapshot = array.getJSONObject(i);
+      cachedSnapshots.add(
+          new NetworkSnapshot(
+              snapshot.getString("network"),
+              new Snapshot(snapshot.getString("testrig"), snapshot.getString("environment"))));
+    }
+    return cachedSnapshots.build();
+  }
+
   public void startPoolManager() {
     Runnable workerStatusRefreshTask = new WorkerStatusRefreshTask();
     Executors.newScheduledThreadPool(1)
@@ -198,4 +302,14 @@ public class PoolMgr {
       _workerPool.get(worker).updateStatus(statusCode);
     }
   }
+
+  private synchronized void updateWorkerStatus(
+      String worker,
+      WorkerStatus.StatusCode statusCode,
+      int availableSlots,
+      Set<NetworkSnapshot> cachedSnapshots) {
+    if (_workerPool.containsKey(worker)) {
+      _workerPool.get(worker).updateStatus(statusCode, availableSlots, cachedSnapshots);
+    }
+  }
 }
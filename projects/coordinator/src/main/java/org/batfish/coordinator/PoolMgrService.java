@@ -1,13 +1,16 @@
 package org.batfish.coordinator;
 
+import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
@@ -68,7 +71,13 @@ public class PoolMgrService {
       _logger.info("PMS:getStatus\n");
       Map<String, String> poolStatus = Main.getPoolMgr().getPoolStatus();
       JSONObject obj = new JSONObject(poolStatus);
-      return new JSONArray(Arrays.asList(CoordConsts.SVC_KEY_SUCCESS, obj.toString()));
+      JSONObject affinity =
+          new JSONObject()
+              .put(
+                  CoordConsts.SVC_KEY_AFFINITY,
+                  new JSONObject(Main.getPoolMgr().getAffinityStats()));
+      return new JSONArray(
+          Arrays.asList(CoordConsts.SVC_KEY_SUCCESS, obj.toString(), affinity.toString()));
     } catch (Exception e) {
       _logger.errorf("PMS:getStatus exception: %s\n", Throwables.getStackTraceAsString(e));
       return new JSONArray(Arrays.asList(CoordConsts.SVC_KEY_FAILURE, e.getMessage()));
@@ -153,4 +162,26 @@ public class PoolMgrService {
 
     return new JSONArray(Arrays.asList(CoordConsts.SVC_KEY_SUCCESS, "done"));
   }
+
+  /** Lets workers report that a task they run changed state, so it is checked right away. */
+  @GET
+  @Path(CoordConsts.SVC_RSC_POOL_UPDATE_TASK)
+  @Produces(MediaType.APPLICATION_JSON)
+  public JSONArray updateTask(
+      @QueryParam(CoordConsts.SVC_KEY_WORKER) String worker,
+      @QueryParam(CoordConsts.SVC_KEY_WORKID) String workId) {
+    try {
+      _logger.infof("PMS:updateTask %s %s\n", worker, workId);
+      if (Strings.isNullOrEmpty(worker) || Strings.isNullOrEmpty(workId)) {
+        return new JSONArray(
+            Arrays.asList(CoordConsts.SVC_KEY_FAILURE, "Worker and work id must be specified"));
+      }
+      Main.getWorkMgr().taskUpdated(UUID.fromString(workId), worker);
+    } catch (Exception e) {
+      _logger.errorf("PMS:updateTask exception: %s\n", Throwables.getStackTraceAsString(e));
+      return new JSONArray(Arrays.asList(CoordConsts.SVC_KEY_FAILURE, e.getMessage()));
+    }
+
+    return new JSONArray(Arrays.asList(CoordConsts.SVC_KEY_SUCCESS, "done"));
+  }
 }
@@ -2,7 +2,10 @@ package org.batfish.coordinator;
 
 import java.util.Date;
 import java.util.UUID;
+import javax.annotation.Nullable;
 import org.batfish.common.CoordConsts.WorkStatusCode;
+import org.batfish.common.NetworkSnapshot;
+import org.batfish.common.Snapshot;
 import org.batfish.common.Task;
 import org.batfish.common.WorkItem;
 
@@ -50,6 +53,16 @@ public class QueuedWork {
     return _workItem.getId();
   }
 
+  /** The base snapshot this work is on, or null if not known */
+  @Nullable
+  public NetworkSnapshot getSnapshot() {
+    if (_details.baseTestrig == null || _details.baseEnv == null) {
+      return null;
+    }
+    return new NetworkSnapshot(
+        _workItem.getContainerName(), new Snapshot(_details.baseTestrig, _details.baseEnv));
+  }
+
   public Task getLastTaskCheckResult() {
     return _lastTaskCheckResult;
   }
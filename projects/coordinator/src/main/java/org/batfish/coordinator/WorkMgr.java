@@ -14,6 +14,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.opentracing.ActiveSpan;
 import io.opentracing.References;
 import io.opentracing.SpanContext;
@@ -42,8 +43,10 @@ import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -107,10 +110,20 @@ import org.glassfish.jersey.uri.UriComponent;
 public class WorkMgr extends AbstractCoordinator {
 
   static final class AssignWorkTask implements Runnable {
+    @Override
+    public void run() {
+      Main.getWorkMgr().triggerAssignWork();
+    }
+  }
+
+  /**
+   * Checks all assigned tasks. Workers report the end of their tasks as it happens, so this only
+   * catches the tasks of workers that died or could not reach the coordinator.
+   */
+  static final class CheckWorkTask implements Runnable {
     @Override
     public void run() {
       Main.getWorkMgr().checkTasks();
-      Main.getWorkMgr().assignWork();
     }
   }
 
@@ -136,6 +149,18 @@ public class WorkMgr extends AbstractCoordinator {
     return envFilenames;
   }
 
+  /** Sends assigned work to workers, so that slow workers do not hold up the other assignments */
+  private final ExecutorService _assignmentExecutor;
+
+  /** Runs {@link #assignWork()}, one round at a time */
+  private final ExecutorService _assignWorkExecutor;
+
+  /** Whether a round of {@link #assignWork()} is requested and has not started yet */
+  private final AtomicBoolean _assignWorkRequested;
+
+  /** Checks the tasks that workers report changes of */
+  private final ExecutorService _checkTaskExecutor;
+
   private final BatfishLogger _logger;
 
   private final Settings _settings;
@@ -147,31 +172,57 @@ public class WorkMgr extends AbstractCoordinator {
     _settings = settings;
     _logger = logger;
     _workQueueMgr = new WorkQueueMgr(logger);
+    _assignmentExecutor =
+        Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("assignment-%d").build());
+    _assignWorkExecutor =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("assign-work-%d").build());
+    _assignWorkRequested = new AtomicBoolean();
+    _checkTaskExecutor =
+        Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("check-task-%d").build());
     loadPlugins();
   }
 
+  /**
+   * Assigns unassigned work to idle workers until either runs out, taking as many items as there
+   * are free worker slots in one round.
+   */
   private void assignWork() {
 
     try {
-      QueuedWork work = _workQueueMgr.getWorkForAssignment();
+      while (true) {
+        if (_workQueueMgr.getLength(QueueType.INCOMPLETE) == 0) {
+          return;
+        }
 
-      // get out if no work was found
-      if (work == null) {
-        // _logger.info("WM:AssignWork: No unassigned work\n");
-        return;
-      }
+        // get out if no idle worker is left, before taking work that would then wait
+        if (!Main.getPoolMgr().hasIdleWorker()) {
+          _logger.info("WM:AssignWork: No idle worker\n");
+          return;
+        }
 
-      String idleWorker = Main.getPoolMgr().getWorkerForAssignment();
+        QueuedWork work = _workQueueMgr.getWorkForAssignment();
 
-      // get out if no idle worker was found, but release the work first
-      if (idleWorker == null) {
-        _workQueueMgr.markAssignmentFailure(work);
+        // get out if no work was found
+        if (work == null) {
+          // _logger.info("WM:AssignWork: No unassigned work\n");
+          return;
+        }
 
-        _logger.info("WM:AssignWork: No idle worker\n");
-        return;
-      }
+        String idleWorker = Main.getPoolMgr().getWorkerForAssignment(work.getSnapshot());
+
+        // get out if no idle worker was found, but release the work first
+        if (idleWorker == null) {
+          _workQueueMgr.markAssignmentFailure(work);
+
+          _logger.info("WM:AssignWork: No idle worker\n");
+          return;
+        }
 
-      assignWork(work, idleWorker);
+        _assignmentExecutor.submit(() -> assignWork(work, idleWorker));
+      }
     } catch (Exception e) {
       _logger.errorf("Got exception in assignWork: %s\n", Throwables.getStackTraceAsString(e));
     }
@@ -282,12 +333,21 @@ public class WorkMgr extends AbstractCoordinator {
         String stackTrace = Throwables.getStackTraceAsString(e);
         _logger.errorf("Unable to markAssignmentSuccess for work %s: %s\n", work, stackTrace);
       }
+      // the task may have ended before the runtask response arrived
+      if (_workQueueMgr.takeDeferredTaskReport(work)) {
+        taskUpdated(work.getId(), worker);
+      }
 
     } else {
       _workQueueMgr.markAssignmentFailure(work);
     }
 
-    Main.getPoolMgr().markAssignmentResult(worker, assigned);
+    Main.getPoolMgr().markAssignmentResult(worker, assigned, work.getSnapshot());
+
+    // the worker may have slots left for more work
+    if (assigned) {
+      triggerAssignWork();
+    }
   }
 
   private void checkTasks() {
@@ -427,10 +487,16 @@ public class WorkMgr extends AbstractCoordinator {
     } catch (Exception e) {
       _logger.errorf("exception: %s\n", Throwables.getStackTraceAsString(e));
     }
+    // the task may have ended after the worker answered this check
+    if (_workQueueMgr.takeDeferredTaskReport(work)) {
+      taskUpdated(work.getId(), worker);
+    }
 
-    // if the task ended, send a hint to the pool manager to look up worker status
+    // if the task ended, send a hint to the pool manager to look up worker status, and assign
+    // the work it may have unblocked
     if (task.getStatus().isTerminated()) {
       Main.getPoolMgr().refreshWorkerStatus(worker);
+      triggerAssignWork();
     }
   }
 
@@ -1678,24 +1744,20 @@ public class WorkMgr extends AbstractCoordinator {
     } catch (Exception e) {
       throw new BatfishException(String.format("Failed to queue work: %s", e.getMessage()), e);
     }
-    // as an optimization trigger AssignWork to see if we can schedule this (or another) work
+    // trigger AssignWork to see if we can schedule this (or another) work right away
     if (success) {
-      Thread thread = new Thread(this::assignWork);
-      thread.start();
+      triggerAssignWork();
     }
     return success;
   }
 
   public void startWorkManager() {
-    // for some bizarre reason, this ordering of scheduling checktask before
-    // assignwork, is important
-    // in the other order, assignwork never fires
-    // TODO: track this down
-    // _checkWorkTask = new CheckTaskTask();
-    // _checkService = Executors.newScheduledThreadPool(1);
-    // _checkFuture = _checkService.scheduleAtFixedRate(_checkWorkTask, 0,
-    // Main.getSettings().getPeriodCheckWorkMs(),
-    // TimeUnit.MILLISECONDS);
+    Executors.newScheduledThreadPool(1)
+        .scheduleAtFixedRate(
+            new CheckWorkTask(),
+            0,
+            Main.getSettings().getPeriodCheckWorkMs(),
+            TimeUnit.MILLISECONDS);
 
     Executors.newScheduledThreadPool(1)
         .scheduleAtFixedRate(
@@ -1705,6 +1767,41 @@ public class WorkMgr extends AbstractCoordinator {
             TimeUnit.MILLISECONDS);
   }
 
+  /**
+   * Handles the report by {@code worker} that the task of the work with id {@code workId} changed,
+   * by checking that task right away rather than at the next periodic check. Reports about work
+   * that is still being assigned to or checked on {@code worker} are acted on once that is done;
+   * reports about work not assigned to {@code worker} are ignored.
+   */
+  public void taskUpdated(UUID workId, String worker) {
+    _checkTaskExecutor.submit(
+        () -> {
+          try {
+            QueuedWork work = _workQueueMgr.getWorkForChecking(workId, worker);
+            if (work != null) {
+              checkTask(work, worker);
+            }
+          } catch (Exception e) {
+            _logger.errorf(
+                "Got exception in taskUpdated: %s\n", Throwables.getStackTraceAsString(e));
+          }
+        });
+  }
+
+  /**
+   * Requests a round of work assignment, on work being queued or unblocked and on workers becoming
+   * idle. Requests made while a round is pending are served by that round.
+   */
+  public void triggerAssignWork() {
+    if (_assignWorkRequested.compareAndSet(false, true)) {
+      _assignWorkExecutor.submit(
+          () -> {
+            _assignWorkRequested.set(false);
+            assignWork();
+          });
+    }
+  }
+
   public int syncTestrigsSyncNow(String containerName, String pluginId, boolean force) {
     if (!_testrigSyncers.containsKey(pluginId)) {
       throw new BatfishException(
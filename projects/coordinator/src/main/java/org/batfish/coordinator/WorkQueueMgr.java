@@ -3,9 +3,11 @@ package org.batfish.coordinator;
 import com.google.common.base.Throwables;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import javax.annotation.Nonnull;
@@ -36,8 +38,20 @@ public class WorkQueueMgr {
     INCOMPLETE
   }
 
+  /** The number of times work was picked for assignment */
+  private long _assignments;
+
   private Set<UUID> _blockingWork;
 
+  /**
+   * The worker that reported the end of the task of each work while that work was being assigned or
+   * checked. Such reports are acted on once the assignment or check is done.
+   */
+  private Map<UUID, String> _deferredTaskReports;
+
+  /** The value of {@link #_assignments} when each network was last picked for assignment */
+  private Map<String, Long> _lastAssignments;
+
   private BatfishLogger _logger;
 
   private WorkQueue _queueCompletedWork;
@@ -50,6 +64,8 @@ public class WorkQueueMgr {
 
   public WorkQueueMgr(WorkQueue.Type wqType, BatfishLogger logger) {
     _blockingWork = new HashSet<>();
+    _deferredTaskReports = new HashMap<>();
+    _lastAssignments = new HashMap<>();
     _logger = logger;
     switch (wqType) {
       case azure:
@@ -325,21 +341,43 @@ public class WorkQueueMgr {
     }
   }
 
+  /**
+   * Returns the next unassigned work to assign, or null if there is none. Work that other work is
+   * blocked on goes first; then work of the network that was least recently assigned work, so that
+   * no network starves the others; then the earliest queued work.
+   */
   @Nullable
   public synchronized QueuedWork getWorkForAssignment() {
 
+    QueuedWork next = null;
+    long nextLastAssignment = 0L;
     for (QueuedWork work : _queueIncompleteWork) {
-      if (work.getStatus() == WorkStatusCode.UNASSIGNED) {
-        work.setStatus(WorkStatusCode.TRYINGTOASSIGN);
-        return work;
+      if (work.getStatus() != WorkStatusCode.UNASSIGNED) {
+        continue;
+      }
+      long lastAssignment =
+          _lastAssignments.getOrDefault(work.getWorkItem().getContainerName(), 0L);
+      if (next == null
+          || isBlocking(work) && !isBlocking(next)
+          || isBlocking(work) == isBlocking(next) && lastAssignment < nextLastAssignment) {
+        next = work;
+        nextLastAssignment = lastAssignment;
       }
     }
 
-    return null;
+    if (next != null) {
+      next.setStatus(WorkStatusCode.TRYINGTOASSIGN);
+      _lastAssignments.put(next.getWorkItem().getContainerName(), ++_assignments);
+    }
+    return next;
+  }
+
+  private boolean isBlocking(QueuedWork work) {
+    return _blockingWork.contains(work.getId());
   }
 
   @Nonnull
-  public List<QueuedWork> getWorkForChecking() {
+  public synchronized List<QueuedWork> getWorkForChecking() {
     List<QueuedWork> workToCheck = new ArrayList<>();
     for (QueuedWork work : _queueIncompleteWork) {
       if (work.getStatus() == WorkStatusCode.ASSIGNED) {
@@ -350,6 +388,43 @@ public class WorkQueueMgr {
     return workToCheck;
   }
 
+  /**
+   * Returns the work with id {@code workId} if it is assigned to {@code worker} and not being
+   * checked already, marking it as being checked; or null otherwise. If the work is still being
+   * assigned, or is being checked, the report of {@code worker} is deferred until that is done (see
+   * {@link #takeDeferredTaskReport(QueuedWork)}).
+   */
+  @Nullable
+  public synchronized QueuedWork getWorkForChecking(UUID workId, String worker) {
+    QueuedWork work = getWork(workId, QueueType.INCOMPLETE);
+    if (work == null) {
+      return null;
+    }
+    WorkStatusCode status = work.getStatus();
+    if (status == WorkStatusCode.TRYINGTOASSIGN
+        || status == WorkStatusCode.CHECKINGSTATUS && worker.equals(work.getAssignedWorker())) {
+      _deferredTaskReports.put(workId, worker);
+      return null;
+    }
+    if (status != WorkStatusCode.ASSIGNED || !worker.equals(work.getAssignedWorker())) {
+      return null;
+    }
+    work.setStatus(WorkStatusCode.CHECKINGSTATUS);
+    return work;
+  }
+
+  /**
+   * Removes the report deferred by {@link #getWorkForChecking(UUID, String)} for {@code work}, if
+   * any. Returns whether it should be acted on now, i.e., whether it was made by the worker that
+   * {@code work} is now assigned to.
+   */
+  public synchronized boolean takeDeferredTaskReport(QueuedWork work) {
+    String worker = _deferredTaskReports.remove(work.getId());
+    return worker != null
+        && work.getStatus() == WorkStatusCode.ASSIGNED
+        && worker.equals(work.getAssignedWorker());
+  }
+
   public synchronized List<QueuedWork> listIncompleteWork(
       String containerName, @Nullable String testrigName, @Nullable WorkType workType) {
     List<QueuedWork> retList = new LinkedList<>();
@@ -365,17 +440,20 @@ public class WorkQueueMgr {
   }
 
   public synchronized void makeWorkUnassigned(QueuedWork work) {
+    _deferredTaskReports.remove(work.getId());
     work.setStatus(WorkStatusCode.UNASSIGNED);
   }
 
   // when assignment attempt ends in error, we do not try to reassign
   public synchronized void markAssignmentError(QueuedWork work) {
+    _deferredTaskReports.remove(work.getId());
     _queueIncompleteWork.delete(work);
     _queueCompletedWork.enque(work);
     work.setStatus(WorkStatusCode.ASSIGNMENTERROR);
   }
 
   public synchronized void markAssignmentFailure(QueuedWork work) {
+    _deferredTaskReports.remove(work.getId());
     work.setStatus(WorkStatusCode.UNASSIGNED);
   }
 
@@ -420,6 +498,7 @@ public class WorkQueueMgr {
       case RequeueFailure:
         {
           // move the work to completed queue
+          _deferredTaskReports.remove(work.getId());
           _queueIncompleteWork.delete(work);
           _queueCompletedWork.enque(work);
           work.setStatus(WorkStatusCode.fromTerminatedTaskStatus(task.getStatus()));
@@ -1,6 +1,9 @@
 package org.batfish.coordinator;
 
+import com.google.common.collect.ImmutableSet;
 import java.util.Date;
+import java.util.Set;
+import org.batfish.common.NetworkSnapshot;
 
 public class WorkerStatus {
 
@@ -12,12 +15,25 @@ public class WorkerStatus {
     UNREACHABLE
   }
 
+  private int _availableSlots;
+  private Set<NetworkSnapshot> _cachedSnapshots;
   private Date _lastUpdated;
   private StatusCode _statusCode;
 
   public WorkerStatus(StatusCode statusCode) {
     _statusCode = statusCode;
     _lastUpdated = new Date();
+    _cachedSnapshots = ImmutableSet.of();
+  }
+
+  /** Number of additional tasks the worker can run, as of the last update */
+  public int getAvailableSlots() {
+    return _availableSlots;
+  }
+
+  /** Snapshots the worker has in its caches, as of the last update */
+  public Set<NetworkSnapshot> getCachedSnapshots() {
+    return _cachedSnapshots;
   }
 
   public Date getLastUpdateTime() {
@@ -37,4 +53,15 @@ public class WorkerStatus {
     _statusCode = statusCode;
     _lastUpdated = new Date();
   }
+
+  public void updateStatus(StatusCode statusCode, int availableSlots) {
+    updateStatus(statusCode);
+    _availableSlots = availableSlots;
+  }
+
+  public void updateStatus(
+      StatusCode statusCode, int availableSlots, Set<NetworkSnapshot> cachedSnapshots) {
+    updateStatus(statusCode, availableSlots);
+    _cachedSnapshots = cachedSnapshots;
+  }
 }
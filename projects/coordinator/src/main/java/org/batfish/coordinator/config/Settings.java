@@ -307,7 +307,10 @@ public class Settings extends BaseSettings {
     setDefaultProperty(ARG_LOG_FILE, null);
     setDefaultProperty(ARG_LOG_LEVEL, BatfishLogger.getLogLevelStr(BatfishLogger.LEVEL_OUTPUT));
     setDefaultProperty(ARG_PERIOD_ASSIGN_WORK_MS, 1000);
-    setDefaultProperty(ARG_PERIOD_CHECK_WORK_MS, 1000);
+    // Workers report finished tasks as they finish, so the periodic check only bounds how long a
+    // lost report or a dead worker goes unnoticed. It polls every worker with assigned work, so it
+    // is kept much slower than work assignment.
+    setDefaultProperty(ARG_PERIOD_CHECK_WORK_MS, 10000);
     setDefaultProperty(ARG_PERIOD_WORKER_STATUS_REFRESH_MS, 10000);
     setDefaultProperty(ARG_QUESTION_TEMPLATE_DIRS, Collections.emptyList());
     setDefaultProperty(ARG_QUEUE_COMPLETED_WORK, "batfishcompletedwork");
@@ -375,7 +378,9 @@ public class Settings extends BaseSettings {
         "period_assign_work_ms");
 
     addOption(
-        ARG_PERIOD_CHECK_WORK_MS, "period with which to check work (ms)", "period_check_work_ms");
+        ARG_PERIOD_CHECK_WORK_MS,
+        "period with which to check work not reported by workers (ms)",
+        "period_check_work_ms");
 
     addListOption(
         ARG_QUESTION_TEMPLATE_DIRS, "paths to question template directories", ARGNAME_PATHS);
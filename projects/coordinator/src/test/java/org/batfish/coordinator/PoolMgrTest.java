@@ -0,0 +1,61 @@
+package org.batfish.coordinator;
+
+import static org.batfish.coordinator.PoolMgr.pickWorker;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.Map;
+import org.batfish.common.NetworkSnapshot;
+import org.batfish.common.Snapshot;
+import org.batfish.coordinator.WorkerStatus.StatusCode;
+import org.junit.Test;
+
+/** Tests for {@link PoolMgr}. */
+public class PoolMgrTest {
+
+  private static final NetworkSnapshot SNAPSHOT =
+      new NetworkSnapshot("network", new Snapshot("testrig", "env"));
+
+  private static WorkerStatus status(
+      StatusCode statusCode, int availableSlots, NetworkSnapshot... cachedSnapshots) {
+    WorkerStatus status = new WorkerStatus(statusCode);
+    status.updateStatus(statusCode, availableSlots, ImmutableSet.copyOf(cachedSnapshots));
+    return status;
+  }
+
+  @Test
+  public void testPickWorkerHoldingSnapshot() {
+    Map<String, WorkerStatus> workerPool =
+        ImmutableMap.of(
+            "w1", status(StatusCode.IDLE, 4),
+            "w2", status(StatusCode.IDLE, 1, SNAPSHOT),
+            "w3", status(StatusCode.BUSY, 0, SNAPSHOT));
+
+    assertThat(pickWorker(workerPool, SNAPSHOT), equalTo("w2"));
+  }
+
+  @Test
+  public void testPickWorkerLeastLoaded() {
+    Map<String, WorkerStatus> workerPool =
+        ImmutableMap.of(
+            "w1", status(StatusCode.IDLE, 1),
+            "w2", status(StatusCode.IDLE, 3),
+            "w3", status(StatusCode.BUSY, 0, SNAPSHOT));
+
+    // no idle worker holds the snapshot, so the one with the most available slots is picked
+    assertThat(pickWorker(workerPool, SNAPSHOT), equalTo("w2"));
+    assertThat(pickWorker(workerPool, null), equalTo("w2"));
+  }
+
+  @Test
+  public void testPickWorkerNoneIdle() {
+    Map<String, WorkerStatus> workerPool =
+        ImmutableMap.of(
+            "w1", status(StatusCode.BUSY, 0, SNAPSHOT), "w2", status(StatusCode.UNREACHABLE, 0));
+
+    assertThat(pickWorker(workerPool, SNAPSHOT), nullValue());
+  }
+}
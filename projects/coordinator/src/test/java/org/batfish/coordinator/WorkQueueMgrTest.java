@@ -1,16 +1,20 @@
 package org.batfish.coordinator;
 
 import static org.hamcrest.Matchers.iterableWithSize;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.collection.IsEmptyCollection.empty;
 import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 import org.batfish.common.BatfishException;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.BfConsts.TaskStatus;
@@ -265,6 +269,88 @@ public class WorkQueueMgrTest {
     assertThat(matchingWork, equalTo(work1));
   }
 
+  @Test
+  public void getWorkForCheckingAssignedToWorker() throws Exception {
+    initTestrigMetadata("testrig", "env", ProcessingStatus.UNINITIALIZED);
+    QueuedWork work =
+        new QueuedWork(
+            new WorkItem(CONTAINER, "testrig"),
+            new WorkDetails("testrig", "env", WorkType.UNKNOWN));
+    _workQueueMgr.queueUnassignedWork(work);
+    _workQueueMgr.getWorkForAssignment();
+    _workQueueMgr.markAssignmentSuccess(work, "worker");
+
+    assertThat(_workQueueMgr.getWorkForChecking(UUID.randomUUID(), "worker"), nullValue());
+    assertThat(_workQueueMgr.getWorkForChecking(work.getId(), "otherWorker"), nullValue());
+    assertSame(_workQueueMgr.getWorkForChecking(work.getId(), "worker"), work);
+    assertThat(work.getStatus(), equalTo(WorkStatusCode.CHECKINGSTATUS));
+    // work already being checked is not handed out again
+    assertThat(_workQueueMgr.getWorkForChecking(work.getId(), "worker"), nullValue());
+  }
+
+  private QueuedWork queueWorkForAssignment() throws Exception {
+    initTestrigMetadata("testrig", "env", ProcessingStatus.UNINITIALIZED);
+    QueuedWork work =
+        new QueuedWork(
+            new WorkItem(CONTAINER, "testrig"),
+            new WorkDetails("testrig", "env", WorkType.UNKNOWN));
+    _workQueueMgr.queueUnassignedWork(work);
+    _workQueueMgr.getWorkForAssignment();
+    return work;
+  }
+
+  @Test
+  public void getWorkForCheckingWhileAssigning() throws Exception {
+    QueuedWork work = queueWorkForAssignment();
+
+    // the task ends before the coordinator gets the runtask response
+    assertThat(_workQueueMgr.getWorkForChecking(work.getId(), "worker"), nullValue());
+    assertThat(work.getStatus(), equalTo(WorkStatusCode.TRYINGTOASSIGN));
+    _workQueueMgr.markAssignmentSuccess(work, "worker");
+
+    assertTrue(_workQueueMgr.takeDeferredTaskReport(work));
+    // the report is only acted on once
+    assertFalse(_workQueueMgr.takeDeferredTaskReport(work));
+    assertSame(_workQueueMgr.getWorkForChecking(work.getId(), "worker"), work);
+  }
+
+  @Test
+  public void getWorkForCheckingWhileAssigningOtherWorker() throws Exception {
+    QueuedWork work = queueWorkForAssignment();
+
+    assertThat(_workQueueMgr.getWorkForChecking(work.getId(), "otherWorker"), nullValue());
+    _workQueueMgr.markAssignmentSuccess(work, "worker");
+
+    assertFalse(_workQueueMgr.takeDeferredTaskReport(work));
+  }
+
+  @Test
+  public void getWorkForCheckingWhileAssigningFails() throws Exception {
+    QueuedWork work = queueWorkForAssignment();
+
+    assertThat(_workQueueMgr.getWorkForChecking(work.getId(), "worker"), nullValue());
+    _workQueueMgr.markAssignmentFailure(work);
+    _workQueueMgr.getWorkForAssignment();
+    _workQueueMgr.markAssignmentSuccess(work, "worker");
+
+    // the report was about the failed assignment
+    assertFalse(_workQueueMgr.takeDeferredTaskReport(work));
+  }
+
+  @Test
+  public void getWorkForCheckingWhileChecking() throws Exception {
+    QueuedWork work = queueWorkForAssignment();
+    _workQueueMgr.markAssignmentSuccess(work, "worker");
+    assertSame(_workQueueMgr.getWorkForChecking(work.getId(), "worker"), work);
+
+    // the task ends after the worker answered the check
+    assertThat(_workQueueMgr.getWorkForChecking(work.getId(), "worker"), nullValue());
+    _workQueueMgr.processTaskCheckResult(work, new Task(TaskStatus.InProgress));
+
+    assertTrue(_workQueueMgr.takeDeferredTaskReport(work));
+    assertSame(_workQueueMgr.getWorkForChecking(work.getId(), "worker"), work);
+  }
+
   @Test
   public void listIncompleteWork() throws Exception {
     initTestrigMetadata("testrig", "env", ProcessingStatus.UNINITIALIZED);
@@ -324,6 +410,58 @@ public class WorkQueueMgrTest {
     assertThat(parsingWorks, equalTo(Collections.singletonList(work1)));
   }
 
+  @Test
+  public void getWorkForAssignmentAlternatesNetworks() throws Exception {
+    initTestrigMetadata("testrig", "env", ProcessingStatus.UNINITIALIZED);
+    initTestrigMetadata("other", "testrig", "env", ProcessingStatus.UNINITIALIZED);
+    QueuedWork work1 =
+        new QueuedWork(
+            new WorkItem(CONTAINER, "testrig"),
+            new WorkDetails("testrig", "env", WorkType.UNKNOWN));
+    QueuedWork work2 =
+        new QueuedWork(
+            new WorkItem(CONTAINER, "testrig"),
+            new WorkDetails("testrig", "env", WorkType.UNKNOWN));
+    QueuedWork work3 =
+        new QueuedWork(
+            new WorkItem("other", "testrig"), new WorkDetails("testrig", "env", WorkType.UNKNOWN));
+    _workQueueMgr.queueUnassignedWork(work1);
+    _workQueueMgr.queueUnassignedWork(work2);
+    _workQueueMgr.queueUnassignedWork(work3);
+
+    // the other network is served before the second work of the first one
+    assertSame(_workQueueMgr.getWorkForAssignment(), work1);
+    assertSame(_workQueueMgr.getWorkForAssignment(), work3);
+    assertSame(_workQueueMgr.getWorkForAssignment(), work2);
+    assertThat(_workQueueMgr.getWorkForAssignment(), nullValue());
+  }
+
+  @Test
+  public void getWorkForAssignmentBlockingWorkFirst() throws Exception {
+    initTestrigMetadata(BASE_TESTRIG, BASE_ENV, ProcessingStatus.UNINITIALIZED);
+    initTestrigMetadata(DELTA_TESTRIG, DELTA_ENV, ProcessingStatus.UNINITIALIZED);
+    QueuedWork independentWork =
+        new QueuedWork(
+            new WorkItem(CONTAINER, DELTA_TESTRIG),
+            new WorkDetails(DELTA_TESTRIG, DELTA_ENV, WorkType.INDEPENDENT_ANSWERING));
+    QueuedWork parsingWork =
+        new QueuedWork(
+            new WorkItem(CONTAINER, BASE_TESTRIG),
+            new WorkDetails(BASE_TESTRIG, BASE_ENV, WorkType.PARSING));
+    QueuedWork dependentWork =
+        new QueuedWork(
+            new WorkItem(CONTAINER, BASE_TESTRIG),
+            new WorkDetails(BASE_TESTRIG, BASE_ENV, WorkType.PARSING_DEPENDENT_ANSWERING));
+    _workQueueMgr.queueUnassignedWork(independentWork);
+    _workQueueMgr.queueUnassignedWork(parsingWork);
+    _workQueueMgr.queueUnassignedWork(dependentWork);
+
+    // the parsing work blocks the dependent work, so it goes before earlier work
+    assertSame(_workQueueMgr.getWorkForAssignment(), parsingWork);
+    assertSame(_workQueueMgr.getWorkForAssignment(), independentWork);
+    assertThat(_workQueueMgr.getWorkForAssignment(), nullValue());
+  }
+
   // BEGIN: INDEPENDENT_ANSWERING TESTS
 
   @Test
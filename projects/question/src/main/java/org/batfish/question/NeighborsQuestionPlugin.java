@@ -560,6 +560,11 @@ public class NeighborsQuestionPlugin extends QuestionPlugin {
       NeighborsAnswerElement answerElement = new NeighborsAnswerElement();
 
       Map<String, Configuration> configurations = _batfish.loadConfigurations();
+      if (question.getNeighborTypes().contains(NeighborType.OSPF)
+          || question.getNeighborTypes().contains(NeighborType.RIP)) {
+        // Initializing OSPF and RIP neighbors modifies the configurations
+        configurations = CommonUtil.copyConfigurations(configurations);
+      }
       Set<String> includeNodes1 = question.getNode1Regex().getMatchingNodes(_batfish);
       Set<String> includeNodes2 = question.getNode2Regex().getMatchingNodes(_batfish);
 
@@ -195,7 +195,9 @@ public class OspfSessionCheckQuestionPlugin extends QuestionPlugin {
 
       OspfSessionCheckQuestion question = (OspfSessionCheckQuestion) _question;
 
-      Map<String, Configuration> configurations = _batfish.loadConfigurations();
+      // Initializing OSPF neighbors modifies the configurations
+      Map<String, Configuration> configurations =
+          CommonUtil.copyConfigurations(_batfish.loadConfigurations());
       Set<String> includeNodes1 = question.getNode1Regex().getMatchingNodes(_batfish);
       Set<String> includeNodes2 = question.getNode2Regex().getMatchingNodes(_batfish);
 
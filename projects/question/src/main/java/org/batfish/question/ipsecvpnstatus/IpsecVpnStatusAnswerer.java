@@ -51,7 +51,9 @@ public class IpsecVpnStatusAnswerer extends Answerer {
   public AnswerElement answer() {
     IpsecVpnStatusQuestion question = (IpsecVpnStatusQuestion) _question;
 
-    Map<String, Configuration> configurations = _batfish.loadConfigurations();
+    // Initializing remote IPsec VPNs modifies the configurations
+    Map<String, Configuration> configurations =
+        CommonUtil.copyConfigurations(_batfish.loadConfigurations());
     Set<String> includeNodes1 = question.getNode1Regex().getMatchingNodes(_batfish);
     Set<String> includeNodes2 = question.getNode2Regex().getMatchingNodes(_batfish);
 
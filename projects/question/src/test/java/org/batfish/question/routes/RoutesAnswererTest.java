@@ -41,6 +41,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.function.Consumer;
 import org.batfish.common.BatfishLogger;
 import org.batfish.common.plugin.IBatfishTestAdapter;
 import org.batfish.datamodel.AbstractRoute;
@@ -391,6 +392,11 @@ public class RoutesAnswererTest {
       return _routes;
     }
 
+    @Override
+    public void forEachLongestPrefixMatch(Ip address, Consumer<? super R> consumer) {
+      throw new UnsupportedOperationException();
+    }
+
     @Override
     public Set<R> longestPrefixMatch(Ip address) {
       throw new UnsupportedOperationException();